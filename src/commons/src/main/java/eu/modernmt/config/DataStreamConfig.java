@@ -15,6 +15,10 @@ public class DataStreamConfig {
     private String host = "localhost";
     private int port = 9092;
     private String name = null;
+    private int uploadBatchSize = 256 * 1024;
+    private int uploadLinger = 20;
+    private String compression = "lz4";
+    private int uploadMaxInFlight = 10000;
 
     public boolean isEnabled() {
         return enabled;
@@ -58,7 +62,11 @@ public class DataStreamConfig {
                 "  enabled = " + this.enabled + "\n" +
                 "  embedded = " + this.embedded + "\n" +
                 "  host = " + this.host + "\n" +
-                "  port = " + this.port;
+                "  port = " + this.port + "\n" +
+                "  upload batch size = " + this.uploadBatchSize + "\n" +
+                "  upload linger = " + this.uploadLinger + "\n" +
+                "  compression = " + this.compression + "\n" +
+                "  upload max in flight = " + this.uploadMaxInFlight;
     }
 
     public String getName() {
@@ -69,4 +77,53 @@ public class DataStreamConfig {
         this.name = name;
         return this;
     }
+
+    /**
+     * @return the size in bytes of the batches of records sent by the producer
+     */
+    public int getUploadBatchSize() {
+        return uploadBatchSize;
+    }
+
+    public DataStreamConfig setUploadBatchSize(int uploadBatchSize) {
+        this.uploadBatchSize = uploadBatchSize;
+        return this;
+    }
+
+    /**
+     * @return the time in milliseconds the producer waits for a batch to fill before sending it
+     */
+    public int getUploadLinger() {
+        return uploadLinger;
+    }
+
+    public DataStreamConfig setUploadLinger(int uploadLinger) {
+        this.uploadLinger = uploadLinger;
+        return this;
+    }
+
+    /**
+     * @return the compression codec of the produced batches ("none", "gzip", "snappy" or "lz4")
+     */
+    public String getCompression() {
+        return compression;
+    }
+
+    public DataStreamConfig setCompression(String compression) {
+        this.compression = compression;
+        return this;
+    }
+
+    /**
+     * @return the maximum number of records of a memory import not yet acknowledged by the server
+     */
+    public int getUploadMaxInFlight() {
+        return uploadMaxInFlight;
+    }
+
+    public DataStreamConfig setUploadMaxInFlight(int uploadMaxInFlight) {
+        this.uploadMaxInFlight = uploadMaxInFlight;
+        return this;
+    }
+
 }
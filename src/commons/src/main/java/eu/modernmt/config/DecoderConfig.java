@@ -12,6 +12,9 @@ import java.util.Arrays;
 public class DecoderConfig {
 
     private static final int[] DEFAULT_GPUS = new int[0];
+    private static final int DEFAULT_BATCH_SIZE = 1;
+    private static final long DEFAULT_BATCH_TIMEOUT = 2000L;
+    private static final long DEFAULT_AFFINITY_TIMEOUT = 0L;
     private static final int DEFAULT_THREADS = getDefaultThreads();
 
     private static int getDefaultThreads() {
@@ -23,6 +26,10 @@ public class DecoderConfig {
     private int[] gpus = DEFAULT_GPUS;
     private String decoderClass = null;
     private boolean enabled = true;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private long batchTimeout = DEFAULT_BATCH_TIMEOUT;
+    private boolean binaryProtocol = false;
+    private long affinityTimeout = DEFAULT_AFFINITY_TIMEOUT;
 
     public boolean isEnabled() {
         return enabled;
@@ -81,6 +88,59 @@ public class DecoderConfig {
         }
     }
 
+    /**
+     * @return the maximum number of sentences sent to a decoder process in a single request,
+     * a value of 1 disables micro-batching
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1)
+            throw new IllegalArgumentException("Invalid batch size: " + batchSize);
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * @return the maximum time (in microseconds) a sentence waits for other sentences to fill its batch
+     */
+    public long getBatchTimeout() {
+        return batchTimeout;
+    }
+
+    public void setBatchTimeout(long batchTimeout) {
+        if (batchTimeout < 0)
+            throw new IllegalArgumentException("Invalid batch timeout: " + batchTimeout);
+        this.batchTimeout = batchTimeout;
+    }
+
+    /**
+     * @return true if the binary protocol should be preferred over JSON when communicating
+     * with the decoder processes (if they support it)
+     */
+    public boolean isUsingBinaryProtocol() {
+        return binaryProtocol;
+    }
+
+    public void setBinaryProtocol(boolean binaryProtocol) {
+        this.binaryProtocol = binaryProtocol;
+    }
+
+    /**
+     * @return the maximum time (in milliseconds) a translation waits for a busy decoder process that has already
+     * loaded the requested model, before falling back to an idle process that must load it; 0 never waits
+     */
+    public long getAffinityTimeout() {
+        return affinityTimeout;
+    }
+
+    public void setAffinityTimeout(long affinityTimeout) {
+        if (affinityTimeout < 0)
+            throw new IllegalArgumentException("Invalid affinity timeout: " + affinityTimeout);
+        this.affinityTimeout = affinityTimeout;
+    }
+
     public int getParallelismDegree() {
         return isUsingGPUs() ? gpus.length : threads;
     }
@@ -96,6 +156,10 @@ public class DecoderConfig {
                 "  threads = " + threads + "\n" +
                 "  gpus = " + Arrays.toString(gpus) + "\n" +
                 "  class = " + decoderClass + "\n" +
+                "  batch size = " + batchSize + "\n" +
+                "  batch timeout = " + batchTimeout + "us\n" +
+                "  binary protocol = " + binaryProtocol + "\n" +
+                "  affinity timeout = " + affinityTimeout + "ms\n" +
                 "  enabled = " + enabled;
     }
 
@@ -0,0 +1,49 @@
+package eu.modernmt.config;
+
+/**
+ * Configuration of the node cache of memory metadata (owner and name).
+ */
+public class MemoryCacheConfig {
+
+    private boolean enabled = true;
+    private int size = 10000;
+    private int ttl = 3600; // seconds
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @return the maximum number of cached memories
+     */
+    public int getSize() {
+        return size;
+    }
+
+    public void setSize(int size) {
+        this.size = size;
+    }
+
+    /**
+     * @return the time in seconds after which a cached memory expires
+     */
+    public int getTtl() {
+        return ttl;
+    }
+
+    public void setTtl(int ttl) {
+        this.ttl = ttl;
+    }
+
+    @Override
+    public String toString() {
+        return "[MemoryCache]\n" +
+                "  enabled = " + enabled + "\n" +
+                "  size = " + size + "\n" +
+                "  ttl = " + ttl;
+    }
+}
@@ -10,6 +10,8 @@ public class NodeConfig {
     private final DatabaseConfig databaseConfig = new DatabaseConfig();
     private final EngineConfig engineConfig = new EngineConfig();
     private final TranslationQueueConfig translationQueueConfig = new TranslationQueueConfig();
+    private final TranslationCacheConfig translationCacheConfig = new TranslationCacheConfig();
+    private final MemoryCacheConfig memoryCacheConfig = new MemoryCacheConfig();
 
     public NetworkConfig getNetworkConfig() {
         return networkConfig;
@@ -31,10 +33,20 @@ public class NodeConfig {
         return translationQueueConfig;
     }
 
+    public TranslationCacheConfig getTranslationCacheConfig() {
+        return translationCacheConfig;
+    }
+
+    public MemoryCacheConfig getMemoryCacheConfig() {
+        return memoryCacheConfig;
+    }
+
     @Override
     public String toString() {
         return "[Node]\n" +
                 "  " + translationQueueConfig.toString().replace("\n", "\n  ") + "\n" +
+                "  " + translationCacheConfig.toString().replace("\n", "\n  ") + "\n" +
+                "  " + memoryCacheConfig.toString().replace("\n", "\n  ") + "\n" +
                 "  " + networkConfig.toString().replace("\n", "\n  ") + "\n" +
                 "  " + dataStreamConfig.toString().replace("\n", "\n  ") + "\n" +
                 "  " + databaseConfig.toString().replace("\n", "\n  ") + "\n" +
@@ -0,0 +1,63 @@
+package eu.modernmt.config;
+
+/**
+ * Configuration of the node cache of translation results.
+ * The cache is bounded by the number of entries or, if a memory budget is set, by their estimated size.
+ */
+public class TranslationCacheConfig {
+
+    private boolean enabled = false;
+    private int size = 10000;
+    private int ttl = 6 * 3600; // seconds
+    private int memory = 0; // MB
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @return the maximum number of cached translations, ignored if a memory budget is set
+     */
+    public int getSize() {
+        return size;
+    }
+
+    public void setSize(int size) {
+        this.size = size;
+    }
+
+    /**
+     * @return the time in seconds after which a cached translation expires
+     */
+    public int getTtl() {
+        return ttl;
+    }
+
+    public void setTtl(int ttl) {
+        this.ttl = ttl;
+    }
+
+    /**
+     * @return the maximum estimated size in MB of the cached translations, 0 to bound the cache by number of entries
+     */
+    public int getMemory() {
+        return memory;
+    }
+
+    public void setMemory(int memory) {
+        this.memory = memory;
+    }
+
+    @Override
+    public String toString() {
+        return "[TranslationCache]\n" +
+                "  enabled = " + enabled + "\n" +
+                "  size = " + size + "\n" +
+                "  ttl = " + ttl + "\n" +
+                "  memory = " + memory;
+    }
+}
@@ -8,6 +8,10 @@ public class TranslationQueueConfig {
     private int highPrioritySize = 512;
     private int normalPrioritySize = 1024;
     private int backgroundPrioritySize = 4096;
+    private int splitParallelism = 1;
+    private boolean deadlineScheduling = false;
+    private boolean admissionControl = false;
+    private boolean lockStriping = false;
 
     public int getHighPrioritySize() {
         return highPrioritySize;
@@ -33,11 +37,62 @@ public class TranslationQueueConfig {
         this.backgroundPrioritySize = backgroundPrioritySize;
     }
 
+    /**
+     * @return the maximum number of pieces of a split sentence that are translated concurrently,
+     * a value of 1 translates the pieces sequentially
+     */
+    public int getSplitParallelism() {
+        return splitParallelism;
+    }
+
+    public void setSplitParallelism(int splitParallelism) {
+        this.splitParallelism = splitParallelism;
+    }
+
+    /**
+     * @return true if the tasks of the same priority are executed in order of expiration (earliest deadline first)
+     * instead of in order of arrival
+     */
+    public boolean isDeadlineScheduling() {
+        return deadlineScheduling;
+    }
+
+    public void setDeadlineScheduling(boolean deadlineScheduling) {
+        this.deadlineScheduling = deadlineScheduling;
+    }
+
+    /**
+     * @return true if a task is rejected when the estimated time in queue exceeds its expiration
+     */
+    public boolean isAdmissionControl() {
+        return admissionControl;
+    }
+
+    public void setAdmissionControl(boolean admissionControl) {
+        this.admissionControl = admissionControl;
+    }
+
+    /**
+     * @return true if each priority of the queue is guarded by a separate lock,
+     * so that producers and consumers of different priorities do not contend
+     */
+    public boolean isLockStriping() {
+        return lockStriping;
+    }
+
+    public void setLockStriping(boolean lockStriping) {
+        this.lockStriping = lockStriping;
+    }
+
     @Override
     public String toString() {
         return "[TranslationQueue]\n" +
                 "  high = " + highPrioritySize + "\n" +
                 "  normal = " + normalPrioritySize + "\n" +
-                "  background = " + backgroundPrioritySize;
+                "  background = " + backgroundPrioritySize + "\n" +
+                "  split parallelism = " + splitParallelism + "\n" +
+                "  deadline scheduling = " + deadlineScheduling + "\n" +
+                "  admission control = " + admissionControl + "\n" +
+                "  lock striping = " + lockStriping;
     }
 }
@@ -23,6 +23,8 @@ public class XMLConfigBuilder extends XMLAbstractBuilder {
     private final XMLDatabaseConfigBuilder databaseConfigBuilder;
     private final XMLEngineConfigBuilder engineConfigBuilder;
     private final XMLTranslationQueueConfigBuilder translationQueueConfigBuilder;
+    private final XMLTranslationCacheConfigBuilder translationCacheConfigBuilder;
+    private final XMLMemoryCacheConfigBuilder memoryCacheConfigBuilder;
 
     private XMLConfigBuilder(Element element) {
         super(element);
@@ -32,6 +34,8 @@ public class XMLConfigBuilder extends XMLAbstractBuilder {
         databaseConfigBuilder = new XMLDatabaseConfigBuilder(getChild("db"));
         engineConfigBuilder = new XMLEngineConfigBuilder(getChild("engine"));
         translationQueueConfigBuilder = new XMLTranslationQueueConfigBuilder(getChild("translation-queue"));
+        translationCacheConfigBuilder = new XMLTranslationCacheConfigBuilder(getChild("translation-cache"));
+        memoryCacheConfigBuilder = new XMLMemoryCacheConfigBuilder(getChild("memory-cache"));
     }
 
     public static NodeConfig build(File file) throws ConfigException {
@@ -60,6 +64,8 @@ public class XMLConfigBuilder extends XMLAbstractBuilder {
         databaseConfigBuilder.build(config.getDatabaseConfig());
         engineConfigBuilder.build(config.getEngineConfig());
         translationQueueConfigBuilder.build(config.getTranslationQueueConfig());
+        translationCacheConfigBuilder.build(config.getTranslationCacheConfig());
+        memoryCacheConfigBuilder.build(config.getMemoryCacheConfig());
 
         return config;
     }
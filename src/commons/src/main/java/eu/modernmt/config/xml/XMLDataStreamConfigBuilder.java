@@ -46,6 +46,14 @@ class XMLDataStreamConfigBuilder extends XMLAbstractBuilder {
             config.setPort(this.getIntAttribute("port"));
         if (this.hasAttribute("name"))
             config.setName(this.getStringAttribute("name"));
+        if (this.hasAttribute("upload-batch-size"))
+            config.setUploadBatchSize(this.getIntAttribute("upload-batch-size"));
+        if (this.hasAttribute("upload-linger"))
+            config.setUploadLinger(this.getIntAttribute("upload-linger"));
+        if (this.hasAttribute("compression"))
+            config.setCompression(this.getStringAttribute("compression"));
+        if (this.hasAttribute("upload-max-in-flight"))
+            config.setUploadMaxInFlight(this.getIntAttribute("upload-max-in-flight"));
         return config;
     }
 
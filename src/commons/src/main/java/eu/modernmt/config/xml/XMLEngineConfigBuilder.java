@@ -138,6 +138,9 @@ class XMLEngineConfigBuilder extends XMLAbstractBuilder {
             if (hasAttribute("class"))
                 config.setDecoderClass(getStringAttribute("class"));
 
+            if (hasAttribute("binary-protocol"))
+                config.setBinaryProtocol(getBooleanAttribute("binary-protocol"));
+
             if (hasAttribute("gpus")) {
                 try {
                     config.setGPUs(getIntArrayAttribute("gpus"));
@@ -146,6 +149,23 @@ class XMLEngineConfigBuilder extends XMLAbstractBuilder {
                 }
             }
 
+            try {
+                if (hasAttribute("batch-size"))
+                    config.setBatchSize(getIntAttribute("batch-size"));
+                if (hasAttribute("batch-timeout"))
+                    config.setBatchTimeout(getIntAttribute("batch-timeout"));
+            } catch (IllegalArgumentException e) {
+                throw new ConfigException("Invalid decoder batching option", e);
+            }
+
+            if (hasAttribute("affinity-timeout")) {
+                try {
+                    config.setAffinityTimeout(getIntAttribute("affinity-timeout"));
+                } catch (IllegalArgumentException e) {
+                    throw new ConfigException("Invalid 'affinity-timeout' option", e);
+                }
+            }
+
             if (config.isUsingGPUs() && hasAttribute("threads"))
                 throw new ConfigException("In order to specify 'threads', you have to add gpus='none'");
 
@@ -0,0 +1,23 @@
+package eu.modernmt.config.xml;
+
+import eu.modernmt.config.ConfigException;
+import eu.modernmt.config.MemoryCacheConfig;
+import org.w3c.dom.Element;
+
+class XMLMemoryCacheConfigBuilder extends XMLAbstractBuilder {
+
+    public XMLMemoryCacheConfigBuilder(Element element) {
+        super(element);
+    }
+
+    public MemoryCacheConfig build(MemoryCacheConfig config) throws ConfigException {
+        if (this.hasAttribute("enabled"))
+            config.setEnabled(getBooleanAttribute("enabled"));
+        if (this.hasAttribute("size"))
+            config.setSize(getIntAttribute("size"));
+        if (this.hasAttribute("ttl"))
+            config.setTtl(getIntAttribute("ttl"));
+
+        return config;
+    }
+}
@@ -0,0 +1,25 @@
+package eu.modernmt.config.xml;
+
+import eu.modernmt.config.ConfigException;
+import eu.modernmt.config.TranslationCacheConfig;
+import org.w3c.dom.Element;
+
+class XMLTranslationCacheConfigBuilder extends XMLAbstractBuilder {
+
+    public XMLTranslationCacheConfigBuilder(Element element) {
+        super(element);
+    }
+
+    public TranslationCacheConfig build(TranslationCacheConfig config) throws ConfigException {
+        if (this.hasAttribute("enabled"))
+            config.setEnabled(getBooleanAttribute("enabled"));
+        if (this.hasAttribute("size"))
+            config.setSize(getIntAttribute("size"));
+        if (this.hasAttribute("ttl"))
+            config.setTtl(getIntAttribute("ttl"));
+        if (this.hasAttribute("memory"))
+            config.setMemory(getIntAttribute("memory"));
+
+        return config;
+    }
+}
@@ -17,6 +17,14 @@ class XMLTranslationQueueConfigBuilder extends XMLAbstractBuilder {
             config.setNormalPrioritySize(getIntAttribute("normal-priority-size"));
         if (this.hasAttribute("background-priority-size"))
             config.setBackgroundPrioritySize(getIntAttribute("background-priority-size"));
+        if (this.hasAttribute("split-parallelism"))
+            config.setSplitParallelism(getIntAttribute("split-parallelism"));
+        if (this.hasAttribute("deadline-scheduling"))
+            config.setDeadlineScheduling(getBooleanAttribute("deadline-scheduling"));
+        if (this.hasAttribute("admission-control"))
+            config.setAdmissionControl(getBooleanAttribute("admission-control"));
+        if (this.hasAttribute("lock-striping"))
+            config.setLockStriping(getBooleanAttribute("lock-striping"));
 
         return config;
     }
@@ -6,6 +6,9 @@ import eu.modernmt.model.corpus.Corpus;
 
 import java.io.Closeable;
 import java.io.File;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 /**
@@ -19,4 +22,11 @@ public interface ContextAnalyzer extends Closeable {
 
     ContextVector getContextVector(UUID user, LanguagePair direction, Corpus query, int limit) throws ContextAnalyzerException;
 
+    /**
+     * Compute the context vectors of multiple documents for multiple directions at once.
+     *
+     * @return for every query document (in the same order), the context vector for each of the directions
+     */
+    List<Map<LanguagePair, ContextVector>> getContextVectors(UUID user, List<Corpus> queries, Collection<LanguagePair> directions, int limit) throws ContextAnalyzerException;
+
 }
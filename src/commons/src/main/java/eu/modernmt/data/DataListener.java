@@ -9,6 +9,11 @@ public interface DataListener {
 
     void onDataReceived(DataBatch batch) throws Exception;
 
+    /**
+     * @return the position of the latest message received for each channel (an empty map if the listener
+     * needs to receive all the messages), or null if the listener does not keep any state across restarts
+     * and it can start from any position
+     */
     Map<Short, Long> getLatestChannelPositions();
 
     boolean needsProcessing();
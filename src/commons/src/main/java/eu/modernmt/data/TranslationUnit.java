@@ -1,9 +1,11 @@
 package eu.modernmt.data;
 
+import eu.modernmt.io.UTF8Charset;
 import eu.modernmt.lang.LanguagePair;
 import eu.modernmt.model.Alignment;
 import eu.modernmt.model.Sentence;
 
+import java.nio.ByteBuffer;
 import java.util.Date;
 import java.util.UUID;
 
@@ -16,16 +18,17 @@ public class TranslationUnit extends DataMessage {
     public final UUID owner;
 
     public final LanguagePair direction;
-    public final String rawSentence;
-    public final String rawTranslation;
-    public final String rawPreviousSentence;
-    public final String rawPreviousTranslation;
     public final Date timestamp;
 
     public final Sentence sentence;
     public final Sentence translation;
     public final Alignment alignment;
 
+    private final String rawSentence;
+    private final String rawTranslation;
+    private final String rawPreviousSentence;
+    private final String rawPreviousTranslation;
+
     public TranslationUnit(short channel, long channelPosition, UUID owner, LanguagePair direction, long memory,
                            String rawSentence, String rawTranslation, String rawPreviousSentence, String rawPreviousTranslation,
                            Date timestamp, Sentence sentence, Sentence translation, Alignment alignment) {
@@ -44,6 +47,49 @@ public class TranslationUnit extends DataMessage {
         this.alignment = alignment;
     }
 
+    /**
+     * Units read from a serialized message decode the raw strings only when they are first requested.
+     *
+     * @return the raw sentence
+     */
+    public String getRawSentence() {
+        return rawSentence;
+    }
+
+    public String getRawTranslation() {
+        return rawTranslation;
+    }
+
+    public String getRawPreviousSentence() {
+        return rawPreviousSentence;
+    }
+
+    public String getRawPreviousTranslation() {
+        return rawPreviousTranslation;
+    }
+
+    /**
+     * Returns the UTF-8 encoding of the raw sentence. Units read from a serialized message
+     * return a view of its bytes, without encoding the string again:
+     * the content of the buffer must not be modified.
+     *
+     * @return a buffer containing the UTF-8 bytes of the raw sentence
+     */
+    public ByteBuffer getRawSentenceBytes() {
+        return ByteBuffer.wrap(getRawSentence().getBytes(UTF8Charset.get()));
+    }
+
+    /**
+     * Returns the UTF-8 encoding of the raw translation. Units read from a serialized message
+     * return a view of its bytes, without encoding the string again:
+     * the content of the buffer must not be modified.
+     *
+     * @return a buffer containing the UTF-8 bytes of the raw translation
+     */
+    public ByteBuffer getRawTranslationBytes() {
+        return ByteBuffer.wrap(getRawTranslation().getBytes(UTF8Charset.get()));
+    }
+
     @Override
     public String toString() {
         StringBuilder builder = new StringBuilder();
@@ -52,15 +98,15 @@ public class TranslationUnit extends DataMessage {
         builder.append(':');
         builder.append(direction);
         builder.append(':');
-        builder.append(rawSentence);
+        builder.append(getRawSentence());
         builder.append(':');
-        builder.append(rawTranslation);
+        builder.append(getRawTranslation());
 
-        if (rawPreviousSentence != null) {
+        if (getRawPreviousSentence() != null) {
             builder.append(':');
-            builder.append(rawPreviousSentence);
+            builder.append(getRawPreviousSentence());
             builder.append(':');
-            builder.append(rawPreviousTranslation);
+            builder.append(getRawPreviousTranslation());
         }
         builder.append(':');
         builder.append(timestamp);
@@ -21,6 +21,17 @@ public abstract class Decoder implements Closeable {
 
     public abstract void setListener(DecoderListener listener);
 
+    /**
+     * Registers a listener of the refreshes of the decoder memory.
+     *
+     * @param listener the listener
+     * @return false if the memory makes new data searchable as soon as it has been processed:
+     * in that case there are no refreshes and the listener is never called
+     */
+    public boolean addMemoryRefreshListener(MemoryRefreshListener listener) {
+        return false;
+    }
+
     public abstract Translation translate(UUID user, LanguagePair direction, Sentence text) throws DecoderException;
 
     public abstract Translation translate(UUID user, LanguagePair direction, Sentence text, ContextVector contextVector) throws DecoderException;
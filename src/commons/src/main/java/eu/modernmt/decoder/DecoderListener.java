@@ -13,4 +13,11 @@ public interface DecoderListener {
 
     void onDecoderAvailabilityChanged(int currentAvailability, int maxAvailability);
 
+    /**
+     * Called when the set of directions whose model is loaded by at least one decoder process changes.
+     *
+     * @param directions the directions that can be translated without loading a model
+     */
+    void onWarmTranslationDirectionsChanged(Set<LanguagePair> directions);
+
 }
@@ -0,0 +1,20 @@
+package eu.modernmt.decoder;
+
+/**
+ * Notified when a decoder, whose memory makes new data searchable periodically instead of as soon as it
+ * has been processed, refreshes the memory searcher.
+ */
+public interface MemoryRefreshListener {
+
+    /**
+     * Called before a refresh: all the data processed before this call will be searchable
+     * after the following {@link #afterMemoryRefresh()}.
+     */
+    void beforeMemoryRefresh();
+
+    /**
+     * Called when a refresh completes successfully, it is not called if the refresh fails.
+     */
+    void afterMemoryRefresh();
+
+}
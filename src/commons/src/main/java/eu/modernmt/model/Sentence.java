@@ -71,6 +71,10 @@ public class Sentence implements Serializable, Iterable<Token> {
         return annotations != null && annotations.contains(annotation);
     }
 
+    public Set<String> getAnnotations() {
+        return annotations;
+    }
+
     @Override
     public String toString() {
         return toString(true, false);
@@ -1,5 +1,7 @@
 package eu.modernmt.context.lucene;
 
+import eu.modernmt.context.lucene.analysis.rescoring.CosineSimilarityRescorer;
+
 /**
  * Created by davide on 23/09/16.
  */
@@ -25,4 +27,12 @@ public class AnalysisOptions {
     // 'maxToleratedMisalignment' bytes
     public long maxToleratedMisalignment = 30L * 1024L; // 30Kb
 
+    // If set to true, the term frequencies of every bucket are stored
+    // and only the content appended since the last analysis is read
+    public boolean incremental = true;
+
+    // Maximum size in bytes of the bucket term vectors kept in memory
+    // for rescoring, 0 disables the cache
+    public long vectorsCacheSize = CosineSimilarityRescorer.DEFAULT_VECTORS_CACHE_SIZE;
+
 }
@@ -2,8 +2,11 @@ package eu.modernmt.context.lucene;
 
 import eu.modernmt.context.ContextAnalyzer;
 import eu.modernmt.context.ContextAnalyzerException;
+import eu.modernmt.context.lucene.analysis.AnalyzedDocument;
 import eu.modernmt.context.lucene.analysis.ContextAnalyzerIndex;
 import eu.modernmt.context.lucene.analysis.DocumentBuilder;
+import eu.modernmt.context.lucene.analysis.rescoring.CosineSimilarityRescorer;
+import eu.modernmt.context.lucene.storage.AnalysisState;
 import eu.modernmt.context.lucene.storage.Bucket;
 import eu.modernmt.context.lucene.storage.CorporaStorage;
 import eu.modernmt.data.DataListener;
@@ -14,6 +17,7 @@ import eu.modernmt.model.ContextVector;
 import eu.modernmt.model.corpus.Corpus;
 import eu.modernmt.model.corpus.impl.StringCorpus;
 import eu.modernmt.model.corpus.impl.parallel.FileCorpus;
+import org.apache.commons.io.IOUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.lucene.document.Document;
@@ -35,18 +39,27 @@ public class LuceneAnalyzer implements ContextAnalyzer, DataListenerProvider {
     private final ContextAnalyzerIndex index;
     private final CorporaStorage storage;
     private final AnalysisThread analysis;
+    private final ExecutorService queryExecutor;
+    private final boolean incremental;
 
     public LuceneAnalyzer(File indexPath) throws IOException {
         this(indexPath, new AnalysisOptions());
     }
 
     public LuceneAnalyzer(File indexPath, AnalysisOptions options) throws IOException {
-        this(new ContextAnalyzerIndex(new File(indexPath, "index")), new CorporaStorage(new File(indexPath, "storage")), options);
+        this(new ContextAnalyzerIndex(new File(indexPath, "index"), newRescorer(options)),
+                new CorporaStorage(new File(indexPath, "storage")), options);
+    }
+
+    private static CosineSimilarityRescorer newRescorer(AnalysisOptions options) {
+        return new CosineSimilarityRescorer(Runtime.getRuntime().availableProcessors(), options.vectorsCacheSize);
     }
 
     protected LuceneAnalyzer(ContextAnalyzerIndex index, CorporaStorage storage, AnalysisOptions options) {
         this.index = index;
         this.storage = storage;
+        this.queryExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        this.incremental = options.incremental;
 
         if (options.enabled) {
             this.analysis = new AnalysisThread(options);
@@ -83,6 +96,78 @@ public class LuceneAnalyzer implements ContextAnalyzer, DataListenerProvider {
         }
     }
 
+    @Override
+    public List<Map<LanguagePair, ContextVector>> getContextVectors(UUID user, List<Corpus> queries, Collection<LanguagePair> directions, int limit) throws ContextAnalyzerException {
+        // Query documents are analyzed once per source language
+        HashMap<String, List<LanguagePair>> groupsBySource = new HashMap<>();
+        for (LanguagePair direction : directions)
+            groupsBySource.computeIfAbsent(direction.source.getLanguage(), key -> new ArrayList<>()).add(direction);
+
+        List<List<LanguagePair>> groups = new ArrayList<>(groupsBySource.values());
+        ArrayList<Future<?>> futures = new ArrayList<>();
+
+        try {
+            ArrayList<Future<AnalyzedDocument>> analyses = new ArrayList<>(queries.size() * groups.size());
+            for (Corpus query : queries) {
+                for (List<LanguagePair> group : groups) {
+                    Future<AnalyzedDocument> future = queryExecutor.submit(() -> index.analyze(group.get(0), query));
+                    analyses.add(future);
+                    futures.add(future);
+                }
+            }
+
+            ArrayList<Map<LanguagePair, Future<ContextVector>>> vectors = new ArrayList<>(queries.size());
+            for (int i = 0; i < queries.size(); i++) {
+                HashMap<LanguagePair, Future<ContextVector>> map = new HashMap<>(directions.size());
+
+                for (int j = 0; j < groups.size(); j++) {
+                    AnalyzedDocument document = get(analyses.get(i * groups.size() + j));
+
+                    for (LanguagePair direction : groups.get(j)) {
+                        Future<ContextVector> future = queryExecutor.submit(() -> index.getContextVector(user, direction, document, limit));
+                        map.put(direction, future);
+                        futures.add(future);
+                    }
+                }
+
+                vectors.add(map);
+            }
+
+            ArrayList<Map<LanguagePair, ContextVector>> result = new ArrayList<>(queries.size());
+            for (Map<LanguagePair, Future<ContextVector>> map : vectors) {
+                HashMap<LanguagePair, ContextVector> entry = new HashMap<>(map.size());
+                for (Map.Entry<LanguagePair, Future<ContextVector>> e : map.entrySet())
+                    entry.put(e.getKey(), get(e.getValue()));
+
+                result.add(entry);
+            }
+
+            return result;
+        } catch (RejectedExecutionException e) {
+            throw new ContextAnalyzerException("Context analyzer has been closed", e);
+        } finally {
+            for (Future<?> future : futures)
+                future.cancel(true);
+        }
+    }
+
+    private static <V> V get(Future<V> future) throws ContextAnalyzerException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            throw new ContextAnalyzerException("Context-vector calculation interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+
+            if (cause instanceof IOException)
+                throw new ContextAnalyzerException("Failed to calculate context-vector due an internal error", cause);
+            else if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            else
+                throw new Error("Unexpected exception", cause);
+        }
+    }
+
     public synchronized void optimize() throws IOException {
         logger.info("Starting memory forced merge");
         long begin = System.currentTimeMillis();
@@ -93,6 +178,8 @@ public class LuceneAnalyzer implements ContextAnalyzer, DataListenerProvider {
 
     @Override
     public void close() throws IOException {
+        this.queryExecutor.shutdownNow();
+
         try {
             this.storage.close();
         } finally {
@@ -231,6 +318,8 @@ public class LuceneAnalyzer implements ContextAnalyzer, DataListenerProvider {
                 if (this.size == 0) {
                     // Deleted
                     index.delete(bucket.getId());
+                } else if (incremental) {
+                    runIncremental();
                 } else {
                     Reader reader = new InputStreamReader(bucket.getContentStream(), UTF8Charset.get());
                     Document document = DocumentBuilder.newInstance(bucket.getOwner(), bucket.getId(), bucket.getLanguage(), reader);
@@ -244,5 +333,31 @@ public class LuceneAnalyzer implements ContextAnalyzer, DataListenerProvider {
                 logger.error("Failed to index bucket: " + bucket, e);
             }
         }
+
+        private void runIncremental() throws IOException {
+            Bucket.Position position = bucket.getPosition();
+            this.size = position.size;
+
+            AnalysisState state = storage.getAnalysisState(bucket);
+            if (!state.getPosition().precedes(position))
+                state.reset();
+
+            Reader reader = null;
+
+            try {
+                reader = new InputStreamReader(bucket.getContentStream(state.getPosition(), position), UTF8Charset.get());
+                index.countTerms(bucket.getLanguage(), reader, state.getTermFrequencies());
+            } finally {
+                IOUtils.closeQuietly(reader);
+            }
+
+            state.advance(position);
+
+            Document document = DocumentBuilder.newInstance(bucket.getOwner(), bucket.getId(), bucket.getLanguage(), state.getTermFrequencies());
+            index.update(document);
+
+            if (!storage.storeAnalysisState(bucket, state) && logger.isDebugEnabled())
+                logger.debug("Bucket " + bucket + " deleted during analysis, state discarded");
+        }
     }
 }
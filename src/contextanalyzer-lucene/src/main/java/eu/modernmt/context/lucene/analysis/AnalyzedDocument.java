@@ -0,0 +1,117 @@
+package eu.modernmt.context.lucene.analysis;
+
+import eu.modernmt.lang.LanguagePair;
+import eu.modernmt.model.corpus.Corpus;
+import org.apache.commons.io.IOUtils;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.queries.mlt.MoreLikeThis;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The result of the analysis of a query document. Since the content analyzer only depends on
+ * the source language, the same instance can be used to query all the directions with that source language.
+ * It holds the term frequencies of the whole document (used for rescoring) and the
+ * first tokens of the document (the ones MoreLikeThis would parse).
+ */
+public class AnalyzedDocument {
+
+    private final String sourceLanguage;
+    private final String[] tokens;
+    private final Map<String, Float> termFrequencies;
+
+    public static AnalyzedDocument analyze(Analyzer analyzer, LanguagePair direction, Corpus corpus) throws IOException {
+        String fieldName = DocumentBuilder.makeContentFieldName(direction);
+
+        ArrayList<String> tokens = new ArrayList<>();
+        HashMap<String, Float> frequencies = new HashMap<>();
+
+        Reader reader = null;
+        TokenStream stream = null;
+
+        try {
+            reader = corpus.getRawContentReader();
+            stream = analyzer.tokenStream(fieldName, reader);
+            CharTermAttribute termAttribute = stream.addAttribute(CharTermAttribute.class);
+
+            stream.reset();
+            while (stream.incrementToken()) {
+                String term = termAttribute.toString();
+
+                if (tokens.size() < MoreLikeThis.DEFAULT_MAX_NUM_TOKENS_PARSED)
+                    tokens.add(term);
+                frequencies.merge(term, 1.f, Float::sum);
+            }
+
+            stream.end();
+        } finally {
+            IOUtils.closeQuietly(stream);
+            IOUtils.closeQuietly(reader);
+        }
+
+        return new AnalyzedDocument(direction.source.getLanguage(), tokens.toArray(new String[tokens.size()]), frequencies);
+    }
+
+    private AnalyzedDocument(String sourceLanguage, String[] tokens, Map<String, Float> termFrequencies) {
+        this.sourceLanguage = sourceLanguage;
+        this.tokens = tokens;
+        this.termFrequencies = termFrequencies;
+    }
+
+    public boolean isCompatible(LanguagePair direction) {
+        return sourceLanguage.equals(direction.source.getLanguage());
+    }
+
+    public Map<String, Float> getTermFrequencies() {
+        return termFrequencies;
+    }
+
+    /**
+     * @return an analyzer that emits the already analyzed tokens, ignoring its input
+     */
+    public Analyzer getTokensAnalyzer() {
+        return new Analyzer() {
+            @Override
+            protected TokenStreamComponents createComponents(String fieldName, Reader reader) {
+                return new TokenStreamComponents(new TokensTokenizer(reader, tokens));
+            }
+        };
+    }
+
+    private static final class TokensTokenizer extends Tokenizer {
+
+        private final String[] tokens;
+        private final CharTermAttribute termAttribute = addAttribute(CharTermAttribute.class);
+        private int index = 0;
+
+        private TokensTokenizer(Reader input, String[] tokens) {
+            super(input);
+            this.tokens = tokens;
+        }
+
+        @Override
+        public boolean incrementToken() throws IOException {
+            if (index >= tokens.length)
+                return false;
+
+            clearAttributes();
+            termAttribute.setEmpty().append(tokens[index++]);
+            return true;
+        }
+
+        @Override
+        public void reset() throws IOException {
+            super.reset();
+            index = 0;
+        }
+
+    }
+
+}
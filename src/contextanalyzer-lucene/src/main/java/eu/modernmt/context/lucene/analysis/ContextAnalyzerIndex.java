@@ -8,6 +8,8 @@ import eu.modernmt.model.corpus.Corpus;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.index.*;
 import org.apache.lucene.queries.mlt.MoreLikeThis;
@@ -21,7 +23,10 @@ import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.io.Reader;
+import java.io.StringReader;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
  * Created by davide on 10/07/15.
@@ -34,6 +39,7 @@ public class ContextAnalyzerIndex implements Closeable {
     private final Analyzer analyzer;
     private final IndexWriter indexWriter;
     private final Rescorer rescorer;
+    private final ConcurrentLinkedQueue<Term> updatedDocuments = new ConcurrentLinkedQueue<>();
 
     private DirectoryReader _indexReader;
     private IndexSearcher _indexSearcher;
@@ -107,7 +113,11 @@ public class ContextAnalyzerIndex implements Closeable {
 
     public void update(Document document) throws IOException {
         String id = DocumentBuilder.getId(document);
-        this.indexWriter.updateDocument(DocumentBuilder.makeIdTerm(id), document);
+        Term idTerm = DocumentBuilder.makeIdTerm(id);
+        this.indexWriter.updateDocument(idTerm, document);
+
+        if (this.rescorer != null)
+            this.updatedDocuments.add(idTerm);
     }
 
     public void delete(long memory) throws IOException {
@@ -117,9 +127,34 @@ public class ContextAnalyzerIndex implements Closeable {
 
     public void flush() throws IOException {
         this.indexWriter.commit();
+
+        if (this.rescorer != null && !this.updatedDocuments.isEmpty())
+            this.warmUpRescorer();
+    }
+
+    /**
+     * Lets the rescorer load the documents updated since the last commit,
+     * so that the cost is paid here and not by the first query that matches them.
+     */
+    private void warmUpRescorer() throws IOException {
+        IndexReader reader = this.getIndexReader();
+
+        Term idTerm;
+        while ((idTerm = this.updatedDocuments.poll()) != null) {
+            for (AtomicReaderContext leaf : reader.leaves()) {
+                DocsEnum docsEnum = leaf.reader().termDocsEnum(idTerm);
+                if (docsEnum == null)
+                    continue;
+
+                int doc;
+                while ((doc = docsEnum.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS)
+                    this.rescorer.warmUp(reader, leaf.docBase + doc);
+            }
+        }
     }
 
     public void clear() throws IOException {
+        this.updatedDocuments.clear();
         this.indexWriter.deleteAll();
         this.indexWriter.commit();
     }
@@ -134,6 +169,49 @@ public class ContextAnalyzerIndex implements Closeable {
     }
 
     public ContextVector getContextVector(UUID user, LanguagePair direction, Corpus queryDocument, int limit, Rescorer rescorer) throws IOException {
+        return this.getContextVector(user, direction, analyze(direction, queryDocument), limit, rescorer);
+    }
+
+    /**
+     * Analyze a query document once, the result can be used for every direction with the same source language.
+     */
+    public AnalyzedDocument analyze(LanguagePair direction, Corpus queryDocument) throws IOException {
+        return AnalyzedDocument.analyze(this.analyzer, direction, queryDocument);
+    }
+
+    /**
+     * Counts the terms of a bucket content as they are indexed for the given direction.
+     *
+     * @param direction       the direction of the content
+     * @param content         the content to analyze
+     * @param termFrequencies the map the term frequencies are added to
+     * @throws IOException if an I/O error occurs
+     */
+    public void countTerms(LanguagePair direction, Reader content, Map<String, Integer> termFrequencies) throws IOException {
+        TokenStream stream = null;
+
+        try {
+            stream = this.analyzer.tokenStream(DocumentBuilder.makeContentFieldName(direction), content);
+            CharTermAttribute termAttribute = stream.addAttribute(CharTermAttribute.class);
+
+            stream.reset();
+            while (stream.incrementToken())
+                termFrequencies.merge(termAttribute.toString(), 1, Integer::sum);
+
+            stream.end();
+        } finally {
+            IOUtils.closeQuietly(stream);
+        }
+    }
+
+    public ContextVector getContextVector(UUID user, LanguagePair direction, AnalyzedDocument queryDocument, int limit) throws IOException {
+        return this.getContextVector(user, direction, queryDocument, limit, this.rescorer);
+    }
+
+    public ContextVector getContextVector(UUID user, LanguagePair direction, AnalyzedDocument queryDocument, int limit, Rescorer rescorer) throws IOException {
+        if (!queryDocument.isCompatible(direction))
+            throw new IllegalArgumentException("Query document has been analyzed for a different source language: " + direction);
+
         String contentFieldName = DocumentBuilder.makeContentFieldName(direction);
 
         IndexSearcher searcher = this.getIndexSearcher();
@@ -149,11 +227,11 @@ public class ContextAnalyzerIndex implements Closeable {
         mlt.setMinTermFreq(1);
         mlt.setMinWordLen(2);
         mlt.setBoost(true);
-        mlt.setAnalyzer(analyzer);
+        mlt.setAnalyzer(queryDocument.getTokensAnalyzer());
 
         TopScoreDocCollector collector = TopScoreDocCollector.create(rawLimit, true);
 
-        Reader queryDocumentReader = queryDocument.getRawContentReader();
+        Reader queryDocumentReader = new StringReader("");
 
         try {
             Query mltQuery = mlt.like(contentFieldName, queryDocumentReader);
@@ -177,10 +255,8 @@ public class ContextAnalyzerIndex implements Closeable {
 
         // Rescore result
 
-        if (rescorer != null) {
-            Document referenceDocument = DocumentBuilder.newInstance(direction, queryDocument);
-            rescorer.rescore(reader, this.analyzer, topDocs, referenceDocument, contentFieldName);
-        }
+        if (rescorer != null)
+            rescorer.rescore(reader, topDocs, queryDocument.getTermFrequencies(), contentFieldName);
 
         // Build result
 
@@ -199,6 +275,9 @@ public class ContextAnalyzerIndex implements Closeable {
 
     @Override
     public void close() {
+        if (this.rescorer instanceof Closeable)
+            IOUtils.closeQuietly((Closeable) this.rescorer);
+
         IOUtils.closeQuietly(this._indexReader);
         IOUtils.closeQuietly(this.indexWriter);
         IOUtils.closeQuietly(this.indexDirectory);
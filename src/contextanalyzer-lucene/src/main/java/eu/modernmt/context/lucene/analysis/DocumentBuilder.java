@@ -2,6 +2,7 @@ package eu.modernmt.context.lucene.analysis;
 
 import eu.modernmt.lang.LanguagePair;
 import eu.modernmt.model.corpus.Corpus;
+import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.document.LongField;
@@ -16,6 +17,7 @@ import org.apache.lucene.util.NumericUtils;
 
 import java.io.IOException;
 import java.io.Reader;
+import java.util.Map;
 import java.util.UUID;
 
 /**
@@ -34,6 +36,15 @@ public class DocumentBuilder {
     }
 
     public static Document newInstance(UUID owner, long memory, LanguagePair direction, Reader contentReader) {
+        return newInstance(owner, memory, direction, new CorpusContentField(makeContentFieldName(direction), contentReader));
+    }
+
+    public static Document newInstance(UUID owner, long memory, LanguagePair direction, Map<String, Integer> termFrequencies) {
+        TokenStream stream = new TermFrequenciesTokenStream(termFrequencies);
+        return newInstance(owner, memory, direction, new CorpusContentField(makeContentFieldName(direction), stream));
+    }
+
+    private static Document newInstance(UUID owner, long memory, LanguagePair direction, CorpusContentField content) {
         Document document = new Document();
         document.add(new StringField(DOC_ID_FIELD, makeId(memory, direction), Field.Store.NO));
         document.add(new LongField(MEMORY_FIELD, memory, Field.Store.YES));
@@ -46,7 +57,7 @@ public class DocumentBuilder {
             document.add(new LongField(OWNER_LSB_FIELD, 0L, Field.Store.NO));
         }
 
-        document.add(new CorpusContentField(makeContentFieldName(direction), contentReader));
+        document.add(content);
 
         return document;
     }
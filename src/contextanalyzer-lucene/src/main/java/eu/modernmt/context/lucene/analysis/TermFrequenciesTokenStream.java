@@ -0,0 +1,51 @@
+package eu.modernmt.context.lucene.analysis;
+
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * A TokenStream that emits every term as many times as its frequency,
+ * so that a document can be indexed from already counted terms without analyzing its content again.
+ */
+final class TermFrequenciesTokenStream extends TokenStream {
+
+    private final CharTermAttribute termAttribute = addAttribute(CharTermAttribute.class);
+    private final Map<String, Integer> termFrequencies;
+
+    private Iterator<Map.Entry<String, Integer>> iterator = null;
+    private String term = null;
+    private int remaining = 0;
+
+    public TermFrequenciesTokenStream(Map<String, Integer> termFrequencies) {
+        this.termFrequencies = termFrequencies;
+    }
+
+    @Override
+    public boolean incrementToken() {
+        while (remaining == 0) {
+            if (!iterator.hasNext())
+                return false;
+
+            Map.Entry<String, Integer> entry = iterator.next();
+            term = entry.getKey();
+            remaining = entry.getValue();
+        }
+
+        clearAttributes();
+        termAttribute.setEmpty().append(term);
+        remaining--;
+
+        return true;
+    }
+
+    @Override
+    public void reset() {
+        iterator = termFrequencies.entrySet().iterator();
+        term = null;
+        remaining = 0;
+    }
+
+}
@@ -1,36 +1,156 @@
 package eu.modernmt.context.lucene.analysis.rescoring;
 
-import eu.modernmt.context.lucene.analysis.LuceneUtils;
-import org.apache.lucene.analysis.Analyzer;
-import org.apache.lucene.document.Document;
-import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.*;
 import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.util.BytesRef;
 
+import java.io.Closeable;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Created by davide on 06/08/17.
+ * <p>
+ * Top documents are rescored in parallel on a long-lived, bounded pool shared by all the requests:
+ * when the pool queue is full the calling thread does the work itself.
+ * Documents term vectors are kept in memory as sparse vectors of term ids (see {@link DocumentVectorsCache}),
+ * loaded when the index is committed (see {@link #warmUp(IndexReader, int)}) or at the first use:
+ * rescoring is then a dot product between int arrays, with no term vector I/O.
+ * The memory used by the vectors is bounded, and the cache can be disabled with a bound of 0.
  */
-public class CosineSimilarityRescorer implements Rescorer {
+public class CosineSimilarityRescorer implements Rescorer, Closeable {
+
+    private static final int MIN_DOCUMENTS_PER_TASK = 4;
+    private static final int QUEUE_SIZE_PER_THREAD = 16;
+
+    private final int parallelism;
+    private final ThreadPoolExecutor executor;
+    public static final long DEFAULT_VECTORS_CACHE_SIZE = 256L * 1024L * 1024L; // 256Mb
+
+    private final DocumentVectorsCache vectors;
+
+    private final AtomicLong rescoredDocuments = new AtomicLong(0L);
+    private final AtomicLong cacheHits = new AtomicLong(0L);
+    private final AtomicLong cacheMisses = new AtomicLong(0L);
+    private final AtomicLong callerRuns = new AtomicLong(0L);
+
+    public CosineSimilarityRescorer() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public CosineSimilarityRescorer(int threads) {
+        this(threads, DEFAULT_VECTORS_CACHE_SIZE);
+    }
+
+    /**
+     * @param vectorsCacheSize the maximum size in bytes of the cached term vectors, 0 disables the cache
+     */
+    public CosineSimilarityRescorer(int threads, long vectorsCacheSize) {
+        this.parallelism = threads;
+        this.vectors = new DocumentVectorsCache(vectorsCacheSize);
+
+        AtomicInteger counter = new AtomicInteger(0);
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(threads * QUEUE_SIZE_PER_THREAD),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "CosineSimilarityRescorer-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                (runnable, executor) -> {
+                    if (executor.isShutdown())
+                        throw new RejectedExecutionException("Rescorer has been closed");
+
+                    callerRuns.incrementAndGet();
+                    runnable.run();
+                });
+    }
 
     @Override
-    public void rescore(IndexReader reader, Analyzer analyzer, ScoreDoc[] topDocs, Document reference, String fieldName) throws IOException {
-        // Compute reference document stats
-        Map<String, Float> referenceTerms = LuceneUtils.getTermFrequencies(analyzer, reference, fieldName);
-        double referenceL2Norm = getL2Norm(referenceTerms);
+    public void rescore(IndexReader reader, ScoreDoc[] topDocs, Map<String, Float> referenceTerms, String fieldName) throws IOException {
+        if (topDocs.length == 0)
+            return;
+
+        List<AtomicReaderContext> leaves = reader.leaves();
+        DocumentVectorsCache.View vectors = this.vectors.getView();
+        DocumentVectorsCache.DocumentVector[] documents = new DocumentVectorsCache.DocumentVector[topDocs.length];
+
+        // Missing vectors must be loaded before the reference vector is created:
+        // they can add new terms to the dictionary
+        boolean missing = false;
+        for (int i = 0; i < topDocs.length; i++) {
+            AtomicReaderContext leaf = leaves.get(ReaderUtil.subIndex(topDocs[i].doc, leaves));
+            documents[i] = vectors.get(leaf.reader(), fieldName, topDocs[i].doc - leaf.docBase);
+
+            if (documents[i] == null)
+                missing = true;
+        }
+
+        if (missing) {
+            forEach(topDocs.length, i -> {
+                if (documents[i] == null) {
+                    AtomicReaderContext leaf = leaves.get(ReaderUtil.subIndex(topDocs[i].doc, leaves));
+                    documents[i] = vectors.load(leaf.reader(), fieldName, topDocs[i].doc - leaf.docBase);
+                    cacheMisses.incrementAndGet();
+                } else {
+                    cacheHits.incrementAndGet();
+                }
+            });
+        } else {
+            cacheHits.addAndGet(topDocs.length);
+        }
+
+        ReferenceVector reference = new ReferenceVector(vectors, referenceTerms);
+
+        forEach(topDocs.length, i -> {
+            DocumentVectorsCache.DocumentVector document = documents[i];
+            double dotProduct = document.dot(reference.ids, reference.values);
+            float similarity = (float) (dotProduct / (reference.l2Norm * document.getL2Norm()));
+
+            if (Float.isInfinite(similarity) || Float.isNaN(similarity))
+                topDocs[i].score = 0.f;
+            else
+                topDocs[i].score = similarity;
+        });
+
+        rescoredDocuments.addAndGet(topDocs.length);
+    }
+
+    @Override
+    public void warmUp(IndexReader reader, int doc) throws IOException {
+        if (!vectors.isEnabled())
+            return;
+
+        DocumentVectorsCache.View vectors = this.vectors.getView();
+        List<AtomicReaderContext> leaves = reader.leaves();
+        AtomicReaderContext leaf = leaves.get(ReaderUtil.subIndex(doc, leaves));
+
+        Fields fields = leaf.reader().getTermVectors(doc - leaf.docBase);
+        if (fields == null)
+            return;
+
+        for (String fieldName : fields)
+            vectors.load(leaf.reader(), fieldName, doc - leaf.docBase);
+    }
+
+    private void forEach(int size, DocumentTask task) throws IOException {
+        int tasks = Math.min(parallelism, (size + MIN_DOCUMENTS_PER_TASK - 1) / MIN_DOCUMENTS_PER_TASK);
+        Future<?>[] futures = new Future<?>[tasks - 1];
 
-        // Calculate similarity with reference
-        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
         try {
-            Future<?>[] tasks = new Future<?>[topDocs.length];
-            for (int i = 0; i < tasks.length; i++)
-                tasks[i] = executor.submit(new RescoringTask(reader, fieldName, topDocs[i], referenceTerms, referenceL2Norm));
+            for (int i = 1; i < tasks; i++)
+                futures[i - 1] = executor.submit(new StridedTask(task, size, i, tasks));
 
-            for (Future<?> task : tasks) {
+            new StridedTask(task, size, 0, tasks).call();
+
+            for (Future<?> future : futures) {
                 try {
-                    task.get();
+                    future.get();
                 } catch (InterruptedException e) {
                     throw new IOException("Execution interrupted", e);
                 } catch (ExecutionException e) {
@@ -45,11 +165,14 @@ public class CosineSimilarityRescorer implements Rescorer {
                 }
             }
         } finally {
-            executor.shutdownNow();
+            for (Future<?> future : futures) {
+                if (future != null)
+                    future.cancel(true);
+            }
         }
     }
 
-    public static double getL2Norm(Map<String, Float> terms) throws IOException {
+    public static double getL2Norm(Map<String, Float> terms) {
         double norm = 0;
 
         for (Float value : terms.values())
@@ -58,46 +181,108 @@ public class CosineSimilarityRescorer implements Rescorer {
         return Math.sqrt(norm);
     }
 
-    private static class RescoringTask implements Callable<Void> {
+    public long getRescoredDocuments() {
+        return rescoredDocuments.get();
+    }
+
+    public long getCacheHits() {
+        return cacheHits.get();
+    }
+
+    public long getCacheMisses() {
+        return cacheMisses.get();
+    }
+
+    public long getCallerRuns() {
+        return callerRuns.get();
+    }
 
-        private final IndexReader reader;
-        private final String fieldName;
-        private final ScoreDoc target;
-        private final Map<String, Float> referenceTerms;
-        private final double referenceL2Norm;
+    public int getActiveThreads() {
+        return executor.getActiveCount();
+    }
+
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * @return the estimated size in bytes of the cached term vectors
+     */
+    public long getVectorsCacheMemory() {
+        return vectors.getMemory();
+    }
 
-        public RescoringTask(IndexReader reader, String fieldName,
-                             ScoreDoc target, Map<String, Float> referenceTerms, double referenceL2Norm) {
-            this.reader = reader;
-            this.fieldName = fieldName;
-            this.target = target;
-            this.referenceTerms = referenceTerms;
-            this.referenceL2Norm = referenceL2Norm;
+    @Override
+    public void close() {
+        executor.shutdownNow();
+
+        try {
+            executor.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            // Ignore it
         }
+    }
 
-        @Override
-        public Void call() throws IOException {
-            Map<String, Float> terms = LuceneUtils.getTermFrequencies(this.reader, this.target.doc, this.fieldName);
+    private static class ReferenceVector {
 
-            double dotProduct = 0;
-            double l2Norm = 0;
+        private final int[] ids;
+        private final float[] values;
+        private final double l2Norm;
 
-            for (Float value : terms.values())
-                l2Norm += value * value;
-            l2Norm = Math.sqrt(l2Norm);
+        public ReferenceVector(DocumentVectorsCache.View vectors, Map<String, Float> frequencies) {
+            // Terms that are not in the dictionary cannot match any document
+            long[] entries = new long[frequencies.size()];
+            int length = 0;
 
-            for (Map.Entry<String, Float> entry : referenceTerms.entrySet()) {
-                Float otherFreq = terms.get(entry.getKey());
-                if (otherFreq != null)
-                    dotProduct += entry.getValue() * otherFreq;
+            for (Map.Entry<String, Float> entry : frequencies.entrySet()) {
+                int id = vectors.getTermId(new BytesRef(entry.getKey()));
+                if (id >= 0)
+                    entries[length++] = (((long) id) << 32) | (Float.floatToRawIntBits(entry.getValue()) & 0xFFFFFFFFL);
             }
 
-            float similarity = (float) (dotProduct / (referenceL2Norm * l2Norm));
+            Arrays.sort(entries, 0, length);
 
-            if (Float.isInfinite(similarity) || Float.isNaN(similarity))
-                this.target.score = 0.f;
-            else
-                this.target.score = similarity;
+            this.ids = new int[length];
+            this.values = new float[length];
+
+            for (int i = 0; i < length; i++) {
+                ids[i] = (int) (entries[i] >>> 32);
+                values[i] = Float.intBitsToFloat((int) entries[i]);
+            }
+
+            this.l2Norm = getL2Norm(frequencies);
+        }
+
+    }
+
+    private interface DocumentTask {
+
+        void run(int index) throws IOException;
+
+    }
+
+    private static class StridedTask implements Callable<Void> {
+
+        private final DocumentTask task;
+        private final int size;
+        private final int offset;
+        private final int step;
+
+        public StridedTask(DocumentTask task, int size, int offset, int step) {
+            this.task = task;
+            this.size = size;
+            this.offset = offset;
+            this.step = step;
+        }
+
+        @Override
+        public Void call() throws IOException {
+            for (int i = offset; i < size; i += step) {
+                if (Thread.currentThread().isInterrupted())
+                    throw new IOException("Execution interrupted");
+
+                task.run(i);
+            }
 
             return null;
         }
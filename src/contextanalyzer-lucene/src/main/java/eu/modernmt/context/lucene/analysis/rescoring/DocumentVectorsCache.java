@@ -0,0 +1,363 @@
+package eu.modernmt.context.lucene.analysis.rescoring;
+
+import org.apache.lucene.index.AtomicReader;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.util.BytesRef;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * In-memory copy of the documents term vectors, as sparse vectors of term ids and frequencies.
+ * Every document of the index is a bucket (memory, direction), so this is the sparse vector of each bucket.
+ * <p>
+ * Vectors are stored per segment (by core cache key): a segment never changes once written,
+ * so its entries stay valid across reader refreshes and are dropped when the segment core is closed
+ * (i.e. after it has been merged away or the index has been closed).
+ * Term ids come from a dictionary shared by all the documents.
+ * <p>
+ * The estimated size of vectors and dictionary is bounded by maxMemory: when the bound is exceeded
+ * the cache is emptied and it is filled again on demand. When segments are dropped and most of the dictionary
+ * terms are no longer used by any vector, the dictionary is rebuilt with the used terms only.
+ * A maxMemory of 0 disables the cache: vectors are loaded by every request and immediately discarded.
+ * <p>
+ * Term ids are valid only with the vectors of the same {@link View}: a request must read both from the view
+ * returned by {@link #getView()}.
+ */
+class DocumentVectorsCache implements AtomicReader.CoreClosedListener {
+
+    private static final long VECTOR_OVERHEAD = 64;
+    private static final long TERM_OVERHEAD = 96;
+    private static final int MIN_REBUILD_DICTIONARY_SIZE = 1024;
+
+    static final class DocumentVector {
+
+        private static final DocumentVector EMPTY = new DocumentVector(new int[0], new int[0]);
+
+        private final int[] terms;
+        private final int[] frequencies;
+        private final double l2Norm;
+
+        private DocumentVector(int[] terms, int[] frequencies) {
+            this.terms = terms;
+            this.frequencies = frequencies;
+
+            double norm = 0;
+            for (int frequency : frequencies) {
+                float f = frequency;
+                norm += f * f;
+            }
+
+            this.l2Norm = Math.sqrt(norm);
+        }
+
+        public double getL2Norm() {
+            return l2Norm;
+        }
+
+        /**
+         * @param ids    the reference term ids, sorted
+         * @param values the reference term values, same order of ids
+         * @return the dot product between this vector and the reference
+         */
+        public double dot(int[] ids, float[] values) {
+            double dotProduct = 0;
+            int from = 0;
+
+            for (int i = 0; i < ids.length && from < terms.length; i++) {
+                int index = Arrays.binarySearch(terms, from, terms.length, ids[i]);
+
+                if (index >= 0) {
+                    dotProduct += values[i] * (float) frequencies[index];
+                    from = index + 1;
+                } else {
+                    from = -index - 1;
+                }
+            }
+
+            return dotProduct;
+        }
+
+        private long getMemory() {
+            return VECTOR_OVERHEAD + terms.length * 8L;
+        }
+
+        private int getMaxTermId() {
+            return terms.length == 0 ? -1 : terms[terms.length - 1];
+        }
+
+        /**
+         * @param remap a monotonic mapping of the term ids, thus the order of the terms is preserved
+         */
+        private DocumentVector remap(int[] remap) {
+            if (terms.length == 0)
+                return this;
+
+            int[] ids = new int[terms.length];
+            for (int i = 0; i < ids.length; i++)
+                ids[i] = remap[terms[i]];
+
+            return new DocumentVector(ids, frequencies);
+        }
+
+    }
+
+    private static final class Segment {
+
+        final ConcurrentHashMap<String, DocumentVector[]> fields = new ConcurrentHashMap<>();
+        final AtomicLong memory = new AtomicLong(0L);
+        final AtomicLong entries = new AtomicLong(0L);
+
+    }
+
+    /**
+     * A dictionary and the vectors whose term ids come from it
+     */
+    final class View {
+
+        private final boolean caching;
+        private final ConcurrentHashMap<BytesRef, Integer> dictionary = new ConcurrentHashMap<>();
+        private final AtomicInteger nextTermId;
+        private final ConcurrentHashMap<Object, Segment> segments = new ConcurrentHashMap<>();
+        private final AtomicLong memory = new AtomicLong(0L);
+        private final AtomicLong entries = new AtomicLong(0L);
+
+        private View(boolean caching, int nextTermId) {
+            this.caching = caching;
+            this.nextTermId = new AtomicInteger(nextTermId);
+        }
+
+        /**
+         * @return the term id or -1 if the term is not contained in any vector of this view
+         */
+        public int getTermId(BytesRef term) {
+            Integer id = dictionary.get(term);
+            return id == null ? -1 : id;
+        }
+
+        /**
+         * @return the cached vector or null if the vector of the document has not been loaded yet
+         */
+        public DocumentVector get(AtomicReader reader, String fieldName, int doc) {
+            return caching ? getVectors(reader, fieldName)[doc] : null;
+        }
+
+        public DocumentVector load(AtomicReader reader, String fieldName, int doc) throws IOException {
+            Terms terms = reader.getTermVector(doc, fieldName);
+            DocumentVector vector = terms == null ? DocumentVector.EMPTY : createVector(terms);
+
+            if (caching) {
+                Segment segment = getSegment(reader);
+                DocumentVector[] vectors = getVectors(segment, reader, fieldName);
+
+                // concurrent loads can only store equivalent vectors, no synchronization is needed
+                if (vectors[doc] == null) {
+                    vectors[doc] = vector;
+                    account(segment, vector.getMemory(), vector.terms.length);
+                }
+
+                if (memory.get() > maxMemory)
+                    reset(this);
+            }
+
+            return vector;
+        }
+
+        private DocumentVector createVector(Terms terms) throws IOException {
+            long size = terms.size();
+            long[] entries = new long[size > 0 ? (int) size : 16];
+            int length = 0;
+
+            TermsEnum termsEnum = terms.iterator(null);
+            BytesRef term;
+            while ((term = termsEnum.next()) != null) {
+                long frequency = termsEnum.totalTermFreq();
+                if (frequency <= 0)
+                    continue;
+
+                Integer id = dictionary.get(term);
+                if (id == null) {
+                    id = dictionary.computeIfAbsent(BytesRef.deepCopyOf(term), key -> {
+                        memory.addAndGet(TERM_OVERHEAD + key.length);
+                        return nextTermId.getAndIncrement();
+                    });
+                }
+
+                if (length == entries.length)
+                    entries = Arrays.copyOf(entries, length * 2);
+                entries[length++] = (((long) id) << 32) | frequency;
+            }
+
+            // Sort by term id
+            Arrays.sort(entries, 0, length);
+
+            int[] ids = new int[length];
+            int[] frequencies = new int[length];
+            for (int i = 0; i < length; i++) {
+                ids[i] = (int) (entries[i] >>> 32);
+                frequencies[i] = (int) entries[i];
+            }
+
+            return new DocumentVector(ids, frequencies);
+        }
+
+        private Segment getSegment(AtomicReader reader) {
+            return segments.computeIfAbsent(reader.getCoreCacheKey(), key -> {
+                reader.addCoreClosedListener(DocumentVectorsCache.this);
+                return new Segment();
+            });
+        }
+
+        private DocumentVector[] getVectors(AtomicReader reader, String fieldName) {
+            return getVectors(getSegment(reader), reader, fieldName);
+        }
+
+        private DocumentVector[] getVectors(Segment segment, AtomicReader reader, String fieldName) {
+            return segment.fields.computeIfAbsent(fieldName, key -> {
+                account(segment, 16L + reader.maxDoc() * 4L, 0);
+                return new DocumentVector[reader.maxDoc()];
+            });
+        }
+
+        private void account(Segment segment, long memory, int entries) {
+            segment.memory.addAndGet(memory);
+            segment.entries.addAndGet(entries);
+            this.memory.addAndGet(memory);
+            this.entries.addAndGet(entries);
+        }
+
+        private boolean remove(Object coreCacheKey) {
+            Segment segment = segments.remove(coreCacheKey);
+            if (segment == null)
+                return false;
+
+            memory.addAndGet(-segment.memory.get());
+            entries.addAndGet(-segment.entries.get());
+            return true;
+        }
+
+    }
+
+    private final long maxMemory;
+    private final AtomicReference<View> view;
+
+    /**
+     * @param maxMemory the maximum estimated size in bytes of the cached vectors and dictionary, 0 disables the cache
+     */
+    public DocumentVectorsCache(long maxMemory) {
+        this.maxMemory = maxMemory;
+        this.view = new AtomicReference<>(new View(maxMemory > 0, 0));
+    }
+
+    public boolean isEnabled() {
+        return maxMemory > 0;
+    }
+
+    /**
+     * @return the current view if the cache is enabled, a new one otherwise
+     */
+    public View getView() {
+        return isEnabled() ? view.get() : new View(false, 0);
+    }
+
+    private void reset(View current) {
+        view.compareAndSet(current, new View(true, 0));
+    }
+
+    public int size() {
+        return view.get().segments.size();
+    }
+
+    /**
+     * @return the estimated size in bytes of the cached vectors and dictionary
+     */
+    public long getMemory() {
+        return view.get().memory.get();
+    }
+
+    public int getDictionarySize() {
+        return view.get().dictionary.size();
+    }
+
+    // synchronized with the rebuild: a segment closed during the rebuild must not be copied to the new view
+    @Override
+    public synchronized void onClose(Object ownerCoreCacheKey) {
+        View current = view.get();
+        if (!current.remove(ownerCoreCacheKey))
+            return;
+
+        // the number of entries is an upper bound of the number of terms still in use
+        int dictionarySize = current.dictionary.size();
+        if (dictionarySize >= MIN_REBUILD_DICTIONARY_SIZE && dictionarySize > 2 * current.entries.get())
+            rebuild(current);
+    }
+
+    /**
+     * Creates a view whose dictionary contains only the terms used by the vectors of the given view,
+     * and replaces the given view with it (unless it has been replaced in the meantime).
+     * Vectors loaded in the given view during the rebuild could be lost.
+     */
+    private void rebuild(View current) {
+        // vectors with greater ids have been loaded during the rebuild
+        int size = current.nextTermId.get();
+
+        BitSet used = new BitSet(size);
+        for (Segment segment : current.segments.values()) {
+            for (DocumentVector[] vectors : segment.fields.values()) {
+                for (DocumentVector vector : vectors) {
+                    if (vector != null && vector.getMaxTermId() < size) {
+                        for (int id : vector.terms)
+                            used.set(id);
+                    }
+                }
+            }
+        }
+
+        int[] remap = new int[size];
+        int nextTermId = 0;
+        for (int id = used.nextSetBit(0); id >= 0; id = used.nextSetBit(id + 1))
+            remap[id] = nextTermId++;
+
+        View rebuilt = new View(true, nextTermId);
+
+        for (Map.Entry<BytesRef, Integer> entry : current.dictionary.entrySet()) {
+            int id = entry.getValue();
+            if (id < size && used.get(id)) {
+                rebuilt.dictionary.put(entry.getKey(), remap[id]);
+                rebuilt.memory.addAndGet(TERM_OVERHEAD + entry.getKey().length);
+            }
+        }
+
+        for (Map.Entry<Object, Segment> entry : current.segments.entrySet()) {
+            Segment segment = new Segment();
+
+            for (Map.Entry<String, DocumentVector[]> field : entry.getValue().fields.entrySet()) {
+                DocumentVector[] vectors = field.getValue();
+                DocumentVector[] remapped = new DocumentVector[vectors.length];
+                rebuilt.account(segment, 16L + vectors.length * 4L, 0);
+
+                for (int i = 0; i < vectors.length; i++) {
+                    DocumentVector vector = vectors[i];
+                    if (vector != null && vector.getMaxTermId() < size) {
+                        remapped[i] = vector.remap(remap);
+                        rebuilt.account(segment, vector.getMemory(), vector.terms.length);
+                    }
+                }
+
+                segment.fields.put(field.getKey(), remapped);
+            }
+
+            rebuilt.segments.put(entry.getKey(), segment);
+        }
+
+        view.compareAndSet(current, rebuilt);
+    }
+
+}
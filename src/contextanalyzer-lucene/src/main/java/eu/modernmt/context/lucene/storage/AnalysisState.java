@@ -0,0 +1,150 @@
+package eu.modernmt.context.lucene.storage;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The term frequencies of the content of a bucket up to a given position, persisted alongside the bucket
+ * so that the analysis of the bucket can be updated with the content appended after that position only.
+ * <p>
+ * The epoch of the state is incremented every time the bucket is deleted: a state computed before a deletion
+ * is not stored, even if the bucket has been filled again in the meantime.
+ */
+public class AnalysisState {
+
+    private final long epoch;
+    private Bucket.Position position;
+    private final HashMap<String, Integer> termFrequencies;
+
+    private AnalysisState(long epoch, Bucket.Position position, HashMap<String, Integer> termFrequencies) {
+        this.epoch = epoch;
+        this.position = position;
+        this.termFrequencies = termFrequencies;
+    }
+
+    public Bucket.Position getPosition() {
+        return position;
+    }
+
+    public Map<String, Integer> getTermFrequencies() {
+        return termFrequencies;
+    }
+
+    /**
+     * Moves the state to the given position, the term frequencies must include the content up to it.
+     *
+     * @param position the new position of the state
+     */
+    public void advance(Bucket.Position position) {
+        this.position = position;
+    }
+
+    /**
+     * Discards the term frequencies, leaving the epoch unchanged.
+     */
+    public void reset() {
+        this.position = Bucket.Position.ZERO;
+        this.termFrequencies.clear();
+    }
+
+    // Persistence
+
+    static AnalysisState load(File file) throws IOException {
+        if (!file.isFile())
+            return new AnalysisState(0L, Bucket.Position.ZERO, new HashMap<>());
+
+        DataInputStream input = null;
+
+        try {
+            input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+
+            long epoch = input.readLong();
+            Bucket.Position position = new Bucket.Position(input.readLong(), input.readLong(), input.readLong());
+
+            int size = input.readInt();
+            HashMap<String, Integer> termFrequencies = new HashMap<>(size * 4 / 3 + 1);
+            for (int i = 0; i < size; i++)
+                termFrequencies.put(input.readUTF(), input.readInt());
+
+            return new AnalysisState(epoch, position, termFrequencies);
+        } finally {
+            IOUtils.closeQuietly(input);
+        }
+    }
+
+    static long loadEpoch(File file) throws IOException {
+        if (!file.isFile())
+            return 0L;
+
+        DataInputStream input = null;
+
+        try {
+            input = new DataInputStream(new FileInputStream(file));
+            return input.readLong();
+        } finally {
+            IOUtils.closeQuietly(input);
+        }
+    }
+
+    /**
+     * Writes the state, only if the bucket has not been deleted since the state was loaded.
+     *
+     * @param file the file of the state
+     * @return true if the state has been written, false if the bucket was deleted
+     * @throws IOException if an I/O error occurs
+     */
+    boolean store(File file) throws IOException {
+        if (loadEpoch(file) != epoch)
+            return false;
+
+        write(file, epoch, position, termFrequencies);
+        return true;
+    }
+
+    /**
+     * Replaces the state of a deleted bucket with an empty state of the following epoch.
+     *
+     * @param file the file of the state
+     * @throws IOException if an I/O error occurs
+     */
+    static void delete(File file) throws IOException {
+        write(file, loadEpoch(file) + 1, Bucket.Position.ZERO, new HashMap<>());
+    }
+
+    private static void write(File file, long epoch, Bucket.Position position, Map<String, Integer> termFrequencies) throws IOException {
+        File parent = file.getParentFile();
+        if (!parent.isDirectory())
+            FileUtils.forceMkdir(parent);
+
+        File temp = new File(parent, file.getName() + ".tmp");
+        DataOutputStream output = null;
+
+        try {
+            output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+
+            output.writeLong(epoch);
+            output.writeLong(position.size);
+            output.writeLong(position.compressedSize);
+            output.writeLong(position.compressedContentSize);
+
+            output.writeInt(termFrequencies.size());
+            for (Map.Entry<String, Integer> entry : termFrequencies.entrySet()) {
+                output.writeUTF(entry.getKey());
+                output.writeInt(entry.getValue());
+            }
+
+            output.close();
+        } finally {
+            IOUtils.closeQuietly(output);
+        }
+
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+}
@@ -12,6 +12,43 @@ import java.util.zip.GZIPInputStream;
 
 public class Bucket {
 
+    /**
+     * A position in the content of a bucket: the content size and the size of the compressed file
+     * together with the size of its uncompressed content. Since content is only appended to the bucket,
+     * the content following a position can be read without decompressing the data preceding it.
+     */
+    public static final class Position {
+
+        public static final Position ZERO = new Position(0L, 0L, 0L);
+
+        public final long size;
+        public final long compressedSize;
+        public final long compressedContentSize;
+
+        public Position(long size, long compressedSize, long compressedContentSize) {
+            this.size = size;
+            this.compressedSize = compressedSize;
+            this.compressedContentSize = compressedContentSize;
+        }
+
+        /**
+         * @param other a later position of the same bucket
+         * @return true if this position can be a previous state of the other position
+         */
+        public boolean precedes(Position other) {
+            if (size > other.size || compressedSize > other.compressedSize || compressedContentSize > other.compressedContentSize)
+                return false;
+
+            return compressedSize < other.compressedSize || compressedContentSize == other.compressedContentSize;
+        }
+
+        @Override
+        public String toString() {
+            return "Position{" + size + ", " + compressedSize + ", " + compressedContentSize + '}';
+        }
+
+    }
+
     private final long id;
     private final LanguagePair language;
     private final UUID owner;
@@ -19,6 +56,7 @@ public class Bucket {
     private final Lock fileLock;
     final File path;
     final File gzPath;
+    final File analysisPath;
 
     long plainTextFileSize;
     long compressedFileSize;
@@ -36,6 +74,7 @@ public class Bucket {
         this.fileLock = new ReentrantLock();
         this.path = new File(folder, key + ".txt");
         this.gzPath = new File(folder, key + ".gz");
+        this.analysisPath = new File(folder, key + ".tf");
 
         this.plainTextFileSize = 0;
         this.compressedFileSize = 0;
@@ -66,6 +105,16 @@ public class Bucket {
         return virtualSize;
     }
 
+    public Position getPosition() {
+        this.lockFiles();
+
+        try {
+            return new Position(virtualSize, compressedFileSize, virtualSize - plainTextFileSize);
+        } finally {
+            this.unlockFiles();
+        }
+    }
+
     void lockFiles() {
         this.fileLock.lock();
     }
@@ -125,6 +174,68 @@ public class Bucket {
         }
     }
 
+    /**
+     * Returns the content of the bucket between two positions. Only the compressed data written
+     * after the first position is decompressed.
+     *
+     * @param from the position where the content begins, it must precede the end position
+     * @param to   the position where the content ends, usually the current bucket position
+     * @return the stream of the content between the two positions
+     * @throws IOException if an I/O error occurs
+     */
+    public InputStream getContentStream(Position from, Position to) throws IOException {
+        if (!from.precedes(to))
+            throw new IllegalArgumentException("Position " + from + " does not precede " + to);
+
+        boolean success = false;
+
+        InputStream gzStream = null;
+        InputStream stream = null;
+
+        try {
+            this.lockFiles();
+
+            try {
+                long compressedDelta = to.compressedSize - from.compressedSize;
+                long plainTextSize = to.size - to.compressedContentSize;
+
+                if (compressedDelta > 0 && gzPath.exists()) {
+                    FileInputStream input = new FileInputStream(gzPath);
+                    gzStream = input;
+                    input.getChannel().position(from.compressedSize);
+
+                    gzStream = new GZIPInputStream(new BoundedInputStream(input, compressedDelta));
+                }
+
+                if (plainTextSize > 0 && path.exists())
+                    stream = new BoundedInputStream(new FileInputStream(path), plainTextSize);
+            } finally {
+                this.unlockFiles();
+            }
+
+            InputStream content;
+            if (gzStream != null && stream != null)
+                content = new SequenceInputStream(gzStream, stream);
+            else if (gzStream != null)
+                content = gzStream;
+            else if (stream != null)
+                content = stream;
+            else
+                content = new ByteArrayInputStream(new byte[0]);
+
+            // Skip the content that was written after the compressed data, and already read
+            IOUtils.skipFully(content, from.size - from.compressedContentSize);
+
+            success = true;
+            return content;
+        } finally {
+            if (!success) {
+                IOUtils.closeQuietly(gzStream);
+                IOUtils.closeQuietly(stream);
+            }
+        }
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -0,0 +1,62 @@
+package eu.modernmt.context.lucene.storage;
+
+import eu.modernmt.lang.Language;
+import eu.modernmt.lang.LanguagePair;
+
+/**
+ * The identifier of a bucket: the memory id and the language direction,
+ * optionally without the region of the languages.
+ */
+class BucketKey {
+
+    public final long id;
+    public final LanguagePair language;
+
+    public BucketKey(long id, LanguagePair language) {
+        this.id = id;
+        this.language = language;
+    }
+
+    public BucketKey(long id, LanguagePair language, boolean maskLanguageRegion) {
+        if (maskLanguageRegion) {
+            Language owSource = null;
+            Language owTarget = null;
+
+            if (language.source.getRegion() != null)
+                owSource = new Language(language.source.getLanguage());
+            if (language.target.getRegion() != null)
+                owTarget = new Language(language.target.getLanguage());
+
+            if (owSource != null || owTarget != null) {
+                if (owSource == null)
+                    owSource = language.source;
+                if (owTarget == null)
+                    owTarget = language.target;
+
+                language = new LanguagePair(owSource, owTarget);
+            }
+        }
+
+        this.id = id;
+        this.language = language;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        BucketKey bucketKey = (BucketKey) o;
+
+        if (id != bucketKey.id) return false;
+        return language.equals(bucketKey.language);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = (int) (id ^ (id >>> 32));
+        result = 31 * result + language.hashCode();
+        return result;
+    }
+
+}
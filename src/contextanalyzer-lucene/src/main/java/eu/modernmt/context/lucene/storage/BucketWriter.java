@@ -1,11 +1,11 @@
 package eu.modernmt.context.lucene.storage;
 
 import eu.modernmt.io.FileSystemUtils;
-import eu.modernmt.io.UTF8Charset;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.zip.GZIPOutputStream;
 
@@ -34,14 +34,30 @@ class BucketWriter implements Closeable {
         this.bucket = bucket;
     }
 
-    public void append(String line) throws IOException {
+    /**
+     * Appends a line given as its UTF-8 bytes, from the buffer position to its limit.
+     * The position of the buffer is not modified.
+     *
+     * @param line the UTF-8 bytes of the line
+     * @throws IOException if an I/O error occurs
+     */
+    public void append(ByteBuffer line) throws IOException {
         if (deleted)
             throw new FileNotFoundException("Bucket is deleted");
 
         if (stream == null)
             stream = openStream(bucket.path, bucket.plainTextFileSize);
 
-        stream.write(line.getBytes(UTF8Charset.get()));
+        if (line.hasArray()) {
+            stream.write(line.array(), line.arrayOffset() + line.position(), line.remaining());
+        } else {
+            FileChannel channel = stream.getChannel();
+            ByteBuffer bytes = line.duplicate();
+
+            while (bytes.hasRemaining())
+                channel.write(bytes);
+        }
+
         stream.write('\n');
     }
 
@@ -59,6 +75,8 @@ class BucketWriter implements Closeable {
 
                 FileUtils.deleteQuietly(this.bucket.gzPath);
                 FileUtils.deleteQuietly(this.bucket.path);
+
+                AnalysisState.delete(this.bucket.analysisPath);
             } finally {
                 this.bucket.unlockFiles();
             }
@@ -5,6 +5,7 @@ import eu.modernmt.data.DataListener;
 import eu.modernmt.data.Deletion;
 import eu.modernmt.data.TranslationUnit;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 
 import java.io.Closeable;
 import java.io.File;
@@ -26,10 +27,30 @@ public class CorporaStorage implements DataListener, Closeable {
         FileUtils.forceMkdir(path);
 
         this.path = path;
-        this.buckets = new BucketRegistry(path, maskLanguageRegion);
+        this.buckets = openRegistry(path, maskLanguageRegion);
         this.channels = buckets.getChannels();
     }
 
+    private static BucketRegistry openRegistry(File path, boolean maskLanguageRegion) throws IOException {
+        LogBucketRegistry registry = new LogBucketRegistry(path, maskLanguageRegion);
+
+        if (registry.isEmpty() && SQLiteBucketRegistry.exists(path)) {
+            SQLiteBucketRegistry legacy = null;
+
+            try {
+                legacy = new SQLiteBucketRegistry(path, maskLanguageRegion);
+                registry.importFrom(legacy);
+            } catch (IOException e) {
+                IOUtils.closeQuietly(registry);
+                throw e;
+            } finally {
+                IOUtils.closeQuietly(legacy);
+            }
+        }
+
+        return registry;
+    }
+
     public int size() throws IOException {
         return buckets.count();
     }
@@ -42,6 +63,29 @@ public class CorporaStorage implements DataListener, Closeable {
         buckets.mark(bucket, size);
     }
 
+    /**
+     * Loads the analysis state of a bucket, the state is empty if the bucket has never been analyzed.
+     *
+     * @param bucket the bucket
+     * @return the analysis state of the bucket
+     * @throws IOException if an I/O error occurs
+     */
+    public AnalysisState getAnalysisState(Bucket bucket) throws IOException {
+        return AnalysisState.load(bucket.analysisPath);
+    }
+
+    /**
+     * Stores the analysis state of a bucket, unless the bucket has been deleted after the state was loaded.
+     *
+     * @param bucket the bucket
+     * @param state  the updated analysis state
+     * @return true if the state has been stored
+     * @throws IOException if an I/O error occurs
+     */
+    public synchronized boolean storeAnalysisState(Bucket bucket, AnalysisState state) throws IOException {
+        return !closed && state.store(bucket.analysisPath);
+    }
+
     private boolean skipData(short channel, long position) {
         Long existent = this.channels.get(channel);
         return existent != null && position <= existent;
@@ -76,11 +120,11 @@ public class CorporaStorage implements DataListener, Closeable {
                 continue;
 
             Bucket fwdBucket = buckets.get(unit.memory, unit.direction, unit.owner);
-            fwdBucket.getWriter().append(unit.rawSentence);
+            fwdBucket.getWriter().append(unit.getRawSentenceBytes());
             pendingUpdatesBuckets.add(fwdBucket);
 
             Bucket bwdBucket = buckets.get(unit.memory, unit.direction.reversed(), unit.owner);
-            bwdBucket.getWriter().append(unit.rawTranslation);
+            bwdBucket.getWriter().append(unit.getRawTranslationBytes());
             pendingUpdatesBuckets.add(bwdBucket);
         }
 
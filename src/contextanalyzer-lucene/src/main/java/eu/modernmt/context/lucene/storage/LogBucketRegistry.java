@@ -0,0 +1,502 @@
+package eu.modernmt.context.lucene.storage;
+
+import eu.modernmt.lang.Language;
+import eu.modernmt.lang.LanguagePair;
+import org.apache.commons.io.IOUtils;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+
+/**
+ * A BucketRegistry that keeps all the metadata in memory and persists every change in an append-only log.
+ * <p>
+ * Every change is appended as a transaction (length, CRC32 and records) and synced to disk:
+ * a truncated or corrupted transaction at the end of the log, left by a crash during the write,
+ * is discarded when the log is loaded. The log is rewritten as a snapshot of the current state
+ * when it contains too many outdated records.
+ * <p>
+ * Reads never lock: the metadata is held in concurrent maps, and the buckets are also sorted
+ * by misalignment in a skip list, so that the most misaligned buckets are selected without scanning the registry.
+ * Writes are serialized.
+ */
+public class LogBucketRegistry implements BucketRegistry {
+
+    private static final String LOG_FILE = "registry.log";
+
+    private static final byte RECORD_BUCKET = 0x01;
+    private static final byte RECORD_MARK = 0x02;
+    private static final byte RECORD_CHANNEL = 0x03;
+
+    private static final int MIN_COMPACTION_RECORDS = 10000;
+
+    private static final class Entry {
+
+        public final BucketKey key;
+        public final UUID owner;
+        public final long size;
+        public final long plainSize;
+        public final long gzSize;
+        public final long mark;
+
+        public Entry(BucketKey key, UUID owner, long size, long plainSize, long gzSize, long mark) {
+            this.key = key;
+            this.owner = owner;
+            this.size = size;
+            this.plainSize = plainSize;
+            this.gzSize = gzSize;
+            this.mark = mark;
+        }
+
+        public long getMisalignment() {
+            return Math.abs(mark - size);
+        }
+
+        public boolean isShrunk() {
+            return mark > size;
+        }
+
+    }
+
+    private static final Comparator<Entry> MISALIGNMENT_ORDER = (a, b) -> {
+        int c = Long.compare(b.getMisalignment(), a.getMisalignment());
+        if (c == 0)
+            c = Long.compare(a.key.id, b.key.id);
+        if (c == 0)
+            c = a.key.language.source.toLanguageTag().compareTo(b.key.language.source.toLanguageTag());
+        if (c == 0)
+            c = a.key.language.target.toLanguageTag().compareTo(b.key.language.target.toLanguageTag());
+        return c;
+    };
+
+    private final File root;
+    private final File logFile;
+    private final boolean maskLanguageRegion;
+
+    private final ConcurrentHashMap<BucketKey, Entry> entries = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Set<BucketKey>> memories = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListSet<Entry> byMisalignment = new ConcurrentSkipListSet<>(MISALIGNMENT_ORDER);
+    private final ConcurrentSkipListSet<Entry> shrunk = new ConcurrentSkipListSet<>(MISALIGNMENT_ORDER);
+    private final ConcurrentHashMap<Short, Long> channels = new ConcurrentHashMap<>();
+    private final AtomicInteger count = new AtomicInteger(0);
+
+    private final ConcurrentHashMap<BucketKey, Bucket> cache = new ConcurrentHashMap<>();
+
+    private final Object writeLock = new Object();
+    private FileChannel log;
+    private long records = 0;
+
+    public LogBucketRegistry(File root, boolean maskLanguageRegion) throws IOException {
+        this.root = root;
+        this.logFile = new File(root, LOG_FILE);
+        this.maskLanguageRegion = maskLanguageRegion;
+
+        long length = load();
+
+        this.log = FileChannel.open(logFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        if (log.size() > length)
+            log.truncate(length);
+        log.position(length);
+
+        synchronized (writeLock) {
+            compactIfNeeded();
+        }
+    }
+
+    /**
+     * @return true if the registry does not contain any bucket or channel
+     */
+    public boolean isEmpty() {
+        return entries.isEmpty() && channels.isEmpty();
+    }
+
+    /**
+     * Imports the content of a legacy SQLite registry in a single transaction.
+     *
+     * @param registry the registry to import
+     * @throws IOException if an I/O error occurs
+     */
+    void importFrom(SQLiteBucketRegistry registry) throws IOException {
+        Map<Short, Long> channels = registry.getChannels();
+        Map<Bucket, Long> marks = registry.getMarks();
+
+        Transaction transaction = new Transaction();
+        for (Map.Entry<Short, Long> entry : channels.entrySet())
+            transaction.writeChannel(entry.getKey(), entry.getValue());
+
+        for (Map.Entry<Bucket, Long> entry : marks.entrySet()) {
+            Bucket bucket = entry.getKey();
+            BucketKey key = new BucketKey(bucket.getId(), bucket.getLanguage());
+
+            transaction.writeBucket(key, bucket.getOwner(), bucket.virtualSize, bucket.plainTextFileSize, bucket.compressedFileSize);
+            transaction.writeMark(key, entry.getValue());
+        }
+
+        commit(transaction);
+    }
+
+    // Reads
+
+    @Override
+    public int count() {
+        return count.get();
+    }
+
+    @Override
+    public Bucket get(long id, LanguagePair language, UUID owner) {
+        BucketKey key = new BucketKey(id, language, this.maskLanguageRegion);
+
+        return cache.computeIfAbsent(key, arg -> {
+            Entry entry = entries.get(arg);
+            return entry == null ? new Bucket(getBucketFolder(arg.id), arg.id, arg.language, owner) : toBucket(entry);
+        });
+    }
+
+    @Override
+    public Set<Bucket> getAll(long id) {
+        Set<BucketKey> keys = memories.get(id);
+        if (keys == null)
+            return new HashSet<>();
+
+        HashSet<Bucket> buckets = new HashSet<>(keys.size());
+        for (BucketKey key : keys) {
+            Entry entry = entries.get(key);
+            if (entry != null)
+                buckets.add(cache.computeIfAbsent(key, arg -> toBucket(entry)));
+        }
+
+        return buckets;
+    }
+
+    @Override
+    public Set<Bucket> getUpdated(long minMisalignment, int limit) {
+        LinkedHashSet<Bucket> buckets = new LinkedHashSet<>();
+
+        // Buckets grown or shrunk at least by minMisalignment, then the ones shrunk by less
+        for (Entry entry : byMisalignment) {
+            if (buckets.size() >= limit || entry.getMisalignment() < minMisalignment)
+                break;
+            buckets.add(cache.computeIfAbsent(entry.key, arg -> toBucket(entry)));
+        }
+
+        for (Entry entry : shrunk) {
+            if (buckets.size() >= limit)
+                break;
+            if (entry.getMisalignment() < minMisalignment)
+                buckets.add(cache.computeIfAbsent(entry.key, arg -> toBucket(entry)));
+        }
+
+        return buckets;
+    }
+
+    @Override
+    public Map<Short, Long> getChannels() {
+        return new HashMap<>(channels);
+    }
+
+    // Writes
+
+    @Override
+    public void mark(Bucket bucket, long mark) throws IOException {
+        Transaction transaction = new Transaction();
+        transaction.writeMark(new BucketKey(bucket.getId(), bucket.getLanguage()), mark);
+
+        commit(transaction);
+    }
+
+    @Override
+    public void update(Map<Short, Long> channels, Set<Bucket> buckets) throws IOException {
+        Transaction transaction = new Transaction();
+
+        for (Map.Entry<Short, Long> entry : channels.entrySet())
+            transaction.writeChannel(entry.getKey(), entry.getValue());
+
+        for (Bucket bucket : buckets) {
+            BucketKey key = new BucketKey(bucket.getId(), bucket.getLanguage());
+            transaction.writeBucket(key, bucket.getOwner(), bucket.virtualSize, bucket.plainTextFileSize, bucket.compressedFileSize);
+        }
+
+        commit(transaction);
+    }
+
+    private void commit(Transaction transaction) throws IOException {
+        synchronized (writeLock) {
+            if (log == null)
+                throw new IOException("Registry is closed");
+
+            byte[] payload = transaction.getPayload();
+
+            ByteBuffer buffer = Transaction.frame(payload);
+            while (buffer.hasRemaining())
+                log.write(buffer);
+            log.force(false);
+
+            records += apply(payload);
+
+            compactIfNeeded();
+        }
+    }
+
+    private void compactIfNeeded() throws IOException {
+        long liveRecords = 2L * entries.size() + channels.size();
+        if (records < MIN_COMPACTION_RECORDS || records < 3 * liveRecords)
+            return;
+
+        Transaction snapshot = new Transaction();
+        for (Map.Entry<Short, Long> entry : channels.entrySet())
+            snapshot.writeChannel(entry.getKey(), entry.getValue());
+
+        for (Entry entry : entries.values()) {
+            snapshot.writeBucket(entry.key, entry.owner, entry.size, entry.plainSize, entry.gzSize);
+            if (entry.mark != 0L)
+                snapshot.writeMark(entry.key, entry.mark);
+        }
+
+        File temp = new File(root, LOG_FILE + ".tmp");
+        FileChannel channel = FileChannel.open(temp.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+
+        try {
+            ByteBuffer buffer = Transaction.frame(snapshot.getPayload());
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+            channel.force(true);
+        } finally {
+            channel.close();
+        }
+
+        log.close();
+        Files.move(temp.toPath(), logFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        log = FileChannel.open(logFile.toPath(), StandardOpenOption.WRITE);
+        log.position(log.size());
+        records = snapshot.size();
+    }
+
+    // Log loading
+
+    private long load() throws IOException {
+        if (!logFile.isFile())
+            return 0L;
+
+        DataInputStream input = null;
+        long length = 0L;
+
+        try {
+            input = new DataInputStream(new BufferedInputStream(new FileInputStream(logFile)));
+            CRC32 crc = new CRC32();
+
+            while (true) {
+                int size;
+                long checksum;
+                byte[] payload;
+
+                try {
+                    size = input.readInt();
+                    checksum = input.readLong();
+
+                    if (size < 0)
+                        break;
+
+                    payload = new byte[size];
+                    input.readFully(payload);
+                } catch (EOFException e) {
+                    break; // truncated transaction
+                }
+
+                crc.reset();
+                crc.update(payload);
+                if (crc.getValue() != checksum)
+                    break; // corrupted transaction
+
+                records += apply(payload);
+                length += Transaction.HEADER_SIZE + size;
+            }
+        } finally {
+            IOUtils.closeQuietly(input);
+        }
+
+        return length;
+    }
+
+    private int apply(byte[] payload) throws IOException {
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(payload));
+        HashMap<String, LanguagePair> languages = new HashMap<>();
+        int records = 0;
+
+        while (input.available() > 0) {
+            byte type = input.readByte();
+            records++;
+
+            switch (type) {
+                case RECORD_CHANNEL:
+                    channels.put(input.readShort(), input.readLong());
+                    break;
+                case RECORD_BUCKET: {
+                    BucketKey key = readKey(input, languages);
+                    long msb = input.readLong();
+                    long lsb = input.readLong();
+                    UUID owner = (msb == 0L && lsb == 0L) ? null : new UUID(msb, lsb);
+                    long size = input.readLong();
+                    long plainSize = input.readLong();
+                    long gzSize = input.readLong();
+
+                    Entry existing = entries.get(key);
+                    if (existing == null)
+                        put(new Entry(key, owner, size, plainSize, gzSize, 0L));
+                    else
+                        put(new Entry(key, existing.owner, size, plainSize, gzSize, existing.mark));
+                    break;
+                }
+                case RECORD_MARK: {
+                    BucketKey key = readKey(input, languages);
+                    long mark = input.readLong();
+
+                    Entry existing = entries.get(key);
+                    if (existing != null)
+                        put(new Entry(key, existing.owner, existing.size, existing.plainSize, existing.gzSize, mark));
+                    break;
+                }
+                default:
+                    throw new IOException("Invalid registry record type: " + (int) type);
+            }
+        }
+
+        return records;
+    }
+
+    private void put(Entry entry) {
+        Entry previous = entries.put(entry.key, entry);
+
+        if (previous == null) {
+            memories.computeIfAbsent(entry.key.id, key -> ConcurrentHashMap.newKeySet()).add(entry.key);
+        } else {
+            byMisalignment.remove(previous);
+            shrunk.remove(previous);
+
+            if (previous.size > 0)
+                count.decrementAndGet();
+        }
+
+        byMisalignment.add(entry);
+        if (entry.isShrunk())
+            shrunk.add(entry);
+        if (entry.size > 0)
+            count.incrementAndGet();
+    }
+
+    private static BucketKey readKey(DataInputStream input, HashMap<String, LanguagePair> languages) throws IOException {
+        long id = input.readLong();
+        String source = input.readUTF();
+        String target = input.readUTF();
+
+        LanguagePair language = languages.computeIfAbsent(source + ' ' + target,
+                key -> new LanguagePair(Language.fromString(source), Language.fromString(target)));
+
+        return new BucketKey(id, language);
+    }
+
+    // Utils
+
+    private File getBucketFolder(long id) {
+        return SQLiteBucketRegistry.getBucketFolder(this.root, id);
+    }
+
+    private Bucket toBucket(Entry entry) {
+        return new Bucket(getBucketFolder(entry.key.id), entry.key.id, entry.key.language, entry.owner,
+                entry.plainSize, entry.gzSize, entry.size);
+    }
+
+    @Override
+    public void clearCache() {
+        this.cache.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            for (Bucket bucket : cache.values())
+                bucket.getWriter().close();
+
+            cache.clear();
+        } finally {
+            synchronized (writeLock) {
+                if (log != null) {
+                    log.close();
+                    log = null;
+                }
+            }
+        }
+    }
+
+    private static final class Transaction {
+
+        public static final int HEADER_SIZE = 4 + 8;
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream output = new DataOutputStream(bytes);
+        private int size = 0;
+
+        public void writeChannel(short channel, long position) throws IOException {
+            output.writeByte(RECORD_CHANNEL);
+            output.writeShort(channel);
+            output.writeLong(position);
+            size++;
+        }
+
+        public void writeBucket(BucketKey key, UUID owner, long size, long plainSize, long gzSize) throws IOException {
+            output.writeByte(RECORD_BUCKET);
+            writeKey(key);
+            output.writeLong(owner == null ? 0L : owner.getMostSignificantBits());
+            output.writeLong(owner == null ? 0L : owner.getLeastSignificantBits());
+            output.writeLong(size);
+            output.writeLong(plainSize);
+            output.writeLong(gzSize);
+            this.size++;
+        }
+
+        public void writeMark(BucketKey key, long mark) throws IOException {
+            output.writeByte(RECORD_MARK);
+            writeKey(key);
+            output.writeLong(mark);
+            size++;
+        }
+
+        private void writeKey(BucketKey key) throws IOException {
+            output.writeLong(key.id);
+            output.writeUTF(key.language.source.toLanguageTag());
+            output.writeUTF(key.language.target.toLanguageTag());
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public byte[] getPayload() {
+            return bytes.toByteArray();
+        }
+
+        public static ByteBuffer frame(byte[] payload) {
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+
+            ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + payload.length);
+            buffer.putInt(payload.length);
+            buffer.putLong(crc.getValue());
+            buffer.put(payload);
+            buffer.flip();
+
+            return buffer;
+        }
+
+    }
+
+}
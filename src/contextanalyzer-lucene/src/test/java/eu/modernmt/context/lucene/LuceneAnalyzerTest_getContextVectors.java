@@ -0,0 +1,72 @@
+package eu.modernmt.context.lucene;
+
+import eu.modernmt.lang.LanguagePair;
+import eu.modernmt.model.ContextVector;
+import eu.modernmt.model.Memory;
+import eu.modernmt.model.corpus.Corpus;
+import eu.modernmt.model.corpus.impl.StringCorpus;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+
+import static eu.modernmt.context.lucene.TestData.*;
+import static org.junit.Assert.assertEquals;
+
+public class LuceneAnalyzerTest_getContextVectors {
+
+    private TLuceneAnalyzer analyzer;
+
+    @Before
+    public void setup() throws Throwable {
+        this.analyzer = new TLuceneAnalyzer();
+
+        String enHelloWorld = "hello world 1\nhello world 2";
+        String enTheTest = "the test 1\nthe test 2";
+        String itHelloWorld = "ciao mondo 1\nciao mondo 2";
+        String itTheTest = "il test 1\nil test 2";
+        String frHelloWorld = "bonjour monde 1\nbonjour monde 2";
+
+        this.analyzer.onDataReceived(new Memory(1), TestData.corpus("none", EN__IT, enHelloWorld, itHelloWorld));
+        this.analyzer.onDataReceived(new Memory(2), TestData.corpus("none", EN__FR, enHelloWorld, frHelloWorld));
+        this.analyzer.onDataReceived(new Memory(3), TestData.corpus("none", EN__IT, enTheTest, itTheTest));
+    }
+
+    @After
+    public void teardown() throws Throwable {
+        if (this.analyzer != null)
+            this.analyzer.close();
+        this.analyzer = null;
+    }
+
+    private static List<ContextVector.Entry> entries(ContextVector vector) {
+        ArrayList<ContextVector.Entry> entries = new ArrayList<>();
+        if (vector != null) {
+            for (ContextVector.Entry entry : vector)
+                entries.add(entry);
+        }
+        return entries;
+    }
+
+    @Test
+    public void sameResultsOfSingleQueries() throws Throwable {
+        String[] documents = {"hello world", "the test", "hello the world test", "ciao mondo"};
+        List<LanguagePair> directions = Arrays.asList(EN__IT, EN__FR, IT__EN);
+
+        ArrayList<Corpus> queries = new ArrayList<>(documents.length);
+        for (String document : documents)
+            queries.add(new StringCorpus(null, EN, document));
+
+        List<Map<LanguagePair, ContextVector>> batch = analyzer.getContextVectors(null, queries, directions, 100);
+        assertEquals(documents.length, batch.size());
+
+        for (int i = 0; i < documents.length; i++) {
+            for (LanguagePair direction : directions) {
+                ContextVector expected = analyzer.getContextVector(null, direction, documents[i], 100);
+                assertEquals(documents[i] + " " + direction, entries(expected), entries(batch.get(i).get(direction)));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,117 @@
+package eu.modernmt.context.lucene;
+
+import eu.modernmt.context.lucene.analysis.DocumentBuilder;
+import eu.modernmt.context.lucene.analysis.LuceneUtils;
+import eu.modernmt.data.TranslationUnit;
+import eu.modernmt.lang.LanguagePair;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static eu.modernmt.context.lucene.TestData.*;
+import static org.junit.Assert.*;
+
+public class LuceneAnalyzerTest_incrementalAnalysis {
+
+    private TLuceneAnalyzer incremental;
+    private TLuceneAnalyzer full;
+    private long position = 0L;
+
+    @Before
+    public void setup() throws Throwable {
+        AnalysisOptions options = new AnalysisOptions();
+        options.enabled = false;
+        options.incremental = true;
+        this.incremental = new TLuceneAnalyzer(options);
+
+        options = new AnalysisOptions();
+        options.enabled = false;
+        options.incremental = false;
+        this.full = new TLuceneAnalyzer(options);
+    }
+
+    @After
+    public void teardown() throws Throwable {
+        try {
+            if (this.incremental != null)
+                this.incremental.close();
+        } finally {
+            if (this.full != null)
+                this.full.close();
+        }
+
+        this.incremental = null;
+        this.full = null;
+    }
+
+    private List<TranslationUnit> units(long memory, int size, int seed) {
+        ArrayList<TranslationUnit> units = new ArrayList<>(size);
+
+        for (int i = 0; i < size; i++) {
+            int n = seed * size + i;
+            String source = "this is the sentence number " + n + " with word" + (n % 97) + " and term" + (n % 13);
+            String target = "questa è la frase numero " + n + " con parola" + (n % 89) + " e termine" + (n % 11);
+            units.add(TestData.tu(0, position++, memory, EN__IT, source, target, null));
+        }
+
+        return units;
+    }
+
+    private void send(List<TranslationUnit> units) throws Throwable {
+        incremental.onDataReceived(units);
+        full.onDataReceived(units);
+    }
+
+    private static Map<String, Float> getTermFrequencies(TLuceneAnalyzer analyzer, long memory, LanguagePair direction) throws Throwable {
+        IndexSearcher searcher = analyzer.getIndex().getIndexSearcher();
+        TopDocs docs = searcher.search(new TermQuery(DocumentBuilder.makeIdTerm(DocumentBuilder.makeId(memory, direction))), 1);
+
+        if (docs.scoreDocs.length == 0)
+            return null;
+
+        String fieldName = DocumentBuilder.makeContentFieldName(direction);
+        return LuceneUtils.getTermFrequencies(searcher.getIndexReader(), docs.scoreDocs[0].doc, fieldName);
+    }
+
+    private void assertSameIndex(long memory) throws Throwable {
+        Map<String, Float> expected = getTermFrequencies(full, memory, EN__IT);
+
+        assertNotNull(expected);
+        assertEquals(expected, getTermFrequencies(incremental, memory, EN__IT));
+        assertEquals(getTermFrequencies(full, memory, IT__EN), getTermFrequencies(incremental, memory, IT__EN));
+    }
+
+    @Test
+    public void appendsAcrossCompression() throws Throwable {
+        // each batch is about 30Kb per direction, buckets are compressed after 50Kb
+        for (int i = 0; i < 5; i++) {
+            send(units(1L, 400, i));
+            assertSameIndex(1L);
+        }
+
+        assertEquals(400.f * 5, getTermFrequencies(incremental, 1L, EN__IT).get("sentence"), 0.f);
+    }
+
+    @Test
+    public void deletedMemoryIsAnalyzedFromScratch() throws Throwable {
+        send(units(1L, 400, 0));
+        send(units(1L, 400, 1));
+
+        incremental.onDelete(TestData.deletion(1L));
+        full.onDelete(TestData.deletion(1L));
+        assertNull(getTermFrequencies(incremental, 1L, EN__IT));
+
+        send(units(1L, 10, 2));
+        assertSameIndex(1L);
+
+        assertEquals(10.f, getTermFrequencies(incremental, 1L, EN__IT).get("sentence"), 0.f);
+    }
+
+}
@@ -173,7 +173,7 @@ public class TestData {
         HashSet<String> terms = new HashSet<>();
         for (TranslationUnit unit : units) {
             if (direction == null || unit.direction.equals(direction)) {
-                String text = source ? unit.rawSentence : unit.rawTranslation;
+                String text = source ? unit.getRawSentence() : unit.getRawTranslation();
                 terms.addAll(Arrays.asList(text.split(" ")));
             }
         }
@@ -189,7 +189,7 @@ public class TestData {
         StringBuilder builder = new StringBuilder();
         for (TranslationUnit unit : units) {
             if (direction == null || unit.direction.equals(direction)) {
-                builder.append(source ? unit.rawSentence : unit.rawTranslation);
+                builder.append(source ? unit.getRawSentence() : unit.getRawTranslation());
                 builder.append('\n');
             }
         }
@@ -0,0 +1,194 @@
+package eu.modernmt.context.lucene.analysis.rescoring;
+
+import eu.modernmt.context.lucene.analysis.ContextAnalyzerIndex;
+import eu.modernmt.context.lucene.analysis.DocumentBuilder;
+import eu.modernmt.context.lucene.analysis.LuceneUtils;
+import eu.modernmt.lang.Language;
+import eu.modernmt.lang.LanguagePair;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.store.RAMDirectory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class CosineSimilarityRescorerTest {
+
+    private static final LanguagePair EN__IT = new LanguagePair(Language.fromString("en"), Language.fromString("it"));
+    private static final String[] VOCABULARY = {"hello", "world", "the", "test", "of", "a", "cat", "dog", "house", "città", "über"};
+
+    private CosineSimilarityRescorer rescorer;
+    private ContextAnalyzerIndex index;
+
+    @Before
+    public void setup() throws Throwable {
+        this.rescorer = new CosineSimilarityRescorer(3);
+        this.index = new ContextAnalyzerIndex(new RAMDirectory(), this.rescorer);
+
+        Random random = new Random(42);
+        for (int i = 0; i < 50; i++) {
+            index.update(DocumentBuilder.newInstance(null, i, EN__IT, new StringReader(text(random, 200))));
+            if (i % 10 == 9)
+                index.flush();
+        }
+        index.flush();
+    }
+
+    @After
+    public void teardown() {
+        this.index.close();
+        this.index = null;
+        this.rescorer = null;
+    }
+
+    private static String text(Random random, int maxLength) {
+        StringBuilder text = new StringBuilder();
+        int length = random.nextInt(maxLength) + 1;
+        for (int i = 0; i < length; i++)
+            text.append(VOCABULARY[random.nextInt(VOCABULARY.length)]).append(' ');
+        return text.toString();
+    }
+
+    private static Map<String, Float> terms(Random random) {
+        HashMap<String, Float> terms = new HashMap<>();
+        int size = random.nextInt(VOCABULARY.length) + 1;
+        for (int i = 0; i < size; i++)
+            terms.put(VOCABULARY[random.nextInt(VOCABULARY.length)], (float) (random.nextInt(10) + 1));
+        return terms;
+    }
+
+    private static ScoreDoc[] allDocs(IndexReader reader) {
+        ScoreDoc[] docs = new ScoreDoc[reader.maxDoc()];
+        for (int i = 0; i < docs.length; i++)
+            docs[i] = new ScoreDoc(i, 0.f);
+        return docs;
+    }
+
+    private static float expectedScore(IndexReader reader, int doc, Map<String, Float> reference, String fieldName) throws IOException {
+        Map<String, Float> terms = LuceneUtils.getTermFrequencies(reader, doc, fieldName);
+
+        double dotProduct = 0;
+        double l2Norm = 0;
+
+        for (Float value : terms.values())
+            l2Norm += value * value;
+        l2Norm = Math.sqrt(l2Norm);
+
+        for (Map.Entry<String, Float> entry : reference.entrySet()) {
+            Float otherFreq = terms.get(entry.getKey());
+            if (otherFreq != null)
+                dotProduct += entry.getValue() * otherFreq;
+        }
+
+        float similarity = (float) (dotProduct / (CosineSimilarityRescorer.getL2Norm(reference) * l2Norm));
+        return Float.isInfinite(similarity) || Float.isNaN(similarity) ? 0.f : similarity;
+    }
+
+    @Test
+    public void sameScoresOfTermMaps() throws Throwable {
+        String fieldName = DocumentBuilder.makeContentFieldName(EN__IT);
+        IndexReader reader = index.getIndexReader();
+        Random random = new Random(1234);
+
+        for (int i = 0; i < 20; i++) {
+            Map<String, Float> reference = terms(random);
+            ScoreDoc[] docs = allDocs(reader);
+
+            rescorer.rescore(reader, docs, reference, fieldName);
+
+            for (ScoreDoc doc : docs)
+                assertEquals(Float.floatToIntBits(expectedScore(reader, doc.doc, reference, fieldName)), Float.floatToIntBits(doc.score));
+        }
+
+        // All the vectors have been loaded by the commits
+        assertEquals(20 * reader.maxDoc(), rescorer.getRescoredDocuments());
+        assertEquals(20 * reader.maxDoc(), rescorer.getCacheHits());
+        assertEquals(0, rescorer.getCacheMisses());
+    }
+
+    @Test
+    public void missingFieldScoresZero() throws Throwable {
+        IndexReader reader = index.getIndexReader();
+        ScoreDoc[] docs = allDocs(reader);
+
+        rescorer.rescore(reader, docs, terms(new Random(1)), "missing_field");
+
+        for (ScoreDoc doc : docs)
+            assertEquals(0.f, doc.score, 0.f);
+    }
+
+    @Test
+    public void vectorsAreUpdatedOnCommit() throws Throwable {
+        String fieldName = DocumentBuilder.makeContentFieldName(EN__IT);
+        Map<String, Float> reference = new HashMap<>();
+        reference.put("brand", 1.f);
+        reference.put("new", 1.f);
+
+        index.update(DocumentBuilder.newInstance(null, 3, EN__IT, new StringReader("brand new content")));
+        index.flush();
+
+        IndexReader reader = index.getIndexReader();
+        ScoreDoc[] docs = allDocs(reader);
+        rescorer.rescore(reader, docs, reference, fieldName);
+
+        assertEquals(0, rescorer.getCacheMisses());
+        for (ScoreDoc doc : docs)
+            assertEquals(Float.floatToIntBits(expectedScore(reader, doc.doc, reference, fieldName)), Float.floatToIntBits(doc.score));
+    }
+
+    @Test
+    public void missingVectorsAreLoaded() throws Throwable {
+        String fieldName = DocumentBuilder.makeContentFieldName(EN__IT);
+        Map<String, Float> reference = terms(new Random(1));
+        reference.put("unseen", 2.f);
+
+        // A new rescorer has no vectors and no dictionary
+        CosineSimilarityRescorer rescorer = new CosineSimilarityRescorer(2);
+
+        try {
+            IndexReader reader = index.getIndexReader();
+            ScoreDoc[] docs = allDocs(reader);
+            rescorer.rescore(reader, docs, reference, fieldName);
+
+            assertEquals(reader.maxDoc(), rescorer.getCacheMisses());
+            for (ScoreDoc doc : docs)
+                assertEquals(Float.floatToIntBits(expectedScore(reader, doc.doc, reference, fieldName)), Float.floatToIntBits(doc.score));
+        } finally {
+            rescorer.close();
+        }
+    }
+
+    @Test
+    public void disabledCacheGivesSameScores() throws Throwable {
+        String fieldName = DocumentBuilder.makeContentFieldName(EN__IT);
+        CosineSimilarityRescorer rescorer = new CosineSimilarityRescorer(2, 0L);
+
+        try {
+            IndexReader reader = index.getIndexReader();
+            Random random = new Random(1234);
+
+            for (int i = 0; i < 2; i++) {
+                Map<String, Float> reference = terms(random);
+                ScoreDoc[] docs = allDocs(reader);
+                rescorer.rescore(reader, docs, reference, fieldName);
+
+                for (ScoreDoc doc : docs)
+                    assertEquals(Float.floatToIntBits(expectedScore(reader, doc.doc, reference, fieldName)), Float.floatToIntBits(doc.score));
+            }
+
+            assertEquals(2 * reader.maxDoc(), rescorer.getCacheMisses());
+            assertEquals(0L, rescorer.getVectorsCacheMemory());
+        } finally {
+            rescorer.close();
+        }
+    }
+
+}
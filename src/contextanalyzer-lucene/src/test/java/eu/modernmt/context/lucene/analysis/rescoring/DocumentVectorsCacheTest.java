@@ -0,0 +1,159 @@
+package eu.modernmt.context.lucene.analysis.rescoring;
+
+import eu.modernmt.context.lucene.analysis.ContextAnalyzerIndex;
+import eu.modernmt.context.lucene.analysis.DocumentBuilder;
+import eu.modernmt.lang.Language;
+import eu.modernmt.lang.LanguagePair;
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class DocumentVectorsCacheTest {
+
+    private static final LanguagePair EN__IT = new LanguagePair(Language.fromString("en"), Language.fromString("it"));
+    private static final String FIELD_NAME = DocumentBuilder.makeContentFieldName(EN__IT);
+    private static final int MEMORIES = 8; // less than the segments merged at once by the default merge policy
+    private static final int TERMS_PER_MEMORY = 200;
+
+    private RAMDirectory directory;
+    private ContextAnalyzerIndex index;
+    private DirectoryReader reader;
+
+    @Before
+    public void setup() throws Throwable {
+        this.directory = new RAMDirectory();
+        this.index = new ContextAnalyzerIndex(directory, (Rescorer) null);
+
+        // one segment per memory, every memory with its own terms
+        for (int memory = 1; memory <= MEMORIES; memory++) {
+            index.update(DocumentBuilder.newInstance(null, memory, EN__IT, new StringReader(text(memory))));
+            index.flush();
+        }
+
+        this.reader = DirectoryReader.open(directory);
+    }
+
+    @After
+    public void teardown() throws Throwable {
+        this.reader.close();
+        this.index.close();
+    }
+
+    private static String text(int memory) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < TERMS_PER_MEMORY; i++) {
+            for (int j = 0; j < frequency(i); j++)
+                text.append("m").append(memory).append("t").append(i).append(' ');
+        }
+        return text.toString();
+    }
+
+    private static int frequency(int term) {
+        return term % 3 + 1;
+    }
+
+    private static double expectedDot() {
+        double dot = 0;
+        for (int i = 0; i < TERMS_PER_MEMORY; i++)
+            dot += frequency(i);
+        return dot;
+    }
+
+    private static List<DocumentVectorsCache.DocumentVector> loadAll(DocumentVectorsCache.View view, DirectoryReader reader) throws Throwable {
+        ArrayList<DocumentVectorsCache.DocumentVector> vectors = new ArrayList<>();
+        for (AtomicReaderContext leaf : reader.leaves()) {
+            for (int doc = 0; doc < leaf.reader().maxDoc(); doc++) {
+                if (leaf.reader().getLiveDocs() == null || leaf.reader().getLiveDocs().get(doc))
+                    vectors.add(view.load(leaf.reader(), FIELD_NAME, doc));
+            }
+        }
+        return vectors;
+    }
+
+    private static double dot(DocumentVectorsCache.View view, DocumentVectorsCache.DocumentVector vector, int memory) {
+        int[] ids = new int[TERMS_PER_MEMORY];
+        float[] values = new float[TERMS_PER_MEMORY];
+        for (int i = 0; i < TERMS_PER_MEMORY; i++)
+            ids[i] = view.getTermId(new BytesRef("m" + memory + "t" + i));
+
+        Arrays.sort(ids);
+        Arrays.fill(values, 1.f);
+
+        return vector.dot(ids, values);
+    }
+
+    @Test
+    public void dictionaryIsRebuiltWhenSegmentsAreDropped() throws Throwable {
+        DocumentVectorsCache cache = new DocumentVectorsCache(CosineSimilarityRescorer.DEFAULT_VECTORS_CACHE_SIZE);
+        loadAll(cache.getView(), reader);
+
+        assertEquals(MEMORIES, cache.size());
+        assertEquals(MEMORIES * TERMS_PER_MEMORY, cache.getDictionarySize());
+        long memory = cache.getMemory();
+
+        // segments closed by Lucene after a merge, the last one is still in use
+        List<AtomicReaderContext> leaves = reader.leaves();
+        for (int i = 0; i < leaves.size() - 1; i++)
+            cache.onClose(leaves.get(i).reader().getCoreCacheKey());
+
+        // the dictionary is rebuilt when less than half of its terms are used
+        assertEquals(1, cache.size());
+        assertTrue(cache.getDictionarySize() >= TERMS_PER_MEMORY);
+        assertTrue(cache.getDictionarySize() <= 4 * TERMS_PER_MEMORY);
+        assertTrue(cache.getMemory() < memory / 2);
+
+        // the remaining vector has been remapped to the new dictionary
+        DocumentVectorsCache.View view = cache.getView();
+        AtomicReaderContext leaf = leaves.get(leaves.size() - 1);
+        DocumentVectorsCache.DocumentVector vector = view.get(leaf.reader(), FIELD_NAME, 0);
+        assertNotNull(vector);
+        assertEquals(expectedDot(), dot(view, vector, MEMORIES), 0.);
+    }
+
+    @Test
+    public void memoryIsBounded() throws Throwable {
+        DocumentVectorsCache unbounded = new DocumentVectorsCache(CosineSimilarityRescorer.DEFAULT_VECTORS_CACHE_SIZE);
+        loadAll(unbounded.getView(), reader);
+
+        long bound = unbounded.getMemory() / 3;
+        DocumentVectorsCache cache = new DocumentVectorsCache(bound);
+
+        for (int i = 0; i < 3; i++) {
+            DocumentVectorsCache.View view = cache.getView();
+            List<DocumentVectorsCache.DocumentVector> vectors = loadAll(view, reader);
+
+            // vectors are consistent with the view that loaded them, even if the cache has been emptied
+            for (int m = 0; m < MEMORIES; m++)
+                assertEquals(expectedDot(), dot(view, vectors.get(m), m + 1), 0.);
+
+            assertTrue(cache.getMemory() <= bound);
+        }
+    }
+
+    @Test
+    public void disabledCacheKeepsNothing() throws Throwable {
+        DocumentVectorsCache cache = new DocumentVectorsCache(0L);
+        assertFalse(cache.isEnabled());
+
+        DocumentVectorsCache.View view = cache.getView();
+        List<DocumentVectorsCache.DocumentVector> vectors = loadAll(view, reader);
+        assertEquals(expectedDot(), dot(view, vectors.get(0), 1), 0.);
+
+        assertNull(view.get(reader.leaves().get(0).reader(), FIELD_NAME, 0));
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getDictionarySize());
+        assertEquals(0L, cache.getMemory());
+    }
+
+}
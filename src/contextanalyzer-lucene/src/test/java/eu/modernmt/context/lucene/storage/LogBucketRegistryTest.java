@@ -0,0 +1,161 @@
+package eu.modernmt.context.lucene.storage;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.*;
+
+import static eu.modernmt.context.lucene.TestData.*;
+import static org.junit.Assert.*;
+
+public class LogBucketRegistryTest {
+
+    private File path;
+    private LogBucketRegistry registry;
+
+    @Before
+    public void setup() throws Throwable {
+        this.path = Files.createTempDirectory("LogBucketRegistryTest").toFile();
+        this.registry = new LogBucketRegistry(path, true);
+    }
+
+    @After
+    public void teardown() throws Throwable {
+        if (this.registry != null)
+            this.registry.close();
+        FileUtils.deleteDirectory(this.path);
+    }
+
+    private void reopen() throws Throwable {
+        registry.close();
+        registry = new LogBucketRegistry(path, true);
+    }
+
+    private Bucket write(long id, long size) throws Throwable {
+        Bucket bucket = registry.get(id, EN__IT, null);
+        bucket.virtualSize = bucket.plainTextFileSize = size;
+
+        registry.update(Collections.singletonMap((short) 0, id), Collections.singleton(bucket));
+        registry.clearCache();
+
+        return bucket;
+    }
+
+    private static List<Long> ids(Set<Bucket> buckets) {
+        ArrayList<Long> ids = new ArrayList<>(buckets.size());
+        for (Bucket bucket : buckets)
+            ids.add(bucket.getId());
+        return ids;
+    }
+
+    @Test
+    public void persistence() throws Throwable {
+        UUID owner = UUID.randomUUID();
+
+        Bucket bucket = registry.get(1L, EN_US__IT, owner);
+        bucket.virtualSize = 300;
+        bucket.plainTextFileSize = 100;
+        bucket.compressedFileSize = 50;
+        registry.update(Collections.singletonMap((short) 1, 42L), Collections.singleton(bucket));
+        registry.mark(bucket, 200);
+
+        reopen();
+
+        bucket = registry.get(1L, EN__IT, null);
+        assertEquals(owner, bucket.getOwner());
+        assertEquals(300, bucket.getSize());
+        assertEquals(100, bucket.plainTextFileSize);
+        assertEquals(50, bucket.compressedFileSize);
+        assertEquals(Collections.singletonMap((short) 1, 42L), registry.getChannels());
+        assertEquals(1, registry.count());
+        assertEquals(Collections.singleton(bucket), registry.getAll(1L));
+    }
+
+    @Test
+    public void updatedBucketsByMisalignment() throws Throwable {
+        write(1L, 100);
+        write(2L, 300);
+        registry.mark(write(3L, 200), 200);
+        registry.mark(write(4L, 0), 10);  // deleted after analysis
+
+        assertEquals(Arrays.asList(2L, 1L, 4L), ids(registry.getUpdated(50, 10)));
+        assertEquals(Arrays.asList(2L, 1L), ids(registry.getUpdated(50, 2)));
+        assertEquals(Arrays.asList(2L, 4L), ids(registry.getUpdated(150, 10)));
+        assertEquals(Arrays.asList(2L, 1L, 4L, 3L), ids(registry.getUpdated(0, 10)));
+
+        registry.mark(registry.get(2L, EN__IT, null), 300);
+        assertEquals(Arrays.asList(1L, 4L), ids(registry.getUpdated(50, 10)));
+    }
+
+    @Test
+    public void truncatedTransactionIsDiscarded() throws Throwable {
+        write(1L, 100);
+        write(2L, 200);
+        registry.close();
+
+        File log = new File(path, "registry.log");
+        RandomAccessFile file = new RandomAccessFile(log, "rw");
+        try {
+            file.setLength(file.length() - 3);
+        } finally {
+            file.close();
+        }
+
+        registry = new LogBucketRegistry(path, true);
+        assertEquals(Collections.singletonMap((short) 0, 1L), registry.getChannels());
+        assertEquals(0, registry.get(2L, EN__IT, null).getSize());
+
+        write(3L, 300);
+        reopen();
+
+        assertEquals(2, registry.count());
+        assertEquals(300, registry.get(3L, EN__IT, null).getSize());
+    }
+
+    @Test
+    public void compaction() throws Throwable {
+        Bucket bucket = write(1L, 1);
+        for (int i = 0; i < 20000; i++)
+            registry.mark(bucket, i);
+
+        assertTrue(new File(path, "registry.log").length() < 1024 * 1024);
+
+        reopen();
+        assertEquals(Collections.singletonList(1L), ids(registry.getUpdated(19998, 10)));
+    }
+
+    @Test
+    public void importFromSQLite() throws Throwable {
+        registry.close();
+        FileUtils.deleteQuietly(new File(path, "registry.log"));
+
+        SQLiteBucketRegistry legacy = new SQLiteBucketRegistry(path, true);
+        try {
+            Bucket bucket = legacy.get(1L, EN__IT, null);
+            bucket.virtualSize = bucket.plainTextFileSize = 100;
+            legacy.update(Collections.singletonMap((short) 0, 7L), Collections.singleton(bucket));
+            legacy.mark(bucket, 40);
+        } finally {
+            legacy.close();
+        }
+
+        CorporaStorage storage = new CorporaStorage(path);
+        try {
+            assertEquals(1, storage.size());
+            assertEquals(Collections.singletonMap((short) 0, 7L), storage.getLatestChannelPositions());
+            assertEquals(Collections.singletonList(1L), ids(storage.getUpdatedBuckets(60, 10)));
+            assertTrue(storage.getUpdatedBuckets(61, 10).isEmpty());
+        } finally {
+            storage.close();
+        }
+
+        registry = new LogBucketRegistry(path, true);
+        assertEquals(100, registry.get(1L, EN__IT, null).getSize());
+    }
+
+}
@@ -3,6 +3,7 @@ package eu.modernmt.api;
 import eu.modernmt.api.framework.JSONSerializer;
 import eu.modernmt.api.framework.routing.Route;
 import eu.modernmt.api.framework.routing.RouterServlet;
+import eu.modernmt.api.model.BatchTranslationResponse;
 import eu.modernmt.api.model.ContextVectorResult;
 import eu.modernmt.api.model.TranslationResponse;
 import eu.modernmt.api.serializers.*;
@@ -10,10 +11,8 @@ import eu.modernmt.lang.Language;
 import eu.modernmt.lang.LanguagePair;
 import eu.modernmt.model.Alignment;
 import eu.modernmt.model.ImportJob;
-import org.eclipse.jetty.server.Handler;
 import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.servlet.ServletContextHandler;
-import org.eclipse.jetty.servlet.ServletHandler;
 import org.reflections.Reflections;
 
 import java.io.File;
@@ -26,6 +25,7 @@ public class ApiServer {
 
     static {
         JSONSerializer.registerCustomSerializer(TranslationResponse.class, new TranslationResponseSerializer());
+        JSONSerializer.registerCustomSerializer(BatchTranslationResponse.class, new BatchTranslationResponseSerializer());
         JSONSerializer.registerCustomSerializer(Alignment.class, new AlignmentSerializer());
         JSONSerializer.registerCustomSerializer(ContextVectorResult.class, new ContextVectorResultSerializer());
         JSONSerializer.registerCustomSerializer(Language.class, new LanguageSerializer());
@@ -63,22 +63,16 @@ public class ApiServer {
     public ApiServer(ServerOptions options) {
         this.jettyServer = new Server(options.port);
 
-        Handler rootHandler;
+        // a context handler is required also for the root path: async requests are completed in its threads
+        ServletContextHandler contextHandler = new ServletContextHandler();
         String contextPath = normalizeContextPath(options.contextPath);
-        if (contextPath == null) {
-            ServletHandler router = new ServletHandler();
-            router.addServletWithMapping(Router.class, "/*");
-            rootHandler = router;
-        } else {
-            ServletContextHandler contextHandler = new ServletContextHandler();
+        if (contextPath != null)
             contextHandler.setContextPath(contextPath);
-            contextHandler.addServlet(Router.class, "/*");
-            rootHandler = contextHandler;
-        }
+        contextHandler.addServlet(Router.class, "/*").setAsyncSupported(true);
 
         MultipartConfigInjectionHandler multipartWrapper = new MultipartConfigInjectionHandler(
                 options.temporaryDirectory, options.maxFileSize, options.maxRequestSize, options.fileSizeThreshold);
-        multipartWrapper.setHandler(rootHandler);
+        multipartWrapper.setHandler(contextHandler);
 
         jettyServer.setHandler(multipartWrapper);
     }
@@ -0,0 +1,81 @@
+package eu.modernmt.api.actions.translation;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import eu.modernmt.api.actions.util.ContextUtils;
+import eu.modernmt.api.framework.HttpMethod;
+import eu.modernmt.api.framework.Parameters;
+import eu.modernmt.api.framework.RESTRequest;
+import eu.modernmt.api.framework.actions.CollectionAction;
+import eu.modernmt.api.framework.routing.Route;
+import eu.modernmt.api.model.ContextVectorResult;
+import eu.modernmt.context.ContextAnalyzerException;
+import eu.modernmt.facade.ModernMT;
+import eu.modernmt.lang.Language;
+import eu.modernmt.model.ContextVector;
+import eu.modernmt.persistence.PersistenceException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Computes the context vectors of many documents for many target languages with a single request.
+ * Results are returned in the same order of the input documents.
+ */
+@Route(aliases = "context-vector/batch", method = HttpMethod.POST)
+public class GetContextVectorBatch extends CollectionAction<ContextVectorResult> {
+
+    @Override
+    protected Collection<ContextVectorResult> execute(RESTRequest req, Parameters _params) throws ContextAnalyzerException, PersistenceException {
+        Params params = (Params) _params;
+
+        List<Map<Language, ContextVector>> contexts = ModernMT.translation.getContextVectors(
+                params.user, params.documents, params.limit, params.source, params.targets);
+
+        ArrayList<ContextVectorResult> result = new ArrayList<>(contexts.size());
+        ArrayList<ContextVector> vectors = new ArrayList<>();
+
+        for (Map<Language, ContextVector> context : contexts) {
+            vectors.addAll(context.values());
+            result.add(new ContextVectorResult(params.source, context, false));
+        }
+
+        ContextUtils.resolve(vectors);
+        return result;
+    }
+
+    @Override
+    protected Parameters getParameters(RESTRequest req) throws Parameters.ParameterParsingException {
+        return new Params(req);
+    }
+
+    public static class Params extends Parameters {
+
+        public final UUID user;
+        public final Language source;
+        public final Language[] targets;
+        public final int limit;
+        public final List<String> documents;
+
+        public Params(RESTRequest req) throws ParameterParsingException {
+            super(req);
+
+            this.user = getUUID("user", null);
+            this.limit = getInt("limit", GetContextVector.Params.DEFAULT_LIMIT);
+            this.source = getLanguage("source");
+            this.targets = getLanguageArray("targets");
+
+            JsonArray array = getJSONArray("documents");
+            this.documents = new ArrayList<>(array.size());
+
+            for (JsonElement element : array) {
+                if (!element.isJsonPrimitive())
+                    throw new ParameterParsingException("documents");
+                this.documents.add(element.getAsString());
+            }
+        }
+    }
+}
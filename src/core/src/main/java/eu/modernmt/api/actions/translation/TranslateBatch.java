@@ -0,0 +1,158 @@
+package eu.modernmt.api.actions.translation;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import eu.modernmt.api.actions.util.ContextUtils;
+import eu.modernmt.api.framework.HttpMethod;
+import eu.modernmt.api.framework.Parameters;
+import eu.modernmt.api.framework.RESTRequest;
+import eu.modernmt.api.framework.actions.AsyncObjectAction;
+import eu.modernmt.api.framework.routing.Route;
+import eu.modernmt.api.model.BatchTranslationResponse;
+import eu.modernmt.api.model.TranslationResponse;
+import eu.modernmt.context.ContextAnalyzerException;
+import eu.modernmt.facade.ModernMT;
+import eu.modernmt.facade.TranslationFacade;
+import eu.modernmt.lang.LanguagePair;
+import eu.modernmt.model.ContextVector;
+import eu.modernmt.model.Translation;
+import eu.modernmt.persistence.PersistenceException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Translates many segments sharing the same direction and context with a single request.
+ * The context vector is computed once and the segments are translated in parallel across the cluster;
+ * translations are returned in the same order of the input segments.
+ * <p>
+ * Segments are translated independently: the translation of a segment that fails
+ * (i.e. because it has timed out) is replaced by its error, while the request fails only if
+ * its parameters are invalid or the context cannot be computed.
+ */
+@Route(aliases = "translate/batch", method = HttpMethod.POST)
+public class TranslateBatch extends AsyncObjectAction<BatchTranslationResponse> {
+
+    public static final int MAX_BATCH_SIZE = 1000;
+
+    @Override
+    protected CompletableFuture<BatchTranslationResponse> execute(RESTRequest req, Parameters _params) throws ContextAnalyzerException {
+        Params params = (Params) _params;
+
+        BatchTranslationResponse result = new BatchTranslationResponse(params.priority);
+
+        ContextVector context = params.context;
+        if (context == null && params.contextString != null) {
+            result.context = ModernMT.translation.getContextVector(params.user, params.direction, params.contextString, params.contextLimit);
+            context = result.context;
+        }
+
+        List<CompletableFuture<Translation>> translations = ModernMT.translation.getAsync(params.user, params.direction,
+                params.queries, context, params.nbest, params.priority, params.timeout);
+
+        CompletableFuture<?>[] completions = new CompletableFuture[translations.size()];
+        for (int i = 0; i < completions.length; i++)
+            completions[i] = translations.get(i).handle((translation, error) -> null);
+
+        return CompletableFuture.allOf(completions).thenApply(ignored -> {
+            result.translations = new ArrayList<>(translations.size());
+            result.errors = new ArrayList<>(translations.size());
+
+            for (CompletableFuture<Translation> future : translations) {
+                try {
+                    TranslationResponse response = new TranslationResponse(params.priority);
+                    response.verbose = params.verbose;
+                    response.translation = future.join();
+
+                    result.translations.add(response);
+                    result.errors.add(null);
+                } catch (CompletionException e) {
+                    result.translations.add(null);
+                    result.errors.add(e.getCause() != null ? e.getCause() : e);
+                }
+            }
+
+            return result;
+        });
+    }
+
+    @Override
+    protected void onResult(RESTRequest req, Parameters params, BatchTranslationResponse result) throws PersistenceException {
+        if (result.context != null)
+            ContextUtils.resolve(result.context);
+    }
+
+    @Override
+    protected Parameters getParameters(RESTRequest req) throws Parameters.ParameterParsingException {
+        return new Params(req);
+    }
+
+    public static class Params extends Parameters {
+
+        public final UUID user;
+        public final LanguagePair direction;
+        public final List<String> queries;
+        public final ContextVector context;
+        public final String contextString;
+        public final int contextLimit;
+        public final int nbest;
+        public final TranslationFacade.Priority priority;
+        public final boolean verbose;
+        public final long timeout;
+
+        public Params(RESTRequest req) throws ParameterParsingException {
+            super(req);
+
+            user = getUUID("user", null);
+
+            queries = parseQueries(getJSONArray("q"));
+
+            LanguagePair engineDirection = ModernMT.getNode().getEngine().getLanguageIndex().asSingleLanguagePair();
+            direction = engineDirection != null ?
+                    getLanguagePair("source", "target", engineDirection) :
+                    getLanguagePair("source", "target");
+
+            contextLimit = getInt("context_limit", 10);
+            nbest = getInt("nbest", 0);
+
+            priority = getEnum("priority", TranslationFacade.Priority.class, TranslationFacade.Priority.NORMAL);
+            verbose = getBoolean("verbose", false);
+            timeout = getLong("timeout", 0L);
+
+            String weights = getString("context_vector", false, null);
+
+            if (weights != null) {
+                context = ContextUtils.parseParameter("context_vector", weights);
+                contextString = null;
+            } else {
+                context = null;
+                contextString = getString("context", false, null);
+            }
+        }
+
+        static List<String> parseQueries(JsonArray array) throws ParameterParsingException {
+            if (array.size() == 0)
+                throw new ParameterParsingException("q");
+            if (array.size() > MAX_BATCH_SIZE)
+                throw new ParameterParsingException("q", array.size() + " segments", "max batch size of " + MAX_BATCH_SIZE + " exceeded");
+
+            ArrayList<String> queries = new ArrayList<>(array.size());
+            for (JsonElement element : array) {
+                if (!element.isJsonPrimitive())
+                    throw new ParameterParsingException("q");
+
+                String query = element.getAsString();
+                if (query.length() > Translate.MAX_QUERY_LENGTH)
+                    throw new ParameterParsingException("q", query.substring(0, 10) + "...",
+                            "max query length of " + Translate.MAX_QUERY_LENGTH + " exceeded");
+
+                queries.add(query);
+            }
+
+            return queries;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package eu.modernmt.api.actions.translation;
+
+import com.google.gson.JsonObject;
+import eu.modernmt.api.actions.util.ContextUtils;
+import eu.modernmt.api.framework.HttpMethod;
+import eu.modernmt.api.framework.JSONSerializer;
+import eu.modernmt.api.framework.Parameters;
+import eu.modernmt.api.framework.RESTRequest;
+import eu.modernmt.api.framework.actions.StreamAction;
+import eu.modernmt.api.framework.routing.Route;
+import eu.modernmt.api.model.TranslationResponse;
+import eu.modernmt.facade.ModernMT;
+import eu.modernmt.facade.TranslationFacade;
+import eu.modernmt.model.ContextVector;
+import eu.modernmt.model.Translation;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Translates a document as a stream of newline-delimited JSON objects: the sentences of the document
+ * are translated in parallel and every translation is written, in order, as soon as it is ready.
+ * Each piece reports its index and its character offsets in the source.
+ * The last line contains the translation of the whole document, the same returned by {@link Translate}.
+ */
+@Route(aliases = "translate/stream", method = HttpMethod.GET)
+public class TranslateStream extends StreamAction {
+
+    @Override
+    protected CompletableFuture<?> execute(RESTRequest req, Parameters _params, Stream stream) throws Throwable {
+        Translate.Params params = (Translate.Params) _params;
+
+        ContextVector context = params.context;
+        if (context == null && params.contextString != null) {
+            context = ModernMT.translation.getContextVector(params.user, params.direction, params.contextString, params.contextLimit);
+            ContextUtils.resolve(context);
+        }
+
+        TranslationResponse result = new TranslationResponse(params.priority);
+        result.verbose = params.verbose;
+        if (params.context == null)
+            result.context = context;
+
+        PieceWriter writer = new PieceWriter(params, stream);
+
+        return ModernMT.translation.getAsync(params.user, params.direction, params.query, context, params.nbest,
+                params.priority, params.timeout, writer).thenAccept(translation -> {
+            result.translation = translation;
+
+            JsonObject json = JSONSerializer.toJSON(result, TranslationResponse.class).getAsJsonObject();
+            json.addProperty("pieces", writer.pieces);
+            stream.write(json);
+        });
+    }
+
+    private static class PieceWriter implements TranslationFacade.PieceListener {
+
+        private final Translate.Params params;
+        private final Stream stream;
+        private int pieces = 0;
+        private int sourceOffset = 0;
+
+        PieceWriter(Translate.Params params, Stream stream) {
+            this.params = params;
+            this.stream = stream;
+        }
+
+        @Override
+        public void onPiece(int index, String source, Translation translation) {
+            int start = 0;
+            while (start < source.length() && Character.isWhitespace(source.charAt(start)))
+                start++;
+
+            int end = source.length();
+            while (end > start && Character.isWhitespace(source.charAt(end - 1)))
+                end--;
+
+            TranslationResponse response = new TranslationResponse(params.priority);
+            response.verbose = params.verbose;
+            response.translation = translation;
+
+            JsonObject json = JSONSerializer.toJSON(response, TranslationResponse.class).getAsJsonObject();
+            json.remove("priority");
+            json.remove("totalTime");
+            json.addProperty("index", index);
+            json.addProperty("sourceOffset", sourceOffset + start);
+            json.addProperty("sourceLength", end - start);
+            stream.write(json);
+
+            pieces++;
+            sourceOffset += source.length();
+        }
+
+    }
+
+    @Override
+    protected Parameters getParameters(RESTRequest req) throws Parameters.ParameterParsingException {
+        return new Translate.Params(req);
+    }
+
+}
@@ -30,6 +30,7 @@ public class RESTResponse {
 
     private HttpServletResponse response;
     private JsonObject content = null;
+    private boolean streaming = false;
 
     public RESTResponse(HttpServletResponse response) {
         this.response = response;
@@ -83,8 +84,38 @@ public class RESTResponse {
         output(HttpServletResponse.SC_SERVICE_UNAVAILABLE, null, e);
     }
 
+    /**
+     * Writes the json as a line of a newline-delimited JSON response and flushes it to the client.
+     * The first call sets the response headers: after that, the response status cannot be changed and
+     * the output of any other method (i.e. an error) is written as one more line of the stream.
+     *
+     * @param json the content of the line
+     */
+    public void stream(JsonElement json) {
+        if (content != null && !streaming)
+            throw new IllegalStateException("Output has been already set");
+
+        if (!streaming) {
+            streaming = true;
+
+            response.setStatus(HttpServletResponse.SC_OK);
+            response.setContentType("application/x-ndjson; charset=utf-8");
+            response.addHeader("Access-Control-Allow-Origin", "*");
+        }
+
+        content = new JsonObject();
+        content.addProperty("status", HttpServletResponse.SC_OK);
+        content.add("data", json);
+
+        write(true);
+    }
+
+    public boolean isStreaming() {
+        return streaming;
+    }
+
     private void output(int httpStatus, JsonElement json, Throwable throwable) {
-        if (content != null)
+        if (content != null && !streaming)
             throw new IllegalStateException("Output has been already set");
 
         content = new JsonObject();
@@ -95,21 +126,31 @@ public class RESTResponse {
         else if (json != null)
             content.add("data", json);
 
-        response.setStatus(httpStatus);
-        response.setContentType("application/json; charset=utf-8");
-        response.addHeader("Access-Control-Allow-Origin", "*");
+        if (!streaming) {
+            response.setStatus(httpStatus);
+            response.setContentType("application/json; charset=utf-8");
+            response.addHeader("Access-Control-Allow-Origin", "*");
+        }
 
+        write(streaming);
+    }
+
+    private void write(boolean flush) {
         try {
-            if (content != null) {
-                String rawContent = content.toString() + '\n';
-                response.getOutputStream().write(rawContent.getBytes(StandardCharsets.UTF_8));
-            }
+            String rawContent = content.toString() + '\n';
+            response.getOutputStream().write(rawContent.getBytes(StandardCharsets.UTF_8));
+
+            if (flush)
+                response.flushBuffer();
         } catch (IOException e) {
             logger.error("unable to write response", e);
         }
     }
 
-    private static JsonObject encode(Throwable e) {
+    /**
+     * @return the JSON object of the error, as written in the responses
+     */
+    public static JsonObject encode(Throwable e) {
         // Message
         String msg = e.getMessage();
         if (msg == null || msg.trim().isEmpty()) {
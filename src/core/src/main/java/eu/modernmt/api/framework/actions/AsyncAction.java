@@ -0,0 +1,24 @@
+package eu.modernmt.api.framework.actions;
+
+import eu.modernmt.api.framework.RESTRequest;
+import eu.modernmt.api.framework.RESTResponse;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * An AsyncAction writes its response when its result is available, without holding
+ * the request thread in the meantime: the RouterServlet puts the request in asynchronous mode
+ * and completes it when the returned future is done.
+ */
+public interface AsyncAction extends Action {
+
+    /**
+     * @param request  the request
+     * @param response the response
+     * @param executor the executor of the container, used to write the response once the result is available
+     * @return a future that is completed when the response has been written
+     */
+    CompletableFuture<Void> executeAsync(RESTRequest request, RESTResponse response, Executor executor);
+
+}
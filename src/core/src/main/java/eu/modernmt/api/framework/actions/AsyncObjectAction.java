@@ -0,0 +1,76 @@
+package eu.modernmt.api.framework.actions;
+
+import eu.modernmt.api.framework.Parameters;
+import eu.modernmt.api.framework.RESTRequest;
+import eu.modernmt.api.framework.RESTResponse;
+
+import java.lang.reflect.ParameterizedType;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+
+public abstract class AsyncObjectAction<M> extends JSONAction implements AsyncAction {
+
+    @Override
+    public final CompletableFuture<Void> executeAsync(RESTRequest req, RESTResponse resp, Executor executor) {
+        Parameters params;
+        CompletableFuture<M> future;
+
+        try {
+            params = getParameters(req);
+            future = execute(req, params);
+        } catch (Throwable e) {
+            onError(resp, e);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        return future.handleAsync((object, error) -> {
+            try {
+                if (error != null)
+                    throw error;
+
+                onResult(req, params, object);
+                write(req, resp, params, toResult(object));
+            } catch (Throwable e) {
+                onError(resp, e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+            }
+
+            return null;
+        }, executor);
+    }
+
+    @Override
+    protected final ObjectActionResult getResult(RESTRequest req, Parameters params) throws Throwable {
+        M object;
+        try {
+            object = execute(req, params).get();
+        } catch (ExecutionException e) {
+            throw e.getCause();
+        }
+
+        onResult(req, params, object);
+        return toResult(object);
+    }
+
+    @SuppressWarnings("unchecked")
+    private ObjectActionResult toResult(M object) {
+        Class<M> objectClass = (Class<M>) ((ParameterizedType) getClass().getGenericSuperclass()).getActualTypeArguments()[0];
+        return object == null ? null : new ObjectActionResult<>(object, objectClass);
+    }
+
+    protected abstract CompletableFuture<M> execute(RESTRequest req, Parameters params) throws Throwable;
+
+    /**
+     * Called when the result is available, before it is written.
+     * It runs on a thread of the container, thus it can perform blocking operations.
+     *
+     * @param req    the request
+     * @param params the request parameters
+     * @param result the result of the action
+     */
+    protected void onResult(RESTRequest req, Parameters params, M result) throws Throwable {
+        // Default implementation does nothing
+    }
+
+}
@@ -20,27 +20,33 @@ public abstract class JSONAction implements Action {
     public final void execute(RESTRequest req, RESTResponse resp) {
         try {
             unsecureExecute(req, resp);
-        } catch (TemplateException e) {
+        } catch (Throwable e) {
+            onError(resp, e);
+        }
+    }
+
+    protected final void onError(RESTResponse resp, Throwable e) {
+        if (e instanceof TemplateException) {
             if (logger.isDebugEnabled())
                 logger.debug("Template exception while executing action " + this, e);
             resp.resourceNotFound();
-        } catch (Parameters.ParameterParsingException e) {
+        } else if (e instanceof Parameters.ParameterParsingException) {
             resp.badRequest(e);
-        } catch (UnsupportedLanguageException e) {
+        } else if (e instanceof UnsupportedLanguageException) {
             if (logger.isDebugEnabled())
-                logger.debug("Language direction '" + e.getLanguagePair() + "' is not supported " + this, e);
+                logger.debug("Language direction '" + ((UnsupportedLanguageException) e).getLanguagePair() + "' is not supported " + this, e);
             resp.badRequest(e);
-        } catch (AuthenticationException e) {
+        } else if (e instanceof AuthenticationException) {
             if (logger.isDebugEnabled())
                 logger.debug("Authentication exception while executing action " + this, e);
             resp.forbidden(e);
-        } catch (SystemShutdownException e) {
+        } else if (e instanceof SystemShutdownException) {
             if (logger.isDebugEnabled())
                 logger.debug("Unable to complete action " + this + ": system is shutting down", e);
             resp.unavailable(e);
-        } catch (DecoderUnavailableException e) {
+        } else if (e instanceof DecoderUnavailableException) {
             resp.unavailable(e);
-        } catch (Throwable e) {
+        } else {
             logger.error("Internal error while executing action " + this, e);
             resp.unexpectedError(e);
         }
@@ -50,6 +56,10 @@ public abstract class JSONAction implements Action {
         Parameters params = getParameters(req);
         JSONActionResult result = getResult(req, params);
 
+        write(req, resp, params, result);
+    }
+
+    protected final void write(RESTRequest req, RESTResponse resp, Parameters params, JSONActionResult result) throws Throwable {
         if (result == null) {
             resp.resourceNotFound();
         } else {
@@ -0,0 +1,106 @@
+package eu.modernmt.api.framework.actions;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import eu.modernmt.api.framework.Parameters;
+import eu.modernmt.api.framework.RESTRequest;
+import eu.modernmt.api.framework.RESTResponse;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+
+/**
+ * A StreamAction writes its result as a newline-delimited JSON response: every element is
+ * flushed to the client as soon as the action produces it. If the action fails after some elements
+ * have been written, the error is written as the last line of the stream.
+ * <p>
+ * When the request cannot be put in asynchronous mode, the action waits for all the elements
+ * and writes them as a single JSON array.
+ */
+public abstract class StreamAction extends JSONAction implements AsyncAction {
+
+    @Override
+    public final CompletableFuture<Void> executeAsync(RESTRequest req, RESTResponse resp, Executor executor) {
+        Stream stream = new Stream(resp, executor);
+        CompletableFuture<?> future;
+
+        try {
+            Parameters params = getParameters(req);
+            future = execute(req, params, stream);
+        } catch (Throwable e) {
+            onError(resp, e);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        return future.handle((result, error) -> error).thenCompose(stream::close);
+    }
+
+    @Override
+    protected final JSONActionResult getResult(RESTRequest req, Parameters params) throws Throwable {
+        Stream stream = new Stream();
+
+        try {
+            execute(req, params, stream).get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof CompletionException && cause.getCause() != null ? cause.getCause() : cause;
+        }
+
+        return new JSONArrayActionResult(stream.elements);
+    }
+
+    /**
+     * @param req    the request
+     * @param params the request parameters
+     * @param stream the stream of the response
+     * @return a future that is completed when all the elements have been passed to the stream
+     */
+    protected abstract CompletableFuture<?> execute(RESTRequest req, Parameters params, Stream stream) throws Throwable;
+
+    /**
+     * Writes the elements of the response in the order they are passed, on the threads of the container;
+     * without a response, the elements are collected.
+     */
+    public final class Stream {
+
+        private final RESTResponse response;
+        private final Executor executor;
+        private final JsonArray elements;
+        private CompletableFuture<Void> tail = CompletableFuture.completedFuture(null);
+
+        private Stream(RESTResponse response, Executor executor) {
+            this.response = response;
+            this.executor = executor;
+            this.elements = null;
+        }
+
+        private Stream() {
+            this.response = null;
+            this.executor = null;
+            this.elements = new JsonArray();
+        }
+
+        public synchronized void write(JsonElement json) {
+            if (elements != null)
+                elements.add(json);
+            else
+                tail = tail.thenRunAsync(() -> response.stream(json), executor);
+        }
+
+        private synchronized CompletableFuture<Void> close(Throwable error) {
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                tail = tail.handleAsync((result, e) -> {
+                    onError(response, cause);
+                    return null;
+                }, executor);
+            }
+
+            return tail;
+        }
+
+    }
+
+}
@@ -5,9 +5,11 @@ import eu.modernmt.api.framework.HttpMethod;
 import eu.modernmt.api.framework.RESTRequest;
 import eu.modernmt.api.framework.RESTResponse;
 import eu.modernmt.api.framework.actions.Action;
+import eu.modernmt.api.framework.actions.AsyncAction;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import javax.servlet.AsyncContext;
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
@@ -71,6 +73,7 @@ public abstract class RouterServlet extends HttpServlet {
         RESTResponse restResponse = new RESTResponse(resp);
 
         Route route = null;
+        boolean async = false;
 
         try {
             Class<? extends Action> actionClass = restRequest.getActionClass();
@@ -80,38 +83,62 @@ public abstract class RouterServlet extends HttpServlet {
                 route = actionClass.getAnnotation(Route.class);
 
                 Action action = actionClass.newInstance();
-                action.execute(restRequest, restResponse);
+
+                if (action instanceof AsyncAction && req.isAsyncSupported()) {
+                    AsyncContext context = req.startAsync();
+                    context.setTimeout(0);  // the action is responsible for its own timeout
+                    async = true;
+
+                    final Route asyncRoute = route;
+                    ((AsyncAction) action).executeAsync(restRequest, restResponse, context::start).whenComplete((result, error) -> {
+                        if (error != null) {
+                            logger.error("Unexpected exceptions", error);
+                            if (restResponse.getContent() == null)
+                                restResponse.unexpectedError(error);
+                        }
+
+                        log(asyncRoute, restRequest, restResponse, start);
+                        context.complete();
+                    });
+                } else {
+                    action.execute(restRequest, restResponse);
+                }
             }
         } catch (Throwable e) {
             logger.error("Unexpected exceptions", e);
             restResponse.unexpectedError(e);
         } finally {
-            long elapsedTime = System.currentTimeMillis() - start;
-
-            if (logger.isInfoEnabled() && route != null && route.log()) {
-                StringBuilder log = new StringBuilder();
-                log.append('"');
-                log.append(restRequest);
-                log.append("\" ");
-                log.append(restResponse.getHttpStatus());
-                log.append(' ');
-                log.append(elapsedTime);
-
-                if (logger.isDebugEnabled()) {
-                    JsonElement json = restResponse.getContent();
-
-                    if (json != null) {
-                        String content = json.toString();
-                        if (content.length() > 500)
-                            content = content.substring(0, 499) + "[...]";
-
-                        log.append(' ');
-                        log.append(content);
-                    }
-                }
+            if (!async)
+                log(route, restRequest, restResponse, start);
+        }
+    }
+
+    private void log(Route route, RESTRequest restRequest, RESTResponse restResponse, long start) {
+        long elapsedTime = System.currentTimeMillis() - start;
 
-                logger.info(log);
+        if (logger.isInfoEnabled() && route != null && route.log()) {
+            StringBuilder log = new StringBuilder();
+            log.append('"');
+            log.append(restRequest);
+            log.append("\" ");
+            log.append(restResponse.getHttpStatus());
+            log.append(' ');
+            log.append(elapsedTime);
+
+            if (logger.isDebugEnabled()) {
+                JsonElement json = restResponse.getContent();
+
+                if (json != null) {
+                    String content = json.toString();
+                    if (content.length() > 500)
+                        content = content.substring(0, 499) + "[...]";
+
+                    log.append(' ');
+                    log.append(content);
+                }
             }
+
+            logger.info(log);
         }
     }
 
@@ -0,0 +1,31 @@
+package eu.modernmt.api.model;
+
+import eu.modernmt.facade.TranslationFacade;
+import eu.modernmt.model.ContextVector;
+
+import java.util.List;
+
+public class BatchTranslationResponse {
+
+    /**
+     * The translations of the segments, in order: null if the translation of the segment has failed
+     */
+    public List<TranslationResponse> translations = null;
+    /**
+     * The errors of the segments whose translation has failed, same order of translations (null if succeeded)
+     */
+    public List<Throwable> errors = null;
+    public ContextVector context = null;
+    public final TranslationFacade.Priority priority;
+
+    private final long creationTimestamp = System.currentTimeMillis();
+
+    public BatchTranslationResponse(TranslationFacade.Priority priority) {
+        this.priority = priority;
+    }
+
+    public long getTotalTime() {
+        return System.currentTimeMillis() - creationTimestamp;
+    }
+
+}
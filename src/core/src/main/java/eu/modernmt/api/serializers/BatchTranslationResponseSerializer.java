@@ -0,0 +1,40 @@
+package eu.modernmt.api.serializers;
+
+import com.google.gson.*;
+import eu.modernmt.api.framework.RESTResponse;
+import eu.modernmt.api.model.BatchTranslationResponse;
+import eu.modernmt.api.model.TranslationResponse;
+import eu.modernmt.model.ContextVector;
+
+import java.lang.reflect.Type;
+
+public class BatchTranslationResponseSerializer implements JsonSerializer<BatchTranslationResponse> {
+
+    @Override
+    public JsonElement serialize(BatchTranslationResponse src, Type typeOfSrc, JsonSerializationContext context) {
+        JsonArray translations = new JsonArray();
+        for (int i = 0; i < src.translations.size(); i++) {
+            TranslationResponse translation = src.translations.get(i);
+
+            if (translation != null) {
+                translations.add(context.serialize(translation, TranslationResponse.class));
+            } else {
+                JsonObject error = new JsonObject();
+                error.add("error", RESTResponse.encode(src.errors.get(i)));
+                translations.add(error);
+            }
+        }
+
+        JsonObject json = new JsonObject();
+        json.add("translations", translations);
+
+        if (src.context != null)
+            json.add("contextVector", context.serialize(src.context, ContextVector.class));
+
+        json.addProperty("priority", src.priority.toString().toLowerCase());
+        json.addProperty("totalTime", src.getTotalTime());
+
+        return json;
+    }
+
+}
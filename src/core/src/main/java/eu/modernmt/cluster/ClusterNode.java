@@ -11,6 +11,7 @@ import eu.modernmt.cluster.cassandra.EmbeddedCassandra;
 import eu.modernmt.cluster.error.FailedToJoinClusterException;
 import eu.modernmt.cluster.kafka.EmbeddedKafka;
 import eu.modernmt.cluster.kafka.KafkaDataManager;
+import eu.modernmt.cluster.serialization.ModelSerializers;
 import eu.modernmt.cluster.services.TranslationService;
 import eu.modernmt.cluster.services.TranslationServiceProxy;
 import eu.modernmt.config.*;
@@ -34,7 +35,7 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.util.*;
-import java.util.concurrent.Future;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -65,6 +66,8 @@ public class ClusterNode {
         void onStatusChanged(ClusterNode node, Status currentStatus, Status previousStatus);
     }
 
+    private static final String MEMORY_UPDATES_TOPIC = "memory-updates";
+
     private final Logger logger = LogManager.getLogger(ClusterNode.class);
 
     private Engine engine;
@@ -77,6 +80,9 @@ public class ClusterNode {
     Database database;
     ApiServer api;
     TranslationServiceProxy translationService;
+    TranslationCache translationCache;
+    MemoryCache memoryCache;
+    final LoadBalancer loadBalancer = new LoadBalancer();
     ArrayList<EmbeddedService> services = new ArrayList<>(2);
 
     private final ShutdownThread shutdownThread = new ShutdownThread(this);
@@ -211,7 +217,13 @@ public class ClusterNode {
                 .setThreads(threads)
                 .setHighPriorityQueueSize(queueConfig.getHighPrioritySize())
                 .setNormalPriorityQueueSize(queueConfig.getNormalPrioritySize())
-                .setBackgroundPriorityQueueSize(queueConfig.getBackgroundPrioritySize());
+                .setBackgroundPriorityQueueSize(queueConfig.getBackgroundPrioritySize())
+                .setSplitParallelism(queueConfig.getSplitParallelism())
+                .setEarliestDeadlineFirst(queueConfig.isDeadlineScheduling())
+                .setAdmissionControl(queueConfig.isAdmissionControl())
+                .setLockStriping(queueConfig.isLockStriping());
+
+        ModelSerializers.register(hazelcastConfig.getSerializationConfig());
 
         return hazelcastConfig;
     }
@@ -287,6 +299,11 @@ public class ClusterNode {
                 public void onDecoderAvailabilityChanged(int currentAvailability, int maxAvailability) {
                     updateDecoderAvailability(currentAvailability, maxAvailability);
                 }
+
+                @Override
+                public void onWarmTranslationDirectionsChanged(Set<LanguagePair> directions) {
+                    updateDecoderWarmTranslationDirections(directions);
+                }
             });
         } catch (UnsupportedOperationException e) {
             // Ignore, decoder not available
@@ -294,6 +311,26 @@ public class ClusterNode {
         setStatus(Status.LOADED);
         logger.info("Model loaded in " + (timer.time() / 1000.) + "s");
 
+        TranslationCacheConfig translationCacheConfig = nodeConfig.getTranslationCacheConfig();
+        if (translationCacheConfig.isEnabled()) {
+            this.translationCache = new TranslationCache(translationCacheConfig);
+
+            try {
+                // near-real-time memory: translations are invalidated when the new data becomes searchable
+                if (this.engine.getDecoder().addMemoryRefreshListener(this.translationCache))
+                    this.translationCache.setNearRealTime(true);
+            } catch (UnsupportedOperationException e) {
+                // Ignore, decoder not available
+            }
+        }
+
+        MemoryCacheConfig memoryCacheConfig = nodeConfig.getMemoryCacheConfig();
+        if (memoryCacheConfig.isEnabled()) {
+            this.memoryCache = new MemoryCache(memoryCacheConfig);
+            hazelcast.<Long>getTopic(MEMORY_UPDATES_TOPIC).addMessageListener(message ->
+                    memoryCache.invalidate(message.getMessageObject()));
+        }
+
 
         // ===========  Data stream bootstrap  =============
 
@@ -323,9 +360,15 @@ public class ClusterNode {
                 throw new BootstrapException("Datastream name is mandatory if datastream is not embedded");
 
             this.dataManager = new KafkaDataManager(this.engine, uuid, dataStreamConfig);
-            this.dataManager.setDataManagerListener(this::updateChannelsPositions);
+            this.dataManager.setDataManagerListener(positions -> {
+                if (translationCache != null)
+                    translationCache.onDataBatchProcessed();
+                updateChannelsPositions(positions);
+            });
 
             addToDataManager(this.engine, this.dataManager);
+            addToDataManager(this.translationCache, this.dataManager);
+            addToDataManager(this.memoryCache, this.dataManager);
             updateChannelsPositions(this.dataManager.getChannelsPositions());
 
             try {
@@ -402,6 +445,7 @@ public class ClusterNode {
         // ===========  Hazelcast services init =============
 
         translationService = hazelcast.getDistributedObject(TranslationService.SERVICE_NAME, "TranslationService");
+        loadBalancer.start(hazelcast, translationService);
 
         setStatus(Status.RUNNING);
         logger.info("Node started in " + (globalTimer.time() / 1000.) + "s");
@@ -432,7 +476,15 @@ public class ClusterNode {
         NodeInfo.updateTranslationDirections(localMember, directions);
     }
 
+    private void updateDecoderWarmTranslationDirections(Set<LanguagePair> directions) {
+        Member localMember = hazelcast.getCluster().getLocalMember();
+        NodeInfo.updateWarmTranslationDirections(localMember, directions);
+    }
+
     private void updateDecoderAvailability(int currentAvailability, int maxAvailability) {
+        Member localMember = hazelcast.getCluster().getLocalMember();
+        NodeInfo.updateDecodersInMember(localMember, currentAvailability);
+
         if (currentAvailability == 0)
             setStatus(Status.UNAVAILABLE, Status.RUNNING, Status.DEGRADED);
         else if (currentAvailability < maxAvailability)
@@ -457,7 +509,32 @@ public class ClusterNode {
         return NodeInfo.fromMember(member);
     }
 
-    public Future<Translation> submit(TranslationTask task) throws DecoderUnavailableException {
+    public TranslationServiceProxy getTranslationService() {
+        return translationService;
+    }
+
+    /**
+     * @return the cache of the translations requested to this node, or null if the cache is disabled
+     */
+    public TranslationCache getTranslationCache() {
+        return translationCache;
+    }
+
+    public MemoryCache getMemoryCache() {
+        return memoryCache;
+    }
+
+    /**
+     * Notifies all the cluster members that the metadata of the memory have changed,
+     * so that they remove it from their memory cache.
+     *
+     * @param memory the id of the memory
+     */
+    public void notifyMemoryUpdated(long memory) {
+        hazelcast.<Long>getTopic(MEMORY_UPDATES_TOPIC).publish(memory);
+    }
+
+    public CompletableFuture<Translation> submit(TranslationTask task) throws DecoderUnavailableException {
         LanguagePair language = task.getLanguage();
 
         Set<Member> members = hazelcast.getCluster().getMembers();
@@ -482,10 +559,8 @@ public class ClusterNode {
                 throw new DecoderUnavailableException("No active nodes in the cluster");
         }
 
-        int i = new Random().nextInt(candidates.size());
-        Member member = candidates.get(i);
-
-        return translationService.submit(task, member.getAddress());
+        Member member = loadBalancer.select(candidates, language, task.getPriority(), task.getCoalescingKey());
+        return loadBalancer.submit(translationService, task, member);
     }
 
     public synchronized void shutdown() {
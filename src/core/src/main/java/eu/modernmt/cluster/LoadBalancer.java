@@ -0,0 +1,189 @@
+package eu.modernmt.cluster;
+
+import com.hazelcast.core.ExecutionCallback;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.ICompletableFuture;
+import com.hazelcast.core.Member;
+import eu.modernmt.cluster.services.TranslationServiceProxy;
+import eu.modernmt.lang.LanguagePair;
+import eu.modernmt.model.Translation;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The LoadBalancer chooses the cluster member that runs a translation task.
+ * <p>
+ * Every member publishes in its Hazelcast attributes the length of its translation queues
+ * (by this class, every PUBLISH_INTERVAL ms if changed), the number of alive decoder processes
+ * and the directions whose model is already loaded (both by the decoder listener).
+ * <p>
+ * The submitter samples two random candidates and takes the one with the lowest cost
+ * ("power of two choices"): the number of tasks that will run before the new one divided by the
+ * number of decoders, plus a penalty if the member has no model loaded for the task direction.
+ * Since the published queues are slightly stale, the count of the requests this member has sent
+ * to each candidate and that are still running is added to the published queue length.
+ * <p>
+ * If the task has a coalescing key, the first candidate is the one chosen for the key by rendezvous hashing,
+ * so that identical tasks submitted by different members tend to meet on the same member.
+ */
+class LoadBalancer implements Closeable {
+
+    private static final long PUBLISH_INTERVAL = 250L; // ms
+    private static final float COLD_PENALTY = 1.f;
+
+    private final Logger logger = LogManager.getLogger(LoadBalancer.class);
+    private final ConcurrentHashMap<String, AtomicInteger> outstanding = new ConcurrentHashMap<>();
+    private ScheduledExecutorService publisher = null;
+
+    /**
+     * Starts publishing the length of the local translation queues
+     */
+    synchronized void start(HazelcastInstance hazelcast, TranslationServiceProxy translationService) {
+        if (publisher != null)
+            return;
+
+        publisher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "LoadBalancer-Publisher");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        publisher.scheduleWithFixedDelay(new Runnable() {
+
+            private int[] published = null;
+
+            @Override
+            public void run() {
+                try {
+                    int[] lengths = translationService.getQueueLengths();
+
+                    if (!Arrays.equals(lengths, published)) {
+                        NodeInfo.updateQueueLengthsInMember(hazelcast.getCluster().getLocalMember(), lengths);
+                        published = lengths;
+                    }
+
+                    removeDepartedMembers(hazelcast.getCluster().getMembers());
+                } catch (RuntimeException e) {
+                    logger.warn("Failed to publish local translation queues length", e);
+                }
+            }
+
+        }, 0L, PUBLISH_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    private void removeDepartedMembers(Set<Member> members) {
+        if (outstanding.size() <= members.size())
+            return;
+
+        HashSet<String> uuids = new HashSet<>(members.size());
+        for (Member member : members)
+            uuids.add(member.getUuid());
+
+        outstanding.keySet().retainAll(uuids);
+    }
+
+    /**
+     * @param key the coalescing key of the task, or null: tasks with the same key are sent to the same member
+     *            (unless it is more loaded than the other candidate) where they can share a single execution
+     */
+    Member select(List<Member> candidates, LanguagePair direction, int priority, Object key) {
+        int size = candidates.size();
+        if (size == 1)
+            return candidates.get(0);
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int i = key == null ? random.nextInt(size) : getPreferredCandidate(candidates, key);
+        int j = random.nextInt(size - 1);
+        if (j >= i)
+            j++;
+
+        Member first = candidates.get(i);
+        Member second = candidates.get(j);
+
+        return getCost(second, direction, priority) < getCost(first, direction, priority) ? second : first;
+    }
+
+    /**
+     * Rendezvous hashing: the preferred member for a key changes only if the member leaves the cluster
+     */
+    static int getPreferredCandidate(List<Member> candidates, Object key) {
+        int keyHash = key.hashCode();
+        int preferred = 0;
+        long maxWeight = Long.MIN_VALUE;
+
+        for (int i = 0; i < candidates.size(); i++) {
+            long weight = mix(((long) keyHash << 32) ^ candidates.get(i).getUuid().hashCode());
+            if (weight > maxWeight) {
+                maxWeight = weight;
+                preferred = i;
+            }
+        }
+
+        return preferred;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return z ^ (z >>> 33);
+    }
+
+    private float getCost(Member member, LanguagePair direction, int priority) {
+        AtomicInteger counter = outstanding.get(member.getUuid());
+        int pending = counter == null ? 0 : counter.get();
+        int queued = NodeInfo.getQueueLength(member, priority);
+        int decoders = Math.max(1, NodeInfo.getDecoders(member));
+
+        float cost = (queued + pending + 1) / (float) decoders;
+        if (!NodeInfo.isWarm(member, direction))
+            cost += COLD_PENALTY;
+
+        return cost;
+    }
+
+    CompletableFuture<Translation> submit(TranslationServiceProxy translationService, TranslationTask task, Member member) {
+        AtomicInteger counter = outstanding.computeIfAbsent(member.getUuid(), key -> new AtomicInteger(0));
+        counter.incrementAndGet();
+
+        ICompletableFuture<Translation> future;
+        try {
+            future = translationService.submit(task, member.getAddress());
+        } catch (RuntimeException e) {
+            counter.decrementAndGet();
+            throw e;
+        }
+
+        // the callback runs when the response arrives, no thread waits for the remote member
+        CompletableFuture<Translation> result = new CompletableFuture<>();
+        future.andThen(new ExecutionCallback<Translation>() {
+            @Override
+            public void onResponse(Translation response) {
+                counter.decrementAndGet();
+                result.complete(response);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                counter.decrementAndGet();
+                result.completeExceptionally(t);
+            }
+        });
+
+        return result;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (publisher != null)
+            publisher.shutdownNow();
+    }
+
+}
@@ -0,0 +1,136 @@
+package eu.modernmt.cluster;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import eu.modernmt.config.MemoryCacheConfig;
+import eu.modernmt.data.DataBatch;
+import eu.modernmt.data.DataListener;
+import eu.modernmt.data.Deletion;
+import eu.modernmt.model.Memory;
+import eu.modernmt.persistence.PersistenceException;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A MemoryCache keeps the metadata (owner and name) of the memories read from the database by this node.
+ * <p>
+ * Memories are invalidated when they are updated or deleted: deletions are received from the data stream
+ * by every node, while updates are notified by the node that performs them through the cluster.
+ * A memory read from the database while it is being invalidated is not cached,
+ * so that the cache never keeps the metadata preceding an update.
+ */
+public class MemoryCache implements DataListener {
+
+    public interface Loader {
+
+        Map<Long, Memory> load(Collection<Long> ids) throws PersistenceException;
+
+    }
+
+    private final Cache<Long, Memory> cache;
+    private final AtomicLong generation = new AtomicLong(0L);
+
+    public MemoryCache(MemoryCacheConfig config) {
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(config.getSize())
+                .expireAfterWrite(config.getTtl(), TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Returns the memories with the given ids, loading from the database only the ones not cached.
+     * Returned objects are copies and they can be modified by the caller.
+     *
+     * @param ids    the memory ids
+     * @param loader the loader of the memories not present in the cache
+     * @return the existing memories by id
+     * @throws PersistenceException if the loader fails
+     */
+    public Map<Long, Memory> get(Collection<Long> ids, Loader loader) throws PersistenceException {
+        HashMap<Long, Memory> result = new HashMap<>(ids.size());
+        ArrayList<Long> missing = null;
+
+        for (Long id : ids) {
+            Memory memory = cache.getIfPresent(id);
+
+            if (memory == null) {
+                if (missing == null)
+                    missing = new ArrayList<>();
+                missing.add(id);
+            } else {
+                result.put(id, copy(memory));
+            }
+        }
+
+        if (missing != null) {
+            long generation = this.generation.get();
+            Map<Long, Memory> loaded = loader.load(missing);
+
+            for (Map.Entry<Long, Memory> entry : loaded.entrySet()) {
+                Memory memory = entry.getValue();
+                result.put(entry.getKey(), memory);
+                put(copy(memory), generation);
+            }
+        }
+
+        return result;
+    }
+
+    private void put(Memory memory, long generation) {
+        if (this.generation.get() != generation)
+            return;
+
+        cache.put(memory.getId(), memory);
+
+        // an invalidation has been performed during the put: the entry could have been added after it
+        if (this.generation.get() != generation)
+            cache.invalidate(memory.getId());
+    }
+
+    public void invalidate(long memory) {
+        generation.incrementAndGet();
+        cache.invalidate(memory);
+    }
+
+    private static Memory copy(Memory memory) {
+        return new Memory(memory.getId(), memory.getOwner(), memory.getName());
+    }
+
+    // Metrics
+
+    public long size() {
+        return cache.size();
+    }
+
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    // DataListener
+
+    @Override
+    public void onDataReceived(DataBatch batch) {
+        for (Deletion deletion : batch.getDeletions())
+            invalidate(deletion.memory);
+    }
+
+    @Override
+    public Map<Short, Long> getLatestChannelPositions() {
+        return null;
+    }
+
+    @Override
+    public boolean needsProcessing() {
+        return false;
+    }
+
+    @Override
+    public boolean needsAlignment() {
+        return false;
+    }
+
+}
@@ -14,6 +14,9 @@ public class NodeInfo {
     private static final String STATUS_ATTRIBUTE = "NodeInfo.STATUS_ATTRIBUTE";
     private static final String DATA_CHANNELS_ATTRIBUTE = "NodeInfo.DATA_CHANNELS_ATTRIBUTE";
     private static final String TRANSLATION_DIRECTIONS_ATTRIBUTE = "NodeInfo.TRANSLATION_DIRECTIONS_ATTRIBUTE";
+    private static final String WARM_DIRECTIONS_ATTRIBUTE = "NodeInfo.WARM_DIRECTIONS_ATTRIBUTE";
+    private static final String QUEUE_LENGTHS_ATTRIBUTE = "NodeInfo.QUEUE_LENGTHS_ATTRIBUTE";
+    private static final String DECODERS_ATTRIBUTE = "NodeInfo.DECODERS_ATTRIBUTE";
 
     public final String uuid;
     public final ClusterNode.Status status;
@@ -61,6 +64,33 @@ public class NodeInfo {
         return encoded.contains(search);
     }
 
+    static boolean isWarm(Member member, LanguagePair direction) {
+        String encoded = member.getStringAttribute(WARM_DIRECTIONS_ATTRIBUTE);
+        if (encoded == null || encoded.isEmpty())
+            return false;
+
+        String search = '[' + direction.source.toLanguageTag() + ':' + direction.target.toLanguageTag() + ']';
+        return encoded.contains(search);
+    }
+
+    /**
+     * @return the number of queued tasks with a priority equal or higher (lower value) than the given one
+     */
+    static int getQueueLength(Member member, int priority) {
+        String encoded = member.getStringAttribute(QUEUE_LENGTHS_ATTRIBUTE);
+        if (encoded == null || encoded.isEmpty())
+            return 0;
+
+        // lengths are published already cumulated: the i-th one counts the tasks with priority <= i
+        String[] lengths = encoded.split(",");
+        return Integer.parseInt(lengths[Math.min(priority, lengths.length - 1)]);
+    }
+
+    static int getDecoders(Member member) {
+        Integer decoders = member.getIntAttribute(DECODERS_ATTRIBUTE);
+        return decoders == null ? 0 : decoders;
+    }
+
     static void updateStatusInMember(Member member, ClusterNode.Status status) {
         member.setStringAttribute(STATUS_ATTRIBUTE, status.name());
     }
@@ -69,6 +99,28 @@ public class NodeInfo {
         member.setStringAttribute(TRANSLATION_DIRECTIONS_ATTRIBUTE, serialize(directions));
     }
 
+    static void updateWarmTranslationDirections(Member member, Set<LanguagePair> directions) {
+        member.setStringAttribute(WARM_DIRECTIONS_ATTRIBUTE, serialize(directions));
+    }
+
+    /**
+     * @param lengths for every priority, the number of queued tasks with that priority or a higher one
+     */
+    static void updateQueueLengthsInMember(Member member, int[] lengths) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < lengths.length; i++) {
+            if (i > 0)
+                builder.append(',');
+            builder.append(lengths[i]);
+        }
+
+        member.setStringAttribute(QUEUE_LENGTHS_ATTRIBUTE, builder.toString());
+    }
+
+    static void updateDecodersInMember(Member member, int decoders) {
+        member.setIntAttribute(DECODERS_ATTRIBUTE, decoders);
+    }
+
     static void updateChannelsPositionsInMember(Member member, Map<Short, Long> update) {
         HashMap<Short, Long> positions = deserializeChannels(member.getStringAttribute(DATA_CHANNELS_ATTRIBUTE));
         for (Map.Entry<Short, Long> position : update.entrySet()) {
@@ -26,6 +26,7 @@ class ShutdownThread extends Thread {
 
         // Prevent new API requests
         halt(this.node.api);
+        halt(this.node.loadBalancer);
 
         // Close internal services
         halt(this.node.translationService); // wait for all translations to be fulfilled
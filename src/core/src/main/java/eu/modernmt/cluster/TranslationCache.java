@@ -0,0 +1,324 @@
+package eu.modernmt.cluster;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalNotification;
+import eu.modernmt.config.TranslationCacheConfig;
+import eu.modernmt.data.DataBatch;
+import eu.modernmt.data.DataListener;
+import eu.modernmt.data.Deletion;
+import eu.modernmt.data.TranslationUnit;
+import eu.modernmt.decoder.MemoryRefreshListener;
+import eu.modernmt.model.*;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A TranslationCache keeps the latest translations produced for the requests of this node.
+ * <p>
+ * A translation depends on the content of the memories in its context vector, so the cache
+ * is a DataListener: when a batch that adds or deletes contributions of a memory has been processed,
+ * all the cached translations whose context vector contains that memory are removed. Memories outside the context vector
+ * (public or owned by the user) can affect the translation too: their updates are bounded by the TTL.
+ * <p>
+ * If the decoder memory makes new data searchable periodically (near-real-time mode), the cache must be registered
+ * as its MemoryRefreshListener: the translations are invalidated only when the refresh that makes the new data
+ * searchable has completed, otherwise a translation started in the meantime would cache the previous content.
+ * <p>
+ * The cache keeps no state across restarts, so it does not require any position of the data stream.
+ */
+public class TranslationCache implements DataListener, MemoryRefreshListener {
+
+    private static final int ENTRY_OVERHEAD = 64;
+    private static final int TOKEN_OVERHEAD = 48;
+
+    private static class Entry {
+
+        public final Translation translation;
+        public final long[] memories;
+
+        public Entry(Translation translation, long[] memories) {
+            this.translation = translation;
+            this.memories = memories;
+        }
+
+    }
+
+    private final Cache<Object, Entry> cache;
+    private final ConcurrentHashMap<Long, Set<Object>> keysByMemory = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Long> updateGenerations = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong(0L);
+    private final AtomicLong invalidations = new AtomicLong(0L);
+    private final Set<Long> updatedMemories = ConcurrentHashMap.newKeySet();
+
+    // near-real-time mode: memories processed and not yet searchable, memories searchable after the running refresh
+    private volatile boolean deferInvalidation = false;
+    private final Set<Long> unrefreshedMemories = ConcurrentHashMap.newKeySet();
+    private final Set<Long> refreshingMemories = ConcurrentHashMap.newKeySet();
+
+    public TranslationCache(TranslationCacheConfig config) {
+        CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder()
+                .expireAfterWrite(config.getTtl(), TimeUnit.SECONDS)
+                .recordStats();
+
+        if (config.getMemory() > 0) {
+            builder.maximumWeight(config.getMemory() * 1024L * 1024L)
+                    .weigher((Object key, Object entry) -> estimateSize(((Entry) entry).translation));
+        } else {
+            builder.maximumSize(config.getSize());
+        }
+
+        this.cache = builder.removalListener(this::onRemoval).build();
+    }
+
+    /**
+     * @return the cached translation or null if not present
+     */
+    public Translation get(Object key) {
+        Entry entry = cache.getIfPresent(key);
+        return entry == null ? null : entry.translation;
+    }
+
+    /**
+     * @return the current generation, to pass to {@link #put(Object, Translation, ContextVector, long)}
+     * when the translation is ready
+     */
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Adds the translation to the cache, unless some of its memories have been updated since the given generation:
+     * in that case the translation could have been produced from the previous content.
+     *
+     * @param key         the translation key
+     * @param translation the translation
+     * @param context     the context vector used for the translation
+     * @param generation  the value of {@link #getGeneration()} read before starting the translation
+     */
+    public void put(Object key, Translation translation, ContextVector context, long generation) {
+        long[] memories = new long[context == null ? 0 : context.size()];
+        if (context != null) {
+            int i = 0;
+            for (ContextVector.Entry entry : context)
+                memories[i++] = entry.memory.getId();
+        }
+
+        if (isUpdatedSince(memories, generation))
+            return;
+
+        cache.put(key, new Entry(translation, memories));
+        register(key, memories);
+
+        if (isUpdatedSince(memories, generation)) {
+            // the memories have been updated during the put: the entry could have been added after the invalidation
+            cache.invalidate(key);
+        } else if (!cache.asMap().containsKey(key)) {
+            // the entry has already been evicted, its removal could have preceded the registration
+            unregister(key, memories);
+
+            // a concurrent put of the same key could have registered it before the removal
+            if (cache.asMap().containsKey(key))
+                register(key, memories);
+        }
+    }
+
+    private void register(Object key, long[] memories) {
+        for (long memory : memories) {
+            keysByMemory.compute(memory, (k, keys) -> {
+                if (keys == null)
+                    keys = ConcurrentHashMap.newKeySet();
+                keys.add(key);
+                return keys;
+            });
+        }
+    }
+
+    private void unregister(Object key, long[] memories) {
+        for (long memory : memories) {
+            keysByMemory.computeIfPresent(memory, (k, keys) -> {
+                keys.remove(key);
+                return keys.isEmpty() ? null : keys;
+            });
+        }
+    }
+
+    private boolean isUpdatedSince(long[] memories, long generation) {
+        for (long memory : memories) {
+            Long updateGeneration = updateGenerations.get(memory);
+            if (updateGeneration != null && updateGeneration > generation)
+                return true;
+        }
+
+        return false;
+    }
+
+    public void invalidate(long memory) {
+        updateGenerations.put(memory, generation.incrementAndGet());
+
+        Set<Object> keys = keysByMemory.remove(memory);
+        if (keys != null) {
+            invalidations.addAndGet(keys.size());
+            cache.invalidateAll(keys);
+        }
+    }
+
+    private void onRemoval(RemovalNotification<Object, Entry> notification) {
+        // a replaced entry has the same key, thus the same memories
+        Entry entry = notification.getValue();
+        if (entry == null || notification.getCause() == RemovalCause.REPLACED)
+            return;
+
+        unregister(notification.getKey(), entry.memories);
+    }
+
+    private static int estimateSize(Translation translation) {
+        int size = ENTRY_OVERHEAD + estimateSize((Sentence) translation);
+
+        Sentence source = translation.getSource();
+        if (source != null)
+            size += estimateSize(source);
+
+        Alignment alignment = translation.getWordAlignment();
+        if (alignment != null)
+            size += alignment.size() * 8;
+
+        List<Translation> nbest = translation.getNbest();
+        if (nbest != null) {
+            for (Translation hypothesis : nbest)
+                size += estimateSize(hypothesis);
+        }
+
+        return size;
+    }
+
+    private static int estimateSize(Sentence sentence) {
+        int size = 0;
+
+        for (Token token : sentence) {
+            size += TOKEN_OVERHEAD;
+            if (token.getText() != null)
+                size += token.getText().length() * 2;
+            if (token.getPlaceholder() != null && !token.getPlaceholder().equals(token.getText()))
+                size += token.getPlaceholder().length() * 2;
+        }
+
+        return size;
+    }
+
+    // Metrics
+
+    public long size() {
+        return cache.size();
+    }
+
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    public double getHitRate() {
+        return cache.stats().hitRate();
+    }
+
+    /**
+     * @return the number of translations removed because of updates of their memories
+     */
+    public long getInvalidations() {
+        return invalidations.get();
+    }
+
+    /**
+     * @return the number of memories with at least one cached translation
+     */
+    int getIndexedMemories() {
+        return keysByMemory.size();
+    }
+
+    // DataListener
+
+    @Override
+    public void onDataReceived(DataBatch batch) {
+        for (TranslationUnit unit : batch.getTranslationUnits())
+            updatedMemories.add(unit.memory);
+        for (Deletion deletion : batch.getDeletions())
+            updatedMemories.add(deletion.memory);
+    }
+
+    /**
+     * Invalidates the translations of the memories updated by the last batch. It must be called
+     * when the batch has been processed by all the listeners: a translation started while the memories
+     * were updating could read the previous content and it must not be cached.
+     * <p>
+     * In near-real-time mode the invalidation is deferred until the memories are searchable.
+     */
+    public void onDataBatchProcessed() {
+        if (deferInvalidation)
+            moveAll(updatedMemories, unrefreshedMemories);
+        else
+            invalidateAll(updatedMemories);
+    }
+
+    // MemoryRefreshListener
+
+    /**
+     * Defers the invalidations until the end of the memory refresh following the update of the memories:
+     * call it before the cache receives any data if the cache is registered as the MemoryRefreshListener of the decoder.
+     */
+    public void setNearRealTime(boolean nearRealTime) {
+        this.deferInvalidation = nearRealTime;
+    }
+
+    @Override
+    public void beforeMemoryRefresh() {
+        moveAll(unrefreshedMemories, refreshingMemories);
+    }
+
+    @Override
+    public void afterMemoryRefresh() {
+        invalidateAll(refreshingMemories);
+    }
+
+    private static void moveAll(Set<Long> source, Set<Long> destination) {
+        Iterator<Long> iterator = source.iterator();
+        while (iterator.hasNext()) {
+            long memory = iterator.next();
+            iterator.remove();
+
+            destination.add(memory);
+        }
+    }
+
+    private void invalidateAll(Set<Long> memories) {
+        Iterator<Long> iterator = memories.iterator();
+        while (iterator.hasNext()) {
+            long memory = iterator.next();
+            iterator.remove();
+
+            invalidate(memory);
+        }
+    }
+
+    @Override
+    public Map<Short, Long> getLatestChannelPositions() {
+        return null;
+    }
+
+    @Override
+    public boolean needsProcessing() {
+        return false;
+    }
+
+    @Override
+    public boolean needsAlignment() {
+        return false;
+    }
+
+}
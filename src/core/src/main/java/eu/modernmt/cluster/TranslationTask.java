@@ -1,19 +1,33 @@
 package eu.modernmt.cluster;
 
+import com.hazelcast.nio.serialization.DataSerializable;
 import eu.modernmt.cluster.services.Prioritizable;
 import eu.modernmt.lang.LanguagePair;
 import eu.modernmt.model.Translation;
 
-import java.io.Serializable;
 import java.util.concurrent.Callable;
 
 /**
  * A TranslationTask is a Callable for Translations.
  * It must also extends Prioritizable, in order to define which task has higher priority.
- * Tasks can be sent across the MMT cluster, thus requiring TranslationTasks to extend Serializable too.
+ * Tasks can be sent across the MMT cluster, thus requiring TranslationTasks to extend DataSerializable too
+ * (see {@link eu.modernmt.cluster.serialization.ModelSerializers} for the compact encoding of the model objects).
  */
-public interface TranslationTask extends Callable<Translation>, Serializable, Prioritizable {
+public interface TranslationTask extends Callable<Translation>, DataSerializable, Prioritizable {
 
     LanguagePair getLanguage();
 
+    /**
+     * @return a key that is equal for all the tasks producing the same translation, so that identical
+     * concurrent tasks can share a single execution, or null if the result of the task cannot be shared
+     */
+    Object getCoalescingKey();
+
+    /**
+     * @param other a task with the same coalescing key
+     * @return true if the result of this task can be returned for the other task too,
+     * i.e. this task does not run with a lower priority and does not expire before the other one
+     */
+    boolean canServe(TranslationTask other);
+
 }
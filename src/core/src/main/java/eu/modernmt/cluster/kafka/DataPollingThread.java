@@ -22,26 +22,41 @@ import java.util.concurrent.*;
 
 /**
  * Created by davide on 06/09/16.
+ * <p>
+ * Batches go through a pipeline of three stages: this thread polls the records, a pool of loaders preprocesses
+ * and aligns them, and the delivery thread passes them to the listeners. Stages overlap, so polling and
+ * preprocessing of the next batches continue while the listeners store the current one.
+ * Batches are delivered in the same order they have been polled, thus channel positions always increase.
+ * The number of batches in the pipeline is bounded: polling waits when all of them are pending.
  */
 class DataPollingThread extends Thread {
 
+    private static final int MAX_LOADING_BATCHES = 2;
+    private static final int MAX_PENDING_BATCHES = 4;
+    private static final Future<KafkaDataBatch> END_OF_STREAM = CompletableFuture.completedFuture(null);
+
     private final Logger logger = LogManager.getLogger(KafkaDataManager.class);
 
-    private final KafkaDataBatch batch;
+    private final BlockingQueue<KafkaDataBatch> freeBatches = new ArrayBlockingQueue<>(MAX_PENDING_BATCHES);
+    private final BlockingQueue<Future<KafkaDataBatch>> pendingBatches = new LinkedBlockingQueue<>();
+    private final DeliveryThread deliveryThread = new DeliveryThread();
 
-    private DataManagerException exception;
+    private volatile DataManagerException exception;
     private KafkaConsumer<Integer, KafkaPacket> consumer;
-    private boolean interrupted;
+    private volatile boolean interrupted;
     private final ArrayList<DataListener> listeners = new ArrayList<>(10);
     private DataManager.Listener dataManagerListener = null;
     private KafkaDataManager manager;
 
     private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final ExecutorService loadingExecutor = Executors.newFixedThreadPool(MAX_LOADING_BATCHES);
 
     public DataPollingThread(LanguageIndex languages, Preprocessor preprocessor, Aligner aligner, KafkaDataManager manager) {
         super("DataPollingThread");
         this.manager = manager;
-        this.batch = new KafkaDataBatch(languages, preprocessor, aligner, manager);
+
+        for (int i = 0; i < MAX_PENDING_BATCHES; i++)
+            this.freeBatches.add(new KafkaDataBatch(languages, preprocessor, aligner, manager));
     }
 
     public void ensureRunning() throws DataManagerException {
@@ -74,6 +89,7 @@ class DataPollingThread extends Thread {
     public void shutdownNow() {
         this.shutdown();
         this.interrupt();
+        this.deliveryThread.interrupt();
     }
 
     public boolean awaitTermination(TimeUnit unit, long timeout) throws InterruptedException {
@@ -91,7 +107,10 @@ class DataPollingThread extends Thread {
 
             logger.debug("DataListener[" + listener.getClass().getSimpleName() + "]: channel positions = " + latestPositions);
 
-            if (latestPositions == null || latestPositions.isEmpty()) {
+            if (latestPositions == null)
+                continue;
+
+            if (latestPositions.isEmpty()) {
                 result = null;
                 break;
             }
@@ -129,6 +148,8 @@ class DataPollingThread extends Thread {
 
     @Override
     public void run() {
+        deliveryThread.start();
+
         while (!interrupted) {
             try {
                 ConsumerRecords<Integer, KafkaPacket> records = consumer.poll(Long.MAX_VALUE);
@@ -145,38 +166,40 @@ class DataPollingThread extends Thread {
                     align |= listener.needsAlignment();
                 }
 
-                if (logger.isDebugEnabled())
-                    logger.debug("Loading batch of " + records.count() + " records: process=" + process + ", align=" + align);
-                batch.load(records, process, align);
+                KafkaDataBatch batch = freeBatches.take();
+                final boolean _process = process;
+                final boolean _align = align;
 
                 if (logger.isDebugEnabled())
-                    logger.debug("Delivering batch of " + batch.size() + " updates");
-
-                try {
-                    deliverBatch(batch);
-                } catch (Throwable e) {
-                    logger.error("Failed to delivery updates", e);
-                }
-
-                if (dataManagerListener != null)
-                    dataManagerListener.onDataBatchProcessed(batch.getChannelPositions());
+                    logger.debug("Loading batch of " + records.count() + " records: process=" + process + ", align=" + align);
 
-                batch.clear();
-            } catch (WakeupException e) {
+                pendingBatches.put(loadingExecutor.submit(() -> {
+                    batch.load(records, _process, _align);
+                    return batch;
+                }));
+            } catch (WakeupException | InterruptedException e) {
                 // Shutdown request
                 break;
             } catch (RuntimeException e) {
-                exception = new DataManagerException("Unexpected exception while data-stream polling", e);
-                logger.error(exception.getMessage(), e);
-                break;
-            } catch (AlignerException | ProcessingException e) {
-                exception = new DataManagerException("Failed to parse update batch", e);
-                logger.error(exception.getMessage(), e);
+                if (!interrupted) {
+                    exception = new DataManagerException("Unexpected exception while data-stream polling", e);
+                    logger.error(exception.getMessage(), e);
+                }
                 break;
             }
         }
 
+        // Let the delivery thread complete the batches already polled
+        pendingBatches.add(END_OF_STREAM);
+
+        try {
+            deliveryThread.join();
+        } catch (InterruptedException e) {
+            deliveryThread.interrupt();
+        }
+
         IOUtils.closeQuietly(consumer);
+        loadingExecutor.shutdownNow();
         executor.shutdownNow();
     }
 
@@ -209,6 +232,60 @@ class DataPollingThread extends Thread {
             logger.info("DataBatch delivered of size " + batch.size() + ", channels = " + batch.getChannelPositions());
     }
 
+    private class DeliveryThread extends Thread {
+
+        public DeliveryThread() {
+            super("DataDeliveryThread");
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                KafkaDataBatch batch;
+
+                try {
+                    Future<KafkaDataBatch> future = pendingBatches.take();
+                    if (future == END_OF_STREAM)
+                        break;
+
+                    batch = future.get();
+                } catch (InterruptedException e) {
+                    break;
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+
+                    if (cause instanceof AlignerException || cause instanceof ProcessingException)
+                        exception = new DataManagerException("Failed to parse update batch", cause);
+                    else
+                        exception = new DataManagerException("Unexpected exception while data-stream polling", cause);
+
+                    logger.error(exception.getMessage(), cause);
+
+                    // Stop polling, next batches cannot be delivered
+                    DataPollingThread.this.shutdown();
+                    DataPollingThread.this.interrupt();
+                    break;
+                }
+
+                if (logger.isDebugEnabled())
+                    logger.debug("Delivering batch of " + batch.size() + " updates");
+
+                try {
+                    deliverBatch(batch);
+                } catch (Throwable e) {
+                    logger.error("Failed to delivery updates", e);
+                }
+
+                if (dataManagerListener != null)
+                    dataManagerListener.onDataBatchProcessed(batch.getChannelPositions());
+
+                batch.clear();
+                freeBatches.add(batch);
+            }
+        }
+
+    }
+
     private static final class DeliveryTask implements Callable<Void> {
 
         private final KafkaDataBatch batch;
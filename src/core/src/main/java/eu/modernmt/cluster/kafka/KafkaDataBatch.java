@@ -146,8 +146,6 @@ class KafkaDataBatch implements DataBatch {
 
         public void add(KafkaPacket packet) {
             packets.add(packet);
-            sources.add(packet.getSentence());
-            targets.add(packet.getTranslation());
         }
 
         public void process(boolean process, boolean align, Collection<TranslationUnit> output) throws ProcessingException, AlignerException {
@@ -155,6 +153,12 @@ class KafkaDataBatch implements DataBatch {
                 return;
 
             if (process || align) {
+                // strings are decoded only if they must be processed
+                for (KafkaPacket packet : packets) {
+                    sources.add(packet.getSentence());
+                    targets.add(packet.getTranslation());
+                }
+
                 List<Sentence> sourceSentences = preprocessor.process(direction, sources);
                 List<Sentence> targetSentences = preprocessor.process(direction.reversed(), targets);
                 Alignment[] alignments = null;
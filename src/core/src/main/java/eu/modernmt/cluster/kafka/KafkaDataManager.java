@@ -12,6 +12,7 @@ import eu.modernmt.model.corpus.MultilingualCorpus;
 import eu.modernmt.processing.Preprocessor;
 import org.apache.commons.io.IOUtils;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.producer.Callback;
 import org.apache.kafka.clients.producer.KafkaProducer;
 import org.apache.kafka.clients.producer.ProducerRecord;
 import org.apache.kafka.clients.producer.RecordMetadata;
@@ -27,7 +28,10 @@ import java.io.InputStream;
 import java.util.*;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Created by davide on 06/09/16.
@@ -46,6 +50,10 @@ public class KafkaDataManager implements DataManager {
     private final String host;  //the host of the kafka server
     private final int port;     //the port of the kafka server
     private final String name;  //the base name of the kafka topics
+    private final int uploadBatchSize;
+    private final int uploadLinger;
+    private final String compression;
+    private final int uploadMaxInFlight;
 
     private final String uuid;
     private final DataPollingThread pollingThread;
@@ -74,6 +82,10 @@ public class KafkaDataManager implements DataManager {
         this.host = config.getHost();
         this.port = config.getPort();
         this.name = config.getName();
+        this.uploadBatchSize = config.getUploadBatchSize();
+        this.uploadLinger = config.getUploadLinger();
+        this.compression = config.getCompression();
+        this.uploadMaxInFlight = config.getUploadMaxInFlight();
 
         this.pollingThread = new DataPollingThread(languages, preprocessor, aligner, this);
 
@@ -220,6 +232,9 @@ public class KafkaDataManager implements DataManager {
         // Create Kafka producer
         if (enableProducer) {
             Properties producerProperties = loadProperties("kafka-producer.properties", host, port);
+            producerProperties.put("batch.size", Integer.toString(uploadBatchSize));
+            producerProperties.put("linger.ms", Integer.toString(uploadLinger));
+            producerProperties.put("compression.type", compression);
             this.producer = new KafkaProducer<>(producerProperties);    //write in the given partitions
         }
 
@@ -273,33 +288,20 @@ public class KafkaDataManager implements DataManager {
         if (logger.isDebugEnabled())
             logger.debug("Uploading memory " + memory);
 
-        MultilingualCorpus.MultilingualLineReader reader = null;
+        pollingThread.ensureRunning();
 
-        long importBegin, importEnd;
-        int size = 0;
+        MultilingualCorpus.MultilingualLineReader reader = null;
+        UploadTracker tracker = new UploadTracker(memory, uploadMaxInFlight);
 
         try {
             reader = corpus.getContentReader();
 
-            MultilingualCorpus.StringPair pair = reader.read();
-            if (pair == null)
-                return null;
-
-            importEnd = importBegin = sendElement(KafkaPacket.createAddition(pair.language, memory.getOwner(), memory.getId(), pair.source, pair.target, pair.timestamp), true, channel);
-            size++;
+            MultilingualCorpus.StringPair pair;
+            while ((pair = reader.read()) != null) {
+                KafkaPacket packet = KafkaPacket.createAddition(pair.language, memory.getOwner(), memory.getId(), pair.source, pair.target, pair.timestamp);
 
-            pair = reader.read();
-
-            while (pair != null) {
-                MultilingualCorpus.StringPair current = pair;
-                pair = reader.read();
-
-                if (pair == null)
-                    importEnd = sendElement(KafkaPacket.createAddition(current.language, memory.getOwner(), memory.getId(), current.source, current.target, current.timestamp), true, channel);
-                else
-                    sendElement(KafkaPacket.createAddition(current.language, memory.getOwner(), memory.getId(), current.source, current.target, current.timestamp), false, channel);
-
-                size++;
+                tracker.acquire();
+                producer.send(new ProducerRecord<>(channel.getName(), 0, packet), tracker);
             }
         } catch (IOException e) {
             throw new DataManagerException("Failed to read corpus for memory " + memory, e);
@@ -307,6 +309,16 @@ public class KafkaDataManager implements DataManager {
             IOUtils.closeQuietly(reader);
         }
 
+        producer.flush();
+        tracker.await();
+
+        int size = tracker.getSize();
+        if (size == 0)
+            return null;
+
+        long importBegin = tracker.getBegin();
+        long importEnd = tracker.getEnd();
+
         if (logger.isDebugEnabled())
             logger.debug("Memory " + memory + " uploaded [" + importBegin + ", " + importEnd + "]: " + size + " pairs");
 
@@ -380,6 +392,99 @@ public class KafkaDataManager implements DataManager {
         return offset;
     }
 
+    /**
+     * An UploadTracker follows the acknowledgements of the records of a memory import:
+     * it limits the number of records sent and not yet acknowledged by the server,
+     * keeps the range of offsets written and stores the first error received.
+     */
+    private static class UploadTracker implements Callback {
+
+        private static final int PROGRESS_LOG_INTERVAL = 100000;
+
+        private final Memory memory;
+        private final int maxInFlight;
+        private final Semaphore inFlight;
+
+        private final AtomicInteger size = new AtomicInteger(0);
+        private final AtomicInteger acknowledged = new AtomicInteger(0);
+        private final AtomicLong begin = new AtomicLong(Long.MAX_VALUE);
+        private final AtomicLong end = new AtomicLong(-1L);
+        private volatile Exception error = null;
+
+        public UploadTracker(Memory memory, int maxInFlight) {
+            this.memory = memory;
+            this.maxInFlight = maxInFlight;
+            this.inFlight = new Semaphore(maxInFlight);
+        }
+
+        public void acquire() throws DataManagerException {
+            checkError();
+
+            try {
+                inFlight.acquire();
+            } catch (InterruptedException e) {
+                throw new DataManagerException("Interrupted upload for memory " + memory, e);
+            }
+
+            size.incrementAndGet();
+        }
+
+        public void await() throws DataManagerException {
+            try {
+                inFlight.acquire(maxInFlight);
+                inFlight.release(maxInFlight);
+            } catch (InterruptedException e) {
+                throw new DataManagerException("Interrupted upload for memory " + memory, e);
+            }
+
+            checkError();
+        }
+
+        private void checkError() throws DataManagerException {
+            Exception error = this.error;
+
+            if (error != null) {
+                if (error instanceof RuntimeException)
+                    throw (RuntimeException) error;
+                else
+                    throw new DataManagerException("Unexpected exception while uploading", error);
+            }
+        }
+
+        @Override
+        public void onCompletion(RecordMetadata metadata, Exception exception) {
+            try {
+                if (exception != null) {
+                    if (this.error == null)
+                        this.error = exception;
+                } else {
+                    long offset = metadata.offset();
+                    begin.accumulateAndGet(offset, Math::min);
+                    end.accumulateAndGet(offset, Math::max);
+
+                    int count = acknowledged.incrementAndGet();
+                    if (count % PROGRESS_LOG_INTERVAL == 0 && logger.isDebugEnabled())
+                        logger.debug("Memory " + memory + " upload: " + count + " pairs acknowledged");
+                }
+            } finally {
+                inFlight.release();
+            }
+        }
+
+        public int getSize() {
+            return size.get();
+        }
+
+        public long getBegin() {
+            return begin.get();
+        }
+
+        public long getEnd() {
+            return end.get();
+        }
+
+    }
+
     @Override
     public KafkaChannel getDataChannel(short id) {
         return this.channels[id];
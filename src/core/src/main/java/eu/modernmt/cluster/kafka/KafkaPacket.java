@@ -3,18 +3,20 @@ package eu.modernmt.cluster.kafka;
 import eu.modernmt.data.Deletion;
 import eu.modernmt.data.TranslationUnit;
 import eu.modernmt.io.UTF8Charset;
-import eu.modernmt.lang.Language;
 import eu.modernmt.lang.LanguagePair;
 import eu.modernmt.model.Alignment;
 import eu.modernmt.model.Sentence;
 
 import java.nio.ByteBuffer;
-import java.nio.charset.Charset;
 import java.util.Date;
 import java.util.UUID;
 
 /**
  * Created by davide on 06/09/16.
+ * <p>
+ * A packet parsed from a Kafka channel keeps the bytes it has been read from:
+ * strings and language direction are decoded only when they are first requested,
+ * and the UTF-8 bytes of sentence and translation can be accessed without decoding them.
  */
 public class KafkaPacket {
 
@@ -22,19 +24,31 @@ public class KafkaPacket {
     public static final byte TYPE_ADDITION = 0x01;
     public static final byte TYPE_OVERWRITE = 0x02;
 
+    private static final LanguagePairCache languages = new LanguagePairCache();
+
     private short channel = -1;
     private long position = -1;
 
     private final byte type;
     private final UUID owner;
     private final long memory;
-    private final LanguagePair direction;
-    private final String sentence;
-    private final String translation;
-    private final String previousSentence;
-    private final String previousTranslation;
     private final Date timestamp;
 
+    private LanguagePair direction;
+    private String sentence;
+    private String translation;
+    private String previousSentence;
+    private String previousTranslation;
+
+    // Serialized packet: offsets of the length of each field, -1 if absent
+    private final byte[] data;
+    private int directionOffset = -1;
+    private int directionLength = 0;
+    private int sentenceOffset = -1;
+    private int translationOffset = -1;
+    private int previousSentenceOffset = -1;
+    private int previousTranslationOffset = -1;
+
     public static KafkaPacket createDeletion(long memory) {
         return new KafkaPacket(TYPE_DELETION, null, memory, null, null, null, null, null, null);
     }
@@ -48,70 +62,69 @@ public class KafkaPacket {
     }
 
     /**
-     * Parse a KafkaPacket from the bytes read from a Kafka Channel
+     * Parse a KafkaPacket from the bytes read from a Kafka Channel.
+     * The array is retained by the packet and it must not be modified.
      *
      * @param data the bytes read from the Kafka Channel
      * @return the parsed data as a KafkaPacket
      */
     public static KafkaPacket fromBytes(byte[] data) {
+        return new KafkaPacket(data);
+    }
+
+    public KafkaPacket(byte type, UUID owner, long memory, LanguagePair direction,
+                       String sentence, String translation, String previousSentence, String previousTranslation, Date timestamp) {
+        this.type = type;
+        this.owner = owner;
+        this.memory = memory;
+        this.direction = direction;
+        this.sentence = sentence;
+        this.translation = translation;
+        this.previousSentence = previousSentence;
+        this.previousTranslation = previousTranslation;
+        this.timestamp = timestamp;
+        this.data = null;
+    }
+
+    private KafkaPacket(byte[] data) {
         ByteBuffer buffer = ByteBuffer.wrap(data);
-        byte type = buffer.get();
-        long memory = buffer.getLong();
 
-        UUID owner = null;
-        LanguagePair direction = null;
-        String sentence = null;
-        String translation = null;
-        String previousSentence = null;
-        String previousTranslation = null;
-        Date timestamp = null;
+        this.data = data;
+        this.type = buffer.get();
+        this.memory = buffer.getLong();
 
         switch (type) {
             case TYPE_DELETION:
+                this.owner = null;
+                this.timestamp = null;
                 break;
             case TYPE_ADDITION:
             case TYPE_OVERWRITE:
                 long ownerMsb = buffer.getLong();
                 long ownerLsb = buffer.getLong();
 
-                owner = (ownerMsb + ownerLsb) == 0 ? null : new UUID(ownerMsb, ownerLsb);
+                this.owner = (ownerMsb + ownerLsb) == 0 ? null : new UUID(ownerMsb, ownerLsb);
 
-                Charset charset = UTF8Charset.get();
+                this.directionOffset = buffer.position();
+                skipString(buffer);
+                skipString(buffer);
+                this.directionLength = buffer.position() - directionOffset;
 
-                Language source = Language.fromString(deserializeString(buffer, charset));
-                Language target = Language.fromString(deserializeString(buffer, charset));
-                direction = new LanguagePair(source, target);
-
-                sentence = deserializeString(buffer, charset);
-                translation = deserializeString(buffer, charset);
+                this.sentenceOffset = skipString(buffer);
+                this.translationOffset = skipString(buffer);
 
                 long millis = buffer.getLong();
-                timestamp = millis == 0L ? null : new Date(millis);
+                this.timestamp = millis == 0L ? null : new Date(millis);
 
                 if (type == TYPE_OVERWRITE) {
-                    previousSentence = deserializeString(buffer, charset);
-                    previousTranslation = deserializeString(buffer, charset);
+                    this.previousSentenceOffset = skipString(buffer);
+                    this.previousTranslationOffset = skipString(buffer);
                 }
 
                 break;
             default:
                 throw new IllegalArgumentException("Invalid packet received, unknown type: " + (int) type);
         }
-
-        return new KafkaPacket(type, owner, memory, direction, sentence, translation, previousSentence, previousTranslation, timestamp);
-    }
-
-    public KafkaPacket(byte type, UUID owner, long memory, LanguagePair direction,
-                       String sentence, String translation, String previousSentence, String previousTranslation, Date timestamp) {
-        this.type = type;
-        this.owner = owner;
-        this.memory = memory;
-        this.direction = direction;
-        this.sentence = sentence;
-        this.translation = translation;
-        this.previousSentence = previousSentence;
-        this.previousTranslation = previousTranslation;
-        this.timestamp = timestamp;
     }
 
     public void setChannelInfo(short channel, long position) {
@@ -127,18 +140,62 @@ public class KafkaPacket {
         return memory;
     }
 
+    public UUID getOwner() {
+        return owner;
+    }
+
+    public Date getTimestamp() {
+        return timestamp;
+    }
+
     public LanguagePair getDirection() {
+        if (direction == null && directionOffset >= 0)
+            direction = languages.get(data, directionOffset, directionLength);
         return direction;
     }
 
     public String getSentence() {
+        if (sentence == null && sentenceOffset >= 0)
+            sentence = decodeString(sentenceOffset);
         return sentence;
     }
 
     public String getTranslation() {
+        if (translation == null && translationOffset >= 0)
+            translation = decodeString(translationOffset);
         return translation;
     }
 
+    public String getPreviousSentence() {
+        if (previousSentence == null && previousSentenceOffset >= 0)
+            previousSentence = decodeString(previousSentenceOffset);
+        return previousSentence;
+    }
+
+    public String getPreviousTranslation() {
+        if (previousTranslation == null && previousTranslationOffset >= 0)
+            previousTranslation = decodeString(previousTranslationOffset);
+        return previousTranslation;
+    }
+
+    /**
+     * @return a view of the UTF-8 bytes of the sentence, backed by the array the packet has been
+     * parsed from (thus it must not be modified), or null if this packet has not been parsed from bytes
+     * or it has no sentence
+     */
+    public ByteBuffer getSentenceBytes() {
+        return sentenceOffset < 0 ? null : sliceString(sentenceOffset);
+    }
+
+    /**
+     * @return a view of the UTF-8 bytes of the translation, backed by the array the packet has been
+     * parsed from (thus it must not be modified), or null if this packet has not been parsed from bytes
+     * or it has no translation
+     */
+    public ByteBuffer getTranslationBytes() {
+        return translationOffset < 0 ? null : sliceString(translationOffset);
+    }
+
     public Deletion asDeletion() {
         if (channel < 0 || position < 0)
             throw new IllegalStateException("Call setChannelInfo() before parsing methods.");
@@ -154,9 +211,7 @@ public class KafkaPacket {
         if (channel < 0 || position < 0)
             throw new IllegalStateException("Call setChannelInfo() before parsing methods.");
 
-        return new TranslationUnit(channel, position, owner, direction, memory,
-                sentence, translation, previousSentence, previousTranslation, timestamp,
-                sSentence, sTranslation, alignment);
+        return new PacketTranslationUnit(this, direction, sSentence, sTranslation, alignment);
     }
 
     /**
@@ -166,91 +221,78 @@ public class KafkaPacket {
      * @return the array of bytes obtained from the original KafkaPacket
      */
     public byte[] toBytes() {
-        int size = 1 + 8;   //type (enum: 1 byte) + memory (long: 8 bytes)
+        return new KafkaPacketEncoder(256).encode(this);
+    }
 
-        byte[] directionSource = null;
-        byte[] directionTarget = null;
-        byte[] sentence = null;
-        byte[] translation = null;
-        long timestamp = this.timestamp == null ? 0L : this.timestamp.getTime();
+    @Override
+    public String toString() {
+        return "<" + memory + "::" + getDirection() + ":\"" + getSentence() + "\",\"" + getTranslation() + "\">";
+    }
 
-        byte[] previousSentence = null;
-        byte[] previousTranslation = null;
+    private static int skipString(ByteBuffer buffer) {
+        int offset = buffer.position();
+        int length = buffer.getInt();
+        buffer.position(buffer.position() + length);
 
-        switch (type) {
-            case TYPE_DELETION:
-                break;
-            case TYPE_ADDITION:
-            case TYPE_OVERWRITE:
-                size += 16; // owner (UUID: 16 bytes)
+        return offset;
+    }
 
-                Charset charset = UTF8Charset.get();
+    private int stringLength(int offset) {
+        return ((data[offset] & 0xFF) << 24) | ((data[offset + 1] & 0xFF) << 16) |
+                ((data[offset + 2] & 0xFF) << 8) | (data[offset + 3] & 0xFF);
+    }
 
-                directionSource = this.direction.source.toLanguageTag().getBytes(charset);
-                directionTarget = this.direction.target.toLanguageTag().getBytes(charset);
-                sentence = this.sentence.getBytes(charset);
-                translation = this.translation.getBytes(charset);
+    private String decodeString(int offset) {
+        return new String(data, offset + 4, stringLength(offset), UTF8Charset.get());
+    }
 
-                size += 4 + directionSource.length +
-                        4 + directionTarget.length +
-                        4 + sentence.length +
-                        4 + translation.length +
-                        8;  // + timestamp (long: 8 bytes)
+    private ByteBuffer sliceString(int offset) {
+        // not read-only, so that writers can access the backing array
+        return ByteBuffer.wrap(data, offset + 4, stringLength(offset)).slice();
+    }
 
-                if (type == TYPE_OVERWRITE) {
-                    previousSentence = this.previousSentence.getBytes(charset);
-                    previousTranslation = this.previousTranslation.getBytes(charset);
+    private static class PacketTranslationUnit extends TranslationUnit {
 
-                    size += 4 + previousSentence.length + 4 + previousTranslation.length;
-                }
+        private final KafkaPacket packet;
 
-                break;
-            default:
-                throw new IllegalArgumentException("Invalid packet received, unknown type: " + (int) type);
+        PacketTranslationUnit(KafkaPacket packet, LanguagePair direction, Sentence sentence, Sentence translation, Alignment alignment) {
+            super(packet.channel, packet.position, packet.owner, direction, packet.memory,
+                    null, null, null, null, packet.timestamp, sentence, translation, alignment);
+            this.packet = packet;
         }
 
-        ByteBuffer buffer = ByteBuffer.allocate(size);
-
-        buffer.put(type);
-        buffer.putLong(memory);
-
-        if (type != TYPE_DELETION) {
-            buffer.putLong(owner == null ? 0L : owner.getMostSignificantBits());
-            buffer.putLong(owner == null ? 0L : owner.getLeastSignificantBits());
+        @Override
+        public String getRawSentence() {
+            return packet.getSentence();
         }
 
-        serializeString(buffer, directionSource);
-        serializeString(buffer, directionTarget);
-        serializeString(buffer, sentence);
-        serializeString(buffer, translation);
-
-        if (type != TYPE_DELETION)
-            buffer.putLong(timestamp);
-
-        serializeString(buffer, previousSentence);
-        serializeString(buffer, previousTranslation);
-
-        return buffer.array();
-    }
+        @Override
+        public String getRawTranslation() {
+            return packet.getTranslation();
+        }
 
-    @Override
-    public String toString() {
-        return "<" + memory + "::" + direction + ":\"" + sentence + "\",\"" + translation + "\">";
-    }
+        @Override
+        public String getRawPreviousSentence() {
+            return packet.getPreviousSentence();
+        }
 
-    private static String deserializeString(ByteBuffer buffer, Charset charset) {
-        int length = buffer.getInt();
-        String string = new String(buffer.array(), buffer.position(), length, charset);
-        buffer.position(buffer.position() + length);
+        @Override
+        public String getRawPreviousTranslation() {
+            return packet.getPreviousTranslation();
+        }
 
-        return string;
-    }
+        @Override
+        public ByteBuffer getRawSentenceBytes() {
+            ByteBuffer bytes = packet.getSentenceBytes();
+            return bytes == null ? super.getRawSentenceBytes() : bytes;
+        }
 
-    private static void serializeString(ByteBuffer buffer, byte[] string) {
-        if (string != null) {
-            buffer.putInt(string.length);
-            buffer.put(string);
+        @Override
+        public ByteBuffer getRawTranslationBytes() {
+            ByteBuffer bytes = packet.getTranslationBytes();
+            return bytes == null ? super.getRawTranslationBytes() : bytes;
         }
+
     }
 
 }
@@ -0,0 +1,105 @@
+package eu.modernmt.cluster.kafka;
+
+import eu.modernmt.io.UTF8Charset;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+
+/**
+ * A KafkaPacketEncoder serializes packets into a single buffer that is reused across calls,
+ * encoding strings directly into it instead of allocating an intermediate array for every field.
+ * The buffer grows on demand. Instances are not thread-safe.
+ */
+class KafkaPacketEncoder {
+
+    private static final int DEFAULT_CAPACITY = 4 * 1024;
+
+    private final CharsetEncoder encoder = UTF8Charset.get().newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private ByteBuffer buffer;
+
+    public KafkaPacketEncoder() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public KafkaPacketEncoder(int capacity) {
+        this.buffer = ByteBuffer.allocate(capacity);
+    }
+
+    public byte[] encode(KafkaPacket packet) {
+        while (true) {
+            buffer.clear();
+
+            if (write(packet))
+                return Arrays.copyOf(buffer.array(), buffer.position());
+
+            buffer = ByteBuffer.allocate(buffer.capacity() * 2);
+        }
+    }
+
+    private boolean write(KafkaPacket packet) {
+        byte type = packet.getType();
+
+        if (buffer.remaining() < 1 + 8)
+            return false;
+
+        buffer.put(type);
+        buffer.putLong(packet.getMemory());
+
+        switch (type) {
+            case KafkaPacket.TYPE_DELETION:
+                return true;
+            case KafkaPacket.TYPE_ADDITION:
+            case KafkaPacket.TYPE_OVERWRITE:
+                if (buffer.remaining() < 16)
+                    return false;
+
+                buffer.putLong(packet.getOwner() == null ? 0L : packet.getOwner().getMostSignificantBits());
+                buffer.putLong(packet.getOwner() == null ? 0L : packet.getOwner().getLeastSignificantBits());
+
+                if (!write(packet.getDirection().source.toLanguageTag()) ||
+                        !write(packet.getDirection().target.toLanguageTag()) ||
+                        !write(packet.getSentence()) ||
+                        !write(packet.getTranslation()))
+                    return false;
+
+                if (buffer.remaining() < 8)
+                    return false;
+
+                buffer.putLong(packet.getTimestamp() == null ? 0L : packet.getTimestamp().getTime());
+
+                if (type == KafkaPacket.TYPE_OVERWRITE)
+                    return write(packet.getPreviousSentence()) && write(packet.getPreviousTranslation());
+
+                return true;
+            default:
+                throw new IllegalArgumentException("Invalid packet received, unknown type: " + (int) type);
+        }
+    }
+
+    private boolean write(String string) {
+        if (buffer.remaining() < 4)
+            return false;
+
+        int start = buffer.position();
+        buffer.position(start + 4);
+
+        encoder.reset();
+        CharBuffer chars = CharBuffer.wrap(string);
+
+        CoderResult result = encoder.encode(chars, buffer, true);
+        if (!result.isOverflow())
+            result = encoder.flush(buffer);
+        if (result.isOverflow())
+            return false;
+
+        buffer.putInt(start, buffer.position() - start - 4);
+        return true;
+    }
+
+}
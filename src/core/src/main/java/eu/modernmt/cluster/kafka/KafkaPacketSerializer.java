@@ -9,6 +9,8 @@ import java.util.Map;
  */
 public class KafkaPacketSerializer implements Serializer<KafkaPacket> {
 
+    private final ThreadLocal<KafkaPacketEncoder> encoder = ThreadLocal.withInitial(KafkaPacketEncoder::new);
+
     @Override
     public void configure(Map<String, ?> configs, boolean isKey) {
         // No options
@@ -19,7 +21,7 @@ public class KafkaPacketSerializer implements Serializer<KafkaPacket> {
         if (data == null)
             return null;
 
-        return data.toBytes();
+        return encoder.get().encode(data);
     }
 
     @Override
@@ -0,0 +1,59 @@
+package eu.modernmt.cluster.kafka;
+
+import eu.modernmt.io.UTF8Charset;
+import eu.modernmt.lang.Language;
+import eu.modernmt.lang.LanguagePair;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A LanguagePairCache maps the serialized language tags of a packet to a shared LanguagePair instance,
+ * so that the tags are decoded and parsed only the first time a direction is seen.
+ */
+class LanguagePairCache {
+
+    private static final int MAX_SIZE = 1000;
+
+    private final ConcurrentHashMap<ByteBuffer, LanguagePair> cache = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the language pair serialized in the given region of the array:
+     * source and target tags, each one as a 4 bytes length followed by its UTF-8 bytes.
+     *
+     * @param data   the serialized packet
+     * @param offset the offset of the source tag length
+     * @param length the number of bytes of the two tags
+     * @return the language pair
+     */
+    public LanguagePair get(byte[] data, int offset, int length) {
+        ByteBuffer probe = ByteBuffer.wrap(data, offset, length);
+        LanguagePair language = cache.get(probe);
+
+        if (language == null) {
+            language = parse(probe.duplicate());
+
+            if (cache.size() < MAX_SIZE)
+                cache.put(ByteBuffer.wrap(Arrays.copyOfRange(data, offset, offset + length)), language);
+        }
+
+        return language;
+    }
+
+    private static LanguagePair parse(ByteBuffer buffer) {
+        Language source = Language.fromString(parseString(buffer));
+        Language target = Language.fromString(parseString(buffer));
+
+        return new LanguagePair(source, target);
+    }
+
+    private static String parseString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        String string = new String(buffer.array(), buffer.position(), length, UTF8Charset.get());
+        buffer.position(buffer.position() + length);
+
+        return string;
+    }
+
+}
@@ -0,0 +1,418 @@
+package eu.modernmt.cluster.serialization;
+
+import com.hazelcast.config.SerializationConfig;
+import com.hazelcast.config.SerializerConfig;
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.StreamSerializer;
+import eu.modernmt.lang.Language;
+import eu.modernmt.lang.LanguagePair;
+import eu.modernmt.model.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Compact Hazelcast serialization of the model objects exchanged by cluster members during translation.
+ * <p>
+ * Objects are written field by field as primitives and packed arrays, instead of the default
+ * Java serialization that writes class descriptors and one object per token.
+ * The static methods can be used directly by DataSerializable objects (i.e. TranslationTask),
+ * while {@link #register(SerializationConfig)} makes Hazelcast use them when objects are sent as
+ * operation responses (i.e. the resulting Translation).
+ */
+public class ModelSerializers {
+
+    public static final int CONTEXT_VECTOR_TYPE_ID = 1001;
+    public static final int ALIGNMENT_TYPE_ID = 1002;
+    public static final int SENTENCE_TYPE_ID = 1003;
+    public static final int TRANSLATION_TYPE_ID = 1004;
+
+    private static final byte NO_SOURCE = 0;
+    private static final byte SAME_SOURCE = 1;
+    private static final byte NEW_SOURCE = 2;
+
+    public static void register(SerializationConfig config) {
+        config.addSerializerConfig(new SerializerConfig()
+                .setTypeClass(ContextVector.class).setImplementation(new ContextVectorSerializer()));
+        config.addSerializerConfig(new SerializerConfig()
+                .setTypeClass(Alignment.class).setImplementation(new AlignmentSerializer()));
+        config.addSerializerConfig(new SerializerConfig()
+                .setTypeClass(Sentence.class).setImplementation(new SentenceSerializer()));
+        config.addSerializerConfig(new SerializerConfig()
+                .setTypeClass(Translation.class).setImplementation(new TranslationSerializer()));
+    }
+
+    // Commons
+
+    public static void writeUUID(ObjectDataOutput out, UUID uuid) throws IOException {
+        out.writeBoolean(uuid != null);
+
+        if (uuid != null) {
+            out.writeLong(uuid.getMostSignificantBits());
+            out.writeLong(uuid.getLeastSignificantBits());
+        }
+    }
+
+    public static UUID readUUID(ObjectDataInput in) throws IOException {
+        return in.readBoolean() ? new UUID(in.readLong(), in.readLong()) : null;
+    }
+
+    public static void writeLanguagePair(ObjectDataOutput out, LanguagePair direction) throws IOException {
+        out.writeUTF(direction.source.toLanguageTag());
+        out.writeUTF(direction.target.toLanguageTag());
+    }
+
+    public static LanguagePair readLanguagePair(ObjectDataInput in) throws IOException {
+        Language source = Language.fromString(in.readUTF());
+        Language target = Language.fromString(in.readUTF());
+        return new LanguagePair(source, target);
+    }
+
+    // ContextVector
+
+    /**
+     * Memory ids and scores are written as two packed arrays, the optional memory metadata follow
+     */
+    public static void writeContextVector(ObjectDataOutput out, ContextVector vector) throws IOException {
+        if (vector == null) {
+            out.writeInt(-1);
+            return;
+        }
+
+        int size = vector.size();
+        long[] ids = new long[size];
+        float[] scores = new float[size];
+        boolean metadata = false;
+
+        int i = 0;
+        for (ContextVector.Entry entry : vector) {
+            ids[i] = entry.memory.getId();
+            scores[i] = entry.score;
+            metadata |= entry.memory.getOwner() != null || entry.memory.getName() != null;
+            i++;
+        }
+
+        out.writeInt(size);
+        out.writeLongArray(ids);
+        out.writeFloatArray(scores);
+        out.writeBoolean(metadata);
+
+        if (metadata) {
+            for (ContextVector.Entry entry : vector) {
+                writeUUID(out, entry.memory.getOwner());
+                out.writeUTF(entry.memory.getName());
+            }
+        }
+    }
+
+    public static ContextVector readContextVector(ObjectDataInput in) throws IOException {
+        int size = in.readInt();
+        if (size < 0)
+            return null;
+
+        long[] ids = in.readLongArray();
+        float[] scores = in.readFloatArray();
+        boolean metadata = in.readBoolean();
+
+        ContextVector.Builder builder = new ContextVector.Builder(size);
+        for (int i = 0; i < size; i++) {
+            Memory memory = metadata ? new Memory(ids[i], readUUID(in), in.readUTF()) : new Memory(ids[i]);
+            builder.add(memory, scores[i]);
+        }
+
+        return builder.build();
+    }
+
+    // Alignment
+
+    public static void writeAlignment(ObjectDataOutput out, Alignment alignment) throws IOException {
+        out.writeBoolean(alignment != null);
+
+        if (alignment != null) {
+            out.writeIntArray(alignment.getSourceIndexes());
+            out.writeIntArray(alignment.getTargetIndexes());
+            out.writeFloat(alignment.getScore());
+        }
+    }
+
+    public static Alignment readAlignment(ObjectDataInput in) throws IOException {
+        if (!in.readBoolean())
+            return null;
+
+        int[] sourceIndexes = in.readIntArray();
+        int[] targetIndexes = in.readIntArray();
+        float score = in.readFloat();
+
+        return new Alignment(sourceIndexes, targetIndexes, score);
+    }
+
+    // Sentence
+
+    public static void writeSentence(ObjectDataOutput out, Sentence sentence) throws IOException {
+        Word[] words = sentence.getWords();
+        out.writeInt(words.length);
+        for (Word word : words) {
+            out.writeUTF(word.getText());
+            out.writeUTF(word.getPlaceholder());
+            out.writeUTF(word.getRightSpace());
+            out.writeBoolean(word.isRightSpaceRequired());
+        }
+
+        Tag[] tags = sentence.getTags();
+        out.writeInt(tags.length);
+        for (Tag tag : tags) {
+            out.writeUTF(tag.getText());
+            out.writeUTF(tag.getPlaceholder());
+            out.writeUTF(tag.getRightSpace());
+            out.writeBoolean(tag.hasLeftSpace());
+            out.writeInt(tag.getPosition());
+        }
+
+        Set<String> annotations = sentence.getAnnotations();
+        if (annotations == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(annotations.size());
+            for (String annotation : annotations)
+                out.writeUTF(annotation);
+        }
+    }
+
+    public static Sentence readSentence(ObjectDataInput in) throws IOException {
+        Word[] words = readWords(in);
+        Tag[] tags = readTags(in);
+        Set<String> annotations = readAnnotations(in);
+
+        Sentence sentence = new Sentence(words, tags);
+        if (annotations != null)
+            sentence.addAnnotations(annotations);
+
+        return sentence;
+    }
+
+    private static Word[] readWords(ObjectDataInput in) throws IOException {
+        Word[] words = new Word[in.readInt()];
+        for (int i = 0; i < words.length; i++) {
+            String text = in.readUTF();
+            String placeholder = in.readUTF();
+            String rightSpace = in.readUTF();
+            boolean rightSpaceRequired = in.readBoolean();
+
+            words[i] = new Word(text, placeholder, rightSpace, rightSpaceRequired);
+        }
+
+        return words;
+    }
+
+    private static Tag[] readTags(ObjectDataInput in) throws IOException {
+        Tag[] tags = new Tag[in.readInt()];
+        for (int i = 0; i < tags.length; i++) {
+            String text = in.readUTF();
+            String placeholder = in.readUTF();
+            String rightSpace = in.readUTF();
+            boolean leftSpace = in.readBoolean();
+            int position = in.readInt();
+
+            tags[i] = Tag.fromText(text, leftSpace, rightSpace, position);
+            tags[i].setPlaceholder(placeholder);
+        }
+
+        return tags;
+    }
+
+    private static Set<String> readAnnotations(ObjectDataInput in) throws IOException {
+        int size = in.readInt();
+        if (size < 0)
+            return null;
+
+        HashSet<String> annotations = new HashSet<>(size);
+        for (int i = 0; i < size; i++)
+            annotations.add(in.readUTF());
+
+        return annotations;
+    }
+
+    // Translation
+
+    public static void writeTranslation(ObjectDataOutput out, Translation translation) throws IOException {
+        writeTranslation(out, translation, null);
+    }
+
+    public static Translation readTranslation(ObjectDataInput in) throws IOException {
+        return readTranslation(in, null);
+    }
+
+    /**
+     * The source of the nbest hypotheses is usually the same of the main translation:
+     * in this case it is not written again.
+     */
+    private static void writeTranslation(ObjectDataOutput out, Translation translation, Sentence parentSource) throws IOException {
+        writeSentence(out, translation);
+
+        Sentence source = translation.getSource();
+        if (source == null) {
+            out.writeByte(NO_SOURCE);
+        } else if (source == parentSource) {
+            out.writeByte(SAME_SOURCE);
+        } else {
+            out.writeByte(NEW_SOURCE);
+            writeSentence(out, source);
+        }
+
+        writeAlignment(out, translation.getWordAlignment());
+
+        out.writeLong(translation.getMemoryLookupTime());
+        out.writeLong(translation.getDecodeTime());
+        out.writeLong(translation.getQueueTime());
+        out.writeInt(translation.getQueueLength());
+
+        List<Translation> nbest = translation.getNbest();
+        if (nbest == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(nbest.size());
+            for (Translation hypothesis : nbest)
+                writeTranslation(out, hypothesis, source);
+        }
+    }
+
+    private static Translation readTranslation(ObjectDataInput in, Sentence parentSource) throws IOException {
+        Word[] words = readWords(in);
+        Tag[] tags = readTags(in);
+        Set<String> annotations = readAnnotations(in);
+
+        Sentence source;
+        byte sourceType = in.readByte();
+        switch (sourceType) {
+            case NO_SOURCE:
+                source = null;
+                break;
+            case SAME_SOURCE:
+                source = parentSource;
+                break;
+            case NEW_SOURCE:
+                source = readSentence(in);
+                break;
+            default:
+                throw new IOException("Invalid source type: " + sourceType);
+        }
+
+        Alignment alignment = readAlignment(in);
+
+        Translation translation = new Translation(words, tags, source, alignment);
+        if (annotations != null)
+            translation.addAnnotations(annotations);
+
+        translation.setMemoryLookupTime(in.readLong());
+        translation.setDecodeTime(in.readLong());
+        translation.setQueueTime(in.readLong());
+        translation.setQueueLength(in.readInt());
+
+        int nbestSize = in.readInt();
+        if (nbestSize >= 0) {
+            ArrayList<Translation> nbest = new ArrayList<>(nbestSize);
+            for (int i = 0; i < nbestSize; i++)
+                nbest.add(readTranslation(in, source));
+
+            translation.setNbest(nbest);
+        }
+
+        return translation;
+    }
+
+    // Hazelcast serializers
+
+    private static class ContextVectorSerializer implements StreamSerializer<ContextVector> {
+
+        @Override
+        public void write(ObjectDataOutput out, ContextVector object) throws IOException {
+            writeContextVector(out, object);
+        }
+
+        @Override
+        public ContextVector read(ObjectDataInput in) throws IOException {
+            return readContextVector(in);
+        }
+
+        @Override
+        public int getTypeId() {
+            return CONTEXT_VECTOR_TYPE_ID;
+        }
+
+        @Override
+        public void destroy() {
+        }
+    }
+
+    private static class AlignmentSerializer implements StreamSerializer<Alignment> {
+
+        @Override
+        public void write(ObjectDataOutput out, Alignment object) throws IOException {
+            writeAlignment(out, object);
+        }
+
+        @Override
+        public Alignment read(ObjectDataInput in) throws IOException {
+            return readAlignment(in);
+        }
+
+        @Override
+        public int getTypeId() {
+            return ALIGNMENT_TYPE_ID;
+        }
+
+        @Override
+        public void destroy() {
+        }
+    }
+
+    private static class SentenceSerializer implements StreamSerializer<Sentence> {
+
+        @Override
+        public void write(ObjectDataOutput out, Sentence object) throws IOException {
+            writeSentence(out, object);
+        }
+
+        @Override
+        public Sentence read(ObjectDataInput in) throws IOException {
+            return readSentence(in);
+        }
+
+        @Override
+        public int getTypeId() {
+            return SENTENCE_TYPE_ID;
+        }
+
+        @Override
+        public void destroy() {
+        }
+    }
+
+    private static class TranslationSerializer implements StreamSerializer<Translation> {
+
+        @Override
+        public void write(ObjectDataOutput out, Translation object) throws IOException {
+            writeTranslation(out, object);
+        }
+
+        @Override
+        public Translation read(ObjectDataInput in) throws IOException {
+            return readTranslation(in);
+        }
+
+        @Override
+        public int getTypeId() {
+            return TRANSLATION_TYPE_ID;
+        }
+
+        @Override
+        public void destroy() {
+        }
+    }
+
+}
@@ -0,0 +1,15 @@
+package eu.modernmt.cluster.services;
+
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * A DeadlineExceededException is thrown by the TranslationService when it rejects a job
+ * because the estimated time in queue exceeds the expiration of the job.
+ */
+public class DeadlineExceededException extends RejectedExecutionException {
+
+    public DeadlineExceededException(long estimatedQueueTime) {
+        super("Estimated queue time of " + estimatedQueueTime + "ms exceeds the job deadline");
+    }
+
+}
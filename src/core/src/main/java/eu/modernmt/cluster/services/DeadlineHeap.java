@@ -0,0 +1,104 @@
+package eu.modernmt.cluster.services;
+
+/**
+ * The keys of a bounded binary min-heap whose elements are stored by the owner bucket in items[0, count).
+ * Elements are ordered by deadline and, with the same deadline, by order of insertion.
+ * <p>
+ * It is not thread-safe: call it only when holding the lock of the bucket.
+ */
+final class DeadlineHeap {
+
+    private final long[] deadlines;
+    private final long[] sequences;
+    private long nextSequence = 0L;
+
+    DeadlineHeap(int capacity) {
+        this.deadlines = new long[capacity];
+        this.sequences = new long[capacity];
+    }
+
+    /**
+     * Inserts an element in a heap of count elements.
+     */
+    void add(Object[] items, int count, Object x, long deadline) {
+        siftUp(items, count, x, deadline, nextSequence++);
+    }
+
+    /**
+     * Deletes the element at index removeIndex from a heap of count elements.
+     */
+    void removeAt(Object[] items, int count, int removeIndex) {
+        int last = count - 1;
+        Object x = items[last];
+        long deadline = deadlines[last];
+        long sequence = sequences[last];
+        items[last] = null;
+
+        if (removeIndex != last) {
+            if (siftDown(items, last, removeIndex, x, deadline, sequence) == removeIndex)
+                siftUp(items, removeIndex, x, deadline, sequence);
+        }
+    }
+
+    /**
+     * Moves the key of the element at index from to index to, used while compacting the items.
+     * The order must be restored with {@link #heapify(Object[], int)} afterwards.
+     */
+    void move(int from, int to) {
+        deadlines[to] = deadlines[from];
+        sequences[to] = sequences[from];
+    }
+
+    /**
+     * Restores the heap order of count elements.
+     */
+    void heapify(Object[] items, int count) {
+        for (int i = (count >>> 1) - 1; i >= 0; i--)
+            siftDown(items, count, i, items[i], deadlines[i], sequences[i]);
+    }
+
+    private static boolean before(long deadline, long sequence, long otherDeadline, long otherSequence) {
+        return deadline < otherDeadline || (deadline == otherDeadline && sequence < otherSequence);
+    }
+
+    private void set(Object[] items, int index, Object x, long deadline, long sequence) {
+        items[index] = x;
+        deadlines[index] = deadline;
+        sequences[index] = sequence;
+    }
+
+    private void siftUp(Object[] items, int index, Object x, long deadline, long sequence) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (!before(deadline, sequence, deadlines[parent], sequences[parent]))
+                break;
+
+            set(items, index, items[parent], deadlines[parent], sequences[parent]);
+            index = parent;
+        }
+
+        set(items, index, x, deadline, sequence);
+    }
+
+    /**
+     * @return the final index of x
+     */
+    private int siftDown(Object[] items, int count, int index, Object x, long deadline, long sequence) {
+        int half = count >>> 1;
+        while (index < half) {
+            int child = (index << 1) + 1;
+            int right = child + 1;
+            if (right < count && before(deadlines[right], sequences[right], deadlines[child], sequences[child]))
+                child = right;
+            if (!before(deadlines[child], sequences[child], deadline, sequence))
+                break;
+
+            set(items, index, items[child], deadlines[child], sequences[child]);
+            index = child;
+        }
+
+        set(items, index, x, deadline, sequence);
+        return index;
+    }
+
+}
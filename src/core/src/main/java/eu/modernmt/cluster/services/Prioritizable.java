@@ -9,4 +9,13 @@ public interface Prioritizable {
 
     void setQueueLength(int size);
 
+    /**
+     * The TranslationService runs the expired jobs as soon as it finds them in its queue,
+     * so that callers do not wait for a free thread to know that their request has timed out:
+     * a job must check its expiration when it starts running and fail immediately if expired.
+     *
+     * @return the time (in milliseconds) after which the result of the job is useless, or 0 if it never expires
+     */
+    long getExpirationTimestamp();
+
 }
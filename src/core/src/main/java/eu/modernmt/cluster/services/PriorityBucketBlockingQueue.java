@@ -3,7 +3,6 @@ package eu.modernmt.cluster.services;
 import java.util.AbstractQueue;
 import java.util.Collection;
 import java.util.Iterator;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
@@ -14,8 +13,14 @@ import java.util.concurrent.locks.ReentrantLock;
  * implemented with a separate sub-queue (or bucket) for each priority.
  * <p>
  * A PriorityBucketBlockingQueue allows to define separate queue size for each subqueue.
+ * All the subqueues are guarded by a single lock.
+ * <p>
+ * Elements of the same priority are taken in order of arrival or, if the queue is
+ * created with earliestDeadlineFirst, in order of expiration timestamp (elements without
+ * expiration come last, in order of arrival). In this case each subqueue is a heap, so that
+ * the next element is found in constant time and removed in logarithmic time.
  */
-public class PriorityBucketBlockingQueue<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+public class PriorityBucketBlockingQueue<E> extends AbstractQueue<E> implements PriorityBucketQueue<E> {
 
     /**
      * A SubQueue is a bucket for a specific priority value in a PriorityBucketBlockingQueue.
@@ -43,8 +48,15 @@ public class PriorityBucketBlockingQueue<E> extends AbstractQueue<E> implements
          */
         int count;
 
-        SubQueue(int capacity) {
+        /**
+         * If not null, items[0, count) is a heap ordered by deadline: takeIndex is always 0
+         * and putIndex is count (0 if the subqueue is full).
+         */
+        final DeadlineHeap heap;
+
+        SubQueue(int capacity, boolean earliestDeadlineFirst) {
             items = new Object[capacity];
+            heap = earliestDeadlineFirst ? new DeadlineHeap(capacity) : null;
         }
 
     }
@@ -75,6 +87,10 @@ public class PriorityBucketBlockingQueue<E> extends AbstractQueue<E> implements
     }
 
     public PriorityBucketBlockingQueue(boolean fair, int... capacities) {
+        this(fair, false, capacities);
+    }
+
+    public PriorityBucketBlockingQueue(boolean fair, boolean earliestDeadlineFirst, int... capacities) {
         if (capacities == null || capacities.length == 0)
             throw new IllegalArgumentException();
         for (int c : capacities) {
@@ -84,7 +100,7 @@ public class PriorityBucketBlockingQueue<E> extends AbstractQueue<E> implements
 
         this.queues = new SubQueue[capacities.length];
         for (int i = 0; i < this.queues.length; i++)
-            this.queues[i] = new SubQueue(capacities[i]);
+            this.queues[i] = new SubQueue(capacities[i], earliestDeadlineFirst);
 
         this.lock = new ReentrantLock(fair);
         this.notEmpty = this.lock.newCondition();
@@ -122,7 +138,10 @@ public class PriorityBucketBlockingQueue<E> extends AbstractQueue<E> implements
     private void enqueue(final int priority, E x) {
         SubQueue queue = queues[priority];
         final Object[] items = queue.items;
-        items[queue.putIndex] = x;
+        if (queue.heap != null)
+            queue.heap.add(items, queue.count, x, getDeadline(x));
+        else
+            items[queue.putIndex] = x;
         if (++queue.putIndex == items.length)
             queue.putIndex = 0;
         queue.count++;
@@ -140,6 +159,13 @@ public class PriorityBucketBlockingQueue<E> extends AbstractQueue<E> implements
             if (queue.count == 0)
                 continue;
 
+            if (queue.heap != null) {
+                @SuppressWarnings("unchecked")
+                E x = (E) queue.items[0];
+                removeAt(i, 0);
+                return x;
+            }
+
             //get items and
             final Object[] items = queue.items;
             @SuppressWarnings("unchecked")
@@ -168,7 +194,11 @@ public class PriorityBucketBlockingQueue<E> extends AbstractQueue<E> implements
     void removeAt(final int priority, final int removeIndex) {
         SubQueue queue = queues[priority];
         final Object[] items = queue.items;
-        if (removeIndex == queue.takeIndex) {
+        if (queue.heap != null) {
+            queue.heap.removeAt(items, queue.count, removeIndex);
+            queue.count--;
+            queue.putIndex = queue.count;
+        } else if (removeIndex == queue.takeIndex) {
             // removing front item; just advance
             items[queue.takeIndex] = null;
             if (++queue.takeIndex == items.length)
@@ -216,6 +246,23 @@ public class PriorityBucketBlockingQueue<E> extends AbstractQueue<E> implements
         return count;
     }
 
+    private static long getExpirationTimestamp(Object e) {
+        if (e instanceof Prioritizable)
+            return ((Prioritizable) e).getExpirationTimestamp();
+        else
+            return 0L;
+    }
+
+    private static long getDeadline(Object e) {
+        long expiration = getExpirationTimestamp(e);
+        return expiration > 0 ? expiration : Long.MAX_VALUE;
+    }
+
+    private static boolean isExpired(Object e, long now) {
+        long expiration = getExpirationTimestamp(e);
+        return expiration > 0 && expiration < now;
+    }
+
     private static int getPriority(Object e) {
         if (e instanceof Prioritizable)
             return ((Prioritizable) e).getPriority();
@@ -331,10 +378,12 @@ public class PriorityBucketBlockingQueue<E> extends AbstractQueue<E> implements
         lock.lock();
         try {
             for (SubQueue queue : queues) {
+                if (queue.count == 0)
+                    continue;
+
                 @SuppressWarnings("unchecked")
                 E e = (E) queue.items[queue.takeIndex];
-                if (e != null)
-                    return e;
+                return e;
             }
 
             return null;
@@ -555,7 +604,7 @@ public class PriorityBucketBlockingQueue<E> extends AbstractQueue<E> implements
                 if (++i == items.length)
                     i = 0;
             } while (i != putIndex);
-            queue.takeIndex = putIndex;
+            queue.takeIndex = queue.putIndex = 0;
             queue.count = 0;
         }
     }
@@ -616,6 +665,75 @@ public class PriorityBucketBlockingQueue<E> extends AbstractQueue<E> implements
         }
     }
 
+    /**
+     * Removes all the elements whose expiration timestamp is lower than the given time
+     * and adds them to the given collection.
+     *
+     * @param now the current time in milliseconds
+     * @param c   the collection to transfer the expired elements into
+     * @return the number of elements transferred
+     */
+    public int drainExpired(long now, Collection<? super E> c) {
+        checkNotNull(c);
+        if (c == this)
+            throw new IllegalArgumentException();
+
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            int removed = 0;
+
+            for (SubQueue queue : queues) {
+                final Object[] items = queue.items;
+                int read = queue.takeIndex;
+                int write = queue.takeIndex;
+                int kept = 0;
+
+                // compact the non-expired items towards takeIndex, preserving their order
+                for (int k = 0; k < queue.count; k++) {
+                    Object e = items[read];
+
+                    if (isExpired(e, now)) {
+                        @SuppressWarnings("unchecked")
+                        E x = (E) e;
+                        c.add(x);
+                    } else {
+                        items[write] = e;
+                        if (queue.heap != null)
+                            queue.heap.move(read, write);
+                        if (++write == items.length)
+                            write = 0;
+                        kept++;
+                    }
+
+                    if (++read == items.length)
+                        read = 0;
+                }
+
+                int expired = queue.count - kept;
+                for (int i = write, k = 0; k < expired; k++) {
+                    items[i] = null;
+                    if (++i == items.length)
+                        i = 0;
+                }
+
+                if (queue.heap != null)
+                    queue.heap.heapify(items, kept);
+
+                queue.putIndex = write;
+                queue.count = kept;
+                removed += expired;
+            }
+
+            for (int i = removed; i > 0 && lock.hasWaiters(notFull); i--)
+                notFull.signal();
+
+            return removed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
     public Iterator<E> iterator() {
         throw new UnsupportedOperationException();
     }
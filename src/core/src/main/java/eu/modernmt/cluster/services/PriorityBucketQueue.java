@@ -0,0 +1,34 @@
+package eu.modernmt.cluster.services;
+
+import java.util.Collection;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * A PriorityBucketQueue is a BlockingQueue with a separate bucket of fixed capacity for each priority.
+ * Elements are always taken from the non-empty bucket with the highest priority (i.e. the lowest priority value).
+ * <p>
+ * The priority and the expiration of an element are read from the {@link Prioritizable} interface;
+ * other elements have priority 0 and never expire.
+ *
+ * @see PriorityBucketBlockingQueue
+ * @see StripedPriorityBucketBlockingQueue
+ */
+public interface PriorityBucketQueue<E> extends BlockingQueue<E> {
+
+    /**
+     * @param priority the priority value
+     * @return the number of elements with the given or a higher priority
+     */
+    int size(int priority);
+
+    /**
+     * Removes all the elements whose expiration timestamp is lower than the given time
+     * and adds them to the given collection.
+     *
+     * @param now the current time in milliseconds
+     * @param c   the collection to transfer the expired elements into
+     * @return the number of elements transferred
+     */
+    int drainExpired(long now, Collection<? super E> c);
+
+}
@@ -13,16 +13,23 @@ class PriorityRunnableFuture<T> implements RunnableFuture<T>, Prioritizable {
 
     private RunnableFuture<T> src;
     private int priority;
+    private long expirationTimestamp;
 
-    public PriorityRunnableFuture(RunnableFuture<T> other, int priority) {
+    public PriorityRunnableFuture(RunnableFuture<T> other, int priority, long expirationTimestamp) {
         this.src = other;
         this.priority = priority;
+        this.expirationTimestamp = expirationTimestamp;
     }
 
     public int getPriority() {
         return priority;
     }
 
+    @Override
+    public long getExpirationTimestamp() {
+        return expirationTimestamp;
+    }
+
     @Override
     public void setQueueLength(int size) {
         // Ignore it
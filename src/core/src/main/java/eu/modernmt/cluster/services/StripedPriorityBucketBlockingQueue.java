@@ -0,0 +1,623 @@
+package eu.modernmt.cluster.services;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A StripedPriorityBucketBlockingQueue is a PriorityBucketQueue with a separate lock for each bucket.
+ * <p>
+ * Producers lock only the bucket of their priority, while consumers lock the non-empty buckets one at a time
+ * starting from the highest priority: operations on different priorities never contend.
+ * The total number of elements is kept in an atomic counter, so that consumers do not scan an empty queue
+ * and producers take the lock of the waiting consumers only when some consumer is actually waiting.
+ * <p>
+ * Elements of the same priority are taken in order of arrival or, if the queue is
+ * created with earliestDeadlineFirst, in order of expiration timestamp (elements without
+ * expiration come last, in order of arrival). In this case each bucket is a heap, so that
+ * the next element is found in constant time and removed in logarithmic time.
+ * <p>
+ * Bulk operations (toArray, drainTo, clear...) lock one bucket at a time, thus they are not atomic.
+ *
+ * @see PriorityBucketBlockingQueue
+ */
+public class StripedPriorityBucketBlockingQueue<E> extends AbstractQueue<E> implements PriorityBucketQueue<E> {
+
+    /**
+     * A Bucket is a fixed size ring buffer, guarded by its own lock, for a specific priority value.
+     */
+    private static class Bucket {
+
+        final ReentrantLock lock = new ReentrantLock();
+        final Condition notFull = lock.newCondition();
+        final Object[] items;
+
+        /**
+         * index of the first item in the bucket
+         */
+        int takeIndex;
+
+        /**
+         * index for next put, offer, or add
+         */
+        int putIndex;
+
+        /**
+         * Number of elements in the bucket: written only when holding lock,
+         * it can be read without it to skip empty buckets
+         */
+        volatile int count;
+
+        /**
+         * If not null, items[0, count) is a heap ordered by deadline: takeIndex is always 0
+         * and putIndex is count (0 if the bucket is full).
+         */
+        final DeadlineHeap heap;
+
+        Bucket(int capacity, boolean earliestDeadlineFirst) {
+            items = new Object[capacity];
+            heap = earliestDeadlineFirst ? new DeadlineHeap(capacity) : null;
+        }
+
+        /**
+         * Call only when holding lock.
+         */
+        void enqueue(Object x) {
+            if (heap != null)
+                heap.add(items, count, x, getDeadline(x));
+            else
+                items[putIndex] = x;
+            if (++putIndex == items.length)
+                putIndex = 0;
+            count++;
+        }
+
+        /**
+         * Call only when holding lock.
+         *
+         * @return the array index of the object or -1 if not present
+         */
+        int indexOf(Object o) {
+            for (int i = takeIndex, k = 0; k < count; k++) {
+                if (o.equals(items[i]))
+                    return i;
+                if (++i == items.length)
+                    i = 0;
+            }
+
+            return -1;
+        }
+
+        /**
+         * Deletes item at array index removeIndex.
+         * Call only when holding lock.
+         */
+        Object removeAt(final int removeIndex) {
+            Object x = items[removeIndex];
+
+            if (heap != null) {
+                heap.removeAt(items, count, removeIndex);
+                putIndex = count - 1;
+            } else if (removeIndex == takeIndex) {
+                // removing front item; just advance
+                items[takeIndex] = null;
+                if (++takeIndex == items.length)
+                    takeIndex = 0;
+            } else {
+                // an "interior" remove; slide over all others up through putIndex.
+                for (int i = removeIndex; ; ) {
+                    int next = i + 1;
+                    if (next == items.length)
+                        next = 0;
+                    if (next != putIndex) {
+                        items[i] = items[next];
+                        i = next;
+                    } else {
+                        items[i] = null;
+                        putIndex = i;
+                        break;
+                    }
+                }
+            }
+
+            count--;
+            notFull.signal();
+
+            return x;
+        }
+
+        /**
+         * Removes the items in order (only the expired ones, if expiredOnly) adding them to the given collection,
+         * and compacts the remaining ones towards takeIndex.
+         * Call only when holding lock.
+         *
+         * @return the number of removed items
+         */
+        @SuppressWarnings("unchecked")
+        <E> int drain(Collection<? super E> c, int maxElements, boolean expiredOnly, long now) {
+            if (heap != null && !expiredOnly) {
+                // in the same order of poll
+                int removed = 0;
+                for (; removed < maxElements && count > 0; removed++)
+                    c.add((E) removeAt(0));
+                return removed;
+            }
+
+            int read = takeIndex;
+            int write = takeIndex;
+            int kept = 0;
+            int removed = 0;
+
+            for (int k = 0; k < count; k++) {
+                Object e = items[read];
+
+                if (removed < maxElements && (!expiredOnly || isExpired(e, now))) {
+                    c.add((E) e);
+                    removed++;
+                } else {
+                    items[write] = e;
+                    if (heap != null)
+                        heap.move(read, write);
+                    if (++write == items.length)
+                        write = 0;
+                    kept++;
+                }
+
+                if (++read == items.length)
+                    read = 0;
+            }
+
+            for (int i = write, k = 0; k < removed; k++) {
+                items[i] = null;
+                if (++i == items.length)
+                    i = 0;
+            }
+
+            if (heap != null)
+                heap.heapify(items, kept);
+
+            putIndex = write;
+            count = kept;
+
+            if (removed > 0)
+                notFull.signalAll();
+
+            return removed;
+        }
+
+        /**
+         * Call only when holding lock.
+         */
+        void copyTo(Collection<Object> c) {
+            for (int i = takeIndex, k = 0; k < count; k++) {
+                c.add(items[i]);
+                if (++i == items.length)
+                    i = 0;
+            }
+        }
+
+    }
+
+    /**
+     * The buckets for this queue.
+     */
+    private final Bucket[] buckets;
+
+    /**
+     * Total number of elements, updated when holding the lock of the modified bucket
+     */
+    private final AtomicInteger count = new AtomicInteger(0);
+
+    /**
+     * Number of consumers that are waiting (or about to wait) on notEmpty
+     */
+    private final AtomicInteger waitingConsumers = new AtomicInteger(0);
+
+    /**
+     * Lock held by waiting consumers
+     */
+    private final ReentrantLock takeLock = new ReentrantLock();
+
+    /**
+     * Condition for waiting takes
+     */
+    private final Condition notEmpty = takeLock.newCondition();
+
+    public StripedPriorityBucketBlockingQueue(int... capacities) {
+        this(false, capacities);
+    }
+
+    public StripedPriorityBucketBlockingQueue(boolean earliestDeadlineFirst, int... capacities) {
+        if (capacities == null || capacities.length == 0)
+            throw new IllegalArgumentException();
+        for (int c : capacities) {
+            if (c <= 0)
+                throw new IllegalArgumentException();
+        }
+
+        this.buckets = new Bucket[capacities.length];
+        for (int i = 0; i < this.buckets.length; i++)
+            this.buckets[i] = new Bucket(capacities[i], earliestDeadlineFirst);
+    }
+
+    // Internal helper methods
+
+    private static void checkNotNull(Object v) {
+        if (v == null)
+            throw new NullPointerException();
+    }
+
+    private static long getExpirationTimestamp(Object e) {
+        if (e instanceof Prioritizable)
+            return ((Prioritizable) e).getExpirationTimestamp();
+        else
+            return 0L;
+    }
+
+    private static long getDeadline(Object e) {
+        long expiration = getExpirationTimestamp(e);
+        return expiration > 0 ? expiration : Long.MAX_VALUE;
+    }
+
+    private static boolean isExpired(Object e, long now) {
+        long expiration = getExpirationTimestamp(e);
+        return expiration > 0 && expiration < now;
+    }
+
+    private Bucket bucketOf(Object e) {
+        int priority = e instanceof Prioritizable ? ((Prioritizable) e).getPriority() : 0;
+        if (priority < 0 || priority >= buckets.length)
+            throw new ArrayIndexOutOfBoundsException(priority);
+
+        return buckets[priority];
+    }
+
+    /**
+     * Inserts element in a bucket. Call only when holding the bucket lock.
+     */
+    private void enqueue(Bucket bucket, E e) {
+        bucket.enqueue(e);
+        count.incrementAndGet();
+    }
+
+    /**
+     * Wakes up a waiting consumer, if any.
+     * Call only when not holding any bucket lock.
+     */
+    private void signalNotEmpty() {
+        // The producer increments count before reading waitingConsumers, while the consumer increments
+        // waitingConsumers before reading count: at least one of them sees the update of the other.
+        if (waitingConsumers.get() > 0) {
+            final ReentrantLock takeLock = this.takeLock;
+            takeLock.lock();
+            try {
+                notEmpty.signal();
+            } finally {
+                takeLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Waits until the queue contains an element.
+     *
+     * @return the remaining nanos if timed
+     */
+    private long awaitNotEmpty(boolean timed, long nanos) throws InterruptedException {
+        final ReentrantLock takeLock = this.takeLock;
+        takeLock.lockInterruptibly();
+        try {
+            waitingConsumers.incrementAndGet();
+            try {
+                while (count.get() == 0) {
+                    if (!timed)
+                        notEmpty.await();
+                    else if (nanos <= 0)
+                        return 0;
+                    else
+                        nanos = notEmpty.awaitNanos(nanos);
+                }
+
+                return nanos;
+            } finally {
+                waitingConsumers.decrementAndGet();
+            }
+        } finally {
+            takeLock.unlock();
+        }
+    }
+
+    public boolean offer(E e) {
+        checkNotNull(e);
+
+        final Bucket bucket = bucketOf(e);
+        final ReentrantLock lock = bucket.lock;
+        lock.lock();
+        try {
+            if (bucket.count == bucket.items.length)
+                return false;
+            enqueue(bucket, e);
+        } finally {
+            lock.unlock();
+        }
+
+        signalNotEmpty();
+        return true;
+    }
+
+    public void put(E e) throws InterruptedException {
+        checkNotNull(e);
+
+        final Bucket bucket = bucketOf(e);
+        final ReentrantLock lock = bucket.lock;
+        lock.lockInterruptibly();
+        try {
+            while (bucket.count == bucket.items.length)
+                bucket.notFull.await();
+            enqueue(bucket, e);
+        } finally {
+            lock.unlock();
+        }
+
+        signalNotEmpty();
+    }
+
+    public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException {
+        checkNotNull(e);
+
+        final Bucket bucket = bucketOf(e);
+        long nanos = unit.toNanos(timeout);
+        final ReentrantLock lock = bucket.lock;
+        lock.lockInterruptibly();
+        try {
+            while (bucket.count == bucket.items.length) {
+                if (nanos <= 0)
+                    return false;
+                nanos = bucket.notFull.awaitNanos(nanos);
+            }
+            enqueue(bucket, e);
+        } finally {
+            lock.unlock();
+        }
+
+        signalNotEmpty();
+        return true;
+    }
+
+    public E poll() {
+        if (count.get() == 0)
+            return null;
+
+        for (Bucket bucket : buckets) {
+            if (bucket.count == 0)
+                continue;
+
+            final ReentrantLock lock = bucket.lock;
+            lock.lock();
+            try {
+                if (bucket.count > 0) {
+                    @SuppressWarnings("unchecked")
+                    E x = (E) bucket.removeAt(bucket.takeIndex);
+                    count.decrementAndGet();
+                    return x;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        return null;
+    }
+
+    public E take() throws InterruptedException {
+        E x;
+        while ((x = poll()) == null)
+            awaitNotEmpty(false, 0L);
+        return x;
+    }
+
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+
+        E x;
+        while ((x = poll()) == null) {
+            if (nanos <= 0)
+                return null;
+            nanos = awaitNotEmpty(true, nanos);
+        }
+
+        return x;
+    }
+
+    public E peek() {
+        for (Bucket bucket : buckets) {
+            if (bucket.count == 0)
+                continue;
+
+            final ReentrantLock lock = bucket.lock;
+            lock.lock();
+            try {
+                if (bucket.count > 0) {
+                    @SuppressWarnings("unchecked")
+                    E x = (E) bucket.items[bucket.takeIndex];
+                    return x;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        return null;
+    }
+
+    public int size() {
+        return count.get();
+    }
+
+    public int size(int priority) {
+        if (priority < 0 || priority >= buckets.length)
+            throw new ArrayIndexOutOfBoundsException(priority);
+
+        int size = 0;
+        for (int i = 0; i <= priority; i++)
+            size += buckets[i].count;
+        return size;
+    }
+
+    public int remainingCapacity() {
+        int capacity = 0;
+        for (Bucket bucket : buckets)
+            capacity += bucket.items.length - bucket.count;
+        return capacity;
+    }
+
+    public boolean remove(Object o) {
+        if (o == null) return false;
+
+        for (Bucket bucket : buckets) {
+            final ReentrantLock lock = bucket.lock;
+            lock.lock();
+            try {
+                int index = bucket.indexOf(o);
+                if (index >= 0) {
+                    bucket.removeAt(index);
+                    count.decrementAndGet();
+                    return true;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        return false;
+    }
+
+    public boolean contains(Object o) {
+        if (o == null) return false;
+
+        for (Bucket bucket : buckets) {
+            final ReentrantLock lock = bucket.lock;
+            lock.lock();
+            try {
+                if (bucket.indexOf(o) >= 0)
+                    return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        return false;
+    }
+
+    private ArrayList<Object> toList() {
+        ArrayList<Object> list = new ArrayList<>(count.get());
+
+        for (Bucket bucket : buckets) {
+            final ReentrantLock lock = bucket.lock;
+            lock.lock();
+            try {
+                bucket.copyTo(list);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        return list;
+    }
+
+    public Object[] toArray() {
+        return toList().toArray();
+    }
+
+    public <T> T[] toArray(T[] a) {
+        return toList().toArray(a);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append('[');
+
+        for (Bucket bucket : buckets) {
+            ArrayList<Object> items = new ArrayList<>();
+
+            final ReentrantLock lock = bucket.lock;
+            lock.lock();
+            try {
+                bucket.copyTo(items);
+            } finally {
+                lock.unlock();
+            }
+
+            if (items.isEmpty())
+                continue;
+
+            sb.append('#');
+            for (int i = 0; i < items.size(); i++) {
+                if (i > 0)
+                    sb.append(',').append(' ');
+                Object e = items.get(i);
+                sb.append(e == this ? "(this Collection)" : e);
+            }
+        }
+
+        return sb.append(']').toString();
+    }
+
+    public void clear() {
+        drain(new ArrayList<>(), Integer.MAX_VALUE, false, 0L);
+    }
+
+    public int drainTo(Collection<? super E> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        checkNotNull(c);
+        if (c == this)
+            throw new IllegalArgumentException();
+
+        return drain(c, maxElements, false, 0L);
+    }
+
+    public int drainExpired(long now, Collection<? super E> c) {
+        checkNotNull(c);
+        if (c == this)
+            throw new IllegalArgumentException();
+
+        return drain(c, Integer.MAX_VALUE, true, now);
+    }
+
+    private int drain(Collection<? super E> c, int maxElements, boolean expiredOnly, long now) {
+        int removed = 0;
+
+        for (Bucket bucket : buckets) {
+            if (removed >= maxElements)
+                break;
+            if (bucket.count == 0)
+                continue;
+
+            final ReentrantLock lock = bucket.lock;
+            lock.lock();
+            try {
+                int n = bucket.drain(c, maxElements - removed, expiredOnly, now);
+                count.addAndGet(-n);
+                removed += n;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        return removed;
+    }
+
+    public Iterator<E> iterator() {
+        throw new UnsupportedOperationException();
+    }
+
+}
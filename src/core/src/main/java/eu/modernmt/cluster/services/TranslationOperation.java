@@ -8,16 +8,19 @@ import com.hazelcast.spi.impl.operationservice.impl.responses.ErrorResponse;
 import com.hazelcast.spi.impl.operationservice.impl.responses.NormalResponse;
 import eu.modernmt.cluster.TranslationTask;
 import eu.modernmt.model.Translation;
-import org.apache.commons.lang.SerializationUtils;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
 
 /**
  * A TranslationOperation is an Hazelcast Operation for performing translations.
  * It basically contains a TranslationTask that this
  * <p>
- * A cluster member can ask other members to perform TranslationOperations
+ * A cluster member can ask other members to perform TranslationOperations.
+ * An operation whose task is identical to one already running on the member is not executed:
+ * it is attached to the running one as a follower and receives the same response.
  */
 class TranslationOperation extends Operation {
 
@@ -42,10 +45,18 @@ class TranslationOperation extends Operation {
         public void run() {
             try {
                 startAsyncOperation();
-                Translation translation = task.call();
-                sendResponse(new NormalResponse(translation, getCallId(), 0, false));
-            } catch (Throwable e) {
-                sendResponse(new ErrorResponse(e, getCallId(), false));
+
+                Translation translation = null;
+                Throwable error = null;
+
+                try {
+                    translation = task.call();
+                } catch (Throwable e) {
+                    error = e;
+                }
+
+                releaseFollowers(translation, error);
+                respond(translation, error);
             } finally {
                 completeAsyncOperation();
             }
@@ -60,11 +71,18 @@ class TranslationOperation extends Operation {
         public void setQueueLength(int size) {
             task.setQueueLength(size);
         }
+
+        @Override
+        public long getExpirationTimestamp() {
+            return task.getExpirationTimestamp();
+        }
     }
 
 
     private TranslationTask task;
     private transient Throwable submitException;
+    private transient List<TranslationOperation> followers = new ArrayList<>();
+    private transient boolean completed = false;
 
     // necessary for deserialization
     @SuppressWarnings("unused")
@@ -75,28 +93,79 @@ class TranslationOperation extends Operation {
         this.task = translationCallable;
     }
 
+    TranslationTask getTask() {
+        return task;
+    }
+
     @Override
     public void run() throws Exception {
         TranslationService translationService = getService();
+        if (translationService.coalesce(this))
+            return;
+
         ExecutorService executor = translationService.getExecutor();
 
         try {
+            translationService.checkAdmission(task);
             executor.submit(new TranslationRunnable(task));
         } catch (Throwable e) {
             submitException = e;
+            releaseFollowers(null, e);
+        }
+    }
+
+    /**
+     * Attaches an identical operation to this one: the follower will receive the response of this operation.
+     *
+     * @param follower the operation to attach
+     * @return false if this operation has already completed and the follower must run on its own
+     */
+    synchronized boolean addFollower(TranslationOperation follower) {
+        if (completed)
+            return false;
+
+        follower.startAsyncOperation();
+        followers.add(follower);
+        return true;
+    }
+
+    /**
+     * Marks this operation as completed
+     *
+     * @return the operations that have been attached to this one
+     */
+    synchronized List<TranslationOperation> close() {
+        completed = true;
+        return followers;
+    }
+
+    private void releaseFollowers(Translation translation, Throwable error) {
+        TranslationService translationService = getService();
+
+        for (TranslationOperation follower : translationService.complete(this)) {
+            try {
+                follower.respond(translation, error);
+            } finally {
+                follower.completeAsyncOperation();
+            }
         }
     }
 
+    private void respond(Translation translation, Throwable error) {
+        if (error == null)
+            sendResponse(new NormalResponse(translation, getCallId(), 0, false));
+        else
+            sendResponse(new ErrorResponse(error, getCallId(), false));
+    }
+
     @Override
     protected void writeInternal(ObjectDataOutput out) throws IOException {
-        byte[] taskBytes = SerializationUtils.serialize(this.task);
-        out.writeByteArray(taskBytes);
+        out.writeObject(this.task);
     }
 
     @Override
     protected void readInternal(ObjectDataInput in) throws IOException {
-        byte[] taskBytes = in.readByteArray();
-        this.task = (TranslationTask) SerializationUtils.deserialize(taskBytes);
+        this.task = in.readObject();
     }
 
     @Override
@@ -5,9 +5,15 @@ import com.hazelcast.core.DistributedObject;
 import com.hazelcast.spi.ManagedService;
 import com.hazelcast.spi.NodeEngine;
 import com.hazelcast.spi.RemoteService;
+import eu.modernmt.cluster.TranslationTask;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * A TranslationService is an Hazelcast Service for performing translations in a ModernMT cluster.
@@ -15,6 +21,10 @@ import java.util.concurrent.*;
  * translations, moreover, will be run taking their priority into account.
  * <p>
  * As always in Hazelcast Services, this service is reached by cluster members through local proxies.
+ * <p>
+ * Jobs that expire while waiting in queue are removed periodically and run immediately, so that they fail
+ * without waiting for a free thread. Optionally, jobs of the same priority can be executed earliest deadline first,
+ * and jobs can be rejected up front if their estimated time in queue exceeds their expiration.
  *
  * @see TranslationServiceProxy
  * <p>
@@ -24,8 +34,20 @@ public class TranslationService implements ManagedService, RemoteService {
 
     public static final String SERVICE_NAME = "mmt:cluster:TranslationService";
 
+    private static final long EXPIRED_JOBS_CHECK_INTERVAL = 100L;  // ms
+
+    private final Logger logger = LogManager.getLogger(TranslationService.class);
+
     private NodeEngine nodeEngine;
     private ExecutorService executor;
+    private ScheduledExecutorService expiredJobsCleaner;
+    private PriorityBucketQueue<Runnable> queue;
+    private int[] capacities;
+    private int splitParallelism;
+    private int threads;
+    private boolean admissionControl;
+    private final AtomicLong averageJobTime = new AtomicLong(0L);  // ns
+    private final ConcurrentHashMap<Object, TranslationOperation> inFlightOperations = new ConcurrentHashMap<>();
 
     @Override
     public void init(NodeEngine nodeEngine, Properties properties) {
@@ -36,15 +58,24 @@ public class TranslationService implements ManagedService, RemoteService {
         int normalPriorityQueueSize = config.getNormalPriorityQueueSize();
         int backgroundPriorityQueueSize = config.getBackgroundPriorityQueueSize();
 
-        final PriorityBucketBlockingQueue<Runnable> queue = new PriorityBucketBlockingQueue<>(
-                highPriorityQueueSize, normalPriorityQueueSize, backgroundPriorityQueueSize);
+        int[] capacities = {highPriorityQueueSize, normalPriorityQueueSize, backgroundPriorityQueueSize};
+        final PriorityBucketQueue<Runnable> queue = config.isLockStriping() ?
+                new StripedPriorityBucketBlockingQueue<>(config.isEarliestDeadlineFirst(), capacities) :
+                new PriorityBucketBlockingQueue<>(false, config.isEarliestDeadlineFirst(), capacities);
 
         this.nodeEngine = nodeEngine;
+        this.queue = queue;
+        this.capacities = capacities;
+        this.splitParallelism = config.getSplitParallelism();
+        this.threads = threads;
+        this.admissionControl = config.isAdmissionControl();
 
         /*Create a new ThreadPoolExecutor that can handle Prioritizable Runnables
         without wrapping them in non Prioritizable Runnables */
         this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, queue) {
 
+            private final ThreadLocal<Long> startTime = new ThreadLocal<>();
+
             /**
              * This method generates a new RunnableFuture wrapping a Runnable task.
              * If the Runnable is Prioritizable, moreover, the obtained RunnableFuture
@@ -78,19 +109,168 @@ public class TranslationService implements ManagedService, RemoteService {
                     int priority = prioritizable.getPriority();
                     prioritizable.setQueueLength(queue.size(priority));
 
-                    future = new PriorityRunnableFuture<>(future, priority);
+                    future = new PriorityRunnableFuture<>(future, priority, prioritizable.getExpirationTimestamp());
                 }
 
                 return future;
             }
 
+            @Override
+            protected void beforeExecute(Thread thread, Runnable job) {
+                startTime.set(System.nanoTime());
+            }
+
+            @Override
+            protected void afterExecute(Runnable job, Throwable error) {
+                long elapsed = System.nanoTime() - startTime.get();
+
+                // exponentially weighted moving average, with weight 1/8 on the latest job
+                averageJobTime.accumulateAndGet(elapsed, (average, time) -> average == 0 ? time : average + (time - average) / 8);
+            }
+
         };
+
+        this.expiredJobsCleaner = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "TranslationService-ExpiredJobsCleaner");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.expiredJobsCleaner.scheduleWithFixedDelay(this::runExpiredJobs,
+                EXPIRED_JOBS_CHECK_INTERVAL, EXPIRED_JOBS_CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Removes the expired jobs from the queue and runs them in the current thread:
+     * expired jobs fail as soon as they start, sending the error to their callers.
+     */
+    private void runExpiredJobs() {
+        ArrayList<Runnable> expired = new ArrayList<>();
+        queue.drainExpired(System.currentTimeMillis(), expired);
+
+        for (Runnable job : expired) {
+            try {
+                job.run();
+            } catch (Throwable e) {
+                logger.warn("Unexpected error while discarding expired job", e);
+            }
+        }
+
+        if (!expired.isEmpty() && logger.isDebugEnabled())
+            logger.debug("Discarded " + expired.size() + " expired jobs from translation queue");
+    }
+
+    /**
+     * Estimates the time a new job of the given priority would wait in queue, assuming that
+     * all the jobs with the same or higher priority are executed before it.
+     *
+     * @param priority the priority of the job
+     * @return the estimated time in queue in milliseconds
+     */
+    long getEstimatedQueueTime(int priority) {
+        long rounds = queue.size(priority) / threads;
+        return TimeUnit.NANOSECONDS.toMillis(rounds * averageJobTime.get());
+    }
+
+    /**
+     * Checks if the job can be accepted given its expiration. If admission control is disabled,
+     * all the jobs are accepted (the queue capacity still applies).
+     *
+     * @param job the job to check
+     * @throws DeadlineExceededException if the job would expire while waiting in queue
+     */
+    void checkAdmission(Prioritizable job) throws DeadlineExceededException {
+        long expiration = job.getExpirationTimestamp();
+        if (!admissionControl || expiration <= 0)
+            return;
+
+        long queueTime = getEstimatedQueueTime(job.getPriority());
+        if (System.currentTimeMillis() + queueTime > expiration)
+            throw new DeadlineExceededException(queueTime);
     }
 
     ExecutorService getExecutor() {
         return executor;
     }
 
+    int getSplitParallelism() {
+        return splitParallelism;
+    }
+
+    /**
+     * @return the capacity of the queue of the given priority
+     */
+    int getQueueCapacity(int priority) {
+        return capacities[priority];
+    }
+
+    /**
+     * Removes a job from the queue if it has not been started yet.
+     *
+     * @param job the job to remove
+     * @return true if the job has been removed
+     */
+    boolean remove(Runnable job) {
+        return queue.remove(job);
+    }
+
+    /**
+     * Attaches the operation to an identical one that is queued or running on this member, if any;
+     * otherwise the operation is registered as in-flight so that later identical operations can be attached to it.
+     *
+     * @param operation the operation to coalesce
+     * @return true if the operation has been attached and must not be executed
+     */
+    boolean coalesce(TranslationOperation operation) {
+        TranslationTask task = operation.getTask();
+        Object key = task.getCoalescingKey();
+
+        if (key == null)
+            return false;
+
+        while (true) {
+            TranslationOperation leader = inFlightOperations.putIfAbsent(key, operation);
+
+            if (leader == null || !leader.getTask().canServe(task))
+                return false;
+
+            if (leader.addFollower(operation))
+                return true;
+
+            // leader has just completed
+            inFlightOperations.remove(key, leader);
+        }
+    }
+
+    /**
+     * Removes the operation from the in-flight ones
+     *
+     * @return the operations attached to the completed one
+     */
+    List<TranslationOperation> complete(TranslationOperation operation) {
+        Object key = operation.getTask().getCoalescingKey();
+        if (key != null)
+            inFlightOperations.remove(key, operation);
+
+        return operation.close();
+    }
+
+    /**
+     * @return the number of operations that identical operations can be attached to
+     */
+    int getInFlightOperations() {
+        return inFlightOperations.size();
+    }
+
+    /**
+     * @return for every priority, the number of queued tasks with that priority or a higher one
+     */
+    int[] getQueueLengths() {
+        int[] lengths = new int[capacities.length];
+        for (int i = 0; i < lengths.length; i++)
+            lengths[i] = queue.size(i);
+        return lengths;
+    }
+
     @Override
     public void reset() {
 
@@ -98,6 +278,7 @@ public class TranslationService implements ManagedService, RemoteService {
 
     @Override
     public void shutdown(boolean terminate) {
+        expiredJobsCleaner.shutdownNow();
         executor.shutdownNow();
     }
 
@@ -47,6 +47,26 @@ public class TranslationServiceConfig {
         return this;
     }
 
+    public TranslationServiceConfig setSplitParallelism(int splitParallelism) {
+        properties.setProperty("splitParallelism", Integer.toString(splitParallelism));
+        return this;
+    }
+
+    public TranslationServiceConfig setEarliestDeadlineFirst(boolean earliestDeadlineFirst) {
+        properties.setProperty("earliestDeadlineFirst", Boolean.toString(earliestDeadlineFirst));
+        return this;
+    }
+
+    public TranslationServiceConfig setLockStriping(boolean lockStriping) {
+        properties.setProperty("lockStriping", Boolean.toString(lockStriping));
+        return this;
+    }
+
+    public TranslationServiceConfig setAdmissionControl(boolean admissionControl) {
+        properties.setProperty("admissionControl", Boolean.toString(admissionControl));
+        return this;
+    }
+
     /**
      * Get the amount of threads explicitly set in the Properties for this TranslationService.
      * If no "threads" property was set in the Properties,
@@ -101,4 +121,54 @@ public class TranslationServiceConfig {
             return DEFAULT_QUEUE_SIZE;
     }
 
+    /**
+     * Get the maximum number of pieces of a split sentence that can be translated concurrently,
+     * as it is explicitly set in the Properties for this TranslationService.
+     * If no "splitParallelism" property was set in the Properties, this method will return 1
+     * (the pieces are translated sequentially by the thread running the task).
+     *
+     * @return the maximum number of concurrently translated pieces for a single TranslationTask
+     */
+    public int getSplitParallelism() {
+        if (properties.containsKey("splitParallelism"))
+            return Math.max(1, Integer.parseInt(properties.getProperty("splitParallelism")));
+        else
+            return 1;
+    }
+
+    /**
+     * Get whether the jobs of the same priority must be executed in order of expiration,
+     * as it is explicitly set in the Properties for this TranslationService.
+     * If no "earliestDeadlineFirst" property was set in the Properties, this method will return false
+     * (the jobs are executed in order of arrival).
+     *
+     * @return true if the jobs of each priority are executed earliest deadline first
+     */
+    public boolean isEarliestDeadlineFirst() {
+        return Boolean.parseBoolean(properties.getProperty("earliestDeadlineFirst"));
+    }
+
+    /**
+     * Get whether a job must be rejected when its estimated time in queue exceeds its expiration,
+     * as it is explicitly set in the Properties for this TranslationService.
+     * If no "admissionControl" property was set in the Properties, this method will return false.
+     *
+     * @return true if the TranslationService rejects the jobs that would expire in queue
+     */
+    public boolean isAdmissionControl() {
+        return Boolean.parseBoolean(properties.getProperty("admissionControl"));
+    }
+
+    /**
+     * Get whether the queue must use a separate lock for each priority,
+     * as it is explicitly set in the Properties for this TranslationService.
+     * If no "lockStriping" property was set in the Properties, this method will return false
+     * (a single lock guards the whole queue).
+     *
+     * @return true if the TranslationService must use a StripedPriorityBucketBlockingQueue
+     */
+    public boolean isLockStriping() {
+        return Boolean.parseBoolean(properties.getProperty("lockStriping"));
+    }
+
 }
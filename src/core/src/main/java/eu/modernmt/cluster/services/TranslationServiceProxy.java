@@ -1,5 +1,6 @@
 package eu.modernmt.cluster.services;
 
+import com.hazelcast.core.ICompletableFuture;
 import com.hazelcast.nio.Address;
 import com.hazelcast.spi.AbstractDistributedObject;
 import com.hazelcast.spi.NodeEngine;
@@ -8,7 +9,6 @@ import eu.modernmt.cluster.TranslationTask;
 import eu.modernmt.model.Translation;
 
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -49,12 +49,54 @@ public class TranslationServiceProxy extends AbstractDistributedObject<Translati
      * @param address the Address of the Member that should run this task
      * @return a Future for the Translation that this task will output
      */
-    public Future<Translation> submit(TranslationTask task, Address address) {
+    public ICompletableFuture<Translation> submit(TranslationTask task, Address address) {
         OperationService localOperationService = getNodeEngine().getOperationService();
         TranslationOperation operation = new TranslationOperation(task);
         return localOperationService.invokeOnTarget(getServiceName(), operation, address);
     }
 
+    /**
+     * This method runs a job on the local TranslationService executor.
+     * If the job is Prioritizable, it is queued together with the TranslationTasks of the same priority.
+     *
+     * @param job the job to run
+     * @throws java.util.concurrent.RejectedExecutionException if the job cannot be accepted (i.e. the queue is full)
+     */
+    public void execute(Runnable job) {
+        getService().getExecutor().execute(job);
+    }
+
+    /**
+     * Removes a job from the local queue if it has not been started yet.
+     *
+     * @param job the job to remove
+     * @return true if the job has been removed
+     */
+    public boolean remove(Runnable job) {
+        return getService().remove(job);
+    }
+
+    /**
+     * @return the number of tasks waiting in the local queue of each priority (index is the priority value)
+     */
+    public int[] getQueueLengths() {
+        return getService().getQueueLengths();
+    }
+
+    /**
+     * @return the number of tasks of the given priority that the local queue can hold
+     */
+    public int getQueueCapacity(int priority) {
+        return getService().getQueueCapacity(priority);
+    }
+
+    /**
+     * @return the maximum number of pieces of a split sentence that can be translated concurrently on this member
+     */
+    public int getSplitParallelism() {
+        return getService().getSplitParallelism();
+    }
+
     public void shutdown() {
         ExecutorService service = getService().getExecutor();
 
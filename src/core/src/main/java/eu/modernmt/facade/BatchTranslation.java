@@ -0,0 +1,88 @@
+package eu.modernmt.facade;
+
+import eu.modernmt.model.Translation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * A BatchTranslation translates many sentences keeping at most a fixed number of them in flight:
+ * a new sentence is submitted only when a previous one completes, so that a single batch
+ * cannot fill the translation queues and have the requests of the other clients rejected.
+ * <p>
+ * Every sentence is translated independently: if a translation fails, only its future fails
+ * and the remaining sentences are translated anyway.
+ */
+class BatchTranslation {
+
+    private final List<String> sentences;
+    private final Function<String, CompletableFuture<Translation>> translator;
+    private final List<CompletableFuture<Translation>> translations;
+    private final AtomicInteger next = new AtomicInteger(0);
+
+    /**
+     * @param sentences  the sentences to translate
+     * @param translator submits the translation of a sentence
+     */
+    public BatchTranslation(List<String> sentences, Function<String, CompletableFuture<Translation>> translator) {
+        this.sentences = sentences;
+        this.translator = translator;
+        this.translations = new ArrayList<>(sentences.size());
+
+        for (int i = 0; i < sentences.size(); i++)
+            this.translations.add(new CompletableFuture<>());
+    }
+
+    /**
+     * @param window the maximum number of translations in flight
+     * @return the futures of the translations, in the same order of the sentences
+     */
+    public List<CompletableFuture<Translation>> start(int window) {
+        if (window < 1)
+            throw new IllegalArgumentException("Invalid window: " + window);
+
+        for (int i = 0; i < window && i < sentences.size(); i++)
+            submitNext();
+
+        return translations;
+    }
+
+    private void submitNext() {
+        int i;
+        while ((i = next.getAndIncrement()) < sentences.size()) {
+            final int index = i;
+            CompletableFuture<Translation> future = submit(sentences.get(index));
+
+            // translations completed immediately (i.e. cached) do not hold a slot of the window:
+            // the loop continues instead of recurring through the callback
+            boolean done = future.isDone();
+
+            future.whenComplete((translation, error) -> {
+                if (error == null)
+                    translations.get(index).complete(translation);
+                else
+                    translations.get(index).completeExceptionally(error);
+
+                if (!done)
+                    submitNext();
+            });
+
+            if (!done)
+                return;
+        }
+    }
+
+    private CompletableFuture<Translation> submit(String sentence) {
+        try {
+            return translator.apply(sentence);
+        } catch (Throwable e) {
+            CompletableFuture<Translation> future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+            return future;
+        }
+    }
+
+}
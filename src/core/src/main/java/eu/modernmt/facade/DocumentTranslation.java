@@ -0,0 +1,153 @@
+package eu.modernmt.facade;
+
+import eu.modernmt.facade.TranslationFacade.PieceListener;
+import eu.modernmt.facade.TranslationFacade.TranslationTaskImpl;
+import eu.modernmt.lang.LanguagePair;
+import eu.modernmt.model.Sentence;
+import eu.modernmt.model.Tag;
+import eu.modernmt.model.Translation;
+import eu.modernmt.model.Word;
+import eu.modernmt.processing.Postprocessor;
+import eu.modernmt.processing.ProcessingException;
+import eu.modernmt.processing.splitter.SentenceSplitter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+/**
+ * A DocumentTranslation translates the pieces of a preprocessed sentence as separate tasks, so that
+ * the translation of every piece can be returned as soon as it is ready.
+ * The translation of the whole sentence is the same of a single translation task: the decoder translations
+ * of the pieces are joined and postprocessed together, while every piece is postprocessed on a copy.
+ */
+class DocumentTranslation {
+
+    private final Postprocessor postprocessor;
+    private final LanguagePair direction;
+    private final Sentence sentence;
+    private final Sentence[] pieces;
+    private final Sentence[] sources;
+
+    /**
+     * @param postprocessor the postprocessor of the engine
+     * @param direction     the language direction of the translation
+     * @param sentence      the preprocessed sentence to translate
+     */
+    public DocumentTranslation(Postprocessor postprocessor, LanguagePair direction, Sentence sentence) {
+        this.postprocessor = postprocessor;
+        this.direction = direction;
+        this.sentence = sentence;
+        this.pieces = SentenceSplitter.forLanguage(direction.source).split(sentence);
+        this.sources = withTags(sentence, pieces);
+    }
+
+    /**
+     * The pieces returned by the splitter have no tags: the sources of the pieces are copies of them
+     * with the tags of the sentence, so that the concatenation of the sources is the sentence itself.
+     */
+    private static Sentence[] withTags(Sentence sentence, Sentence[] pieces) {
+        Tag[] tags = sentence.getTags();
+        Sentence[] sources = new Sentence[pieces.length];
+
+        int start = 0;
+        int tagIndex = 0;
+        for (int i = 0; i < pieces.length; i++) {
+            Word[] words = pieces[i].getWords();
+            int end = i < pieces.length - 1 ? start + words.length : Integer.MAX_VALUE;
+
+            ArrayList<Tag> pieceTags = new ArrayList<>();
+            for (; tagIndex < tags.length && tags[tagIndex].getPosition() < end; tagIndex++) {
+                Tag tag = Tag.fromTag(tags[tagIndex]);
+                tag.setPosition(tag.getPosition() - start);
+                pieceTags.add(tag);
+            }
+
+            sources[i] = new Sentence(words, pieceTags.toArray(new Tag[0]));
+            start += words.length;
+        }
+
+        return sources;
+    }
+
+    /**
+     * @param translator submits the translation of a piece, the translation must not be postprocessed
+     * @param listener   receives the pieces in order, as soon as a piece and the ones before it are translated
+     * @return the future of the translation of the whole sentence
+     */
+    public CompletableFuture<Translation> start(Function<Sentence, CompletableFuture<Translation>> translator, PieceListener listener) {
+        Translation[] translations = new Translation[pieces.length];
+        CompletableFuture<Void> previous = CompletableFuture.completedFuture(null);
+
+        for (int i = 0; i < pieces.length; i++) {
+            final int index = i;
+
+            previous = previous.thenCombine(submit(translator, pieces[i]), (ignored, translation) -> {
+                translations[index] = translation;
+
+                Sentence source = sources[index];
+                listener.onPiece(index, source.toString(true, false), postprocess(copy(translation, source)));
+                return null;
+            });
+        }
+
+        return previous.thenApply(ignored -> {
+            try {
+                return TranslationTaskImpl.join(postprocessor, direction, sentence, pieces, translations);
+            } catch (ProcessingException e) {
+                throw new CompletionException(e);
+            }
+        });
+    }
+
+    private static CompletableFuture<Translation> submit(Function<Sentence, CompletableFuture<Translation>> translator, Sentence piece) {
+        try {
+            return translator.apply(piece);
+        } catch (Throwable e) {
+            CompletableFuture<Translation> future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+            return future;
+        }
+    }
+
+    private Translation postprocess(Translation translation) {
+        try {
+            postprocessor.process(direction, translation);
+            if (translation.hasNbest())
+                postprocessor.process(direction, translation.getNbest());
+        } catch (ProcessingException e) {
+            throw new CompletionException(e);
+        }
+
+        return translation;
+    }
+
+    /**
+     * The postprocessor modifies the words of the translation:
+     * the decoder translation is left untouched for the join.
+     */
+    private static Translation copy(Translation translation, Sentence source) {
+        Word[] words = translation.getWords();
+        Word[] copies = new Word[words.length];
+        for (int i = 0; i < words.length; i++)
+            copies[i] = new Word(words[i].getText(), words[i].getPlaceholder(), words[i].getRightSpace(), words[i].isRightSpaceRequired());
+
+        Translation copy = new Translation(copies, source, translation.getWordAlignment());
+        copy.setMemoryLookupTime(translation.getMemoryLookupTime());
+        copy.setDecodeTime(translation.getDecodeTime());
+        copy.setQueueTime(translation.getQueueTime());
+        copy.setQueueLength(translation.getQueueLength());
+
+        if (translation.hasNbest()) {
+            List<Translation> nbest = new ArrayList<>(translation.getNbest().size());
+            for (Translation hypothesis : translation.getNbest())
+                nbest.add(copy(hypothesis, source));
+            copy.setNbest(nbest);
+        }
+
+        return copy;
+    }
+
+}
@@ -0,0 +1,77 @@
+package eu.modernmt.facade;
+
+import eu.modernmt.cluster.TranslationTask;
+import eu.modernmt.model.Translation;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * The translations submitted by this member that are still running, by coalescing key.
+ * A task identical to a running one (same key, and the running task can serve it) is not submitted:
+ * it receives the future of the running task, thus the same translation or the same error.
+ * A translation is removed as soon as it completes.
+ */
+class InFlightTranslations {
+
+    private static class InFlightTranslation {
+
+        public final TranslationTask task;
+        public final CompletableFuture<Translation> future = new CompletableFuture<>();
+
+        public InFlightTranslation(TranslationTask task) {
+            this.task = task;
+        }
+
+    }
+
+    private final ConcurrentHashMap<Object, InFlightTranslation> translations = new ConcurrentHashMap<>();
+
+    /**
+     * @param task      the task to run
+     * @param submitter submits a task for execution
+     * @return the future of the translation of the task, shared with the identical tasks
+     */
+    public CompletableFuture<Translation> submit(TranslationTask task, Function<TranslationTask, CompletableFuture<Translation>> submitter) {
+        Object key = task.getCoalescingKey();
+        if (key == null)
+            return submit(submitter, task);
+
+        InFlightTranslation inFlight = new InFlightTranslation(task);
+        InFlightTranslation leader = translations.putIfAbsent(key, inFlight);
+
+        if (leader != null)
+            return leader.task.canServe(task) ? leader.future : submit(submitter, task);
+
+        submit(submitter, task).whenComplete((translation, error) -> {
+            // removed before completing the future, so that a later request does not receive a past error
+            translations.remove(key, inFlight);
+
+            if (error == null)
+                inFlight.future.complete(translation);
+            else
+                inFlight.future.completeExceptionally(error);
+        });
+
+        return inFlight.future;
+    }
+
+    private static CompletableFuture<Translation> submit(Function<TranslationTask, CompletableFuture<Translation>> submitter, TranslationTask task) {
+        try {
+            return submitter.apply(task);
+        } catch (Throwable e) {
+            CompletableFuture<Translation> future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+            return future;
+        }
+    }
+
+    /**
+     * @return the number of translations still running
+     */
+    public int size() {
+        return translations.size();
+    }
+
+}
@@ -3,6 +3,7 @@ package eu.modernmt.facade;
 import eu.modernmt.cleaning.CorporaCleaning;
 import eu.modernmt.cleaning.StringPairFilter;
 import eu.modernmt.cluster.ClusterNode;
+import eu.modernmt.cluster.MemoryCache;
 import eu.modernmt.cluster.NodeInfo;
 import eu.modernmt.data.DataManager;
 import eu.modernmt.data.DataManagerException;
@@ -40,6 +41,10 @@ public class MemoryFacade {
     }
 
     public Memory get(long id) throws PersistenceException {
+        MemoryCache cache = ModernMT.getNode().getMemoryCache();
+        if (cache != null)
+            return cache.get(Collections.singleton(id), this::retrieve).get(id);
+
         Connection connection = null;
         Database db = ModernMT.getNode().getDatabase();
 
@@ -62,6 +67,11 @@ public class MemoryFacade {
     }
 
     public Map<Long, Memory> get(Collection<Long> ids) throws PersistenceException {
+        MemoryCache cache = ModernMT.getNode().getMemoryCache();
+        return cache == null ? retrieve(ids) : cache.get(ids, this::retrieve);
+    }
+
+    private Map<Long, Memory> retrieve(Collection<Long> ids) throws PersistenceException {
         Connection connection = null;
         Database db = ModernMT.getNode().getDatabase();
 
@@ -109,6 +119,8 @@ public class MemoryFacade {
             IOUtils.closeQuietly(connection);
         }
 
+        invalidate(id);
+
         DataManager dataManager = ModernMT.getNode().getDataManager();
         dataManager.delete(id);
 
@@ -248,10 +260,28 @@ public class MemoryFacade {
             connection = db.getConnection();
             MemoryDAO memoryDAO = db.getMemoryDAO(connection);
 
-            return memoryDAO.update(memory);
+            memory = memoryDAO.update(memory);
         } finally {
             IOUtils.closeQuietly(connection);
         }
+
+        if (memory != null)
+            invalidate(memory.getId());
+
+        return memory;
+    }
+
+    /**
+     * Removes the memory from the cache of this node, then from the caches of the other cluster members
+     */
+    private static void invalidate(long id) {
+        ClusterNode node = ModernMT.getNode();
+
+        MemoryCache cache = node.getMemoryCache();
+        if (cache != null)
+            cache.invalidate(id);
+
+        node.notifyMemoryUpdated(id);
     }
 
     public ImportJob getImportJob(UUID id) throws PersistenceException {
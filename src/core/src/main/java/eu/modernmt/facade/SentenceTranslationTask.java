@@ -0,0 +1,122 @@
+package eu.modernmt.facade;
+
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import eu.modernmt.cluster.TranslationTask;
+import eu.modernmt.cluster.serialization.ModelSerializers;
+import eu.modernmt.decoder.DecoderException;
+import eu.modernmt.facade.TranslationFacade.Priority;
+import eu.modernmt.facade.TranslationFacade.TranslationTaskImpl;
+import eu.modernmt.facade.exceptions.TimeoutException;
+import eu.modernmt.lang.LanguagePair;
+import eu.modernmt.model.ContextVector;
+import eu.modernmt.model.Sentence;
+import eu.modernmt.model.Translation;
+
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * A SentenceTranslationTask decodes a sentence that has already been preprocessed and split,
+ * and returns the translation of the decoder without postprocessing it: the member that
+ * submits the task joins the pieces of the original sentence and postprocesses the result,
+ * exactly as a {@link TranslationTaskImpl} does for the whole sentence.
+ */
+class SentenceTranslationTask implements TranslationTask {
+
+    public UUID user;
+    public LanguagePair direction;
+    public Sentence sentence;
+    public ContextVector context;
+    public int nbest;
+    public Priority priority;
+    private int queueLength;
+    private long creationTimestamp;
+    private long expirationTimestamp;
+
+    // necessary for deserialization
+    @SuppressWarnings("unused")
+    public SentenceTranslationTask() {
+    }
+
+    public SentenceTranslationTask(UUID user, LanguagePair direction, Sentence sentence, ContextVector context, int nbest, Priority priority, long expirationTimestamp) {
+        this.user = user;
+        this.direction = direction;
+        this.sentence = sentence;
+        this.context = context;
+        this.nbest = nbest;
+        this.priority = priority;
+        this.creationTimestamp = System.currentTimeMillis();
+        this.expirationTimestamp = expirationTimestamp;
+    }
+
+    @Override
+    public Translation call() throws DecoderException {
+        if (expirationTimestamp > 0 && expirationTimestamp < System.currentTimeMillis())
+            throw new TimeoutException();
+
+        long timeInQueue = System.currentTimeMillis() - creationTimestamp;
+
+        Translation translation = TranslationTaskImpl.decode(ModernMT.getNode().getEngine().getDecoder(),
+                user, direction, sentence, context, nbest);
+        translation.setQueueLength(queueLength);
+        translation.setQueueTime(Math.max(0, timeInQueue));
+
+        return translation;
+    }
+
+    @Override
+    public int getPriority() {
+        return priority.intValue;
+    }
+
+    @Override
+    public void setQueueLength(int size) {
+        this.queueLength = size;
+    }
+
+    @Override
+    public long getExpirationTimestamp() {
+        return expirationTimestamp;
+    }
+
+    @Override
+    public LanguagePair getLanguage() {
+        return direction;
+    }
+
+    @Override
+    public Object getCoalescingKey() {
+        return null;
+    }
+
+    @Override
+    public boolean canServe(TranslationTask other) {
+        return false;
+    }
+
+    @Override
+    public void writeData(ObjectDataOutput out) throws IOException {
+        ModelSerializers.writeUUID(out, user);
+        ModelSerializers.writeLanguagePair(out, direction);
+        ModelSerializers.writeSentence(out, sentence);
+        ModelSerializers.writeContextVector(out, context);
+        out.writeInt(nbest);
+        out.writeByte(priority.ordinal());
+        out.writeLong(creationTimestamp);
+        out.writeLong(expirationTimestamp);
+    }
+
+    @Override
+    public void readData(ObjectDataInput in) throws IOException {
+        user = ModelSerializers.readUUID(in);
+        direction = ModelSerializers.readLanguagePair(in);
+        sentence = ModelSerializers.readSentence(in);
+        context = ModelSerializers.readContextVector(in);
+        nbest = in.readInt();
+        priority = Priority.values()[in.readByte()];
+        creationTimestamp = in.readLong();
+        expirationTimestamp = in.readLong();
+    }
+
+}
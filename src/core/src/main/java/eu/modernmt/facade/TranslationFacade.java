@@ -1,9 +1,16 @@
 package eu.modernmt.facade;
 
 import com.hazelcast.core.HazelcastException;
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
 import eu.modernmt.cluster.ClusterNode;
+import eu.modernmt.cluster.TranslationCache;
 import eu.modernmt.cluster.TranslationTask;
 import eu.modernmt.cluster.error.SystemShutdownException;
+import eu.modernmt.cluster.serialization.ModelSerializers;
+import eu.modernmt.cluster.services.DeadlineExceededException;
+import eu.modernmt.cluster.services.Prioritizable;
+import eu.modernmt.cluster.services.TranslationServiceProxy;
 import eu.modernmt.context.ContextAnalyzer;
 import eu.modernmt.context.ContextAnalyzerException;
 import eu.modernmt.decoder.Decoder;
@@ -30,9 +37,11 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.*;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 /**
  * Created by davide on 31/01/17.
@@ -50,6 +59,16 @@ public class TranslationFacade {
     }
 
     private static final Logger logger = LogManager.getLogger(TranslationFacade.class);
+    private static final int CACHE_SCORE_SCALE = 100;  // context scores of cache keys are rounded to 0.01
+    private static final long RETRY_DELAY = 50L;  // ms
+    private static final int BATCH_QUEUE_SHARE = 8;  // a batch keeps in flight at most 1/8 of the queue capacity
+
+    private final InFlightTranslations inFlightTranslations = new InFlightTranslations();
+    private final ScheduledExecutorService retryScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "TranslationFacade-Retry");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     // =============================
     //  Translation
@@ -68,41 +87,205 @@ public class TranslationFacade {
     }
 
     public Translation get(UUID user, LanguagePair direction, String sentence, ContextVector translationContext, int nbest, Priority priority, long timeout) throws ProcessingException, DecoderException {
+        return await(getAsync(user, direction, sentence, translationContext, nbest, priority, timeout));
+    }
+
+    /**
+     * Requests a translation without waiting for it: the returned future is completed when the
+     * cluster member that runs the translation sends its response, so no thread is held in the meantime.
+     * Errors in the request arguments (i.e. an unsupported language direction) are thrown immediately.
+     *
+     * @return the future of the translation
+     */
+    public CompletableFuture<Translation> getAsync(UUID user, LanguagePair direction, String sentence, ContextVector translationContext, int nbest, Priority priority, long timeout) {
         direction = mapLanguagePair(direction);
         if (nbest > 0)
             ensureDecoderSupportsNBest();
 
         long expirationTimestamp = timeout > 0 ? (System.currentTimeMillis() + timeout) : 0L;
+        return cachedGet(user, direction, sentence, translationContext, nbest, priority, expirationTimestamp);
+    }
 
-        try {
-            return insecureGet(user, direction, sentence, translationContext, nbest, priority, expirationTimestamp);
-        } catch (DecoderException | HazelcastException e) {
-            logger.warn("Translation failed, retry after delay", e);
+    /**
+     * Requests the translations of many sentences sharing the same direction and context.
+     * Every sentence is submitted as a separate task, so the translations are spread across
+     * the cluster members and run in parallel; the cache and the coalescing of identical
+     * requests apply to each sentence.
+     * <p>
+     * In order not to fill the translation queues, the sentences in flight are at most
+     * 1/{@value #BATCH_QUEUE_SHARE} of the local queue capacity of the priority: the others are submitted
+     * as the previous ones complete. The timeout applies to the whole batch.
+     * Errors in the request arguments (i.e. an unsupported language direction) are thrown immediately.
+     *
+     * @return the futures of the translations, in the same order of the input sentences.
+     * Every sentence is translated independently: if a translation fails, only its future fails.
+     */
+    public List<CompletableFuture<Translation>> getAsync(UUID user, LanguagePair direction, List<String> sentences, ContextVector translationContext, int nbest, Priority priority, long timeout) {
+        LanguagePair mappedDirection = mapLanguagePair(direction);
+        if (nbest > 0)
+            ensureDecoderSupportsNBest();
 
-            try {
-                Thread.sleep(50);
-            } catch (InterruptedException e1) {
-                // Ignore it
+        long expirationTimestamp = timeout > 0 ? (System.currentTimeMillis() + timeout) : 0L;
+
+        int capacity = ModernMT.getNode().getTranslationService().getQueueCapacity(priority.intValue);
+        int window = Math.max(1, capacity / BATCH_QUEUE_SHARE);
+
+        return new BatchTranslation(sentences, sentence ->
+                cachedGet(user, mappedDirection, sentence, translationContext, nbest, priority, expirationTimestamp))
+                .start(window);
+    }
+
+    private CompletableFuture<Translation> cachedGet(UUID user, LanguagePair direction, String sentence, ContextVector translationContext, int nbest, Priority priority, long expirationTimestamp) {
+        TranslationCache cache = ModernMT.getNode().getTranslationCache();
+        if (cache == null)
+            return retryingGet(user, direction, sentence, translationContext, nbest, priority, expirationTimestamp);
+
+        TranslationKey key = new TranslationKey(user, direction, sentence, translationContext, nbest, CACHE_SCORE_SCALE);
+        Translation cached = cache.get(key);
+
+        if (cached != null)
+            return CompletableFuture.completedFuture(cached);
+
+        long generation = cache.getGeneration();
+        return retryingGet(user, direction, sentence, translationContext, nbest, priority, expirationTimestamp)
+                .thenApply(translation -> {
+                    cache.put(key, translation, translationContext, generation);
+                    return translation;
+                });
+    }
+
+    /**
+     * Receives the translations of the pieces of a sentence, see
+     * {@link #getAsync(UUID, LanguagePair, String, ContextVector, int, Priority, long, PieceListener)}.
+     */
+    public interface PieceListener {
+
+        /**
+         * @param index       the index of the piece
+         * @param source      the source text of the piece, with its tags and its whitespaces:
+         *                    the concatenation of the pieces is the sentence (XML entities could be normalized)
+         * @param translation the translation of the piece alone
+         */
+        void onPiece(int index, String source, Translation translation);
+
+    }
+
+    /**
+     * Requests the translation of a sentence splitting it in the same pieces translated separately
+     * by the decoder: the pieces are sent to the cluster as separate tasks, so they are translated in parallel
+     * and the listener receives every piece, in order, as soon as the piece and the ones before it are ready.
+     * The returned translation is the same of {@link #getAsync(UUID, LanguagePair, String, ContextVector, int, Priority, long)}:
+     * the pieces are joined and postprocessed as a whole. The cache is not used.
+     *
+     * @return the future of the translation of the whole sentence
+     */
+    public CompletableFuture<Translation> getAsync(UUID user, LanguagePair direction, String sentence, ContextVector translationContext, int nbest, Priority priority, long timeout, PieceListener listener) throws ProcessingException {
+        LanguagePair mappedDirection = mapLanguagePair(direction);
+        if (nbest > 0)
+            ensureDecoderSupportsNBest();
+
+        long expirationTimestamp = timeout > 0 ? (System.currentTimeMillis() + timeout) : 0L;
+
+        Engine engine = ModernMT.getNode().getEngine();
+        Sentence preprocessed = engine.getPreprocessor().process(mappedDirection, sentence);
+
+        return new DocumentTranslation(engine.getPostprocessor(), mappedDirection, preprocessed).start(piece ->
+                retrying(() -> {
+                    if (expirationTimestamp > 0 && expirationTimestamp < System.currentTimeMillis())
+                        return failedFuture(new TimeoutException());
+
+                    return submit(new SentenceTranslationTask(user, mappedDirection, piece, translationContext, nbest, priority, expirationTimestamp));
+                }), listener);
+    }
+
+    private CompletableFuture<Translation> retryingGet(UUID user, LanguagePair direction, String sentence, ContextVector translationContext, int nbest, Priority priority, long expirationTimestamp) {
+        return retrying(() -> insecureGet(user, direction, sentence, translationContext, nbest, priority, expirationTimestamp));
+    }
+
+    /**
+     * @param request sends a request, it is called again once if the first request fails with a transient error
+     */
+    private CompletableFuture<Translation> retrying(Supplier<CompletableFuture<Translation>> request) {
+        CompletableFuture<Translation> result = new CompletableFuture<>();
+
+        request.get().whenComplete((translation, error) -> {
+            if (error == null) {
+                result.complete(translation);
+            } else if (error instanceof TimeoutException) {
+                result.completeExceptionally(error);  // a retry cannot meet the deadline
+            } else if (error instanceof DecoderException || error instanceof HazelcastException) {
+                logger.warn("Translation failed, retry after delay", error);
+
+                retryScheduler.schedule(() -> request.get()
+                        .whenComplete((retried, retryError) -> {
+                            if (retryError == null)
+                                result.complete(retried);
+                            else
+                                result.completeExceptionally(retryError);
+                        }), RETRY_DELAY, TimeUnit.MILLISECONDS);
+            } else {
+                result.completeExceptionally(error);
             }
+        });
 
-            return insecureGet(user, direction, sentence, translationContext, nbest, priority, expirationTimestamp);
-        }
+        return result;
     }
 
-    private Translation insecureGet(UUID user, LanguagePair direction, String sentence, ContextVector translationContext, int nbest, Priority priority, long expirationTimestamp) throws ProcessingException, DecoderException {
+    private CompletableFuture<Translation> insecureGet(UUID user, LanguagePair direction, String sentence, ContextVector translationContext, int nbest, Priority priority, long expirationTimestamp) {
         if (expirationTimestamp > 0 && expirationTimestamp < System.currentTimeMillis())
-            throw new TimeoutException();
+            return failedFuture(new TimeoutException());
 
+        TranslationTaskImpl task = new TranslationTaskImpl(user, direction, sentence, translationContext, nbest, priority, expirationTimestamp);
+
+        // Identical concurrent requests share the execution of the first one
+        return inFlightTranslations.submit(task, TranslationFacade::submit);
+    }
+
+    /**
+     * @return a future that is completed with the translation or with the unwrapped error of the task
+     */
+    private static CompletableFuture<Translation> submit(TranslationTask task) {
+        CompletableFuture<Translation> future;
         try {
-            ClusterNode node = ModernMT.getNode();
+            future = ModernMT.getNode().submit(task);
+        } catch (Throwable e) {
+            return failedFuture(e);
+        }
+
+        CompletableFuture<Translation> result = new CompletableFuture<>();
+        future.whenComplete((translation, error) -> {
+            if (error == null)
+                result.complete(translation);
+            else
+                result.completeExceptionally(unwrap(error));
+        });
+
+        return result;
+    }
+
+    private static <T> CompletableFuture<T> failedFuture(Throwable error) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(error);
+        return future;
+    }
 
-            TranslationTask task = new TranslationTaskImpl(user, direction, sentence, translationContext, nbest, priority, expirationTimestamp);
-            Future<Translation> future = node.submit(task);
+    private static Throwable unwrap(Throwable error) {
+        while ((error instanceof CompletionException || error instanceof ExecutionException) && error.getCause() != null)
+            error = error.getCause();
+
+        if (error instanceof DeadlineExceededException)
+            return new TimeoutException();
+
+        return error;
+    }
+
+    private static Translation await(Future<Translation> future) throws ProcessingException, DecoderException {
+        try {
             return future.get();
         } catch (InterruptedException e) {
             throw new SystemShutdownException(e);
         } catch (ExecutionException e) {
-            Throwable cause = e.getCause();
+            Throwable cause = unwrap(e.getCause());
 
             if (cause instanceof ProcessingException)
                 throw (ProcessingException) cause;
@@ -145,21 +328,50 @@ public class TranslationFacade {
         return getContextVectors(user, new StringCorpus(null, source, context), limit, source, targets);
     }
 
+    /**
+     * Compute the context vectors of many documents for many target languages in a single call:
+     * every document is analyzed once per source language and the queries run in parallel.
+     *
+     * @return for every document (in the same order), the context vector for each supported target language
+     */
+    public List<Map<Language, ContextVector>> getContextVectors(UUID user, List<String> contexts, int limit, Language source, Language... targets) throws ContextAnalyzerException {
+        ArrayList<Corpus> corpora = new ArrayList<>(contexts.size());
+        for (String context : contexts)
+            corpora.add(new StringCorpus(null, source, context));
+
+        return getCorporaContextVectors(user, corpora, limit, source, targets);
+    }
+
     private Map<Language, ContextVector> getContextVectors(UUID user, Corpus context, int limit, Language source, Language... targets) throws ContextAnalyzerException {
+        return getCorporaContextVectors(user, Collections.singletonList(context), limit, source, targets).get(0);
+    }
+
+    private List<Map<Language, ContextVector>> getCorporaContextVectors(UUID user, List<Corpus> contexts, int limit, Language source, Language... targets) throws ContextAnalyzerException {
         Engine engine = ModernMT.getNode().getEngine();
         ContextAnalyzer analyzer = engine.getContextAnalyzer();
 
-        HashMap<Language, ContextVector> result = new HashMap<>(targets.length);
+        HashMap<Language, LanguagePair> directions = new HashMap<>(targets.length);
         for (Language target : targets) {
             try {
-                LanguagePair direction = mapLanguagePair(new LanguagePair(source, target));
-                ContextVector contextVector = analyzer.getContextVector(user, direction, context, limit);
-                result.put(target, contextVector);
+                directions.put(target, mapLanguagePair(new LanguagePair(source, target)));
             } catch (UnsupportedLanguageException e) {
                 // ignore it
             }
         }
 
+        List<Map<LanguagePair, ContextVector>> vectors = directions.isEmpty() ? null :
+                analyzer.getContextVectors(user, contexts, new HashSet<>(directions.values()), limit);
+
+        ArrayList<Map<Language, ContextVector>> result = new ArrayList<>(contexts.size());
+        for (int i = 0; i < contexts.size(); i++) {
+            HashMap<Language, ContextVector> map = new HashMap<>(directions.size());
+
+            for (Map.Entry<Language, LanguagePair> entry : directions.entrySet())
+                map.put(entry.getKey(), vectors.get(i).get(entry.getValue()));
+
+            result.add(map);
+        }
+
         return result;
     }
 
@@ -187,17 +399,97 @@ public class TranslationFacade {
     //  Internal Operations
     // -----------------------------
 
-    private static class TranslationTaskImpl implements TranslationTask {
+    /**
+     * Two tasks with equal keys produce the same translation: same user (that defines the visible memories),
+     * direction, text, context vector and nbest size. The text is not normalized because the output
+     * preserves the original whitespaces and the context vector entries are compared by memory id.
+     * Context vector scores can be compared exactly or quantized, multiplied by the given scale and rounded.
+     */
+    static final class TranslationKey {
+
+        public static final int EXACT_SCORES = 0;
+
+        private final UUID user;
+        private final LanguagePair direction;
+        private final String text;
+        private final int nbest;
+        private final long[] memories;
+        private final int[] scores;
+        private final int hash;
+
+        public TranslationKey(UUID user, LanguagePair direction, String text, ContextVector context, int nbest, int scale) {
+            this.user = user;
+            this.direction = direction;
+            this.text = text;
+            this.nbest = nbest;
 
-        public final UUID user;
-        public final LanguagePair direction;
-        public final String text;
-        public final ContextVector context;
-        public final int nbest;
-        public final Priority priority;
+            if (context == null) {
+                this.memories = null;
+                this.scores = null;
+            } else {
+                ArrayList<ContextVector.Entry> entries = new ArrayList<>(context.size());
+                for (ContextVector.Entry entry : context)
+                    entries.add(entry);
+                entries.sort(Comparator.comparingLong(entry -> entry.memory.getId()));
+
+                this.memories = new long[entries.size()];
+                this.scores = new int[entries.size()];
+                for (int i = 0; i < memories.length; i++) {
+                    memories[i] = entries.get(i).memory.getId();
+                    float score = entries.get(i).score;
+                    scores[i] = scale == EXACT_SCORES ? Float.floatToIntBits(score) : Math.round(score * scale);
+                }
+            }
+
+            int result = user != null ? user.hashCode() : 0;
+            result = 31 * result + direction.hashCode();
+            result = 31 * result + text.hashCode();
+            result = 31 * result + nbest;
+            result = 31 * result + Arrays.hashCode(memories);
+            result = 31 * result + Arrays.hashCode(scores);
+            this.hash = result;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            TranslationKey that = (TranslationKey) o;
+
+            if (hash != that.hash) return false;
+            if (nbest != that.nbest) return false;
+            if (user != null ? !user.equals(that.user) : that.user != null) return false;
+            if (!direction.equals(that.direction)) return false;
+            if (!text.equals(that.text)) return false;
+            if (!Arrays.equals(memories, that.memories)) return false;
+            return Arrays.equals(scores, that.scores);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+    }
+
+    static class TranslationTaskImpl implements TranslationTask {
+
+        public UUID user;
+        public LanguagePair direction;
+        public String text;
+        public ContextVector context;
+        public int nbest;
+        public Priority priority;
         private int queueLength;
-        private final long creationTimestamp;
-        private final long expirationTimestamp;
+        private long creationTimestamp;
+        private long expirationTimestamp;
+        private TranslationKey key = null;
+
+        // necessary for deserialization
+        @SuppressWarnings("unused")
+        public TranslationTaskImpl() {
+        }
 
         public TranslationTaskImpl(UUID user, LanguagePair direction, String text, ContextVector context, int nbest, Priority priority, long expirationTimestamp) {
             this.user = user;
@@ -212,7 +504,7 @@ public class TranslationFacade {
 
         @Override
         public Translation call() throws ProcessingException, DecoderException {
-            if (expirationTimestamp > 0 && expirationTimestamp < System.currentTimeMillis())
+            if (isExpired())
                 throw new TimeoutException();
 
             long timeInQueue = System.currentTimeMillis() - creationTimestamp;
@@ -231,15 +523,7 @@ public class TranslationFacade {
             Sentence[] sentencePieces = SentenceSplitter.forLanguage(direction.source).split(sentence);
             Translation[] translationPieces = translate(sentencePieces, decoder);
 
-            translation = this.merge(sentence, sentencePieces, translationPieces);
-
-            postprocessor.process(direction, translation);
-
-            // NBest list
-            if (translation.hasNbest()) {
-                List<Translation> hypotheses = translation.getNbest();
-                postprocessor.process(direction, hypotheses);
-            }
+            translation = join(postprocessor, direction, sentence, sentencePieces, translationPieces);
 
             translation.setQueueLength(queueLength);
             translation.setQueueTime(Math.max(0, timeInQueue));
@@ -248,6 +532,11 @@ public class TranslationFacade {
         }
 
         private Translation[] translate(Sentence[] sentences, Decoder decoder) throws DecoderException {
+            int parallelism = Math.min(sentences.length, ModernMT.getNode().getTranslationService().getSplitParallelism());
+
+            if (parallelism > 1)
+                return new ParallelTranslation(sentences, decoder).translate(parallelism);
+
             Translation[] translations = new Translation[sentences.length];
 
             for (int i = 0; i < sentences.length; i++)
@@ -257,6 +546,10 @@ public class TranslationFacade {
         }
 
         private Translation translate(Sentence sentence, Decoder decoder) throws DecoderException {
+            return decode(decoder, user, direction, sentence, context, nbest);
+        }
+
+        static Translation decode(Decoder decoder, UUID user, LanguagePair direction, Sentence sentence, ContextVector context, int nbest) throws DecoderException {
             Translation translation;
 
             if (nbest > 0) {
@@ -269,7 +562,24 @@ public class TranslationFacade {
             return translation;
         }
 
-        private Translation merge(Sentence originalSentence, Sentence[] sentencePieces, Translation[] translationPieces) {
+        /**
+         * Joins the decoder translations of the pieces of a sentence and postprocesses the result.
+         */
+        static Translation join(Postprocessor postprocessor, LanguagePair direction, Sentence originalSentence, Sentence[] sentencePieces, Translation[] translationPieces) throws ProcessingException {
+            Translation translation = merge(originalSentence, sentencePieces, translationPieces);
+
+            postprocessor.process(direction, translation);
+
+            // NBest list
+            if (translation.hasNbest()) {
+                List<Translation> hypotheses = translation.getNbest();
+                postprocessor.process(direction, hypotheses);
+            }
+
+            return translation;
+        }
+
+        private static Translation merge(Sentence originalSentence, Sentence[] sentencePieces, Translation[] translationPieces) {
             Translation translation = TranslationJoiner.join(originalSentence, sentencePieces, translationPieces);
 
             if (translation.hasNbest()) {
@@ -307,10 +617,163 @@ public class TranslationFacade {
             this.queueLength = size;
         }
 
+        @Override
+        public long getExpirationTimestamp() {
+            return expirationTimestamp;
+        }
+
+        private boolean isExpired() {
+            return expirationTimestamp > 0 && expirationTimestamp < System.currentTimeMillis();
+        }
+
         @Override
         public LanguagePair getLanguage() {
             return direction;
         }
 
+        @Override
+        public Object getCoalescingKey() {
+            if (key == null)
+                key = new TranslationKey(user, direction, text, context, nbest, TranslationKey.EXACT_SCORES);
+            return key;
+        }
+
+        @Override
+        public boolean canServe(TranslationTask other) {
+            if (!(other instanceof TranslationTaskImpl))
+                return false;
+
+            TranslationTaskImpl task = (TranslationTaskImpl) other;
+
+            if (priority.intValue > task.priority.intValue)
+                return false;
+
+            return expirationTimestamp == 0 || (task.expirationTimestamp > 0 && task.expirationTimestamp <= expirationTimestamp);
+        }
+
+        @Override
+        public void writeData(ObjectDataOutput out) throws IOException {
+            ModelSerializers.writeUUID(out, user);
+            ModelSerializers.writeLanguagePair(out, direction);
+            out.writeUTF(text);
+            ModelSerializers.writeContextVector(out, context);
+            out.writeInt(nbest);
+            out.writeByte(priority.ordinal());
+            out.writeLong(creationTimestamp);
+            out.writeLong(expirationTimestamp);
+        }
+
+        @Override
+        public void readData(ObjectDataInput in) throws IOException {
+            user = ModelSerializers.readUUID(in);
+            direction = ModelSerializers.readLanguagePair(in);
+            text = in.readUTF();
+            context = ModelSerializers.readContextVector(in);
+            nbest = in.readInt();
+            priority = Priority.values()[in.readByte()];
+            creationTimestamp = in.readLong();
+            expirationTimestamp = in.readLong();
+        }
+
+        /**
+         * A ParallelTranslation translates the pieces of a split sentence concurrently.
+         * Helper jobs are queued on the local TranslationService executor with the priority of the task,
+         * while the thread running the task keeps translating pieces too: this way the task
+         * never waits for helpers that have not been scheduled yet.
+         * When all the pieces have been taken, the helpers still in queue are removed, so that they
+         * do not take queue capacity and threads for nothing.
+         * Once the task has expired, the remaining pieces are not translated and the task fails.
+         */
+        private class ParallelTranslation implements Runnable, Prioritizable {
+
+            private final Sentence[] sentences;
+            private final Decoder decoder;
+            private final Translation[] translations;
+            private final AtomicInteger next = new AtomicInteger(0);
+            private final CountDownLatch done;
+            private volatile Throwable error = null;
+
+            public ParallelTranslation(Sentence[] sentences, Decoder decoder) {
+                this.sentences = sentences;
+                this.decoder = decoder;
+                this.translations = new Translation[sentences.length];
+                this.done = new CountDownLatch(sentences.length);
+            }
+
+            public Translation[] translate(int parallelism) throws DecoderException {
+                TranslationServiceProxy service = ModernMT.getNode().getTranslationService();
+
+                int helpers = 0;
+                for (int i = 1; i < parallelism; i++) {
+                    try {
+                        service.execute(this);
+                        helpers++;
+                    } catch (RejectedExecutionException e) {
+                        break;  // queue is full, remaining pieces are translated by the current thread
+                    }
+                }
+
+                this.run();
+
+                // every piece has been taken, the helpers not started yet have nothing to do
+                for (int i = 0; i < helpers; i++) {
+                    if (!service.remove(this))
+                        break;
+                }
+
+                try {
+                    done.await();
+                } catch (InterruptedException e) {
+                    throw new SystemShutdownException(e);
+                }
+
+                if (error != null) {
+                    if (error instanceof DecoderException)
+                        throw (DecoderException) error;
+                    else if (error instanceof RuntimeException)
+                        throw (RuntimeException) error;
+                    else if (error instanceof Error)
+                        throw (Error) error;
+                    else
+                        throw new Error("Unexpected exception thrown: " + error.getMessage(), error);
+                }
+
+                return translations;
+            }
+
+            @Override
+            public void run() {
+                int i;
+                while ((i = next.getAndIncrement()) < sentences.length) {
+                    try {
+                        if (error == null && isExpired())
+                            error = new TimeoutException();
+                        if (error == null)
+                            translations[i] = TranslationTaskImpl.this.translate(sentences[i], decoder);
+                    } catch (Throwable e) {
+                        error = e;
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }
+
+            @Override
+            public int getPriority() {
+                return TranslationTaskImpl.this.getPriority();
+            }
+
+            @Override
+            public void setQueueLength(int size) {
+                // Ignore it
+            }
+
+            @Override
+            public long getExpirationTimestamp() {
+                return expirationTimestamp;
+            }
+
+        }
+
     }
 }
@@ -0,0 +1,64 @@
+package eu.modernmt.api.actions.translation;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import eu.modernmt.api.framework.Parameters.ParameterParsingException;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+public class TranslateBatchTest {
+
+    private static JsonArray array(int size) {
+        JsonArray array = new JsonArray();
+        for (int i = 0; i < size; i++)
+            array.add(new JsonPrimitive("segment " + i));
+        return array;
+    }
+
+    @Test
+    public void queriesKeepTheirOrder() throws Throwable {
+        JsonArray array = new JsonArray();
+        array.add(new JsonPrimitive("Hello"));
+        array.add(new JsonPrimitive("world"));
+        array.add(new JsonPrimitive("Hello"));
+
+        assertEquals(Arrays.asList("Hello", "world", "Hello"), TranslateBatch.Params.parseQueries(array));
+    }
+
+    @Test
+    public void maxBatchSize() throws Throwable {
+        assertEquals(TranslateBatch.MAX_BATCH_SIZE, TranslateBatch.Params.parseQueries(array(TranslateBatch.MAX_BATCH_SIZE)).size());
+    }
+
+    @Test(expected = ParameterParsingException.class)
+    public void maxBatchSizeExceeded() throws Throwable {
+        TranslateBatch.Params.parseQueries(array(TranslateBatch.MAX_BATCH_SIZE + 1));
+    }
+
+    @Test(expected = ParameterParsingException.class)
+    public void emptyBatch() throws Throwable {
+        TranslateBatch.Params.parseQueries(new JsonArray());
+    }
+
+    @Test(expected = ParameterParsingException.class)
+    public void maxQueryLengthExceeded() throws Throwable {
+        char[] query = new char[Translate.MAX_QUERY_LENGTH + 1];
+        Arrays.fill(query, 'a');
+
+        JsonArray array = array(2);
+        array.add(new JsonPrimitive(new String(query)));
+        TranslateBatch.Params.parseQueries(array);
+    }
+
+    @Test(expected = ParameterParsingException.class)
+    public void invalidQuery() throws Throwable {
+        JsonArray array = array(2);
+        array.add(new JsonObject());
+        TranslateBatch.Params.parseQueries(array);
+    }
+
+}
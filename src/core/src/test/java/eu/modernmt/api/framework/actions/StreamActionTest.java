@@ -0,0 +1,64 @@
+package eu.modernmt.api.framework.actions;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonPrimitive;
+import eu.modernmt.api.framework.Parameters;
+import eu.modernmt.api.framework.RESTRequest;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class StreamActionTest {
+
+    private static class CountingAction extends StreamAction {
+
+        private final RuntimeException error;
+
+        CountingAction(RuntimeException error) {
+            this.error = error;
+        }
+
+        @Override
+        protected CompletableFuture<?> execute(RESTRequest req, Parameters params, Stream stream) {
+            return CompletableFuture.runAsync(() -> {
+                for (int i = 0; i < 3; i++)
+                    stream.write(new JsonPrimitive(i));
+
+                if (error != null)
+                    throw error;
+            });
+        }
+
+    }
+
+    @Test
+    public void synchronousRequestCollectsTheElements() throws Throwable {
+        CountingAction action = new CountingAction(null);
+        JsonElement json = action.getResult(null, null).dump(action, null, null);
+
+        JsonArray expected = new JsonArray();
+        for (int i = 0; i < 3; i++)
+            expected.add(new JsonPrimitive(i));
+
+        assertEquals(expected, json);
+    }
+
+    @Test
+    public void synchronousRequestThrowsTheError() {
+        RuntimeException error = new RuntimeException("failure");
+
+        try {
+            new CountingAction(error).getResult(null, null);
+        } catch (Throwable e) {
+            assertSame(error, e);
+            return;
+        }
+
+        throw new AssertionError("Action completed successfully");
+    }
+
+}
@@ -0,0 +1,148 @@
+package eu.modernmt.cluster;
+
+import com.hazelcast.core.Member;
+import com.hazelcast.instance.MemberImpl;
+import com.hazelcast.nio.Address;
+import com.hazelcast.version.MemberVersion;
+import eu.modernmt.lang.Language;
+import eu.modernmt.lang.LanguagePair;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.UnknownHostException;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class LoadBalancerTest {
+
+    private static final LanguagePair EN__IT = new LanguagePair(Language.ENGLISH, Language.ITALIAN);
+
+    private static final int HIGH = 0;
+    private static final int NORMAL = 1;
+    private static final int BACKGROUND = 2;
+
+    private LoadBalancer balancer;
+
+    @Before
+    public void setup() {
+        this.balancer = new LoadBalancer();
+    }
+
+    @After
+    public void teardown() {
+        this.balancer.close();
+    }
+
+    private static Member member(int port, int... lengths) throws UnknownHostException {
+        MemberImpl member = new MemberImpl(new Address("127.0.0.1", port), MemberVersion.UNKNOWN, true,
+                UUID.randomUUID().toString());
+        NodeInfo.updateQueueLengthsInMember(member, lengths);
+        return member;
+    }
+
+    @Test
+    public void publishedLengthsAreCumulative() throws Throwable {
+        // 2 HIGH, 3 NORMAL and 4 BACKGROUND tasks
+        Member member = member(5701, 2, 5, 9);
+
+        assertEquals(2, NodeInfo.getQueueLength(member, HIGH));
+        assertEquals(5, NodeInfo.getQueueLength(member, NORMAL));
+        assertEquals(9, NodeInfo.getQueueLength(member, BACKGROUND));
+    }
+
+    @Test
+    public void missingLengths() throws Throwable {
+        MemberImpl member = new MemberImpl(new Address("127.0.0.1", 5701), MemberVersion.UNKNOWN, true,
+                UUID.randomUUID().toString());
+        assertEquals(0, NodeInfo.getQueueLength(member, BACKGROUND));
+
+        NodeInfo.updateQueueLengthsInMember(member, new int[]{3});
+        assertEquals(3, NodeInfo.getQueueLength(member, BACKGROUND));
+    }
+
+    @Test
+    public void selectWithMixedPriorities() throws Throwable {
+        // 6 HIGH tasks
+        Member busyHigh = member(5701, 6, 6, 6);
+        // 9 BACKGROUND tasks
+        Member busyBackground = member(5702, 0, 0, 9);
+
+        List<Member> candidates = Arrays.asList(busyHigh, busyBackground);
+
+        for (int i = 0; i < 20; i++) {
+            // a HIGH task waits for the HIGH tasks only
+            assertSame(busyBackground, balancer.select(candidates, EN__IT, HIGH, null));
+            assertSame(busyBackground, balancer.select(candidates, EN__IT, NORMAL, null));
+            // a BACKGROUND task waits for all of them: 6 on the first member, 9 on the second
+            assertSame(busyHigh, balancer.select(candidates, EN__IT, BACKGROUND, null));
+        }
+    }
+
+    private static List<Member> members(int count) throws UnknownHostException {
+        ArrayList<Member> members = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+            members.add(member(5701 + i, 0, 0, 0));
+        return members;
+    }
+
+    private static Member preferred(List<Member> candidates, Object key) {
+        return candidates.get(LoadBalancer.getPreferredCandidate(candidates, key));
+    }
+
+    @Test
+    public void preferredCandidateDoesNotDependOnOrder() throws Throwable {
+        List<Member> members = members(5);
+        List<Member> shuffled = new ArrayList<>(members);
+        Collections.shuffle(shuffled, new Random(42));
+
+        for (int key = 0; key < 100; key++)
+            assertSame(preferred(members, "key" + key), preferred(shuffled, "key" + key));
+    }
+
+    @Test
+    public void preferredCandidateChangesOnlyIfItLeaves() throws Throwable {
+        List<Member> members = members(5);
+
+        for (int key = 0; key < 100; key++) {
+            Member preferred = preferred(members, "key" + key);
+
+            for (Member departed : members) {
+                List<Member> remaining = new ArrayList<>(members);
+                remaining.remove(departed);
+
+                if (departed == preferred)
+                    assertTrue(remaining.contains(preferred(remaining, "key" + key)));
+                else
+                    assertSame(preferred, preferred(remaining, "key" + key));
+            }
+        }
+    }
+
+    @Test
+    public void keysAreSpreadAcrossCandidates() throws Throwable {
+        List<Member> members = members(4);
+        HashMap<Member, Integer> counts = new HashMap<>();
+
+        for (int key = 0; key < 400; key++)
+            counts.merge(preferred(members, "key" + key), 1, Integer::sum);
+
+        assertEquals(members.size(), counts.size());
+        for (int count : counts.values())
+            assertTrue(count > 50);
+    }
+
+    @Test
+    public void identicalTasksMeetOnTheSameMember() throws Throwable {
+        List<Member> members = members(4);
+
+        // same load everywhere, the preferred candidate always wins
+        for (int key = 0; key < 20; key++) {
+            Member preferred = preferred(members, "key" + key);
+            for (int i = 0; i < 10; i++)
+                assertSame(preferred, balancer.select(members, EN__IT, NORMAL, "key" + key));
+        }
+    }
+
+}
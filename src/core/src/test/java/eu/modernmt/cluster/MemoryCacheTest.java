@@ -0,0 +1,113 @@
+package eu.modernmt.cluster;
+
+import eu.modernmt.config.MemoryCacheConfig;
+import eu.modernmt.data.DataBatch;
+import eu.modernmt.data.Deletion;
+import eu.modernmt.data.TranslationUnit;
+import eu.modernmt.model.Memory;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class MemoryCacheTest {
+
+    private MemoryCache cache;
+    private ArrayList<Long> loaded;
+
+    @Before
+    public void setup() {
+        this.cache = new MemoryCache(new MemoryCacheConfig());
+        this.loaded = new ArrayList<>();
+    }
+
+    private Map<Long, Memory> load(Collection<Long> ids) {
+        HashMap<Long, Memory> result = new HashMap<>();
+        for (long id : ids) {
+            loaded.add(id);
+            if (id > 0)
+                result.put(id, new Memory(id, "memory-" + id));
+        }
+
+        return result;
+    }
+
+    private static DataBatch deletions(long... memories) {
+        ArrayList<Deletion> deletions = new ArrayList<>();
+        for (long memory : memories)
+            deletions.add(new Deletion((short) 1, 0L, memory));
+
+        return new DataBatch() {
+            @Override
+            public Collection<TranslationUnit> getTranslationUnits() {
+                return Collections.emptyList();
+            }
+
+            @Override
+            public Collection<Deletion> getDeletions() {
+                return deletions;
+            }
+
+            @Override
+            public Map<Short, Long> getChannelPositions() {
+                return Collections.emptyMap();
+            }
+        };
+    }
+
+    @Test
+    public void readThrough() throws Throwable {
+        Map<Long, Memory> memories = cache.get(Arrays.asList(1L, 2L), this::load);
+        assertEquals("memory-1", memories.get(1L).getName());
+        assertEquals("memory-2", memories.get(2L).getName());
+
+        memories = cache.get(Arrays.asList(1L, 2L, 3L), this::load);
+        assertEquals(3, memories.size());
+        assertEquals(Arrays.asList(1L, 2L, 3L), loaded);
+    }
+
+    @Test
+    public void missingMemoriesAreNotCached() throws Throwable {
+        assertTrue(cache.get(Collections.singleton(-1L), this::load).isEmpty());
+        assertTrue(cache.get(Collections.singleton(-1L), this::load).isEmpty());
+
+        assertEquals(Arrays.asList(-1L, -1L), loaded);
+    }
+
+    @Test
+    public void returnsCopies() throws Throwable {
+        cache.get(Collections.singleton(1L), this::load).get(1L).setName("changed");
+        assertEquals("memory-1", cache.get(Collections.singleton(1L), this::load).get(1L).getName());
+    }
+
+    @Test
+    public void deletionsInvalidateMemories() throws Throwable {
+        cache.get(Arrays.asList(1L, 2L), this::load);
+        cache.onDataReceived(deletions(1L));
+        cache.get(Arrays.asList(1L, 2L), this::load);
+
+        assertEquals(Arrays.asList(1L, 2L, 1L), loaded);
+    }
+
+    @Test
+    public void memoriesLoadedDuringInvalidationAreNotCached() throws Throwable {
+        cache.get(Collections.singleton(1L), ids -> {
+            Map<Long, Memory> result = load(ids);
+            cache.invalidate(1L);  // updated while reading
+            return result;
+        });
+
+        cache.get(Collections.singleton(1L), this::load);
+        assertEquals(Arrays.asList(1L, 1L), loaded);
+    }
+
+    @Test
+    public void noChannelPositionsRequired() {
+        assertNull(cache.getLatestChannelPositions());
+        assertFalse(cache.needsProcessing());
+        assertFalse(cache.needsAlignment());
+    }
+
+}
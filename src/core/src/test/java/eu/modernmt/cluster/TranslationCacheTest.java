@@ -0,0 +1,211 @@
+package eu.modernmt.cluster;
+
+import eu.modernmt.config.TranslationCacheConfig;
+import eu.modernmt.data.DataBatch;
+import eu.modernmt.data.Deletion;
+import eu.modernmt.data.TranslationUnit;
+import eu.modernmt.lang.Language;
+import eu.modernmt.lang.LanguagePair;
+import eu.modernmt.model.ContextVector;
+import eu.modernmt.model.Sentence;
+import eu.modernmt.model.Translation;
+import eu.modernmt.model.Word;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class TranslationCacheTest {
+
+    private static final LanguagePair EN__IT = new LanguagePair(Language.ENGLISH, Language.ITALIAN);
+
+    private TranslationCache cache;
+
+    @Before
+    public void setup() {
+        TranslationCacheConfig config = new TranslationCacheConfig();
+        config.setEnabled(true);
+        config.setSize(100);
+
+        this.cache = new TranslationCache(config);
+    }
+
+    private static Translation translation(String text) {
+        Sentence source = new Sentence(new Word[]{new Word(text)});
+        return Translation.fromTokens(source, new String[]{text});
+    }
+
+    private static ContextVector context(long... memories) {
+        ContextVector.Builder builder = new ContextVector.Builder();
+        for (long memory : memories)
+            builder.add(memory, 1.f / memory);
+        return builder.build();
+    }
+
+    private static DataBatch batch(long[] contributions, long[] deletions) {
+        ArrayList<TranslationUnit> units = new ArrayList<>();
+        for (long memory : contributions)
+            units.add(new TranslationUnit((short) 0, 0L, null, EN__IT, memory, "a", "b", null, null, new Date(), null, null, null));
+
+        ArrayList<Deletion> removed = new ArrayList<>();
+        for (long memory : deletions)
+            removed.add(new Deletion((short) 1, 0L, memory));
+
+        return new DataBatch() {
+            @Override
+            public Collection<TranslationUnit> getTranslationUnits() {
+                return units;
+            }
+
+            @Override
+            public Collection<Deletion> getDeletions() {
+                return removed;
+            }
+
+            @Override
+            public Map<Short, Long> getChannelPositions() {
+                return Collections.emptyMap();
+            }
+        };
+    }
+
+    private void update(long[] contributions, long[] deletions) {
+        cache.onDataReceived(batch(contributions, deletions));
+        cache.onDataBatchProcessed();
+    }
+
+    @Test
+    public void putAndGet() {
+        Translation translation = translation("a");
+        cache.put("a", translation, context(1, 2), cache.getGeneration());
+
+        assertSame(translation, cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals(.5, cache.getHitRate(), 0.);
+    }
+
+    @Test
+    public void updatesInvalidateTheirMemories() {
+        long generation = cache.getGeneration();
+        cache.put("a", translation("a"), context(1, 2), generation);
+        cache.put("b", translation("b"), context(2, 3), generation);
+        cache.put("c", translation("c"), context(4), generation);
+        cache.put("d", translation("d"), null, generation);
+
+        update(new long[]{1}, new long[0]);
+        assertNull(cache.get("a"));
+        assertNotNull(cache.get("b"));
+
+        update(new long[0], new long[]{3});
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("c"));
+        assertNotNull(cache.get("d"));
+
+        assertEquals(2, cache.getInvalidations());
+    }
+
+    @Test
+    public void invalidationWaitsBatchProcessing() {
+        cache.put("a", translation("a"), context(1), cache.getGeneration());
+        cache.onDataReceived(batch(new long[]{1}, new long[0]));
+
+        // Memories are still updating
+        assertNotNull(cache.get("a"));
+
+        cache.onDataBatchProcessed();
+        assertNull(cache.get("a"));
+    }
+
+    @Test
+    public void translationsStartedBeforeUpdatesAreNotCached() {
+        long generation = cache.getGeneration();
+
+        update(new long[]{1}, new long[0]);
+
+        cache.put("a", translation("a"), context(1), generation);
+        cache.put("b", translation("b"), context(2), generation);
+
+        assertNull(cache.get("a"));
+        assertNotNull(cache.get("b"));
+    }
+
+    @Test
+    public void rejectedTranslationsAreNotIndexed() {
+        long generation = cache.getGeneration();
+
+        update(new long[]{1}, new long[0]);
+        cache.put("a", translation("a"), context(1, 2), generation);
+
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.getIndexedMemories());
+    }
+
+    @Test
+    public void evictedTranslationsAreNotIndexed() {
+        for (int i = 1; i <= 1000; i++)
+            cache.put(i, translation("translation number " + i), context(i), cache.getGeneration());
+
+        assertTrue(cache.size() <= 100);
+        assertEquals(cache.size(), cache.getIndexedMemories());
+
+        update(new long[]{1000}, new long[0]);
+        assertEquals(cache.size(), cache.getIndexedMemories());
+    }
+
+    @Test
+    public void nearRealTimeInvalidationWaitsRefresh() {
+        cache.setNearRealTime(true);
+
+        cache.put("a", translation("a"), context(1), cache.getGeneration());
+        update(new long[]{1}, new long[0]);
+
+        // The update is not searchable yet: a translation started now reads the previous content
+        cache.put("b", translation("b"), context(1), cache.getGeneration());
+        assertNotNull(cache.get("a"));
+        assertNotNull(cache.get("b"));
+
+        cache.beforeMemoryRefresh();
+        long generation = cache.getGeneration();
+
+        // A batch processed during the refresh waits for the next one
+        update(new long[]{2}, new long[0]);
+        cache.put("c", translation("c"), context(2), cache.getGeneration());
+
+        cache.afterMemoryRefresh();
+        assertNull(cache.get("a"));
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("c"));
+
+        // Translations started during the refresh could read the previous content
+        cache.put("d", translation("d"), context(1), generation);
+        assertNull(cache.get("d"));
+
+        cache.beforeMemoryRefresh();
+        cache.afterMemoryRefresh();
+        assertNull(cache.get("c"));
+    }
+
+    @Test
+    public void memoryBudget() {
+        TranslationCacheConfig config = new TranslationCacheConfig();
+        config.setMemory(1);
+        TranslationCache cache = new TranslationCache(config);
+
+        for (int i = 0; i < 10000; i++)
+            cache.put(i, translation("translation number " + i), context(1), cache.getGeneration());
+
+        assertTrue(cache.size() > 0);
+        assertTrue(cache.size() < 10000);
+        assertNotNull(cache.get(9999));
+    }
+
+    @Test
+    public void noChannelPositionsRequired() {
+        assertNull(cache.getLatestChannelPositions());
+        assertFalse(cache.needsProcessing());
+        assertFalse(cache.needsAlignment());
+    }
+
+}
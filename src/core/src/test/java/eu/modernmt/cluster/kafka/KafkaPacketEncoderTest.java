@@ -0,0 +1,75 @@
+package eu.modernmt.cluster.kafka;
+
+import eu.modernmt.lang.Language;
+import eu.modernmt.lang.LanguagePair;
+import org.junit.Test;
+
+import java.util.Date;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+public class KafkaPacketEncoderTest {
+
+    private static final LanguagePair EN__IT = new LanguagePair(Language.ENGLISH, Language.ITALIAN);
+
+    private static KafkaPacket decode(byte[] bytes) {
+        KafkaPacket packet = KafkaPacket.fromBytes(bytes);
+        packet.setChannelInfo((short) 0, 0L);
+        return packet;
+    }
+
+    @Test
+    public void deletion() {
+        KafkaPacket packet = decode(new KafkaPacketEncoder().encode(KafkaPacket.createDeletion(42L)));
+
+        assertEquals(KafkaPacket.TYPE_DELETION, packet.getType());
+        assertEquals(42L, packet.getMemory());
+    }
+
+    @Test
+    public void addition() {
+        UUID owner = UUID.randomUUID();
+        Date timestamp = new Date();
+
+        KafkaPacket packet = decode(new KafkaPacketEncoder().encode(
+                KafkaPacket.createAddition(EN__IT, owner, 1L, "Hello world", "Ciao mondo àèìòù", timestamp)));
+
+        assertEquals(KafkaPacket.TYPE_ADDITION, packet.getType());
+        assertEquals(owner, packet.getOwner());
+        assertEquals(EN__IT, packet.getDirection());
+        assertEquals("Hello world", packet.getSentence());
+        assertEquals("Ciao mondo àèìòù", packet.getTranslation());
+        assertEquals(timestamp, packet.getTimestamp());
+    }
+
+    @Test
+    public void overwriteWithoutOwner() {
+        KafkaPacket packet = decode(new KafkaPacketEncoder().encode(
+                KafkaPacket.createOverwrite(EN__IT, null, 1L, "a", "b", "c", "d", null)));
+
+        assertEquals(KafkaPacket.TYPE_OVERWRITE, packet.getType());
+        assertNull(packet.getOwner());
+        assertNull(packet.getTimestamp());
+        assertEquals("c", packet.getPreviousSentence());
+        assertEquals("d", packet.getPreviousTranslation());
+    }
+
+    @Test
+    public void bufferGrowsAndIsReused() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 1000; i++)
+            text.append("€ segment ").append(i).append(' ');
+
+        KafkaPacketEncoder encoder = new KafkaPacketEncoder(16);
+
+        KafkaPacket packet = decode(encoder.encode(KafkaPacket.createAddition(EN__IT, null, 1L, text.toString(), "short", null)));
+        assertEquals(text.toString(), packet.getSentence());
+
+        packet = decode(encoder.encode(KafkaPacket.createAddition(EN__IT, null, 2L, "short", "text", null)));
+        assertEquals(2L, packet.getMemory());
+        assertEquals("short", packet.getSentence());
+        assertEquals("text", packet.getTranslation());
+    }
+
+}
@@ -0,0 +1,88 @@
+package eu.modernmt.cluster.kafka;
+
+import eu.modernmt.data.TranslationUnit;
+import eu.modernmt.io.UTF8Charset;
+import eu.modernmt.lang.Language;
+import eu.modernmt.lang.LanguagePair;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Date;
+
+import static org.junit.Assert.*;
+
+public class KafkaPacketTest {
+
+    private static final LanguagePair EN__IT = new LanguagePair(Language.ENGLISH, Language.ITALIAN);
+
+    private static String string(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return new String(bytes, UTF8Charset.get());
+    }
+
+    @Test
+    public void languagePairsAreShared() {
+        byte[] data = KafkaPacket.createAddition(EN__IT, null, 1L, "a", "b", null).toBytes();
+
+        LanguagePair first = KafkaPacket.fromBytes(data).getDirection();
+        LanguagePair second = KafkaPacket.fromBytes(data.clone()).getDirection();
+
+        assertEquals(EN__IT, first);
+        assertSame(first, second);
+    }
+
+    @Test
+    public void translationUnitBytes() {
+        KafkaPacket packet = KafkaPacket.fromBytes(
+                KafkaPacket.createOverwrite(EN__IT, null, 1L, "Caffè", "Coffee", "Tè", "Tea", new Date()).toBytes());
+        packet.setChannelInfo((short) 1, 10L);
+
+        TranslationUnit unit = packet.asTranslationUnit(EN__IT);
+
+        assertEquals("Caffè", unit.getRawSentence());
+        assertEquals("Coffee", unit.getRawTranslation());
+        assertEquals("Tè", unit.getRawPreviousSentence());
+        assertEquals("Tea", unit.getRawPreviousTranslation());
+        assertEquals("Caffè", string(unit.getRawSentenceBytes()));
+        assertEquals("Coffee", string(unit.getRawTranslationBytes()));
+    }
+
+    @Test
+    public void translationUnitBytesAreBackedByThePacket() {
+        byte[] data = KafkaPacket.createAddition(EN__IT, null, 1L, "Caffè", "Coffee", new Date()).toBytes();
+        KafkaPacket packet = KafkaPacket.fromBytes(data);
+        packet.setChannelInfo((short) 1, 10L);
+
+        ByteBuffer bytes = packet.asTranslationUnit(EN__IT).getRawSentenceBytes();
+
+        // writers can copy the bytes from the array of the packet
+        assertTrue(bytes.hasArray());
+        assertSame(data, bytes.array());
+        assertEquals("Caffè", new String(data, bytes.arrayOffset() + bytes.position(), bytes.remaining(), UTF8Charset.get()));
+    }
+
+    @Test
+    public void translationUnitStringsAreDecodedByThePacket() {
+        KafkaPacket packet = KafkaPacket.fromBytes(
+                KafkaPacket.createAddition(EN__IT, null, 1L, "Caffè", "Coffee", new Date()).toBytes());
+        packet.setChannelInfo((short) 1, 10L);
+
+        TranslationUnit unit = packet.asTranslationUnit(EN__IT);
+
+        assertSame(packet.getSentence(), unit.getRawSentence());
+        assertSame(packet.getTranslation(), unit.getRawTranslation());
+        assertNull(unit.getRawPreviousSentence());
+        assertNull(unit.getRawPreviousTranslation());
+    }
+
+    @Test
+    public void localPacketsEncodeUnitBytes() {
+        KafkaPacket packet = KafkaPacket.createAddition(EN__IT, null, 1L, "Caffè", "Coffee", null);
+        packet.setChannelInfo((short) 1, 10L);
+
+        assertNull(packet.getSentenceBytes());
+        assertEquals("Caffè", string(packet.asTranslationUnit(EN__IT).getRawSentenceBytes()));
+    }
+
+}
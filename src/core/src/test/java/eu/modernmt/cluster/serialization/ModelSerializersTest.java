@@ -0,0 +1,175 @@
+package eu.modernmt.cluster.serialization;
+
+import com.hazelcast.config.SerializationConfig;
+import com.hazelcast.internal.serialization.InternalSerializationService;
+import com.hazelcast.internal.serialization.impl.DefaultSerializationServiceBuilder;
+import com.hazelcast.nio.serialization.Data;
+import eu.modernmt.model.*;
+import org.apache.commons.lang.SerializationUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+public class ModelSerializersTest {
+
+    private InternalSerializationService service;
+
+    @Before
+    public void setup() {
+        SerializationConfig config = new SerializationConfig();
+        ModelSerializers.register(config);
+
+        this.service = new DefaultSerializationServiceBuilder().setConfig(config).build();
+    }
+
+    @After
+    public void teardown() {
+        this.service.dispose();
+        this.service = null;
+    }
+
+    private static Sentence source() {
+        Sentence source = new Sentence(new Word[]{
+                new Word("Hello", " "),
+                new Word("world", null),
+                new Word("!", null),
+        }, new Tag[]{
+                Tag.fromText("<a>", false, null, 1),
+                Tag.fromText("</a>", false, null, 2),
+        });
+        source.addAnnotation("annotation");
+
+        return source;
+    }
+
+    private static Translation translation(Sentence source, String... words) {
+        Word[] tokens = new Word[words.length];
+        for (int i = 0; i < words.length; i++)
+            tokens[i] = new Word(words[i], i < words.length - 1 ? " " : null);
+
+        Alignment alignment = new Alignment(new int[]{0, 1, 2}, new int[]{0, 1, 2}, .5f);
+        Translation translation = new Translation(tokens, new Tag[]{
+                Tag.fromText("<a>", true, null, 1),
+                Tag.fromText("</a>", false, " ", 2),
+        }, source, alignment);
+
+        translation.setMemoryLookupTime(12L);
+        translation.setDecodeTime(345L);
+        translation.setQueueTime(6L);
+        translation.setQueueLength(7);
+
+        return translation;
+    }
+
+    private static Translation nbestTranslation() {
+        Sentence source = source();
+        Translation translation = translation(source, "Ciao", "mondo", "!");
+
+        ArrayList<Translation> nbest = new ArrayList<>();
+        nbest.add(translation(source, "Ciao", "mondo", "!"));
+        nbest.add(translation(source, "Salve", "mondo", "!"));
+        translation.setNbest(nbest);
+
+        return translation;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T roundTrip(T object) {
+        Data data = service.toData(object);
+        return (T) service.toObject(data);
+    }
+
+    private static void assertSentenceEquals(Sentence expected, Sentence actual) {
+        assertArrayEquals(expected.getWords(), actual.getWords());
+        assertArrayEquals(expected.getTags(), actual.getTags());
+        assertEquals(expected.getAnnotations(), actual.getAnnotations());
+        assertEquals(expected.toString(), actual.toString());
+    }
+
+    private static void assertTranslationEquals(Translation expected, Translation actual) {
+        assertSentenceEquals(expected, actual);
+        assertSentenceEquals(expected.getSource(), actual.getSource());
+        assertEquals(expected.getWordAlignment(), actual.getWordAlignment());
+        assertEquals(expected.getWordAlignment().getScore(), actual.getWordAlignment().getScore(), 0.f);
+        assertEquals(expected.getMemoryLookupTime(), actual.getMemoryLookupTime());
+        assertEquals(expected.getDecodeTime(), actual.getDecodeTime());
+        assertEquals(expected.getQueueTime(), actual.getQueueTime());
+        assertEquals(expected.getQueueLength(), actual.getQueueLength());
+    }
+
+    @Test
+    public void translationRoundTrip() {
+        Translation expected = nbestTranslation();
+        Translation actual = roundTrip(expected);
+
+        assertTranslationEquals(expected, actual);
+        assertEquals(expected.getNbest().size(), actual.getNbest().size());
+
+        for (int i = 0; i < expected.getNbest().size(); i++) {
+            assertTranslationEquals(expected.getNbest().get(i), actual.getNbest().get(i));
+            assertSame(actual.getSource(), actual.getNbest().get(i).getSource());
+        }
+    }
+
+    @Test
+    public void translationWithoutOptionalFields() {
+        Translation expected = Translation.fromTokens(new Sentence(null), new String[]{"a", "b"});
+        Translation actual = roundTrip(expected);
+
+        assertSentenceEquals(expected, actual);
+        assertNull(actual.getWordAlignment());
+        assertNull(actual.getNbest());
+        assertNull(actual.getAnnotations());
+    }
+
+    @Test
+    public void contextVectorRoundTrip() {
+        ContextVector expected = new ContextVector.Builder()
+                .add(1L, .9f)
+                .add(new Memory(2L, UUID.randomUUID(), "memory"), .5f)
+                .add(3L, .1f)
+                .build();
+        ContextVector actual = roundTrip(expected);
+
+        assertEquals(expected.size(), actual.size());
+
+        Iterator<ContextVector.Entry> iterator = actual.iterator();
+        for (ContextVector.Entry entry : expected) {
+            ContextVector.Entry other = iterator.next();
+
+            assertEquals(entry, other);
+            assertEquals(entry.memory.getOwner(), other.memory.getOwner());
+            assertEquals(entry.memory.getName(), other.memory.getName());
+        }
+    }
+
+    @Test
+    public void smallerThanJavaSerialization() {
+        ContextVector.Builder builder = new ContextVector.Builder();
+        for (int i = 0; i < 10; i++)
+            builder.add(i, 1.f / (i + 1));
+        ContextVector vector = builder.build();
+        Translation translation = nbestTranslation();
+
+        assertTrue(service.toData(vector).totalSize() * 2 < SerializationUtils.serialize(vector).length);
+        assertTrue(service.toData(translation).totalSize() * 2 < SerializationUtils.serialize(translation).length);
+    }
+
+    @Test
+    public void arraysArePacked() {
+        Alignment alignment = new Alignment(new int[100], new int[100]);
+        Data data = service.toData(alignment);
+
+        // header, null flag, two arrays of 4-byte integers with their length, score
+        assertTrue(data.totalSize() < 2 * (4 + 100 * 4) + 32);
+        assertTrue(Arrays.equals(alignment.getSourceIndexes(), ((Alignment) service.toObject(data)).getSourceIndexes()));
+    }
+
+}
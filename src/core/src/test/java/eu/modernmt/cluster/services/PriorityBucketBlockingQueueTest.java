@@ -0,0 +1,243 @@
+package eu.modernmt.cluster.services;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class PriorityBucketBlockingQueueTest {
+
+    static class Job implements Prioritizable {
+
+        private final String name;
+        private final int priority;
+        private final long expirationTimestamp;
+
+        public Job(String name, int priority, long expirationTimestamp) {
+            this.name = name;
+            this.priority = priority;
+            this.expirationTimestamp = expirationTimestamp;
+        }
+
+        @Override
+        public int getPriority() {
+            return priority;
+        }
+
+        @Override
+        public void setQueueLength(int size) {
+        }
+
+        @Override
+        public long getExpirationTimestamp() {
+            return expirationTimestamp;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    protected PriorityBucketQueue<Job> newQueue(boolean earliestDeadlineFirst, int... capacities) {
+        return new PriorityBucketBlockingQueue<>(false, earliestDeadlineFirst, capacities);
+    }
+
+    private static String takeAll(PriorityBucketQueue<Job> queue) {
+        StringBuilder result = new StringBuilder();
+        Job job;
+        while ((job = queue.poll()) != null)
+            result.append(job);
+        return result.toString();
+    }
+
+    @Test
+    public void fifoWithinPriority() {
+        PriorityBucketQueue<Job> queue = newQueue(false, 4, 4);
+        queue.offer(new Job("a", 1, 0L));
+        queue.offer(new Job("b", 0, 300L));
+        queue.offer(new Job("c", 0, 100L));
+        queue.offer(new Job("d", 1, 200L));
+
+        assertEquals("bcad", takeAll(queue));
+    }
+
+    @Test
+    public void earliestDeadlineFirstWithinPriority() {
+        PriorityBucketQueue<Job> queue = newQueue(true, 4, 4);
+        queue.offer(new Job("a", 1, 0L));
+        queue.offer(new Job("b", 0, 0L));
+        queue.offer(new Job("c", 0, 300L));
+        queue.offer(new Job("d", 0, 100L));
+        queue.offer(new Job("e", 1, 200L));
+        queue.offer(new Job("f", 1, 0L));
+
+        assertEquals("d", queue.peek().toString());
+        assertEquals("dcbeaf", takeAll(queue));
+    }
+
+    @Test
+    public void earliestDeadlineFirstAcrossRingBoundary() {
+        PriorityBucketQueue<Job> queue = newQueue(true, 3);
+        queue.offer(new Job("x", 0, 0L));
+        queue.offer(new Job("y", 0, 0L));
+        assertEquals("x", queue.poll().toString());
+        assertEquals("y", queue.poll().toString());
+
+        queue.offer(new Job("a", 0, 300L));
+        queue.offer(new Job("b", 0, 100L));
+        queue.offer(new Job("c", 0, 200L));
+        assertFalse(queue.offer(new Job("d", 0, 50L)));
+
+        assertEquals("bca", takeAll(queue));
+        assertTrue(queue.offer(new Job("d", 0, 50L)));
+        assertEquals(1, queue.size());
+    }
+
+    @Test
+    public void earliestDeadlineFirstKeepsArrivalOrderOnTies() {
+        PriorityBucketQueue<Job> queue = newQueue(true, 8);
+        queue.offer(new Job("a", 0, 100L));
+        queue.offer(new Job("b", 0, 0L));
+        queue.offer(new Job("c", 0, 100L));
+        queue.offer(new Job("d", 0, 0L));
+        queue.offer(new Job("e", 0, 100L));
+        assertEquals("a", queue.poll().toString());
+
+        queue.offer(new Job("f", 0, 100L));
+        queue.offer(new Job("g", 0, 0L));
+
+        assertEquals("cefbdg", takeAll(queue));
+    }
+
+    @Test
+    public void earliestDeadlineFirstWithRemovals() {
+        PriorityBucketQueue<Job> queue = newQueue(true, 64);
+        ArrayList<Job> expected = new ArrayList<>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 10000; i++) {
+            int action = random.nextInt(4);
+
+            if (action < 2 && expected.size() < 64) {
+                long expiration = random.nextInt(3) == 0 ? 0L : 1 + random.nextInt(20);
+                Job job = new Job("j" + i, 0, expiration);
+                assertTrue(queue.offer(job));
+                expected.add(job);
+            } else if (action == 2 && !expected.isEmpty()) {
+                Job job = expected.remove(random.nextInt(expected.size()));
+                assertTrue(queue.remove(job));
+            } else {
+                // a stable sort keeps the arrival order of the jobs with the same deadline
+                expected.sort(Comparator.comparingLong(job -> job.expirationTimestamp > 0 ? job.expirationTimestamp : Long.MAX_VALUE));
+                assertSame(expected.isEmpty() ? null : expected.remove(0), queue.poll());
+            }
+
+            assertEquals(expected.size(), queue.size());
+        }
+    }
+
+    @Test
+    public void earliestDeadlineFirstAfterDrainExpired() {
+        PriorityBucketQueue<Job> queue = newQueue(true, 8);
+        queue.offer(new Job("a", 0, 500L));
+        queue.offer(new Job("b", 0, 100L));
+        queue.offer(new Job("c", 0, 0L));
+        queue.offer(new Job("d", 0, 400L));
+        queue.offer(new Job("e", 0, 150L));
+        queue.offer(new Job("f", 0, 300L));
+
+        ArrayList<Job> expired = new ArrayList<>();
+        assertEquals(2, queue.drainExpired(200L, expired));
+        assertEquals(4, queue.size());
+
+        queue.offer(new Job("g", 0, 350L));
+        assertEquals("fgdac", takeAll(queue));
+    }
+
+    @Test
+    public void drainExpired() {
+        PriorityBucketQueue<Job> queue = newQueue(false, 3, 4);
+        queue.offer(new Job("x", 0, 0L));
+        queue.poll();
+
+        queue.offer(new Job("a", 0, 100L));
+        queue.offer(new Job("b", 0, 0L));
+        queue.offer(new Job("c", 0, 300L));
+        queue.offer(new Job("d", 1, 50L));
+        queue.offer(new Job("e", 1, 150L));
+
+        ArrayList<Job> expired = new ArrayList<>();
+        assertEquals(3, queue.drainExpired(200L, expired));
+        assertEquals("[a, d, e]", expired.toString());
+        assertEquals(2, queue.size(0));
+        assertEquals(2, queue.size());
+
+        // queue is still consistent after compaction
+        assertTrue(queue.offer(new Job("f", 0, 0L)));
+        assertFalse(queue.offer(new Job("g", 0, 0L)));
+        assertEquals("bcf", takeAll(queue));
+    }
+
+    @Test
+    public void drainAllExpiredFromFullBucket() {
+        PriorityBucketQueue<Job> queue = newQueue(false, 2);
+        queue.offer(new Job("a", 0, 100L));
+        queue.offer(new Job("b", 0, 100L));
+
+        ArrayList<Job> expired = new ArrayList<>();
+        assertEquals(2, queue.drainExpired(200L, expired));
+        assertEquals(0, queue.size());
+        assertNull(queue.peek());
+
+        assertTrue(queue.offer(new Job("c", 0, 0L)));
+        assertEquals("c", takeAll(queue));
+    }
+
+    @Test
+    public void drainToAndClear() {
+        PriorityBucketQueue<Job> queue = newQueue(false, 2, 2);
+        queue.offer(new Job("a", 1, 0L));
+        queue.offer(new Job("b", 0, 0L));
+        queue.offer(new Job("c", 1, 0L));
+
+        ArrayList<Job> jobs = new ArrayList<>();
+        assertEquals(3, queue.drainTo(jobs));
+        assertEquals("[b, a, c]", jobs.toString());
+        assertEquals(0, queue.size());
+        assertEquals(4, queue.remainingCapacity());
+
+        queue.offer(new Job("d", 0, 0L));
+        queue.clear();
+        assertNull(queue.poll());
+    }
+
+    @Test
+    public void takeWaitsForProducers() throws Throwable {
+        PriorityBucketQueue<Job> queue = newQueue(false, 1, 1);
+        Job[] taken = new Job[2];
+
+        Thread consumer = new Thread(() -> {
+            try {
+                taken[0] = queue.take();
+                taken[1] = queue.poll(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                // Ignore it
+            }
+        });
+        consumer.start();
+
+        Thread.sleep(50);
+        queue.put(new Job("a", 1, 0L));
+        queue.put(new Job("b", 1, 0L));  // blocks until "a" is taken
+
+        consumer.join(10000);
+        assertEquals("a", String.valueOf(taken[0]));
+        assertEquals("b", String.valueOf(taken[1]));
+    }
+
+}
@@ -0,0 +1,182 @@
+package eu.modernmt.cluster.services;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs several producers and consumers on the queue implementations, checking that every element
+ * is delivered exactly once and that elements are taken in priority order.
+ */
+public class PriorityBucketQueueContentionTest {
+
+    private static final int PRODUCERS = 8;
+    private static final int CONSUMERS = 4;
+    private static final int PRIORITIES = 3;
+
+    private static final int JOBS_PER_PRODUCER = 20000;
+
+    private static class Job implements Prioritizable {
+
+        final int id;
+        final int producer;
+        final int priority;
+
+        Job(int id, int producer, int priority) {
+            this.id = id;
+            this.producer = producer;
+            this.priority = priority;
+        }
+
+        Job(int id, int producer) {
+            this(id, producer, id % PRIORITIES);
+        }
+
+        @Override
+        public int getPriority() {
+            return priority;
+        }
+
+        @Override
+        public void setQueueLength(int size) {
+        }
+
+        @Override
+        public long getExpirationTimestamp() {
+            return 0L;
+        }
+    }
+
+    /**
+     * Consumers stop when they take it: it has the lowest priority, so it is taken after all the jobs queued before it
+     */
+    private static final Job POISON = new Job(-1, -1, PRIORITIES - 1);
+
+    /**
+     * Runs the producers and the consumers until every job has been taken
+     *
+     * @param action invoked by the consumer threads for every job taken
+     */
+    private static void run(PriorityBucketQueue<Job> queue, int jobsPerProducer, Consumer<Job> action) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService threads = Executors.newFixedThreadPool(PRODUCERS + CONSUMERS);
+
+        try {
+            List<Future<?>> producers = new ArrayList<>(PRODUCERS);
+            for (int p = 0; p < PRODUCERS; p++) {
+                final int producer = p;
+                producers.add(threads.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < jobsPerProducer; i++) {
+                        queue.put(new Job(producer * jobsPerProducer + i, producer));
+                        queue.size(PRIORITIES - 1);
+                    }
+                    return null;
+                }));
+            }
+
+            List<Future<?>> consumers = new ArrayList<>(CONSUMERS);
+            for (int c = 0; c < CONSUMERS; c++) {
+                consumers.add(threads.submit(() -> {
+                    start.await();
+                    Job job;
+                    while ((job = queue.take()) != POISON)
+                        action.accept(job);
+                    return null;
+                }));
+            }
+
+            start.countDown();
+
+            for (Future<?> producer : producers)
+                producer.get();
+            for (int c = 0; c < CONSUMERS; c++)
+                queue.put(POISON);
+            for (Future<?> consumer : consumers)
+                consumer.get();
+        } finally {
+            threads.shutdownNow();
+        }
+    }
+
+    private static void testDeliveredOnce(PriorityBucketQueue<Job> queue) throws Exception {
+        int total = PRODUCERS * JOBS_PER_PRODUCER;
+        AtomicIntegerArray received = new AtomicIntegerArray(total);
+
+        run(queue, JOBS_PER_PRODUCER, job -> received.incrementAndGet(job.id));
+
+        for (int i = 0; i < total; i++)
+            assertEquals("job " + i, 1, received.get(i));
+        assertEquals(0, queue.size());
+    }
+
+    private static void testPriorityOrder(PriorityBucketQueue<Job> queue) throws Exception {
+        ExecutorService threads = Executors.newFixedThreadPool(PRODUCERS);
+
+        try {
+            List<Future<?>> producers = new ArrayList<>(PRODUCERS);
+            for (int p = 0; p < PRODUCERS; p++) {
+                final int producer = p;
+                producers.add(threads.submit(() -> {
+                    for (int i = 0; i < JOBS_PER_PRODUCER; i++)
+                        queue.put(new Job(i, producer));
+                    return null;
+                }));
+            }
+
+            for (Future<?> producer : producers)
+                producer.get();
+        } finally {
+            threads.shutdownNow();
+        }
+
+        assertEquals(PRODUCERS * JOBS_PER_PRODUCER, queue.size());
+
+        int priority = 0;
+        int[][] last = new int[PRIORITIES][PRODUCERS];
+        for (int[] ids : last)
+            Arrays.fill(ids, -1);
+
+        Job job;
+        while ((job = queue.poll()) != null) {
+            assertTrue("priority " + job.priority + " after " + priority, job.priority >= priority);
+            priority = job.priority;
+
+            // elements of the same priority are taken in order of arrival
+            assertTrue(job.id > last[priority][job.producer]);
+            last[priority][job.producer] = job.id;
+        }
+
+        assertEquals(PRIORITIES - 1, priority);
+    }
+
+    @Test(timeout = 60000L)
+    public void deliveredOnce() throws Exception {
+        testDeliveredOnce(new PriorityBucketBlockingQueue<>(64, 64, 64));
+    }
+
+    @Test(timeout = 60000L)
+    public void deliveredOnceStriped() throws Exception {
+        testDeliveredOnce(new StripedPriorityBucketBlockingQueue<>(64, 64, 64));
+    }
+
+    @Test(timeout = 60000L)
+    public void priorityOrder() throws Exception {
+        int capacity = PRODUCERS * JOBS_PER_PRODUCER;
+        testPriorityOrder(new PriorityBucketBlockingQueue<>(capacity, capacity, capacity));
+    }
+
+    @Test(timeout = 60000L)
+    public void priorityOrderStriped() throws Exception {
+        int capacity = PRODUCERS * JOBS_PER_PRODUCER;
+        testPriorityOrder(new StripedPriorityBucketBlockingQueue<>(capacity, capacity, capacity));
+    }
+
+}
@@ -0,0 +1,32 @@
+package eu.modernmt.cluster.services;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertEquals;
+
+public class StripedPriorityBucketBlockingQueueTest extends PriorityBucketBlockingQueueTest {
+
+    @Override
+    protected PriorityBucketQueue<Job> newQueue(boolean earliestDeadlineFirst, int... capacities) {
+        return new StripedPriorityBucketBlockingQueue<>(earliestDeadlineFirst, capacities);
+    }
+
+    @Test
+    public void drainToWithLimitInDeadlineOrder() {
+        PriorityBucketQueue<Job> queue = newQueue(true, 4, 4);
+        queue.offer(new Job("a", 1, 100L));
+        queue.offer(new Job("b", 0, 0L));
+        queue.offer(new Job("c", 0, 300L));
+        queue.offer(new Job("d", 0, 200L));
+        queue.offer(new Job("e", 1, 50L));
+
+        ArrayList<Job> jobs = new ArrayList<>();
+        assertEquals(4, queue.drainTo(jobs, 4));
+        assertEquals("[d, c, b, e]", jobs.toString());
+        assertEquals(1, queue.size());
+        assertEquals("a", queue.poll().toString());
+    }
+
+}
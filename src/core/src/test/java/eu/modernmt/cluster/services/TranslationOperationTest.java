@@ -0,0 +1,235 @@
+package eu.modernmt.cluster.services;
+
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.spi.impl.operationservice.impl.responses.ErrorResponse;
+import com.hazelcast.spi.impl.operationservice.impl.responses.NormalResponse;
+import eu.modernmt.cluster.TranslationTask;
+import eu.modernmt.lang.Language;
+import eu.modernmt.lang.LanguagePair;
+import eu.modernmt.model.Translation;
+import eu.modernmt.model.Word;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TranslationOperationTest {
+
+    private static final LanguagePair EN__IT = new LanguagePair(Language.ENGLISH, Language.ITALIAN);
+
+    private static class Task implements TranslationTask {
+
+        private final Object key;
+        private final int priority;
+        private final Translation translation;
+        private final RuntimeException error;
+
+        Task(Object key, int priority, Translation translation, RuntimeException error) {
+            this.key = key;
+            this.priority = priority;
+            this.translation = translation;
+            this.error = error;
+        }
+
+        @Override
+        public Translation call() {
+            if (error != null)
+                throw error;
+            return translation;
+        }
+
+        @Override
+        public LanguagePair getLanguage() {
+            return EN__IT;
+        }
+
+        @Override
+        public Object getCoalescingKey() {
+            return key;
+        }
+
+        @Override
+        public boolean canServe(TranslationTask other) {
+            return priority <= other.getPriority();
+        }
+
+        @Override
+        public int getPriority() {
+            return priority;
+        }
+
+        @Override
+        public void setQueueLength(int size) {
+        }
+
+        @Override
+        public long getExpirationTimestamp() {
+            return 0L;
+        }
+
+        @Override
+        public void writeData(ObjectDataOutput out) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void readData(ObjectDataInput in) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * An operation that records its response and its async state, without a running Hazelcast node
+     */
+    private static class TestOperation extends TranslationOperation {
+
+        private Object response = null;
+        private int asyncOperations = 0;
+
+        TestOperation(TranslationService service, TranslationTask task) {
+            super(task);
+            setService(service);
+            setOperationResponseHandler((operation, response) -> ((TestOperation) operation).response = response);
+        }
+
+        @Override
+        public void startAsyncOperation() {
+            asyncOperations++;
+        }
+
+        @Override
+        public void completeAsyncOperation() {
+            asyncOperations--;
+        }
+
+        void execute() {
+            new TranslationRunnable(getTask()).run();
+        }
+
+        Object getValue() {
+            assertTrue(response instanceof NormalResponse);
+            return ((NormalResponse) response).getValue();
+        }
+
+        Throwable getError() {
+            assertTrue(response instanceof ErrorResponse);
+            return ((ErrorResponse) response).getCause();
+        }
+    }
+
+    private TranslationService service;
+
+    @Before
+    public void setup() {
+        this.service = new TranslationService();
+    }
+
+    private TestOperation operation(Object key, int priority, Translation translation) {
+        return new TestOperation(service, new Task(key, priority, translation, null));
+    }
+
+    @Test
+    public void followersReceiveLeaderTranslation() {
+        Translation translation = new Translation(new Word[0], null, null);
+        TestOperation leader = operation("key", 1, translation);
+        TestOperation follower1 = operation("key", 1, null);
+        TestOperation follower2 = operation("key", 2, null);
+
+        assertFalse(service.coalesce(leader));
+        assertTrue(service.coalesce(follower1));
+        assertTrue(service.coalesce(follower2));
+        assertEquals(1, service.getInFlightOperations());
+
+        // followers are kept alive until the leader responds
+        assertEquals(1, follower1.asyncOperations);
+        assertNull(follower1.response);
+
+        leader.execute();
+
+        assertSame(translation, leader.getValue());
+        assertSame(translation, follower1.getValue());
+        assertSame(translation, follower2.getValue());
+        assertEquals(0, leader.asyncOperations);
+        assertEquals(0, follower1.asyncOperations);
+        assertEquals(0, follower2.asyncOperations);
+        assertEquals(0, service.getInFlightOperations());
+    }
+
+    @Test
+    public void followersReceiveLeaderError() {
+        RuntimeException error = new RuntimeException("decoder failure");
+        TestOperation leader = new TestOperation(service, new Task("key", 1, null, error));
+        TestOperation follower = operation("key", 1, null);
+
+        assertFalse(service.coalesce(leader));
+        assertTrue(service.coalesce(follower));
+
+        leader.execute();
+
+        assertSame(error, leader.getError());
+        assertSame(error, follower.getError());
+        assertEquals(0, follower.asyncOperations);
+        assertEquals(0, service.getInFlightOperations());
+    }
+
+    @Test
+    public void operationAfterCompletionRunsAlone() {
+        TestOperation leader = operation("key", 1, new Translation(new Word[0], null, null));
+        assertFalse(service.coalesce(leader));
+        leader.execute();
+
+        TestOperation next = operation("key", 1, new Translation(new Word[0], null, null));
+        assertFalse(service.coalesce(next));
+        assertEquals(1, service.getInFlightOperations());
+
+        next.execute();
+        assertNotSame(leader.getValue(), next.getValue());
+        assertEquals(0, service.getInFlightOperations());
+    }
+
+    @Test
+    public void completedLeaderIsReplaced() {
+        TestOperation leader = operation("key", 1, null);
+        assertFalse(service.coalesce(leader));
+        leader.close();  // completed, but not removed yet
+
+        TestOperation next = operation("key", 1, null);
+        assertFalse(service.coalesce(next));
+        assertEquals(1, service.getInFlightOperations());
+
+        service.complete(leader);
+        assertEquals(1, service.getInFlightOperations());
+        service.complete(next);
+        assertEquals(0, service.getInFlightOperations());
+    }
+
+    @Test
+    public void higherPriorityOperationIsNotCoalesced() {
+        TestOperation leader = operation("key", 2, null);
+        TestOperation high = operation("key", 0, null);
+
+        assertFalse(service.coalesce(leader));
+        assertFalse(service.coalesce(high));
+        assertEquals(0, high.asyncOperations);
+
+        high.execute();
+        assertEquals(1, service.getInFlightOperations());
+        assertNull(leader.response);
+
+        leader.execute();
+        assertEquals(0, service.getInFlightOperations());
+    }
+
+    @Test
+    public void operationsWithoutKeyAreNotCoalesced() {
+        TestOperation operation = operation(null, 1, null);
+        assertFalse(service.coalesce(operation));
+        assertFalse(service.coalesce(operation(null, 1, null)));
+        assertEquals(0, service.getInFlightOperations());
+
+        operation.execute();
+        assertNull(operation.getValue());
+    }
+
+}
@@ -0,0 +1,145 @@
+package eu.modernmt.facade;
+
+import eu.modernmt.model.Translation;
+import eu.modernmt.model.Word;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.Assert.*;
+
+public class BatchTranslationTest {
+
+    private LinkedHashMap<String, CompletableFuture<Translation>> submitted;
+    private Map<String, Translation> translations;
+
+    @Before
+    public void setup() {
+        this.submitted = new LinkedHashMap<>();
+        this.translations = new HashMap<>();
+    }
+
+    private static List<String> sentences(int count) {
+        ArrayList<String> sentences = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+            sentences.add("s" + i);
+        return sentences;
+    }
+
+    private CompletableFuture<Translation> submit(String sentence) {
+        CompletableFuture<Translation> future = new CompletableFuture<>();
+        submitted.put(sentence, future);
+        return future;
+    }
+
+    private void complete(String sentence) {
+        Translation translation = new Translation(new Word[0], null, null);
+        translations.put(sentence, translation);
+        submitted.get(sentence).complete(translation);
+    }
+
+    private int inFlight() {
+        int count = 0;
+        for (CompletableFuture<Translation> future : submitted.values()) {
+            if (!future.isDone())
+                count++;
+        }
+        return count;
+    }
+
+    @Test
+    public void translationsAreInOrder() {
+        List<String> sentences = sentences(10);
+        List<CompletableFuture<Translation>> futures = new BatchTranslation(sentences, this::submit).start(10);
+
+        // completed in reverse order
+        for (int i = sentences.size() - 1; i >= 0; i--)
+            complete(sentences.get(i));
+
+        assertEquals(sentences.size(), futures.size());
+        for (int i = 0; i < sentences.size(); i++)
+            assertSame(translations.get(sentences.get(i)), futures.get(i).join());
+    }
+
+    @Test
+    public void inFlightTranslationsAreLimited() {
+        List<String> sentences = sentences(20);
+        List<CompletableFuture<Translation>> futures = new BatchTranslation(sentences, this::submit).start(4);
+
+        assertEquals(4, submitted.size());
+        assertEquals(Arrays.asList("s0", "s1", "s2", "s3"), new ArrayList<>(submitted.keySet()));
+
+        Random random = new Random(42);
+        while (inFlight() > 0) {
+            ArrayList<String> running = new ArrayList<>();
+            for (Map.Entry<String, CompletableFuture<Translation>> entry : submitted.entrySet()) {
+                if (!entry.getValue().isDone())
+                    running.add(entry.getKey());
+            }
+
+            complete(running.get(random.nextInt(running.size())));
+            assertTrue(inFlight() <= 4);
+            assertEquals(Math.min(sentences.size(), translations.size() + 4), submitted.size());
+        }
+
+        assertEquals(sentences.size(), submitted.size());
+        for (int i = 0; i < sentences.size(); i++)
+            assertSame(translations.get(sentences.get(i)), futures.get(i).join());
+    }
+
+    @Test
+    public void completedTranslationsDoNotHoldTheWindow() {
+        Translation cached = new Translation(new Word[0], null, null);
+        List<String> sentences = sentences(1000);
+
+        List<CompletableFuture<Translation>> futures = new BatchTranslation(sentences, sentence ->
+                sentence.equals("s999") ? submit(sentence) : CompletableFuture.completedFuture(cached)).start(1);
+
+        assertEquals(1, submitted.size());
+        for (int i = 0; i < 999; i++)
+            assertSame(cached, futures.get(i).join());
+
+        assertFalse(futures.get(999).isDone());
+        complete("s999");
+        assertSame(translations.get("s999"), futures.get(999).join());
+    }
+
+    @Test
+    public void failedTranslationsDoNotStopTheBatch() {
+        List<String> sentences = sentences(6);
+        RuntimeException error = new RuntimeException("decoder failure");
+        RuntimeException rejection = new RuntimeException("queue is full");
+
+        List<CompletableFuture<Translation>> futures = new BatchTranslation(sentences, sentence -> {
+            if (sentence.equals("s3"))
+                throw rejection;
+            return submit(sentence);
+        }).start(2);
+
+        submitted.get("s0").completeExceptionally(error);
+        complete("s1");
+        complete("s2");
+        complete("s4");
+        complete("s5");
+
+        assertEquals(error, getError(futures.get(0)));
+        assertSame(translations.get("s1"), futures.get(1).join());
+        assertSame(translations.get("s2"), futures.get(2).join());
+        assertEquals(rejection, getError(futures.get(3)));
+        assertSame(translations.get("s4"), futures.get(4).join());
+        assertSame(translations.get("s5"), futures.get(5).join());
+    }
+
+    private static Throwable getError(CompletableFuture<Translation> future) {
+        try {
+            future.join();
+            throw new AssertionError("Future completed successfully");
+        } catch (CompletionException e) {
+            return e.getCause();
+        }
+    }
+
+}
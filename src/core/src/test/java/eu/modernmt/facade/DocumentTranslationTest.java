@@ -0,0 +1,156 @@
+package eu.modernmt.facade;
+
+import eu.modernmt.facade.TranslationFacade.TranslationTaskImpl;
+import eu.modernmt.lang.Language;
+import eu.modernmt.lang.LanguagePair;
+import eu.modernmt.model.Alignment;
+import eu.modernmt.model.Sentence;
+import eu.modernmt.model.Token;
+import eu.modernmt.model.Translation;
+import eu.modernmt.model.Word;
+import eu.modernmt.processing.Postprocessor;
+import eu.modernmt.processing.Preprocessor;
+import eu.modernmt.processing.ProcessingException;
+import eu.modernmt.processing.splitter.SentenceSplitter;
+import org.apache.commons.io.IOUtils;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.Assert.*;
+
+public class DocumentTranslationTest {
+
+    private static final LanguagePair EN__IT = new LanguagePair(Language.ENGLISH, Language.ITALIAN);
+    private static final String TEXT = "Hello <b>world</b>, this is the first sentence of a small document " +
+            "that is long enough to be split by the sentence splitter of the engine. " +
+            "This is a <i>simple</i> test, isn't it? The second sentence has some tags and also " +
+            "some punctuation, <br/>so that the tags are projected on the right words! " +
+            "It works &amp; it keeps the tags: the third sentence <a href=\"#\">ends</a> here, " +
+            "after the last words of the document.";
+
+    private static Preprocessor preprocessor;
+    private static Postprocessor postprocessor;
+
+    @BeforeClass
+    public static void setup() throws IOException {
+        preprocessor = new Preprocessor(1);
+        postprocessor = new Postprocessor(1);
+    }
+
+    @AfterClass
+    public static void teardown() {
+        IOUtils.closeQuietly(preprocessor);
+        IOUtils.closeQuietly(postprocessor);
+    }
+
+    /**
+     * A decoder that translates every word with itself, with a monotone alignment
+     */
+    private static Translation decode(Sentence sentence) {
+        Word[] words = sentence.getWords();
+        Word[] translation = new Word[words.length];
+        int[] indexes = new int[words.length];
+
+        for (int i = 0; i < words.length; i++) {
+            translation[i] = new Word(words[i].getPlaceholder(), " ");
+            indexes[i] = i;
+        }
+
+        return new Translation(translation, sentence, new Alignment(indexes, indexes, 1.f));
+    }
+
+    /**
+     * The translation of the sentence as a single task does
+     */
+    private static Translation translate(String text) throws ProcessingException {
+        Sentence sentence = preprocessor.process(EN__IT, text);
+        Sentence[] pieces = SentenceSplitter.forLanguage(EN__IT.source).split(sentence);
+
+        Translation[] translations = new Translation[pieces.length];
+        for (int i = 0; i < pieces.length; i++)
+            translations[i] = decode(pieces[i]);
+
+        return TranslationTaskImpl.join(postprocessor, EN__IT, sentence, pieces, translations);
+    }
+
+    private static List<String> tokens(Sentence sentence) {
+        List<String> tokens = new ArrayList<>();
+        for (Token token : sentence)
+            tokens.add(token.toString());
+        return tokens;
+    }
+
+    @Test
+    public void streamedTranslationEqualsSingleTranslation() throws ProcessingException {
+        Sentence sentence = preprocessor.process(EN__IT, TEXT);
+
+        List<CompletableFuture<Translation>> futures = new ArrayList<>();
+        List<String> sources = new ArrayList<>();
+        List<Translation> pieces = new ArrayList<>();
+
+        CompletableFuture<Translation> future = new DocumentTranslation(postprocessor, EN__IT, sentence).start(piece -> {
+            CompletableFuture<Translation> translation = new CompletableFuture<>();
+            futures.add(translation);
+            return translation.thenApply(ignored -> decode(piece));
+        }, (index, source, translation) -> {
+            assertEquals(pieces.size(), index);
+            sources.add(source);
+            pieces.add(translation);
+        });
+
+        assertTrue(futures.size() > 2);
+
+        // pieces completed in reverse order are received in order
+        for (int i = futures.size() - 1; i > 0; i--)
+            futures.get(i).complete(null);
+        assertTrue(pieces.isEmpty());
+        futures.get(0).complete(null);
+
+        Translation expected = translate(TEXT);
+        Translation translation = future.join();
+
+        assertEquals(expected.toString(), translation.toString());
+        assertEquals(tokens(expected), tokens(translation));
+        assertEquals(expected.getSentenceAlignment(), translation.getSentenceAlignment());
+
+        // every piece keeps its own tags
+        assertEquals(futures.size(), pieces.size());
+        assertEquals(sentence.toString(true, false), String.join("", sources));
+
+        int tags = 0;
+        for (Translation piece : pieces)
+            tags += piece.getTags().length;
+        assertEquals(sentence.getTags().length, tags);
+    }
+
+    @Test
+    public void pieceFailureFailsTheTranslation() throws ProcessingException {
+        Sentence sentence = preprocessor.process(EN__IT, TEXT);
+        RuntimeException error = new RuntimeException("decoder failure");
+
+        List<Integer> received = new ArrayList<>();
+        CompletableFuture<Translation> future = new DocumentTranslation(postprocessor, EN__IT, sentence).start(piece -> {
+            if (piece.toString().startsWith("It works"))
+                throw error;
+            return CompletableFuture.completedFuture(decode(piece));
+        }, (index, source, translation) -> received.add(index));
+
+        try {
+            future.join();
+            fail("Translation completed successfully");
+        } catch (CompletionException e) {
+            assertSame(error, e.getCause());
+        }
+
+        // the pieces before the failed one have been received anyway
+        assertEquals(2, received.size());
+    }
+
+}
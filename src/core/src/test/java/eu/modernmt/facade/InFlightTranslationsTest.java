@@ -0,0 +1,137 @@
+package eu.modernmt.facade;
+
+import eu.modernmt.cluster.TranslationTask;
+import eu.modernmt.facade.TranslationFacade.Priority;
+import eu.modernmt.facade.TranslationFacade.TranslationTaskImpl;
+import eu.modernmt.lang.Language;
+import eu.modernmt.lang.LanguagePair;
+import eu.modernmt.model.Translation;
+import eu.modernmt.model.Word;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+import static org.junit.Assert.*;
+
+public class InFlightTranslationsTest {
+
+    private static final LanguagePair EN__IT = new LanguagePair(Language.ENGLISH, Language.ITALIAN);
+    private static final UUID USER = UUID.randomUUID();
+
+    private InFlightTranslations translations;
+    private List<TranslationTask> submitted;
+    private List<CompletableFuture<Translation>> futures;
+    private Function<TranslationTask, CompletableFuture<Translation>> submitter;
+
+    @Before
+    public void setup() {
+        this.translations = new InFlightTranslations();
+        this.submitted = new ArrayList<>();
+        this.futures = new ArrayList<>();
+        this.submitter = task -> {
+            CompletableFuture<Translation> future = new CompletableFuture<>();
+            submitted.add(task);
+            futures.add(future);
+            return future;
+        };
+    }
+
+    private static TranslationTaskImpl task(String text, Priority priority) {
+        return new TranslationTaskImpl(USER, EN__IT, text, null, 0, priority, 0L);
+    }
+
+    private static Throwable getError(CompletableFuture<Translation> future) {
+        try {
+            future.join();
+            throw new AssertionError("Future completed successfully");
+        } catch (CompletionException e) {
+            return e.getCause();
+        }
+    }
+
+    @Test
+    public void followersReceiveLeaderTranslation() {
+        CompletableFuture<Translation> leader = translations.submit(task("Hello world", Priority.NORMAL), submitter);
+        CompletableFuture<Translation> follower = translations.submit(task("Hello world", Priority.BACKGROUND), submitter);
+
+        assertEquals(1, submitted.size());
+        assertEquals(1, translations.size());
+        assertFalse(follower.isDone());
+
+        Translation translation = new Translation(new Word[0], null, null);
+        futures.get(0).complete(translation);
+
+        assertSame(translation, leader.join());
+        assertSame(translation, follower.join());
+        assertEquals(0, translations.size());
+    }
+
+    @Test
+    public void followersReceiveLeaderError() {
+        CompletableFuture<Translation> leader = translations.submit(task("Hello world", Priority.NORMAL), submitter);
+        CompletableFuture<Translation> follower = translations.submit(task("Hello world", Priority.NORMAL), submitter);
+
+        RuntimeException error = new RuntimeException("decoder failure");
+        futures.get(0).completeExceptionally(error);
+
+        assertSame(error, getError(leader));
+        assertSame(error, getError(follower));
+        assertEquals(0, translations.size());
+
+        // a later request does not receive the past error
+        CompletableFuture<Translation> retry = translations.submit(task("Hello world", Priority.NORMAL), submitter);
+        assertEquals(2, submitted.size());
+        assertFalse(retry.isDone());
+    }
+
+    @Test
+    public void differentTasksAreNotCoalesced() {
+        translations.submit(task("Hello world", Priority.NORMAL), submitter);
+        translations.submit(task("Hello", Priority.NORMAL), submitter);
+
+        assertEquals(2, submitted.size());
+        assertEquals(2, translations.size());
+
+        futures.get(1).complete(new Translation(new Word[0], null, null));
+        futures.get(0).completeExceptionally(new RuntimeException());
+        assertEquals(0, translations.size());
+    }
+
+    @Test
+    public void taskThatCannotBeServedIsSubmitted() {
+        CompletableFuture<Translation> leader = translations.submit(task("Hello world", Priority.BACKGROUND), submitter);
+        CompletableFuture<Translation> high = translations.submit(task("Hello world", Priority.HIGH), submitter);
+
+        assertEquals(2, submitted.size());
+        assertNotSame(leader, high);
+        // the first one only is in flight, it was running when the second one has been submitted
+        assertEquals(1, translations.size());
+
+        Translation translation = new Translation(new Word[0], null, null);
+        futures.get(1).complete(translation);
+        assertSame(translation, high.join());
+        assertFalse(leader.isDone());
+        assertEquals(1, translations.size());
+
+        futures.get(0).complete(translation);
+        assertEquals(0, translations.size());
+    }
+
+    @Test
+    public void submitterFailure() {
+        RuntimeException error = new RuntimeException("queue is full");
+        CompletableFuture<Translation> future = translations.submit(task("Hello world", Priority.NORMAL), task -> {
+            throw error;
+        });
+
+        assertSame(error, getError(future));
+        assertEquals(0, translations.size());
+    }
+
+}
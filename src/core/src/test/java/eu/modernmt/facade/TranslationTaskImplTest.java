@@ -0,0 +1,93 @@
+package eu.modernmt.facade;
+
+import eu.modernmt.facade.TranslationFacade.Priority;
+import eu.modernmt.facade.TranslationFacade.TranslationKey;
+import eu.modernmt.facade.TranslationFacade.TranslationTaskImpl;
+import eu.modernmt.lang.Language;
+import eu.modernmt.lang.LanguagePair;
+import eu.modernmt.model.ContextVector;
+import org.junit.Test;
+
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+public class TranslationTaskImplTest {
+
+    private static final LanguagePair EN__IT = new LanguagePair(Language.ENGLISH, Language.ITALIAN);
+    private static final LanguagePair EN__FR = new LanguagePair(Language.ENGLISH, Language.FRENCH);
+    private static final UUID USER = UUID.randomUUID();
+
+    private static ContextVector context(float score1, float score2) {
+        return new ContextVector.Builder().add(1L, score1).add(2L, score2).build();
+    }
+
+    private static TranslationTaskImpl task(UUID user, LanguagePair direction, String text, ContextVector context, int nbest) {
+        return new TranslationTaskImpl(user, direction, text, context, nbest, Priority.NORMAL, 0L);
+    }
+
+    private static TranslationTaskImpl task(Priority priority, long expirationTimestamp) {
+        return new TranslationTaskImpl(USER, EN__IT, "Hello world", context(.5f, .3f), 0, priority, expirationTimestamp);
+    }
+
+    @Test
+    public void identicalRequestsHaveEqualKeys() {
+        TranslationTaskImpl task = task(USER, EN__IT, "Hello world", context(.5f, .3f), 0);
+        TranslationTaskImpl other = new TranslationTaskImpl(USER, EN__IT, "Hello world", context(.5f, .3f), 0,
+                Priority.BACKGROUND, System.currentTimeMillis() + 1000L);
+
+        assertEquals(task.getCoalescingKey(), other.getCoalescingKey());
+        assertEquals(task.getCoalescingKey().hashCode(), other.getCoalescingKey().hashCode());
+
+        assertEquals(task(null, EN__IT, "Hello world", null, 0).getCoalescingKey(),
+                task(null, EN__IT, "Hello world", null, 0).getCoalescingKey());
+    }
+
+    @Test
+    public void differentRequestsHaveDifferentKeys() {
+        Object key = task(USER, EN__IT, "Hello world", context(.5f, .3f), 0).getCoalescingKey();
+
+        assertNotEquals(key, task(UUID.randomUUID(), EN__IT, "Hello world", context(.5f, .3f), 0).getCoalescingKey());
+        assertNotEquals(key, task(null, EN__IT, "Hello world", context(.5f, .3f), 0).getCoalescingKey());
+        assertNotEquals(key, task(USER, EN__FR, "Hello world", context(.5f, .3f), 0).getCoalescingKey());
+        assertNotEquals(key, task(USER, EN__IT, "Hello  world", context(.5f, .3f), 0).getCoalescingKey());
+        assertNotEquals(key, task(USER, EN__IT, "Hello world", context(.5f, .3f), 5).getCoalescingKey());
+        assertNotEquals(key, task(USER, EN__IT, "Hello world", null, 0).getCoalescingKey());
+        assertNotEquals(key, task(USER, EN__IT, "Hello world",
+                new ContextVector.Builder().add(1L, .5f).add(3L, .3f).build(), 0).getCoalescingKey());
+    }
+
+    @Test
+    public void coalescingKeysCompareExactScores() {
+        assertNotEquals(task(USER, EN__IT, "Hello world", context(.5f, .3f), 0).getCoalescingKey(),
+                task(USER, EN__IT, "Hello world", context(.501f, .3f), 0).getCoalescingKey());
+
+        // cache keys quantize the scores instead
+        assertEquals(new TranslationKey(USER, EN__IT, "Hello world", context(.5f, .3f), 0, 100),
+                new TranslationKey(USER, EN__IT, "Hello world", context(.501f, .3f), 0, 100));
+    }
+
+    @Test
+    public void canServeSameOrLowerPriority() {
+        TranslationTaskImpl normal = task(Priority.NORMAL, 0L);
+
+        assertTrue(normal.canServe(task(Priority.NORMAL, 0L)));
+        assertTrue(normal.canServe(task(Priority.BACKGROUND, 0L)));
+        assertFalse(normal.canServe(task(Priority.HIGH, 0L)));
+    }
+
+    @Test
+    public void canServeEarlierDeadline() {
+        long now = System.currentTimeMillis();
+        TranslationTaskImpl expiring = task(Priority.NORMAL, now + 1000L);
+
+        assertTrue(expiring.canServe(task(Priority.NORMAL, now + 1000L)));
+        assertTrue(expiring.canServe(task(Priority.NORMAL, now + 500L)));
+        // the other tasks could still succeed after the leader has expired
+        assertFalse(expiring.canServe(task(Priority.NORMAL, now + 2000L)));
+        assertFalse(expiring.canServe(task(Priority.NORMAL, 0L)));
+
+        assertTrue(task(Priority.NORMAL, 0L).canServe(task(Priority.NORMAL, now + 500L)));
+    }
+
+}
@@ -19,6 +19,9 @@ public class ModelConfig {
 
     private final int DEFAULT_SUGGESTIONS_LIMIT = 1;
     private final int DEFAULT_QUERY_MIN_RESULTS = 10;
+    private final long DEFAULT_MEMORY_REFRESH_INTERVAL = 0L;
+    private final long DEFAULT_MEMORY_COMMIT_INTERVAL = 60000L;
+    private final boolean DEFAULT_EXACT_MATCH_INDEX = false;
 
     private final HierarchicalINIConfiguration config;
     private final File basePath;
@@ -83,6 +86,44 @@ public class ModelConfig {
         }
     }
 
+    /**
+     * @return true if the exact matches of the memory are looked up in an in-memory index:
+     * the index holds a copy of the whole memory on the heap, so it is disabled by default
+     */
+    public boolean isExactMatchIndexEnabled() {
+        try {
+            SubnodeConfiguration settings = config.configurationAt("settings");
+            return settings.getBoolean("memory_exact_match_index", DEFAULT_EXACT_MATCH_INDEX);
+        } catch (IllegalArgumentException iex) {
+            return DEFAULT_EXACT_MATCH_INDEX;
+        }
+    }
+
+    /**
+     * @return the interval (in milliseconds) between two refreshes of the memory searcher in near-real-time mode,
+     * 0 disables near-real-time mode: every batch of data is committed and becomes searchable immediately
+     */
+    public long getMemoryRefreshInterval() {
+        try {
+            SubnodeConfiguration settings = config.configurationAt("settings");
+            return settings.getLong("memory_refresh_interval", DEFAULT_MEMORY_REFRESH_INTERVAL);
+        } catch (IllegalArgumentException iex) {
+            return DEFAULT_MEMORY_REFRESH_INTERVAL;
+        }
+    }
+
+    /**
+     * @return the interval (in milliseconds) between two commits of the memory index in near-real-time mode
+     */
+    public long getMemoryCommitInterval() {
+        try {
+            SubnodeConfiguration settings = config.configurationAt("settings");
+            return settings.getLong("memory_commit_interval", DEFAULT_MEMORY_COMMIT_INTERVAL);
+        } catch (IllegalArgumentException iex) {
+            return DEFAULT_MEMORY_COMMIT_INTERVAL;
+        }
+    }
+
     public int getQueryMinimumResults() {
         try {
             SubnodeConfiguration settings = config.configurationAt("settings");
@@ -7,8 +7,10 @@ import eu.modernmt.decoder.Decoder;
 import eu.modernmt.decoder.DecoderException;
 import eu.modernmt.decoder.DecoderListener;
 import eu.modernmt.decoder.DecoderWithNBest;
+import eu.modernmt.decoder.MemoryRefreshListener;
 import eu.modernmt.decoder.neural.execution.DecoderQueue;
 import eu.modernmt.decoder.neural.execution.PythonDecoder;
+import eu.modernmt.decoder.neural.execution.TranslationBatcher;
 import eu.modernmt.decoder.neural.execution.impl.DecoderQueueImpl;
 import eu.modernmt.decoder.neural.execution.impl.PythonDecoderImpl;
 import eu.modernmt.decoder.neural.memory.ScoreEntry;
@@ -29,6 +31,7 @@ import java.io.IOException;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Created by davide on 22/05/17.
@@ -51,6 +54,7 @@ public class NeuralDecoder extends Decoder implements DecoderWithNBest, DataList
     private final TranslationMemory memory;
     private final Set<LanguagePair> directions;
     private final DecoderQueue decoderQueue;
+    private final TranslationBatcher batcher;
 
     private volatile long lastSuccessfulTranslation = 0L;
 
@@ -78,6 +82,11 @@ public class NeuralDecoder extends Decoder implements DecoderWithNBest, DataList
 
         // Decoder Queue
         this.decoderQueue = this.echoServer ? null : loadDecoderQueue(modelConfig, config, model);
+
+        // Translation Batcher
+        this.batcher = (this.decoderQueue != null && config.getBatchSize() > 1) ?
+                new TranslationBatcher(this.decoderQueue, config.getBatchSize(), config.getBatchTimeout(),
+                        TimeUnit.MICROSECONDS, config.getParallelismDegree()) : null;
     }
 
     protected ModelConfig loadModelConfig(File filepath) throws IOException {
@@ -85,16 +94,29 @@ public class NeuralDecoder extends Decoder implements DecoderWithNBest, DataList
     }
 
     protected TranslationMemory loadTranslationMemory(ModelConfig config, File model) throws IOException {
-        return new LuceneTranslationMemory(model, config.getQueryMinimumResults());
+        LuceneTranslationMemory memory = new LuceneTranslationMemory(model, config.getQueryMinimumResults());
+        if (config.isExactMatchIndexEnabled())
+            memory.enableExactMatchIndex();
+
+        long refreshInterval = config.getMemoryRefreshInterval();
+        if (refreshInterval > 0)
+            memory.enableNearRealTime(refreshInterval, config.getMemoryCommitInterval(), TimeUnit.MILLISECONDS);
+
+        return memory;
     }
 
     protected DecoderQueue loadDecoderQueue(ModelConfig modelConfig, DecoderConfig decoderConfig, File model) throws DecoderException {
-        PythonDecoder.Builder builder = new PythonDecoderImpl.Builder(getJarPath(), model);
+        PythonDecoder.Builder builder = new PythonDecoderImpl.Builder(getJarPath(), model)
+                .setBinaryProtocol(decoderConfig.isUsingBinaryProtocol());
 
+        DecoderQueueImpl queue;
         if (decoderConfig.isUsingGPUs())
-            return DecoderQueueImpl.newGPUInstance(modelConfig, builder, decoderConfig.getGPUs());
+            queue = DecoderQueueImpl.newGPUInstance(modelConfig, builder, decoderConfig.getGPUs());
         else
-            return DecoderQueueImpl.newCPUInstance(modelConfig, builder, decoderConfig.getThreads());
+            queue = DecoderQueueImpl.newCPUInstance(modelConfig, builder, decoderConfig.getThreads());
+
+        queue.setAffinityTimeout(decoderConfig.getAffinityTimeout(), TimeUnit.MILLISECONDS);
+        return queue;
     }
 
     // Decoder
@@ -106,6 +128,19 @@ public class NeuralDecoder extends Decoder implements DecoderWithNBest, DataList
         listener.onTranslationDirectionsChanged(directions);
     }
 
+    @Override
+    public boolean addMemoryRefreshListener(MemoryRefreshListener listener) {
+        if (!(memory instanceof LuceneTranslationMemory))
+            return false;
+
+        LuceneTranslationMemory luceneMemory = (LuceneTranslationMemory) memory;
+        if (!luceneMemory.isNearRealTime())
+            return false;
+
+        luceneMemory.addRefreshListener(listener);
+        return true;
+    }
+
     @Override
     public Translation translate(UUID user, LanguagePair direction, Sentence text) throws DecoderException {
         return translate(user, direction, text, null, 0);
@@ -132,12 +167,20 @@ public class NeuralDecoder extends Decoder implements DecoderWithNBest, DataList
 
         if (text.hasWords()) {
             ScoreEntry[] suggestions = null;
+            ScoreEntry exactMatch = null;
 
             if (contextVector != null) {
                 long begin = System.currentTimeMillis();
 
                 try {
-                    suggestions = memory.search(user, direction, text, contextVector, this.suggestionsLimit);
+                    // tag projection needs the alignment from the decoder, so only plain text can skip it
+                    if (nbestListSize == 0 && !text.hasTags())
+                        exactMatch = memory.exactMatch(direction, text, contextVector);
+
+                    if (exactMatch != null)
+                        suggestions = new ScoreEntry[]{exactMatch};
+                    else
+                        suggestions = memory.search(user, direction, text, contextVector, this.suggestionsLimit);
                 } catch (IOException e) {
                     throw new DecoderException("Failed to retrieve suggestions from memory", e);
                 }
@@ -145,12 +188,20 @@ public class NeuralDecoder extends Decoder implements DecoderWithNBest, DataList
                 lookupTime = System.currentTimeMillis() - begin;
             }
 
-            if (this.echoServer) {
+            if (exactMatch != null) {
+                translation = Translation.fromTokens(text, exactMatch.translation);
+            } else if (this.echoServer) {
                 if (suggestions != null && suggestions.length > 0) {
                     translation = Translation.fromTokens(text, suggestions[0].translation);
                 } else {
                     translation = Translation.fromTokens(text, TokensOutputStream.tokens(text, false, true));
                 }
+            } else if (this.batcher != null && nbestListSize == 0 && (suggestions == null || suggestions.length == 0)) {
+                long begin = System.currentTimeMillis();
+                translation = batcher.translate(direction, text);
+                decodeTime = System.currentTimeMillis() - begin;
+
+                lastSuccessfulTranslation = System.currentTimeMillis();
             } else {
                 PythonDecoder decoder = null;
 
@@ -243,6 +294,7 @@ public class NeuralDecoder extends Decoder implements DecoderWithNBest, DataList
 
     @Override
     public void close() {
+        IOUtils.closeQuietly(this.batcher);
         IOUtils.closeQuietly(this.decoderQueue);
         IOUtils.closeQuietly(this.memory);
     }
@@ -0,0 +1,86 @@
+package eu.modernmt.decoder.neural.execution;
+
+import org.apache.commons.io.IOUtils;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Binary counterpart of StreamPollingThread: it reads length-prefixed frames
+ * (4 bytes big-endian length, followed by the payload) instead of text lines.
+ */
+abstract class FramePollingThread extends Thread {
+
+    private final DataInputStream input;
+    private boolean active = true;
+
+    public FramePollingThread(InputStream stdout) {
+        this.input = new DataInputStream(stdout);
+    }
+
+    @Override
+    public final void run() {
+        while (active) {
+            try {
+                try {
+                    byte[] frame = readFrame();
+                    if (frame == null)
+                        active = false;
+
+                    if (!active)
+                        break;
+
+                    onFrameRead(frame);
+                } catch (IOException e) {
+                    if (!active)
+                        break;
+
+                    onIOException(e);
+                }
+            } catch (InterruptedException e) {
+                break;
+            }
+        }
+
+        IOUtils.closeQuietly(input);
+
+        try {
+            onFrameRead(null);
+        } catch (InterruptedException e) {
+            // Ignore it
+        }
+    }
+
+    private byte[] readFrame() throws IOException {
+        int length;
+        try {
+            length = input.readInt();
+        } catch (EOFException e) {
+            return null;
+        }
+
+        if (length < 0)
+            throw new IOException("Invalid frame length: " + length);
+
+        byte[] frame = new byte[length];
+        input.readFully(frame);
+
+        return frame;
+    }
+
+    public final boolean isActive() {
+        return active;
+    }
+
+    protected abstract void onFrameRead(byte[] frame) throws InterruptedException;
+
+    protected abstract void onIOException(IOException e) throws InterruptedException;
+
+    @Override
+    public void interrupt() {
+        this.active = false;
+    }
+
+}
@@ -25,6 +25,8 @@ public interface PythonDecoder extends Closeable {
 
     Translation translate(LanguagePair direction, Sentence sentence, int nBest) throws DecoderException;
 
+    Translation[] translate(LanguagePair direction, Sentence[] sentences) throws DecoderException;
+
     Translation translate(LanguagePair direction, Sentence sentence, ScoreEntry[] suggestions, int nBest) throws DecoderException;
 
     Translation translate(LanguagePair direction, Sentence sentence, String[] translation) throws DecoderException;
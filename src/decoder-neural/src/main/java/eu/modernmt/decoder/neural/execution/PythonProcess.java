@@ -10,6 +10,7 @@ import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
@@ -45,6 +46,7 @@ public abstract class PythonProcess implements Closeable {
     private final Process process;
     private OutputStream stdin = null;
     private StdoutThread stdoutThread = null;
+    private StdoutFrameThread stdoutFrameThread = null;
     private StreamPollingThread logThread = null;
 
     protected PythonProcess(Process process) {
@@ -60,6 +62,11 @@ public abstract class PythonProcess implements Closeable {
         this.stdoutThread.start();
     }
 
+    protected void connectFramedStdout(InputStream stdout) {
+        this.stdoutFrameThread = new StdoutFrameThread(stdout);
+        this.stdoutFrameThread.start();
+    }
+
     protected void connectStderr(InputStream stderr) {
         this.logThread = new LogThread(stderr);
         this.logThread.start();
@@ -71,12 +78,52 @@ public abstract class PythonProcess implements Closeable {
         connectStdout(process.getInputStream());
     }
 
+    protected Process getProcess() {
+        return process;
+    }
+
+    /**
+     * Synchronously reads a single line from the given stream, one byte at a time, so that
+     * no data following the line is consumed. This is used to perform the handshake with
+     * the native process before its stdout is attached to the polling thread.
+     *
+     * @param input the stream to read from
+     * @return the line read, without the trailing newline, or null if the stream has ended
+     * @throws IOException if an I/O error occurs
+     */
+    protected static String readLine(InputStream input) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+        int b;
+        while ((b = input.read()) != '\n') {
+            if (b < 0)
+                return buffer.size() == 0 ? null : buffer.toString(UTF8Charset.get().name());
+
+            buffer.write(b);
+        }
+
+        return buffer.toString(UTF8Charset.get().name());
+    }
+
     protected void send(String line) throws IOException {
         this.stdin.write(line.getBytes(UTF8Charset.get()));
         this.stdin.write('\n');
         this.stdin.flush();
     }
 
+    protected void send(byte[] frame, int offset, int length) throws IOException {
+        this.stdin.write((length >>> 24) & 0xFF);
+        this.stdin.write((length >>> 16) & 0xFF);
+        this.stdin.write((length >>> 8) & 0xFF);
+        this.stdin.write(length & 0xFF);
+        this.stdin.write(frame, offset, length);
+        this.stdin.flush();
+    }
+
+    protected byte[] recvFrame(long timeout, TimeUnit unit) throws IOException {
+        return this.stdoutFrameThread.readFrame(timeout, unit);
+    }
+
     protected String recv() throws IOException {
         return this.stdoutThread.readLine();
     }
@@ -95,6 +142,8 @@ public abstract class PythonProcess implements Closeable {
             logThread.interrupt();
         if (stdoutThread != null)
             stdoutThread.interrupt();
+        if (stdoutFrameThread != null)
+            stdoutFrameThread.interrupt();
 
         IOUtils.closeQuietly(stdin);
 
@@ -132,6 +181,14 @@ public abstract class PythonProcess implements Closeable {
                 // ignore it
             }
         }
+
+        if (stdoutFrameThread != null) {
+            try {
+                stdoutFrameThread.join();
+            } catch (InterruptedException e) {
+                // ignore it
+            }
+        }
     }
 
     private class LogThread extends StreamPollingThread {
@@ -224,4 +281,56 @@ public abstract class PythonProcess implements Closeable {
 
     }
 
+    private class StdoutFrameThread extends FramePollingThread {
+
+        private final Object POISON_PILL = new Object();
+        private final SynchronousQueue<Object> handoff;
+
+        public StdoutFrameThread(InputStream stdout) {
+            super(stdout);
+            this.handoff = new SynchronousQueue<>();
+        }
+
+        @Override
+        protected void onIOException(IOException e) throws InterruptedException {
+            handoff.put(e);
+        }
+
+        @Override
+        protected void onFrameRead(byte[] frame) throws InterruptedException {
+            if (frame == null)
+                handoff.offer(POISON_PILL);
+            else
+                handoff.put(frame);
+        }
+
+        public byte[] readFrame(long timeout, TimeUnit unit) throws IOException {
+            if (!super.isActive())
+                return null;
+
+            Object object;
+
+            try {
+                object = unit == null ? handoff.take() : handoff.poll(timeout, unit);
+            } catch (InterruptedException e) {
+                return null;
+            }
+
+            if (object == null || object == POISON_PILL)
+                return null;
+
+            if (object instanceof IOException)
+                throw (IOException) object;
+            else
+                return (byte[]) object;
+        }
+
+        @Override
+        public void interrupt() {
+            super.interrupt();
+            this.handoff.poll();
+        }
+
+    }
+
 }
@@ -0,0 +1,229 @@
+package eu.modernmt.decoder.neural.execution;
+
+import eu.modernmt.decoder.DecoderException;
+import eu.modernmt.decoder.DecoderUnavailableException;
+import eu.modernmt.lang.LanguagePair;
+import eu.modernmt.model.Sentence;
+import eu.modernmt.model.Translation;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A TranslationBatcher collects the concurrent translation requests for the same language direction
+ * and sends them to a single decoder process as one multi-sentence request.
+ * A batch is dispatched as soon as it reaches the maximum size, or when its oldest
+ * sentence has been waiting for longer than the configured timeout.
+ */
+public class TranslationBatcher implements Closeable {
+
+    private final Logger logger = LogManager.getLogger(getClass());
+
+    private final DecoderQueue decoderQueue;
+    private final int maxBatchSize;
+    private final long maxWaitNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final HashMap<LanguagePair, ArrayDeque<Request>> pending = new HashMap<>();
+    private final Worker[] workers;
+
+    private volatile boolean active = true;
+
+    public TranslationBatcher(DecoderQueue decoderQueue, int maxBatchSize, long maxWait, TimeUnit unit, int threads) {
+        this.decoderQueue = decoderQueue;
+        this.maxBatchSize = maxBatchSize;
+        this.maxWaitNanos = unit.toNanos(maxWait);
+
+        this.workers = new Worker[threads];
+        for (int i = 0; i < threads; i++) {
+            this.workers[i] = new Worker(i);
+            this.workers[i].start();
+        }
+    }
+
+    public Translation translate(LanguagePair direction, Sentence sentence) throws DecoderException {
+        Request request = new Request(direction, sentence);
+
+        lock.lock();
+        try {
+            if (!active)
+                throw new DecoderUnavailableException("Translation batcher has been closed");
+
+            pending.computeIfAbsent(direction, key -> new ArrayDeque<>()).add(request);
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            return request.future.get();
+        } catch (InterruptedException e) {
+            throw new DecoderUnavailableException("No NMT processes available", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+
+            if (cause instanceof DecoderException)
+                throw (DecoderException) cause;
+            else if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            else
+                throw new Error("Unexpected exception thrown: " + cause.getMessage(), cause);
+        }
+    }
+
+    private List<Request> nextBatch() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (active) {
+                ArrayDeque<Request> queue = null;
+                long oldest = Long.MAX_VALUE;
+
+                for (ArrayDeque<Request> candidate : pending.values()) {
+                    Request head = candidate.peek();
+                    if (head == null)
+                        continue;
+
+                    if (candidate.size() >= maxBatchSize) {
+                        queue = candidate;
+                        break;
+                    }
+
+                    if (head.timestamp < oldest) {
+                        oldest = head.timestamp;
+                        queue = candidate;
+                    }
+                }
+
+                if (queue == null) {
+                    notEmpty.await();
+                    continue;
+                }
+
+                long delay = queue.peek().timestamp + maxWaitNanos - System.nanoTime();
+                if (delay <= 0 || queue.size() >= maxBatchSize) {
+                    int size = Math.min(queue.size(), maxBatchSize);
+                    List<Request> batch = new ArrayList<>(size);
+                    for (int i = 0; i < size; i++)
+                        batch.add(queue.poll());
+
+                    if (!queue.isEmpty())
+                        notEmpty.signal();
+
+                    return batch;
+                }
+
+                notEmpty.awaitNanos(delay);
+            }
+
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void execute(List<Request> batch) {
+        LanguagePair direction = batch.get(0).direction;
+        Sentence[] sentences = new Sentence[batch.size()];
+        for (int i = 0; i < sentences.length; i++)
+            sentences[i] = batch.get(i).sentence;
+
+        PythonDecoder decoder = null;
+
+        try {
+            decoder = decoderQueue.take(direction);
+            Translation[] translations = decoder.translate(direction, sentences);
+
+            for (int i = 0; i < translations.length; i++)
+                batch.get(i).future.complete(translations[i]);
+        } catch (DecoderException | RuntimeException e) {
+            for (Request request : batch)
+                request.future.completeExceptionally(e);
+        } finally {
+            if (decoder != null)
+                decoderQueue.release(decoder);
+        }
+
+        if (logger.isDebugEnabled())
+            logger.debug("Translated batch of " + sentences.length + " sentences for direction " + direction);
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            this.active = false;
+            notEmpty.signalAll();
+
+            DecoderUnavailableException exception = new DecoderUnavailableException("Translation batcher has been closed");
+            for (ArrayDeque<Request> queue : pending.values()) {
+                for (Request request : queue)
+                    request.future.completeExceptionally(exception);
+            }
+            pending.clear();
+        } finally {
+            lock.unlock();
+        }
+
+        for (Worker worker : workers)
+            worker.interrupt();
+
+        for (Worker worker : workers) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                // Ignore it
+            }
+        }
+    }
+
+    private static class Request {
+
+        private final LanguagePair direction;
+        private final Sentence sentence;
+        private final long timestamp;
+        private final CompletableFuture<Translation> future = new CompletableFuture<>();
+
+        private Request(LanguagePair direction, Sentence sentence) {
+            this.direction = direction;
+            this.sentence = sentence;
+            this.timestamp = System.nanoTime();
+        }
+
+    }
+
+    private class Worker extends Thread {
+
+        private Worker(int index) {
+            super("TranslationBatcher-" + index);
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            while (active) {
+                List<Request> batch;
+
+                try {
+                    batch = nextBatch();
+                } catch (InterruptedException e) {
+                    break;
+                }
+
+                if (batch == null)
+                    break;
+
+                execute(batch);
+            }
+        }
+
+    }
+
+}
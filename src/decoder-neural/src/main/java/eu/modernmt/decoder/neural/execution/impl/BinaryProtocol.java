@@ -0,0 +1,236 @@
+package eu.modernmt.decoder.neural.execution.impl;
+
+import eu.modernmt.decoder.DecoderException;
+import eu.modernmt.decoder.neural.memory.ScoreEntry;
+import eu.modernmt.io.TokensOutputStream;
+import eu.modernmt.io.UTF8Charset;
+import eu.modernmt.lang.LanguagePair;
+import eu.modernmt.model.Alignment;
+import eu.modernmt.model.Sentence;
+import eu.modernmt.model.Translation;
+import eu.modernmt.model.Word;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Encoder and decoder for the binary protocol spoken with the neural decoder process.
+ * Every message is sent as a frame; strings are UTF-8 bytes prefixed by their varint length,
+ * alignments are packed varint arrays and scores are 32-bit big-endian floats.
+ * <p>
+ * Requests:
+ * <pre>
+ * test      := 0x00
+ * translate := 0x01 sl:str tl:str flags:u8 query:str [forced:str] [hints]
+ * batch     := 0x02 sl:str tl:str count:varint query:str*
+ * hints     := count:varint (sl:str tl:str seg:str tra:str scr:f32)*
+ * </pre>
+ * Responses:
+ * <pre>
+ * success     := 0x00 count:varint translation*
+ * translation := text:str has_alignment:u8 [size:varint src:varint* tgt:varint*]
+ * error       := 0x01 type:str msg:str
+ * </pre>
+ * An instance is not thread-safe: the encoding buffer is reused across requests.
+ */
+class BinaryProtocol {
+
+    public static final String NAME = "binary";
+
+    private static final byte REQUEST_TEST = 0x00;
+    private static final byte REQUEST_TRANSLATE = 0x01;
+    private static final byte REQUEST_BATCH = 0x02;
+
+    private static final byte FLAG_FORCED_TRANSLATION = 0x01;
+    private static final byte FLAG_HINTS = 0x02;
+
+    private static final byte RESPONSE_SUCCESS = 0x00;
+    private static final byte RESPONSE_ERROR = 0x01;
+
+    private final Charset charset = UTF8Charset.get();
+    private byte[] buffer = new byte[4096];
+    private int length = 0;
+
+    // Encoding
+
+    public byte[] getBuffer() {
+        return buffer;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    public void encodeTest() {
+        length = 0;
+        writeByte(REQUEST_TEST);
+    }
+
+    public void encode(LanguagePair direction, Sentence sentence, ScoreEntry[] suggestions, String[] forcedTranslation) {
+        boolean hasHints = suggestions != null && suggestions.length > 0;
+
+        byte flags = 0;
+        if (forcedTranslation != null)
+            flags |= FLAG_FORCED_TRANSLATION;
+        if (hasHints)
+            flags |= FLAG_HINTS;
+
+        length = 0;
+        writeByte(REQUEST_TRANSLATE);
+        writeString(direction.source.toLanguageTag());
+        writeString(direction.target.toLanguageTag());
+        writeByte(flags);
+        writeString(TokensOutputStream.serialize(sentence, false, true));
+
+        if (forcedTranslation != null)
+            writeTokens(forcedTranslation);
+
+        if (hasHints) {
+            writeVarint(suggestions.length);
+
+            for (ScoreEntry entry : suggestions) {
+                writeString(entry.language.source.toLanguageTag());
+                writeString(entry.language.target.toLanguageTag());
+                writeTokens(entry.sentence);
+                writeTokens(entry.translation);
+                writeFloat(entry.score);
+            }
+        }
+    }
+
+    public void encode(LanguagePair direction, Sentence[] sentences) {
+        length = 0;
+        writeByte(REQUEST_BATCH);
+        writeString(direction.source.toLanguageTag());
+        writeString(direction.target.toLanguageTag());
+        writeVarint(sentences.length);
+
+        for (Sentence sentence : sentences)
+            writeString(TokensOutputStream.serialize(sentence, false, true));
+    }
+
+    private void ensureCapacity(int size) {
+        if (length + size > buffer.length)
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + size));
+    }
+
+    private void writeByte(byte b) {
+        ensureCapacity(1);
+        buffer[length++] = b;
+    }
+
+    private void writeVarint(int value) {
+        ensureCapacity(5);
+
+        while ((value & ~0x7F) != 0) {
+            buffer[length++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+
+        buffer[length++] = (byte) value;
+    }
+
+    private void writeFloat(float value) {
+        int bits = Float.floatToIntBits(value);
+
+        ensureCapacity(4);
+        buffer[length++] = (byte) (bits >>> 24);
+        buffer[length++] = (byte) (bits >>> 16);
+        buffer[length++] = (byte) (bits >>> 8);
+        buffer[length++] = (byte) bits;
+    }
+
+    private void writeString(String string) {
+        byte[] bytes = string.getBytes(charset);
+        writeVarint(bytes.length);
+
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, length, bytes.length);
+        length += bytes.length;
+    }
+
+    private void writeTokens(String[] tokens) {
+        writeString(StringUtils.join(tokens, ' '));
+    }
+
+    // Decoding
+
+    public Translation[] decode(byte[] frame, Sentence[] sentences) throws IOException, DecoderException {
+        ByteBuffer input = ByteBuffer.wrap(frame);
+
+        try {
+            byte status = input.get();
+
+            if (status == RESPONSE_SUCCESS) {
+                int count = readVarint(input);
+                if (count != sentences.length)
+                    throw new DecoderException("Invalid batch size from NMT decoder, expected " + sentences.length + " but received " + count);
+
+                Translation[] translations = new Translation[count];
+                for (int i = 0; i < count; i++)
+                    translations[i] = readTranslation(input, sentences[i]);
+
+                return translations;
+            } else if (status == RESPONSE_ERROR) {
+                String type = readString(input);
+                String message = readString(input);
+
+                throw message.isEmpty() ? new DecoderException(type) : new DecoderException(type + " - " + message);
+            } else {
+                throw new IOException("Invalid response status from NMT decoder: " + status);
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated response from NMT decoder", e);
+        }
+    }
+
+    private Translation readTranslation(ByteBuffer input, Sentence sentence) throws IOException {
+        Word[] words = TokensOutputStream.deserializeWords(readString(input));
+        Alignment alignment = null;
+
+        if (input.get() != 0) {
+            int size = readVarint(input);
+            int[] sourceIndexes = new int[size];
+            int[] targetIndexes = new int[size];
+
+            for (int i = 0; i < size; i++)
+                sourceIndexes[i] = readVarint(input);
+            for (int i = 0; i < size; i++)
+                targetIndexes[i] = readVarint(input);
+
+            alignment = new Alignment(sourceIndexes, targetIndexes);
+        }
+
+        return new Translation(words, sentence, alignment);
+    }
+
+    private static int readVarint(ByteBuffer input) throws IOException {
+        int value = 0;
+
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = input.get();
+            value |= (b & 0x7F) << shift;
+
+            if ((b & 0x80) == 0)
+                return value;
+        }
+
+        throw new IOException("Malformed varint in NMT decoder response");
+    }
+
+    private String readString(ByteBuffer input) throws IOException {
+        int size = readVarint(input);
+        if (size > input.remaining())
+            throw new IOException("Truncated string in NMT decoder response");
+
+        String string = new String(input.array(), input.arrayOffset() + input.position(), size, charset);
+        input.position(input.position() + size);
+
+        return string;
+    }
+
+}
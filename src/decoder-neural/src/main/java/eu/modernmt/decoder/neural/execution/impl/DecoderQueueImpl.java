@@ -13,10 +13,12 @@ import org.apache.logging.log4j.Logger;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.Iterator;
-import java.util.Map;
+import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Created by davide on 22/05/17.
@@ -46,17 +48,32 @@ public class DecoderQueueImpl implements DecoderQueue {
     protected final Logger logger = LogManager.getLogger(getClass());
 
     private final Map<LanguagePair, File> checkpoints;
-    private final BlockingQueue<Handler> queue;
     private final ExecutorService initExecutor;
     private final int maxAvailability;
 
+    // Idle handlers grouped by the checkpoint they have loaded (null key for handlers with no model loaded);
+    // busy handlers are counted by the checkpoint they have been taken for. Both guarded by lock.
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    private final HashMap<File, ArrayDeque<Handler>> idle = new HashMap<>();
+    private final HashMap<File, Integer> busy = new HashMap<>();
+    private int idleCount = 0;
+
+    // Checkpoint loaded by every alive handler, as of its last release. Guarded by lock.
+    private final HashMap<Handler, File> loaded = new HashMap<>();
+    private Set<LanguagePair> warmDirections = Collections.emptySet();
+
+    private final AtomicLong warmTakes = new AtomicLong(0);
+    private final AtomicLong coldTakes = new AtomicLong(0);
+    private final AtomicLong reloads = new AtomicLong(0);
+
     private final AtomicInteger aliveProcesses = new AtomicInteger(0);
-    private boolean active = true;
+    private long affinityTimeoutNanos = 0L;
+    private volatile boolean active = true;
     private DecoderListener listener;
 
     protected DecoderQueueImpl(Map<LanguagePair, File> checkpoints, Handler[] handlers) throws DecoderException {
         this.checkpoints = checkpoints;
-        this.queue = new ArrayBlockingQueue<>(handlers.length);
         this.maxAvailability = handlers.length;
         this.initExecutor = handlers.length > 1 ? Executors.newCachedThreadPool() : Executors.newSingleThreadExecutor();
 
@@ -75,6 +92,38 @@ public class DecoderQueueImpl implements DecoderQueue {
         }
     }
 
+    /**
+     * Set the maximum time a request waits for a busy process that has already loaded the requested
+     * model, before taking an idle process that must load it. A value of 0 never waits.
+     *
+     * @param timeout the maximum waiting time
+     * @param unit    the time unit of the timeout argument
+     */
+    public void setAffinityTimeout(long timeout, TimeUnit unit) {
+        this.affinityTimeoutNanos = unit.toNanos(timeout);
+    }
+
+    /**
+     * @return the number of processes taken that had already loaded the requested model
+     */
+    public long getWarmTakes() {
+        return warmTakes.get();
+    }
+
+    /**
+     * @return the number of processes taken that had a different model, or no model at all, loaded
+     */
+    public long getColdTakes() {
+        return coldTakes.get();
+    }
+
+    /**
+     * @return the number of cold takes that forced a process to replace an already loaded model
+     */
+    public long getReloads() {
+        return reloads.get();
+    }
+
     @Override
     public int availability() {
         return aliveProcesses.get();
@@ -95,41 +144,168 @@ public class DecoderQueueImpl implements DecoderQueue {
         if (!this.active || this.aliveProcesses.get() == 0)
             throw new DecoderUnavailableException("No alive NMT processes available");
 
-        PythonDecoder decoder = null;
+        File checkpoint = language == null ? null : checkpoints.get(language);
+
+        long now = System.nanoTime();
+        long deadline = timeout > 0 ? now + unit.toNanos(timeout) : Long.MAX_VALUE;
+        long affinityDeadline = now + affinityTimeoutNanos;
+
+        Handler handler = null;
+
         try {
-            if (language != null)
-                decoder = tryGetByLanguagePair(language);
+            lock.lockInterruptibly();
+        } catch (InterruptedException e) {
+            throw new DecoderUnavailableException("No NMT processes available", e);
+        }
 
-            if (decoder == null) {
-                if (timeout > 0)
-                    decoder = this.queue.poll(timeout, unit);
+        try {
+            while (handler == null) {
+                if (!this.active)
+                    throw new DecoderUnavailableException("No alive NMT processes available");
+
+                if (checkpoint != null) {
+                    handler = pollIdle(checkpoint);
+                    if (handler != null)
+                        break;
+                }
+
+                now = System.nanoTime();
+                boolean waitForWarm = checkpoint != null && busy.containsKey(checkpoint) && now < affinityDeadline;
+
+                if (idleCount > 0 && !waitForWarm) {
+                    handler = pollColdest();
+                    break;
+                }
+
+                if (now >= deadline)
+                    return null;
+
+                long waitUntil = idleCount > 0 ? Math.min(deadline, affinityDeadline) : deadline;
+                if (waitUntil == Long.MAX_VALUE)
+                    released.await();
                 else
-                    decoder = this.queue.take();
+                    released.awaitNanos(waitUntil - now);
             }
 
-            return decoder;
+            handler.setReservation(checkpoint);
+            if (checkpoint != null)
+                busy.merge(checkpoint, 1, Integer::sum);
         } catch (InterruptedException e) {
             throw new DecoderUnavailableException("No NMT processes available", e);
         } finally {
-            if (decoder != null)
-                ((Handler) decoder).setInUse();
+            lock.unlock();
         }
+
+        if (checkpoint != null) {
+            File loaded = handler.getLastCheckpoint();
+
+            if (checkpoint.equals(loaded)) {
+                warmTakes.incrementAndGet();
+            } else {
+                coldTakes.incrementAndGet();
+
+                if (loaded != null) {
+                    long count = reloads.incrementAndGet();
+
+                    if (logger.isDebugEnabled())
+                        logger.debug("Process on GPU " + handler.getGPU() + " reloading model for " + language +
+                                " (reloads: " + count + ", warm takes: " + warmTakes.get() + ")");
+                }
+            }
+        }
+
+        handler.setInUse();
+        return handler;
     }
 
-    private PythonDecoder tryGetByLanguagePair(LanguagePair language) {
-        File checkpoint = checkpoints.get(language);
+    private Handler pollIdle(File checkpoint) {
+        ArrayDeque<Handler> handlers = idle.get(checkpoint);
+        if (handlers == null)
+            return null;
 
-        Iterator<Handler> iterator = this.queue.iterator();
-        while (iterator.hasNext()) {
-            Handler handler = iterator.next();
+        Handler handler = handlers.pollLast();
+        if (handlers.isEmpty())
+            idle.remove(checkpoint);
+        if (handler != null)
+            idleCount--;
+
+        return handler;
+    }
 
-            if (checkpoint.equals(handler.getLastCheckpoint())) {
-                iterator.remove();
-                return handler;
+    private Handler pollColdest() {
+        // Prefer a process with no model loaded, otherwise take it
+        // from the model that has the largest number of idle copies
+        if (idle.containsKey(null))
+            return pollIdle(null);
+
+        File coldest = null;
+        int size = 0;
+
+        for (Map.Entry<File, ArrayDeque<Handler>> entry : idle.entrySet()) {
+            if (entry.getValue().size() > size) {
+                size = entry.getValue().size();
+                coldest = entry.getKey();
             }
         }
 
-        return null;
+        return size > 0 ? pollIdle(coldest) : null;
+    }
+
+    private void offer(Handler handler) {
+        Set<LanguagePair> warmDirections;
+
+        lock.lock();
+        try {
+            idle.computeIfAbsent(handler.getLastCheckpoint(), key -> new ArrayDeque<>()).add(handler);
+            idleCount++;
+            released.signalAll();
+
+            loaded.put(handler, handler.getLastCheckpoint());
+            warmDirections = updateWarmDirections();
+        } finally {
+            lock.unlock();
+        }
+
+        notifyWarmDirections(warmDirections);
+    }
+
+    private void remove(Handler handler) {
+        Set<LanguagePair> warmDirections;
+
+        lock.lock();
+        try {
+            loaded.remove(handler);
+            warmDirections = updateWarmDirections();
+        } finally {
+            lock.unlock();
+        }
+
+        notifyWarmDirections(warmDirections);
+    }
+
+    /**
+     * Must be called with lock held.
+     *
+     * @return the new set of warm directions, or null if it did not change
+     */
+    private Set<LanguagePair> updateWarmDirections() {
+        HashSet<LanguagePair> directions = new HashSet<>();
+        for (Map.Entry<LanguagePair, File> entry : checkpoints.entrySet()) {
+            if (loaded.containsValue(entry.getValue()))
+                directions.add(entry.getKey());
+        }
+
+        if (directions.equals(warmDirections))
+            return null;
+
+        warmDirections = Collections.unmodifiableSet(directions);
+        return warmDirections;
+    }
+
+    private void notifyWarmDirections(Set<LanguagePair> directions) {
+        DecoderListener listener = this.listener;
+        if (directions != null && listener != null)
+            listener.onWarmTranslationDirectionsChanged(directions);
     }
 
     @Override
@@ -141,12 +317,26 @@ public class DecoderQueueImpl implements DecoderQueue {
             return;
         }
 
+        File reservation = handler.getReservation();
+        handler.setReservation(null);
+
+        if (reservation != null) {
+            lock.lock();
+            try {
+                busy.computeIfPresent(reservation, (key, count) -> count > 1 ? count - 1 : null);
+                released.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
         if (!this.active) {
             IOUtils.closeQuietly(handler);
         } else {
             if (handler.isAlive()) {
-                this.queue.offer(handler);
+                this.offer(handler);
             } else {
+                this.remove(handler);
                 int availability = this.aliveProcesses.decrementAndGet();
 
                 DecoderListener listener = this.listener;
@@ -170,10 +360,22 @@ public class DecoderQueueImpl implements DecoderQueue {
             // Ignore it
         }
 
-        PythonDecoder process;
-        while ((process = this.queue.poll()) != null) {
-            IOUtils.closeQuietly(process);
+        lock.lock();
+        try {
+            for (ArrayDeque<Handler> handlers : idle.values()) {
+                for (Handler handler : handlers)
+                    IOUtils.closeQuietly(handler);
+            }
+
+            idle.clear();
+            idleCount = 0;
+            released.signalAll();
+        } finally {
+            lock.unlock();
         }
+
+        logger.info("Decoder processes closed (warm takes: " + warmTakes.get() + ", cold takes: " +
+                coldTakes.get() + ", reloads: " + reloads.get() + ")");
     }
 
     private class Initializer implements Runnable {
@@ -202,7 +404,7 @@ public class DecoderQueueImpl implements DecoderQueue {
                 System.exit(2);
             }
 
-            queue.offer(handler);
+            offer(handler);
             int availability = aliveProcesses.incrementAndGet();
 
             DecoderListener listener = DecoderQueueImpl.this.listener;
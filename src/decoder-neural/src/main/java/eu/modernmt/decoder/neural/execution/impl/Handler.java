@@ -21,6 +21,7 @@ class Handler implements PythonDecoder {
 
     private PythonDecoder delegate = null;
     private File checkpoint = null;
+    private File reservation = null;
     private boolean inUse;
 
     public Handler(Builder builder, Map<LanguagePair, File> checkpoints, int gpu) {
@@ -59,6 +60,17 @@ class Handler implements PythonDecoder {
         return checkpoint;
     }
 
+    /**
+     * @return the checkpoint this handler has been taken for, or null if it is idle or it was taken for no specific direction
+     */
+    File getReservation() {
+        return reservation;
+    }
+
+    void setReservation(File reservation) {
+        this.reservation = reservation;
+    }
+
     @Override
     public int getGPU() {
         return gpu;
@@ -78,6 +90,15 @@ class Handler implements PythonDecoder {
         return delegate.translate(direction, sentence, nBest);
     }
 
+    @Override
+    public synchronized Translation[] translate(LanguagePair direction, Sentence[] sentences) throws DecoderException {
+        if (delegate == null)
+            throw new DecoderUnavailableException("Decoder process is dead");
+
+        checkpoint = checkpoints.get(direction);
+        return delegate.translate(direction, sentences);
+    }
+
     @Override
     public synchronized Translation translate(LanguagePair direction, Sentence sentence, ScoreEntry[] suggestions, int nBest) throws DecoderException {
         if (delegate == null)
@@ -15,10 +15,13 @@ import eu.modernmt.model.Word;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 public class PythonDecoderImpl extends PythonProcess implements PythonDecoder {
@@ -28,6 +31,7 @@ public class PythonDecoderImpl extends PythonProcess implements PythonDecoder {
         private final File pythonExec;
         private final File model;
         private final String[] extraArgs;
+        private boolean binaryProtocol = false;
 
         public Builder(File pythonExec, File model) {
             this(pythonExec, null, model);
@@ -39,6 +43,18 @@ public class PythonDecoderImpl extends PythonProcess implements PythonDecoder {
             this.extraArgs = extraArgs;
         }
 
+        /**
+         * If enabled, the binary protocol is used whenever the decoder process advertises it
+         * during the handshake; otherwise (or if not supported) requests are sent as JSON lines.
+         *
+         * @param binaryProtocol true to prefer the binary protocol over JSON
+         * @return this builder
+         */
+        public Builder setBinaryProtocol(boolean binaryProtocol) {
+            this.binaryProtocol = binaryProtocol;
+            return this;
+        }
+
         @Override
         public PythonDecoder startOnCPU() throws IOException {
             return start(-1);
@@ -74,8 +90,7 @@ public class PythonDecoderImpl extends PythonProcess implements PythonDecoder {
             boolean success = false;
 
             try {
-                process.connect();
-                process.init();
+                process.init(binaryProtocol);
                 success = true;
 
                 return process;
@@ -87,10 +102,12 @@ public class PythonDecoderImpl extends PythonProcess implements PythonDecoder {
 
     }
 
+    private static final String JSON_PROTOCOL = "json";
     private static final JsonParser parser = new JsonParser();
 
     private final int gpu;
     private boolean alive;
+    private BinaryProtocol protocol = null;
 
     protected PythonDecoderImpl(Process process) {
         this(process, -1);
@@ -101,11 +118,31 @@ public class PythonDecoderImpl extends PythonProcess implements PythonDecoder {
         this.gpu = gpu;
     }
 
-    protected void init() throws IOException {
-        String line = super.recv();
-        if (!"READY".equals(line))
+    protected void init(boolean preferBinaryProtocol) throws IOException {
+        Process process = super.getProcess();
+        super.connectStdin(process.getOutputStream());
+        super.connectStderr(process.getErrorStream());
+
+        // Handshake: "READY" optionally followed by the list of supported protocols
+        InputStream stdout = new BufferedInputStream(process.getInputStream());
+        String line = readLine(stdout);
+        if (line == null || !(line.equals("READY") || line.startsWith("READY ")))
             throw new IOException("Failed to start neural decoder, received: " + line);
 
+        List<String> protocols = Arrays.asList(StringUtils.split(line.substring(5)));
+        if (!protocols.isEmpty()) {
+            boolean binary = preferBinaryProtocol && protocols.contains(BinaryProtocol.NAME);
+            super.send("PROTOCOL " + (binary ? BinaryProtocol.NAME : JSON_PROTOCOL));
+
+            if (binary)
+                this.protocol = new BinaryProtocol();
+        }
+
+        if (this.protocol == null)
+            super.connectStdout(stdout);
+        else
+            super.connectFramedStdout(stdout);
+
         this.alive = true;
     }
 
@@ -121,25 +158,92 @@ public class PythonDecoderImpl extends PythonProcess implements PythonDecoder {
 
     @Override
     public void test() throws DecoderException {
-        translate(null, "{}");
+        if (protocol != null) {
+            protocol.encodeTest();
+            execute(new Sentence[1]);
+        } else {
+            translate(null, "{}");
+        }
     }
 
     @Override
     public Translation translate(LanguagePair direction, Sentence sentence, int nBest) throws DecoderException {
-        return this.translate(sentence, serialize(direction, sentence, null, null));
+        return this.translate(direction, sentence, null, nBest);
+    }
+
+    @Override
+    public Translation[] translate(LanguagePair direction, Sentence[] sentences) throws DecoderException {
+        if (protocol != null) {
+            protocol.encode(direction, sentences);
+            return execute(sentences);
+        }
+
+        JsonElement data = this.execute(serialize(direction, sentences));
+
+        JsonArray array = data.getAsJsonArray();
+        if (array.size() != sentences.length)
+            throw new DecoderException("Invalid batch size from NMT decoder, expected " + sentences.length + " but received " + array.size());
+
+        Translation[] translations = new Translation[sentences.length];
+        for (int i = 0; i < translations.length; i++)
+            translations[i] = deserialize(array.get(i).getAsJsonObject(), sentences[i]);
+
+        return translations;
     }
 
     @Override
     public Translation translate(LanguagePair direction, Sentence sentence, ScoreEntry[] suggestions, int nBest) throws DecoderException {
+        if (protocol != null) {
+            protocol.encode(direction, sentence, suggestions, null);
+            return execute(new Sentence[]{sentence})[0];
+        }
+
         return this.translate(sentence, serialize(direction, sentence, suggestions, null));
     }
 
     @Override
     public Translation translate(LanguagePair direction, Sentence sentence, String[] translation) throws DecoderException {
+        if (protocol != null) {
+            protocol.encode(direction, sentence, null, translation);
+            return execute(new Sentence[]{sentence})[0];
+        }
+
         return this.translate(sentence, serialize(direction, sentence, null, translation));
     }
 
+    private Translation[] execute(Sentence[] sentences) throws DecoderException {
+        if (!isAlive())
+            throw new DecoderUnavailableException("Neural decoder process not available");
+
+        boolean success = false;
+
+        try {
+            super.send(protocol.getBuffer(), 0, protocol.getLength());
+
+            byte[] response = super.recvFrame(30, TimeUnit.SECONDS);
+            if (response == null)
+                throw new DecoderUnavailableException("Neural decoder process not responding (timeout)");
+
+            Translation[] translations = protocol.decode(response, sentences);
+
+            success = true;
+            return translations;
+        } catch (IOException e) {
+            throw new DecoderUnavailableException("Failed to send request to decoder process", e);
+        } finally {
+            if (!success) {
+                this.alive = false;
+                this.close();
+            }
+        }
+    }
+
     private Translation translate(Sentence sentence, String payload) throws DecoderException {
+        JsonElement data = this.execute(payload);
+        return deserialize(data.getAsJsonObject(), sentence);
+    }
+
+    private JsonElement execute(String payload) throws DecoderException {
         if (!isAlive())
             throw new DecoderUnavailableException("Neural decoder process not available");
 
@@ -152,10 +256,10 @@ public class PythonDecoderImpl extends PythonProcess implements PythonDecoder {
             if (response == null)
                 throw new DecoderUnavailableException("Neural decoder process not responding (timeout)");
 
-            Translation translation = deserialize(response, sentence);
+            JsonElement data = parseResponse(response);
 
             success = true;
-            return translation;
+            return data;
         } catch (IOException e) {
             throw new DecoderUnavailableException("Failed to send request to decoder process", e);
         } finally {
@@ -166,6 +270,19 @@ public class PythonDecoderImpl extends PythonProcess implements PythonDecoder {
         }
     }
 
+    private static String serialize(LanguagePair direction, Sentence[] sentences) {
+        JsonArray array = new JsonArray();
+        for (Sentence sentence : sentences)
+            array.add(TokensOutputStream.serialize(sentence, false, true));
+
+        JsonObject json = new JsonObject();
+        json.add("q", array);
+        json.addProperty("sl", direction.source.toLanguageTag());
+        json.addProperty("tl", direction.target.toLanguageTag());
+
+        return json.toString().replace('\n', ' ');
+    }
+
     private String serialize(LanguagePair direction, Sentence sentence, ScoreEntry[] suggestions, String[] forcedTranslation) {
         String text = TokensOutputStream.serialize(sentence, false, true);
 
@@ -197,7 +314,7 @@ public class PythonDecoderImpl extends PythonProcess implements PythonDecoder {
         return json.toString().replace('\n', ' ');
     }
 
-    private Translation deserialize(String response, Sentence sentence) throws IOException, DecoderException {
+    private static JsonElement parseResponse(String response) throws IOException, DecoderException {
         JsonObject json;
         try {
             json = parser.parse(response).getAsJsonObject();
@@ -206,15 +323,11 @@ public class PythonDecoderImpl extends PythonProcess implements PythonDecoder {
         }
 
         boolean success = json.get("success").getAsBoolean();
-        JsonObject data = json.getAsJsonObject("data");
 
         if (success) {
-            Word[] words = TokensOutputStream.deserializeWords(data.get("text").getAsString());
-            JsonElement jsonAlignment = data.get("a");
-            Alignment alignment = jsonAlignment == null ? null : parseAlignment(jsonAlignment.getAsJsonArray());
-
-            return new Translation(words, sentence, alignment);
+            return json.get("data");
         } else {
+            JsonObject data = json.getAsJsonObject("data");
             String type = data.get("type").getAsString();
             String message = null;
 
@@ -225,6 +338,14 @@ public class PythonDecoderImpl extends PythonProcess implements PythonDecoder {
         }
     }
 
+    private static Translation deserialize(JsonObject data, Sentence sentence) {
+        Word[] words = TokensOutputStream.deserializeWords(data.get("text").getAsString());
+        JsonElement jsonAlignment = data.get("a");
+        Alignment alignment = jsonAlignment == null ? null : parseAlignment(jsonAlignment.getAsJsonArray());
+
+        return new Translation(words, sentence, alignment);
+    }
+
     private static Alignment parseAlignment(JsonArray array) {
         if (array.size() == 0)
             return new Alignment(new int[0], new int[0]);
@@ -18,4 +18,11 @@ public interface TranslationMemory extends Closeable, DataListener {
 
     ScoreEntry[] search(UUID user, LanguagePair direction, Sentence source, ContextVector contextVector, int limit) throws IOException;
 
+    /**
+     * Look for a suggestion whose source is identical to the given sentence, in one of the memories of the context.
+     *
+     * @return the perfect match from the memory with the highest context score, or null if none is found
+     */
+    ScoreEntry exactMatch(LanguagePair direction, Sentence source, ContextVector contextVector) throws IOException;
+
 }
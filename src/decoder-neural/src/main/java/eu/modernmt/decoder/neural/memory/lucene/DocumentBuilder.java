@@ -31,7 +31,7 @@ public class DocumentBuilder {
     public static Document newInstance(TranslationUnit unit) {
         String sentence = TokensOutputStream.serialize(unit.sentence, false, true);
         String translation = TokensOutputStream.serialize(unit.translation, false, true);
-        String hash = HashGenerator.hash(unit.rawSentence, unit.rawTranslation);
+        String hash = HashGenerator.hash(unit.getRawSentence(), unit.getRawTranslation());
 
         return newInstance(unit.direction, unit.owner, unit.memory, sentence, translation, hash);
     }
@@ -87,6 +87,13 @@ public class DocumentBuilder {
 
     // Parsing
 
+    public static ScoreEntry asEntry(TranslationUnit unit) {
+        String[] sentence = TokensOutputStream.serialize(unit.sentence, false, true).split(" ");
+        String[] translation = TokensOutputStream.serialize(unit.translation, false, true).split(" ");
+
+        return new ScoreEntry(unit.memory, unit.direction, sentence, translation);
+    }
+
     public static ScoreEntry asEntry(Document self) {
         Language source = null;
         Language target = null;
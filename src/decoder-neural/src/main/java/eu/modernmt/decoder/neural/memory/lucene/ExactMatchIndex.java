@@ -0,0 +1,134 @@
+package eu.modernmt.decoder.neural.memory.lucene;
+
+import eu.modernmt.decoder.neural.memory.ScoreEntry;
+import eu.modernmt.io.TokensOutputStream;
+import eu.modernmt.lang.LanguagePair;
+import eu.modernmt.model.ContextVector;
+import eu.modernmt.model.Sentence;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory hash index of the translation memory content, used to find 100% matches
+ * without running a Lucene query. Entries are grouped by memory and keyed by the
+ * direction and the tokenized source sentence, exactly as it is stored in the index.
+ * <p>
+ * Lookups are lock-free; updates are collected in an {@link Update} and applied
+ * only after the corresponding Lucene commit succeeded.
+ */
+public class ExactMatchIndex {
+
+    private final ConcurrentHashMap<Long, ConcurrentHashMap<String, ScoreEntry>> memories = new ConcurrentHashMap<>();
+
+    private static String key(LanguagePair direction, String sentence) {
+        return DocumentBuilder.makeContentFieldName(direction) + '\0' + sentence;
+    }
+
+    private static String key(LanguagePair direction, String[] sentence) {
+        return key(direction, String.join(" ", sentence));
+    }
+
+    public ScoreEntry search(LanguagePair direction, Sentence source, ContextVector context) {
+        if (context == null || memories.isEmpty())
+            return null;
+
+        String key = key(direction, TokensOutputStream.serialize(source, false, true));
+
+        // Context vector is sorted by score, the first match is the best one
+        for (ContextVector.Entry ce : context) {
+            Map<String, ScoreEntry> entries = memories.get(ce.memory.getId());
+            if (entries == null)
+                continue;
+
+            ScoreEntry entry = entries.get(key);
+            if (entry != null) {
+                ScoreEntry result = new ScoreEntry(entry.memory, entry.language, entry.sentence, entry.translation);
+                result.score = 1.f;
+                return result;
+            }
+        }
+
+        return null;
+    }
+
+    public int size() {
+        int size = 0;
+        for (Map<String, ScoreEntry> entries : memories.values())
+            size += entries.size();
+        return size;
+    }
+
+    /**
+     * Add both directions of a memory entry, as stored in the Lucene index.
+     *
+     * @param entry the entry to add
+     */
+    void put(ScoreEntry entry) {
+        Map<String, ScoreEntry> entries = memories.computeIfAbsent(entry.memory, key -> new ConcurrentHashMap<>());
+        entries.put(key(entry.language, entry.sentence), entry);
+
+        ScoreEntry reversed = new ScoreEntry(entry.memory, entry.language.reversed(), entry.translation, entry.sentence);
+        entries.put(key(reversed.language, reversed.sentence), reversed);
+    }
+
+    private void remove(ScoreEntry entry) {
+        Map<String, ScoreEntry> entries = memories.get(entry.memory);
+        if (entries == null)
+            return;
+
+        remove(entries, key(entry.language, entry.sentence), entry.translation);
+        remove(entries, key(entry.language.reversed(), entry.translation), entry.sentence);
+    }
+
+    private static void remove(Map<String, ScoreEntry> entries, String key, String[] translation) {
+        // Remove the entry only if it still maps to the same translation:
+        // another document may have replaced it in the meantime
+        entries.computeIfPresent(key, (k, e) -> Arrays.equals(e.translation, translation) ? null : e);
+    }
+
+    private void remove(long memory) {
+        memories.remove(memory);
+    }
+
+    public Update newUpdate() {
+        return new Update();
+    }
+
+    /**
+     * Collects the changes of a single data batch, in the same order they are applied to the Lucene index.
+     */
+    public class Update {
+
+        private final ArrayList<ScoreEntry> removals = new ArrayList<>();
+        private final LinkedHashMap<String, ScoreEntry> additions = new LinkedHashMap<>();
+        private final HashSet<Long> deletedMemories = new HashSet<>();
+
+        private Update() {
+        }
+
+        public void add(long memory, String hash, ScoreEntry entry) {
+            additions.put(memory + ":" + hash, entry);
+        }
+
+        public void overwrite(long memory, String hash, Collection<ScoreEntry> previous) {
+            additions.remove(memory + ":" + hash);
+            removals.addAll(previous);
+        }
+
+        public void delete(long memory) {
+            deletedMemories.add(memory);
+        }
+
+        public void apply() {
+            for (ScoreEntry entry : removals)
+                remove(entry);
+            for (ScoreEntry entry : additions.values())
+                put(entry);
+            for (long memory : deletedMemories)
+                remove(memory);
+        }
+
+    }
+
+}
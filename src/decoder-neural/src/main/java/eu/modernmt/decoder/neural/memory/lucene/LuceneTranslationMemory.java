@@ -3,6 +3,7 @@ package eu.modernmt.decoder.neural.memory.lucene;
 import eu.modernmt.data.DataBatch;
 import eu.modernmt.data.Deletion;
 import eu.modernmt.data.TranslationUnit;
+import eu.modernmt.decoder.MemoryRefreshListener;
 import eu.modernmt.decoder.neural.memory.ScoreEntry;
 import eu.modernmt.decoder.neural.memory.TranslationMemory;
 import eu.modernmt.decoder.neural.memory.lucene.query.DefaultQueryBuilder;
@@ -27,10 +28,11 @@ import org.apache.lucene.util.Version;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.UUID;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
 /**
@@ -45,10 +47,12 @@ public class LuceneTranslationMemory implements TranslationMemory {
     private final QueryBuilder queryBuilder;
     private final Rescorer rescorer;
     private final IndexWriter indexWriter;
+    private final SearcherManager searcherManager;
 
-    private DirectoryReader _indexReader;
-    private IndexSearcher _indexSearcher;
     private final Map<Short, Long> channels;
+    private volatile ExactMatchIndex exactMatchIndex = null;
+    private ScheduledExecutorService nrtExecutor = null;
+    private final List<MemoryRefreshListener> refreshListeners = new CopyOnWriteArrayList<>();
 
     private boolean closed = false;
 
@@ -95,66 +99,165 @@ public class LuceneTranslationMemory implements TranslationMemory {
         if (!DirectoryReader.indexExists(directory))
             this.indexWriter.commit();
 
-        // Read channels status
-        IndexSearcher searcher = this.getIndexSearcher();
+        // Searchers are opened from the writer, so they can see changes not committed yet
+        this.searcherManager = new SearcherManager(this.indexWriter, true, new SearcherFactory() {
+            @Override
+            public IndexSearcher newSearcher(IndexReader reader) throws IOException {
+                IndexSearcher searcher = new IndexSearcher(reader);
+                searcher.setSimilarity(new CustomSimilarity());
+                return searcher;
+            }
+        });
 
-        Query query = new TermQuery(DocumentBuilder.makeChannelsTerm());
-        TopDocs docs = searcher.search(query, 1);
+        // Read channels status
+        IndexSearcher searcher = this.searcherManager.acquire();
 
-        if (docs.scoreDocs.length > 0) {
-            Document channelsDocument = searcher.doc(docs.scoreDocs[0].doc);
-            this.channels = DocumentBuilder.asChannels(channelsDocument);
-        } else {
-            this.channels = new HashMap<>();
+        try {
+            Query query = new TermQuery(DocumentBuilder.makeChannelsTerm());
+            TopDocs docs = searcher.search(query, 1);
+
+            if (docs.scoreDocs.length > 0) {
+                Document channelsDocument = searcher.doc(docs.scoreDocs[0].doc);
+                this.channels = DocumentBuilder.asChannels(channelsDocument);
+            } else {
+                this.channels = new HashMap<>();
+            }
+        } finally {
+            this.searcherManager.release(searcher);
         }
     }
 
-    protected synchronized IndexReader getIndexReader() throws IOException {
-        if (this._indexReader == null) {
-            this._indexReader = DirectoryReader.open(this.indexDirectory);
-            this._indexReader.incRef();
-            this._indexSearcher = new IndexSearcher(this._indexReader);
-        } else {
-            DirectoryReader reader = DirectoryReader.openIfChanged(this._indexReader);
+    protected IndexReader getIndexReader() throws IOException {
+        return getIndexSearcher().getIndexReader();
+    }
 
-            if (reader != null) {
-                this._indexReader.close();
-                this._indexReader = reader;
-                this._indexReader.incRef();
+    /**
+     * Refresh and return the current searcher. The returned instance is not reference-counted,
+     * so it is only valid until the next refresh: the search path should use {@link #acquireSearcher()} instead.
+     */
+    public IndexSearcher getIndexSearcher() throws IOException {
+        this.searcherManager.maybeRefreshBlocking();
 
-                this._indexSearcher = new IndexSearcher(this._indexReader);
-                this._indexSearcher.setSimilarity(new CustomSimilarity());
-            }
-        }
+        IndexSearcher searcher = this.searcherManager.acquire();
+        this.searcherManager.release(searcher);
+        return searcher;
+    }
 
-        return this._indexReader;
+    protected IndexSearcher acquireSearcher() throws IOException {
+        return this.searcherManager.acquire();
     }
 
-    public IndexSearcher getIndexSearcher() throws IOException {
-        getIndexReader();
-        return this._indexSearcher;
+    protected void releaseSearcher(IndexSearcher searcher) throws IOException {
+        this.searcherManager.release(searcher);
     }
 
     public IndexWriter getIndexWriter() {
         return this.indexWriter;
     }
 
-    public void dump(Consumer<ScoreEntry> consumer) throws IOException {
-        IndexSearcher searcher = getIndexSearcher();
-        IndexReader reader = getIndexReader();
+    /**
+     * Load the whole memory content in an in-memory hash index used to serve perfect matches
+     * without querying Lucene; once enabled, the index is kept up to date with incoming data.
+     */
+    public synchronized void enableExactMatchIndex() throws IOException {
+        if (this.exactMatchIndex != null)
+            return;
+
+        long begin = System.currentTimeMillis();
+
+        ExactMatchIndex index = new ExactMatchIndex();
+        dump(index::put);
+
+        this.exactMatchIndex = index;
+
+        long elapsed = System.currentTimeMillis() - begin;
+        logger.info("Exact match index loaded in " + (elapsed / 1000.) + "s, entries: " + index.size());
+    }
 
-        int size = reader.numDocs();
-        if (size == 0)
+    /**
+     * Switch to near-real-time mode: data batches are no longer committed and made searchable one by one,
+     * instead new data become visible to searches every refreshInterval and are committed to disk
+     * every commitInterval. Channel positions are committed together with the data, so after a crash
+     * the uncommitted data is simply read again from the channels.
+     */
+    public synchronized void enableNearRealTime(long refreshInterval, long commitInterval, TimeUnit unit) {
+        if (this.nrtExecutor != null || this.closed)
             return;
 
-        TopDocs docs = searcher.search(new MatchAllDocsQuery(), size);
+        this.nrtExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "LuceneTranslationMemory-NRT");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        this.nrtExecutor.scheduleWithFixedDelay(this::refresh, refreshInterval, refreshInterval, unit);
+        this.nrtExecutor.scheduleWithFixedDelay(this::commit, commitInterval, commitInterval, unit);
+    }
+
+    /**
+     * @return true if the memory is in near-real-time mode
+     */
+    public synchronized boolean isNearRealTime() {
+        return this.nrtExecutor != null;
+    }
+
+    /**
+     * Registers a listener of the periodic refreshes of near-real-time mode.
+     */
+    public void addRefreshListener(MemoryRefreshListener listener) {
+        this.refreshListeners.add(listener);
+    }
+
+    private void refresh() {
+        for (MemoryRefreshListener listener : refreshListeners)
+            listener.beforeMemoryRefresh();
+
+        try {
+            // blocking: a refresh already running could have been started before the listeners were notified
+            this.searcherManager.maybeRefreshBlocking();
+        } catch (IOException | RuntimeException e) {
+            logger.error("Failed to refresh memory searcher", e);
+            return;
+        }
+
+        for (MemoryRefreshListener listener : refreshListeners)
+            listener.afterMemoryRefresh();
+    }
+
+    private synchronized void commit() {
+        if (this.closed)
+            return;
+
+        try {
+            if (this.indexWriter.hasUncommittedChanges())
+                this.indexWriter.commit();
+        } catch (IOException | RuntimeException e) {
+            logger.error("Failed to commit memory index", e);
+        }
+    }
+
+    public void dump(Consumer<ScoreEntry> consumer) throws IOException {
+        this.searcherManager.maybeRefreshBlocking();
+        IndexSearcher searcher = acquireSearcher();
+
+        try {
+            IndexReader reader = searcher.getIndexReader();
 
-        for (ScoreDoc scoreDoc : docs.scoreDocs) {
-            Document document = reader.document(scoreDoc.doc);
-            if (DocumentBuilder.getMemory(document) > 0) {
-                ScoreEntry entry = DocumentBuilder.asEntry(document);
-                consumer.accept(entry);
+            int size = reader.numDocs();
+            if (size == 0)
+                return;
+
+            TopDocs docs = searcher.search(new MatchAllDocsQuery(), size);
+
+            for (ScoreDoc scoreDoc : docs.scoreDocs) {
+                Document document = reader.document(scoreDoc.doc);
+                if (DocumentBuilder.getMemory(document) > 0) {
+                    ScoreEntry entry = DocumentBuilder.asEntry(document);
+                    consumer.accept(entry);
+                }
             }
+        } finally {
+            releaseSearcher(searcher);
         }
     }
 
@@ -177,15 +280,20 @@ public class LuceneTranslationMemory implements TranslationMemory {
     public ScoreEntry[] search(UUID user, LanguagePair direction, Sentence source, ContextVector contextVector, Rescorer rescorer, int limit) throws IOException {
         Query query = this.queryBuilder.bestMatchingSuggestion(user, direction, source, contextVector);
 
-        IndexSearcher searcher = getIndexSearcher();
-
         int queryLimit = Math.max(this.minQuerySize, limit * 2);
-        ScoreDoc[] docs = searcher.search(query, queryLimit).scoreDocs;
+        ScoreEntry[] entries;
 
-        ScoreEntry[] entries = new ScoreEntry[docs.length];
-        for (int i = 0; i < docs.length; i++) {
-            entries[i] = DocumentBuilder.asEntry(searcher.doc(docs[i].doc), direction);
-            entries[i].score = docs[i].score;
+        IndexSearcher searcher = acquireSearcher();
+        try {
+            ScoreDoc[] docs = searcher.search(query, queryLimit).scoreDocs;
+
+            entries = new ScoreEntry[docs.length];
+            for (int i = 0; i < docs.length; i++) {
+                entries[i] = DocumentBuilder.asEntry(searcher.doc(docs[i].doc), direction);
+                entries[i].score = docs[i].score;
+            }
+        } finally {
+            releaseSearcher(searcher);
         }
 
         if (rescorer != null)
@@ -200,6 +308,12 @@ public class LuceneTranslationMemory implements TranslationMemory {
         return entries;
     }
 
+    @Override
+    public ScoreEntry exactMatch(LanguagePair direction, Sentence source, ContextVector contextVector) {
+        ExactMatchIndex index = this.exactMatchIndex;
+        return index == null ? null : index.search(direction, source, contextVector);
+    }
+
     public synchronized void optimize() throws IOException {
         logger.info("Starting memory forced merge");
         long begin = System.currentTimeMillis();
@@ -217,10 +331,11 @@ public class LuceneTranslationMemory implements TranslationMemory {
             return;
 
         boolean success = false;
+        ExactMatchIndex.Update update = this.exactMatchIndex == null ? null : this.exactMatchIndex.newUpdate();
 
         try {
-            this.onTranslationUnitsReceived(batch.getTranslationUnits());
-            this.onDeletionsReceived(batch.getDeletions());
+            this.onTranslationUnitsReceived(batch.getTranslationUnits(), update);
+            this.onDeletionsReceived(batch.getDeletions(), update);
 
             // Writing channels
             HashMap<Short, Long> newChannels = new HashMap<>(this.channels);
@@ -234,7 +349,14 @@ public class LuceneTranslationMemory implements TranslationMemory {
 
             Document channelsDocument = DocumentBuilder.newChannelsInstance(newChannels);
             this.indexWriter.updateDocument(DocumentBuilder.makeChannelsTerm(), channelsDocument);
-            this.indexWriter.commit();
+
+            if (this.nrtExecutor == null) {
+                this.indexWriter.commit();
+                this.searcherManager.maybeRefreshBlocking();
+            }
+
+            if (update != null)
+                update.apply();
 
             this.channels.putAll(newChannels);
 
@@ -255,30 +377,65 @@ public class LuceneTranslationMemory implements TranslationMemory {
         return false;
     }
 
-    private void onTranslationUnitsReceived(Collection<TranslationUnit> units) throws IOException {
+    private void onTranslationUnitsReceived(Collection<TranslationUnit> units, ExactMatchIndex.Update update) throws IOException {
         for (TranslationUnit unit : units) {
             Long currentPosition = this.channels.get(unit.channel);
 
             if (currentPosition == null || currentPosition < unit.channelPosition) {
-                if (unit.rawPreviousSentence != null && unit.rawPreviousTranslation != null) {
-                    String hash = HashGenerator.hash(unit.rawPreviousSentence, unit.rawPreviousTranslation);
+                if (unit.getRawPreviousSentence() != null && unit.getRawPreviousTranslation() != null) {
+                    String hash = HashGenerator.hash(unit.getRawPreviousSentence(), unit.getRawPreviousTranslation());
                     Query hashQuery = this.queryBuilder.getByHash(unit.memory, hash);
 
+                    if (update != null)
+                        update.overwrite(unit.memory, hash, getEntries(hashQuery));
+
                     this.indexWriter.deleteDocuments(hashQuery);
                 }
 
                 Document document = DocumentBuilder.newInstance(unit);
                 this.indexWriter.addDocument(document);
+
+                if (update != null) {
+                    String hash = HashGenerator.hash(unit.getRawSentence(), unit.getRawTranslation());
+                    update.add(unit.memory, hash, DocumentBuilder.asEntry(unit));
+                }
             }
         }
     }
 
-    private void onDeletionsReceived(Collection<Deletion> deletions) throws IOException {
+    private List<ScoreEntry> getEntries(Query query) throws IOException {
+        // In near-real-time mode the previous batches could still be invisible to the searcher
+        if (this.nrtExecutor != null)
+            this.searcherManager.maybeRefreshBlocking();
+
+        IndexSearcher searcher = acquireSearcher();
+
+        try {
+            int size = searcher.getIndexReader().numDocs();
+            if (size == 0)
+                return Collections.emptyList();
+
+            ScoreDoc[] docs = searcher.search(query, size).scoreDocs;
+            ArrayList<ScoreEntry> entries = new ArrayList<>(docs.length);
+            for (ScoreDoc doc : docs)
+                entries.add(DocumentBuilder.asEntry(searcher.doc(doc.doc)));
+
+            return entries;
+        } finally {
+            releaseSearcher(searcher);
+        }
+    }
+
+    private void onDeletionsReceived(Collection<Deletion> deletions, ExactMatchIndex.Update update) throws IOException {
         for (Deletion deletion : deletions) {
             Long currentPosition = this.channels.get(deletion.channel);
 
-            if (currentPosition == null || currentPosition < deletion.channelPosition)
+            if (currentPosition == null || currentPosition < deletion.channelPosition) {
                 this.indexWriter.deleteDocuments(DocumentBuilder.makeMemoryTerm(deletion.memory));
+
+                if (update != null)
+                    update.delete(deletion.memory);
+            }
         }
     }
 
@@ -290,14 +447,33 @@ public class LuceneTranslationMemory implements TranslationMemory {
     // Closeable
 
     @Override
-    public synchronized void close() throws IOException {
-        this.closed = true;
+    public void close() throws IOException {
+        ScheduledExecutorService nrtExecutor;
+
+        synchronized (this) {
+            this.closed = true;
+            nrtExecutor = this.nrtExecutor;
+        }
+
+        if (nrtExecutor != null) {
+            nrtExecutor.shutdownNow();
+            try {
+                nrtExecutor.awaitTermination(2, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                // Ignore it
+            }
+        }
+
+        synchronized (this) {
+            closeIndex();
+        }
+    }
 
+    private void closeIndex() throws IOException {
         IOException error = null;
 
         try {
-            if (this._indexReader != null)
-                this._indexReader.close();
+            this.searcherManager.close();
         } catch (IOException e) {
             error = e;
         }
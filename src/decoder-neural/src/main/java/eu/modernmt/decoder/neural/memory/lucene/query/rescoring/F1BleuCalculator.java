@@ -1,146 +1,191 @@
 package eu.modernmt.decoder.neural.memory.lucene.query.rescoring;
 
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.Map;
 
+/**
+ * Computes the F1-BLEU score of hypotheses against a fixed reference.
+ * <p>
+ * Reference tokens are mapped to int ids once, and every n-gram (up to order 4) is packed
+ * in a long key, 16 bits per token, that indexes an open-addressing table. Hypothesis n-grams
+ * made of tokens not in the reference can never match, so they are not even looked up.
+ * After {@link #reset(String[])} no further allocation is done, unless a longer sentence grows the buffers.
+ * <p>
+ * An instance is not thread-safe; it can be reused for multiple references by calling reset().
+ */
 public class F1BleuCalculator {
 
     private static final int N = 4;
     private static final double EPSILON = 0.1;
-    private final String[] reference;
-    private final HashMap<NGram, Counter> referenceNGrams;
+    private static final int MAX_VOCABULARY_SIZE = 0xFFFF;
 
-    public F1BleuCalculator(String[] reference) {
-        this.reference = reference;
-        this.referenceNGrams = split(this.reference, N);
-    }
+    private final HashMap<String, Integer> vocabulary = new HashMap<>();
+    private int referenceLength;
 
-    public float calc(String[] hyp) {
-        HashMap<NGram, Counter> hypNGrams = split(hyp, N);
-        return getF1BleuScore(this.referenceNGrams, this.reference.length, hypNGrams, hyp.length);
-    }
+    // Open-addressing table: n-gram key -> n-gram index
+    private long[] keys = new long[64];
+    private int[] indexes = new int[64];
+    private int mask = 63;
 
-    private static HashMap<NGram, Counter> split(String[] sentence, int order) {
-        HashMap<NGram, Counter> counts = new HashMap<>(sentence.length * order);
+    // Per n-gram data, by index
+    private int size = 0;
+    private int[] orders = new int[32];
+    private int[] referenceCounts = new int[32];
+    private int[] hypothesisCounts = new int[32];
 
-        for (int offset = 0; offset < sentence.length; offset++) {
-            int maxOrder = sentence.length - offset;
+    private int[] ids = new int[32];
+    private final int[] numerators = new int[N];
 
-            for (int o = 1; o <= Math.min(order, maxOrder); o++) {
-                NGram ngram = new NGram(sentence, offset, o);
-                counts.computeIfAbsent(ngram, key -> new Counter()).value++;
-            }
-        }
+    public F1BleuCalculator() {
+        this.reset(new String[0]);
+    }
 
-        return counts;
+    public F1BleuCalculator(String[] reference) {
+        this.reset(reference);
     }
 
-    private static float getF1BleuScore(HashMap<NGram, Counter> sentence, int sentenceLength, HashMap<NGram, Counter> suggestion, int suggestionLength) {
-        int numerators[] = new int[N];
+    public void reset(String[] reference) {
+        this.referenceLength = reference.length;
+        this.vocabulary.clear();
+        this.size = 0;
+
+        int capacity = Integer.highestOneBit(Math.max(reference.length * N * 2, 32) - 1) << 1;
+        if (keys.length < capacity) {
+            keys = new long[capacity];
+            indexes = new int[capacity];
+        } else {
+            Arrays.fill(keys, 0L);
+        }
+        mask = keys.length - 1;
 
-        for (Map.Entry<NGram, Counter> entry : sentence.entrySet()) {
-            NGram ngram = entry.getKey();
+        ensureCapacity(reference.length * N);
 
-            int order = ngram.getOrder();
-            int count = entry.getValue().value;
-            int suggestionCount = suggestion.getOrDefault(ngram, Counter.ZERO).value;
+        // Null tokens, and tokens beyond the maximum vocabulary size, get id 0: they match nothing
+        for (int i = 0; i < reference.length; i++) {
+            String token = reference[i];
+            int id = 0;
 
-            numerators[order - 1] += Math.min(count, suggestionCount);
-        }
+            if (token != null) {
+                Integer existing = vocabulary.get(token);
 
-        double precision = 0;
-        double recall = 0;
+                if (existing != null) {
+                    id = existing;
+                } else if (vocabulary.size() < MAX_VOCABULARY_SIZE) {
+                    id = vocabulary.size() + 1;
+                    vocabulary.put(token, id);
+                }
+            }
 
-        for (int order = 1; order <= N; ++order) {
-            precision += Math.log(smooth(numerators[order - 1], Math.max(suggestionLength - order + 1, 0), 1));
-            recall += Math.log(smooth(numerators[order - 1], Math.max(sentenceLength - order + 1, 0), 1));
+            ids[i] = id;
         }
 
-        precision = Math.exp(precision / N);
-        recall = Math.exp(recall / N);
-
-        // compute F1
-        return (float) (2 * (precision * recall) / (precision + recall));
-    }
+        for (int offset = 0; offset < reference.length; offset++) {
+            int maxOrder = Math.min(N, reference.length - offset);
+            long key = 0L;
+
+            for (int o = 1; o <= maxOrder; o++) {
+                int id = ids[offset + o - 1];
+                if (id == 0)
+                    break;
+
+                key |= ((long) id) << (16 * (o - 1));
+
+                int slot = find(key);
+                if (keys[slot] == 0L) {
+                    keys[slot] = key;
+                    indexes[slot] = size;
+                    orders[size] = o;
+                    referenceCounts[size] = 0;
+                    hypothesisCounts[size] = 0;
+                    size++;
+                }
 
-    private static double smooth(int num, int den, int count) {
-        return (num + EPSILON) / (den + count * EPSILON);
+                referenceCounts[indexes[slot]]++;
+            }
+        }
     }
 
-    private static final class Counter {
+    public float calc(String[] hyp) {
+        if (ids.length < hyp.length)
+            ids = new int[hyp.length];
 
-        public static final Counter ZERO = new Counter();
+        for (int i = 0; i < hyp.length; i++) {
+            String token = hyp[i];
+            Integer id = token == null ? null : vocabulary.get(token);
+            ids[i] = id == null ? 0 : id;
+        }
 
-        public int value = 0;
-    }
+        for (int offset = 0; offset < hyp.length; offset++) {
+            int maxOrder = Math.min(N, hyp.length - offset);
+            long key = 0L;
 
-    private static final class NGram {
+            for (int o = 1; o <= maxOrder; o++) {
+                int id = ids[offset + o - 1];
+                if (id == 0)
+                    break;
 
-        private final String[] sentence;
-        private final int offset;
-        private final int order;
+                key |= ((long) id) << (16 * (o - 1));
 
-        private int hash = 0;
+                int slot = find(key);
+                if (keys[slot] == 0L)
+                    break; // no longer n-gram at this offset can be in the reference either
 
-        public NGram(String[] sentence, int offset, int order) {
-            this.sentence = sentence;
-            this.offset = offset;
-            this.order = order;
+                hypothesisCounts[indexes[slot]]++;
+            }
         }
 
-        public int getOrder() {
-            return order;
+        Arrays.fill(numerators, 0);
+        for (int i = 0; i < size; i++) {
+            numerators[orders[i] - 1] += Math.min(referenceCounts[i], hypothesisCounts[i]);
+            hypothesisCounts[i] = 0;
         }
 
-        @Override
-        public boolean equals(Object o) {
-            if (this == o) return true;
-            if (o == null || getClass() != o.getClass()) return false;
-
-            NGram ngram = (NGram) o;
+        return getF1BleuScore(numerators, referenceLength, hyp.length);
+    }
 
-            if (order != ngram.order) return false;
+    private int find(long key) {
+        int slot = hash(key) & mask;
 
-            for (int i = 0; i < order; i++) {
-                String a = sentence[i + offset];
-                String b = ngram.sentence[i + ngram.offset];
+        while (keys[slot] != 0L && keys[slot] != key)
+            slot = (slot + 1) & mask;
 
-                if (!(a != null && b != null && a.equals(b)))
-                    return false;
-            }
+        return slot;
+    }
 
-            return true;
-        }
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
 
-        @Override
-        public int hashCode() {
-            if (hash == 0) {
-                int result = 1;
+    private void ensureCapacity(int capacity) {
+        if (ids.length < capacity)
+            ids = new int[capacity];
 
-                for (int i = 0; i < order; i++) {
-                    String element = sentence[i + offset];
-                    result = 31 * result + (element == null ? 0 : element.hashCode());
-                }
+        if (orders.length < capacity) {
+            orders = new int[capacity];
+            referenceCounts = new int[capacity];
+            hypothesisCounts = new int[capacity];
+        }
+    }
 
-                hash = result;
-            }
+    private static float getF1BleuScore(int[] numerators, int sentenceLength, int suggestionLength) {
+        double precision = 0;
+        double recall = 0;
 
-            return hash;
+        for (int order = 1; order <= N; ++order) {
+            precision += Math.log(smooth(numerators[order - 1], Math.max(suggestionLength - order + 1, 0), 1));
+            recall += Math.log(smooth(numerators[order - 1], Math.max(sentenceLength - order + 1, 0), 1));
         }
 
-        @Override
-        public String toString() {
-            StringBuilder string = new StringBuilder("(");
-            for (int i = 0; i < order; i++) {
-                if (i > 0)
-                    string.append(' ');
-                string.append(sentence[i + offset]);
-            }
-            string.append(')');
+        precision = Math.exp(precision / N);
+        recall = Math.exp(recall / N);
 
-            return string.toString();
-        }
+        // compute F1
+        return (float) (2 * (precision * recall) / (precision + recall));
+    }
 
+    private static double smooth(int num, int den, int count) {
+        return (num + EPSILON) / (den + count * EPSILON);
     }
 
 }
@@ -17,10 +17,13 @@ public class F1BleuRescorer implements Rescorer {
 
     private static final float MAX_SUGGESTION_EXPANSION = 2.f;
 
+    private static final ThreadLocal<F1BleuCalculator> calculators = ThreadLocal.withInitial(F1BleuCalculator::new);
+
     @Override
     public ScoreEntry[] rescore(LanguagePair direction, Sentence input, ScoreEntry[] entries, ContextVector context) {
         String[] inputWords = TokensOutputStream.tokens(input, false, true);
-        F1BleuCalculator calculator = new F1BleuCalculator(inputWords);
+        F1BleuCalculator calculator = calculators.get();
+        calculator.reset(inputWords);
 
         // Set negative score for suggestions too different in length
         for (ScoreEntry entry : entries) {
@@ -57,6 +57,7 @@ def run_main():
     # ------------------------------------------------------------------------------------------------------------------
     from nmmt.transformer import ModelConfig, TransformerDecoder
     from nmmt.checkpoint import CheckpointPool
+    from nmmt import PROTOCOLS, negotiate_protocol
 
     config = ModelConfig.load(args.model)
 
@@ -68,10 +69,12 @@ def run_main():
 
     decoder = TransformerDecoder(args.gpu, checkpoints, config=config)
 
-    stdout.write('READY\n')
+    stdout.write('READY %s\n' % ' '.join([p.name for p in PROTOCOLS]))
     stdout.flush()
 
-    decoder.serve_forever(sys.stdin, stdout)
+    protocol = negotiate_protocol(sys.stdin)
+
+    decoder.serve_forever(sys.stdin, stdout, protocol=protocol)
 
 
 if __name__ == '__main__':
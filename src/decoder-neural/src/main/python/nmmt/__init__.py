@@ -1,4 +1,5 @@
 import json
+import struct
 
 
 def set_tensorflow_log_level(level):
@@ -36,6 +37,10 @@ class TranslationRequest(object):
         self.suggestions = suggestions if suggestions is not None else []
         self.forced_translation = forced_translation
 
+    @property
+    def is_batch(self):
+        return isinstance(self.query, list)
+
     @staticmethod
     def from_json_string(json_string):
         obj = json.loads(json_string)
@@ -69,6 +74,8 @@ class TranslationResponse(object):
     def to_json_string(obj):
         if isinstance(obj, Translation):
             return TranslationResponse.__translation_to_json_string(obj)
+        elif isinstance(obj, list):
+            return TranslationResponse.__batch_to_json_string(obj)
         else:
             return TranslationResponse.__error_to_json_string(obj)
 
@@ -84,17 +91,204 @@ class TranslationResponse(object):
 
     @staticmethod
     def __translation_to_json_string(translation):
+        return json.dumps({
+            'success': True,
+            'data': TranslationResponse._encode_translation(translation),
+        }).replace('\n', ' ')
+
+    @staticmethod
+    def __batch_to_json_string(translations):
+        return json.dumps({
+            'success': True,
+            'data': [TranslationResponse._encode_translation(t) for t in translations],
+        }).replace('\n', ' ')
+
+    @staticmethod
+    def _encode_translation(translation):
         alignment = TranslationResponse._encode_alignment(translation.alignment)
 
         payload = {'text': translation.text}
         if alignment is not None:
             payload['a'] = alignment
 
-        return json.dumps({
-            'success': True,
-            'data': payload,
-        }).replace('\n', ' ')
+        return payload
 
     @staticmethod
     def _encode_alignment(a):
         return [[e[0] for e in a], [e[1] for e in a]] if a is not None else None
+
+
+class JSONProtocol(object):
+    name = 'json'
+
+    def read_request(self, stdin):
+        line = stdin.readline()
+        if not line:
+            return None
+
+        return TranslationRequest.from_json_string(line)
+
+    def write_response(self, stdout, obj):
+        stdout.write(TranslationResponse.to_json_string(obj) + '\n')
+        stdout.flush()
+
+
+class BinaryProtocol(object):
+    """
+    Length-prefixed binary frames: strings are UTF-8 bytes prefixed by their varint length,
+    alignments are packed varint arrays and scores are 32-bit big-endian floats.
+    See BinaryProtocol.java for the complete message layout.
+    """
+    name = 'binary'
+
+    REQUEST_TEST = 0x00
+    REQUEST_TRANSLATE = 0x01
+    REQUEST_BATCH = 0x02
+
+    FLAG_FORCED_TRANSLATION = 0x01
+    FLAG_HINTS = 0x02
+
+    RESPONSE_SUCCESS = 0x00
+    RESPONSE_ERROR = 0x01
+
+    class _Reader(object):
+        def __init__(self, data):
+            self._data = data
+            self._offset = 0
+
+        def byte(self):
+            value = ord(self._data[self._offset])
+            self._offset += 1
+            return value
+
+        def varint(self):
+            value, shift = 0, 0
+            while True:
+                b = self.byte()
+                value |= (b & 0x7F) << shift
+                if (b & 0x80) == 0:
+                    return value
+                shift += 7
+
+        def float(self):
+            value = struct.unpack_from('>f', self._data, self._offset)[0]
+            self._offset += 4
+            return value
+
+        def string(self):
+            size = self.varint()
+            value = self._data[self._offset:self._offset + size].decode('utf-8')
+            self._offset += size
+            return value
+
+    @staticmethod
+    def _varint(value):
+        result = bytearray()
+        while value > 0x7F:
+            result.append((value & 0x7F) | 0x80)
+            value >>= 7
+        result.append(value)
+        return result
+
+    @staticmethod
+    def _string(value):
+        if value is None:
+            value = ''
+        if not isinstance(value, bytes):
+            value = value.encode('utf-8')
+        return BinaryProtocol._varint(len(value)) + bytearray(value)
+
+    def read_request(self, stdin):
+        header = stdin.read(4)
+        if not header:
+            return None
+        if len(header) < 4:
+            raise EOFError('Truncated frame header')
+
+        length = struct.unpack('>I', header)[0]
+        payload = stdin.read(length)
+        if len(payload) < length:
+            raise EOFError('Truncated frame payload')
+
+        reader = BinaryProtocol._Reader(payload)
+        request_type = reader.byte()
+
+        if request_type == BinaryProtocol.REQUEST_TEST:
+            return TranslationRequest(None, None, None)
+
+        source_lang = reader.string()
+        target_lang = reader.string()
+
+        if request_type == BinaryProtocol.REQUEST_BATCH:
+            queries = [reader.string() for _ in range(reader.varint())]
+            return TranslationRequest(source_lang, target_lang, queries)
+
+        flags = reader.byte()
+        query = reader.string()
+        forced_translation = None
+        suggestions = []
+
+        if flags & BinaryProtocol.FLAG_FORCED_TRANSLATION:
+            forced_translation = reader.string()
+
+        if flags & BinaryProtocol.FLAG_HINTS:
+            for _ in range(reader.varint()):
+                sugg_sl = reader.string()
+                sugg_tl = reader.string()
+                sugg_seg = reader.string()
+                sugg_tra = reader.string()
+                sugg_scr = reader.float()
+
+                suggestions.append(Suggestion(sugg_sl, sugg_tl, sugg_seg, sugg_tra, sugg_scr))
+
+        return TranslationRequest(source_lang, target_lang, query,
+                                  suggestions=suggestions, forced_translation=forced_translation)
+
+    def write_response(self, stdout, obj):
+        if isinstance(obj, Translation):
+            obj = [obj]
+
+        if isinstance(obj, list):
+            payload = bytearray([BinaryProtocol.RESPONSE_SUCCESS]) + self._varint(len(obj))
+
+            for translation in obj:
+                payload += self._string(translation.text)
+
+                if translation.alignment is None:
+                    payload.append(0)
+                else:
+                    payload.append(1)
+                    payload += self._varint(len(translation.alignment))
+                    for e in translation.alignment:
+                        payload += self._varint(int(e[0]))
+                    for e in translation.alignment:
+                        payload += self._varint(int(e[1]))
+        else:
+            error_type = 'UnknownError' if isinstance(obj, str) else type(obj).__name__
+            message = obj if isinstance(obj, str) else getattr(obj, 'message', None)
+
+            payload = bytearray([BinaryProtocol.RESPONSE_ERROR])
+            payload += self._string(error_type)
+            payload += self._string(message)
+
+        stdout.write(struct.pack('>I', len(payload)))
+        stdout.write(bytes(payload))
+        stdout.flush()
+
+
+PROTOCOLS = [JSONProtocol, BinaryProtocol]
+
+
+def negotiate_protocol(stdin):
+    """
+    Reads the protocol chosen by the Java process after the READY handshake;
+    JSON is used as fallback if the requested protocol is unknown.
+    """
+    line = stdin.readline().strip()
+    name = line.split()[-1] if line.startswith('PROTOCOL ') else None
+
+    for protocol in PROTOCOLS:
+        if protocol.name == name:
+            return protocol()
+
+    return JSONProtocol()
@@ -15,7 +15,7 @@ from tensor2tensor.utils import registry, optimize
 
 # noinspection PyUnresolvedReferences
 import t2t  # pylint: disable=unused-import
-from nmmt import Translation, TranslationRequest, TranslationResponse
+from nmmt import Translation, JSONProtocol
 
 
 class ModelConfig(object):
@@ -127,6 +127,18 @@ class TransformerDecoder(object):
                 "inputs": infer_inputs,
             }
 
+            # Prepare the model for batch infer
+            self._ph_batch_infer_inputs = tf.placeholder(dtype=tf.int32, shape=[None, None])
+            batch_infer_inputs = tf.expand_dims(tf.expand_dims(self._ph_batch_infer_inputs, -1), -1)  # Make it 4D.
+            batch_infer_out = self._model.infer({
+                "inputs": batch_infer_inputs
+            }, beam_size=4, top_beams=1, alpha=0.6, decode_length=self._ph_decode_length)
+
+            self._batch_predictions_op = {
+                "outputs": batch_infer_out["outputs"],
+                "inputs": batch_infer_inputs,
+            }
+
         session_config = tf.ConfigProto(allow_soft_placement=True)
         session_config.gpu_options.allow_growth = True
         if gpu is not None:
@@ -175,6 +187,24 @@ class TransformerDecoder(object):
 
         return result
 
+    def translate_batch(self, source_lang, target_lang, texts):
+        checkpoint = self._checkpoints[source_lang, target_lang]
+
+        # (1) Reset model (if necessary)
+        begin = time.time()
+        self._reset_model(checkpoint)
+        reset_time = time.time() - begin
+
+        # (2) Translate and compute word alignment for the whole batch
+        begin = time.time()
+        result = self._decode_batch(source_lang, target_lang, texts)
+        decode_time = time.time() - begin
+
+        self._logger.info('batch_size = %d, reset_time = %.3f, decode_time = %.3f'
+                          % (len(texts), reset_time, decode_time))
+
+        return result
+
     def _estimate_tuning_parameters(self, suggestions):
         # it returns an actual learning_rate and epochs based on the quality of the suggestions
         # it is assured that at least one suggestion is provided (hence, len(suggestions) > 0)
@@ -257,6 +287,51 @@ class TransformerDecoder(object):
 
         return Translation(text=raw_output, alignment=alignment)
 
+    def _decode_batch(self, source_lang, target_lang, texts):
+        encoded = [self._text_encode(text) for text in texts]
+        batch_inputs = [e[0] for e in encoded]
+        input_indexes = [e[1] for e in encoded]
+
+        # decode
+        max_input_length = max([len(inputs) for inputs in batch_inputs])
+        decode_length = self._get_expected_decode_length(source_lang, target_lang, max_input_length)
+        results = self._session.run(self._batch_predictions_op, {
+            self._ph_batch_infer_inputs: self._pad(batch_inputs, max_input_length),
+            self._ph_decode_length: decode_length
+        })
+
+        batch_outputs, raw_outputs, output_indexes = [], [], []
+        for hyp in results['outputs']:
+            outputs = self._save_until_eos(hyp)
+            outputs = self._remove_empty_subtokens(outputs)
+            raw_output, indexes = self._text_decode(outputs)
+
+            batch_outputs.append(list(outputs))
+            raw_outputs.append(raw_output)
+            output_indexes.append(indexes)
+
+        # align, forced decoding does not work with empty outputs, so they are excluded from the batch
+        alignments = [[] for _ in texts]
+        aligned = [i for i in xrange(len(texts)) if len(batch_outputs[i]) > 0]
+
+        if len(aligned) > 0:
+            src = [batch_inputs[i] for i in aligned]
+            tgt = [batch_outputs[i] for i in aligned]
+            src_length = max([len(e) for e in src])
+            tgt_length = max([len(e) for e in tgt])
+
+            results = self._session.run(self._attention_mats_op, {
+                self._ph_train_inputs: np.reshape(self._pad(src, src_length), [len(aligned), -1, 1, 1]),
+                self._ph_train_targets: np.reshape(self._pad(tgt, tgt_length), [len(aligned), -1, 1, 1]),
+            })
+            attention_matrix = np.asarray(results)
+
+            for b, i in enumerate(aligned):
+                alignments[i] = self._make_alignment(input_indexes[i], output_indexes[i],
+                                                     attention_matrix[:, b:b + 1])
+
+        return [Translation(text=raw_outputs[i], alignment=alignments[i]) for i in xrange(len(texts))]
+
     def _warmup(self):
         random_checkpoint = self._checkpoints[None]
         self._reset_model(random_checkpoint)
@@ -311,6 +386,10 @@ class TransformerDecoder(object):
 
         return _pack(batch_src, src_max_length), _pack(batch_tgt, tgt_max_length)
 
+    @staticmethod
+    def _pad(batch, length):
+        return [list(e) + [text_encoder.PAD_ID] * (length - len(e)) for e in batch]
+
     @staticmethod
     def _save_until_eos(hyp):
         """Strips everything after the first <EOS> token, which is normally 1."""
@@ -343,31 +422,28 @@ class TransformerDecoder(object):
 
         return alignment
 
-    def serve_forever(self, stdin, stdout):
+    def serve_forever(self, stdin, stdout, protocol=None):
+        protocol = protocol if protocol is not None else JSONProtocol()
+
         try:
             while True:
-                line = stdin.readline()
-                if not line:
+                request = protocol.read_request(stdin)
+                if request is None:
                     break
 
-                request = TranslationRequest.from_json_string(line)
-
                 if request.query is None:
                     translation = self.test()
+                elif request.is_batch:
+                    translation = self.translate_batch(request.source_lang, request.target_lang, request.query)
                 else:
                     translation = self.translate(request.source_lang, request.target_lang, request.query,
                                                  suggestions=request.suggestions,
                                                  forced_translation=request.forced_translation)
 
-                response = TranslationResponse.to_json_string(translation)
-
-                stdout.write(response + '\n')
-                stdout.flush()
+                protocol.write_response(stdout, translation)
         except KeyboardInterrupt:
             pass  # ignore and exit
         except BaseException as e:
-            response = TranslationResponse.to_json_string(e)
-            stdout.write(response + '\n')
-            stdout.flush()
+            protocol.write_response(stdout, e)
 
             raise
@@ -0,0 +1,114 @@
+package eu.modernmt.decoder.neural.memory;
+
+import eu.modernmt.model.ContextVector;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static eu.modernmt.decoder.neural.memory.TestData.*;
+import static org.junit.Assert.*;
+
+public class LuceneTranslationMemoryTest_exactMatch {
+
+    private TLuceneTranslationMemory memory;
+
+    @Before
+    public void setup() throws Throwable {
+        this.memory = new TLuceneTranslationMemory();
+        this.memory.enableExactMatchIndex();
+    }
+
+    @After
+    public void teardown() throws Throwable {
+        this.memory.close();
+        this.memory = null;
+    }
+
+    private static ContextVector context(long... memories) {
+        ContextVector.Builder builder = new ContextVector.Builder();
+        for (int i = 0; i < memories.length; i++)
+            builder.add(memories[i], 1.f - i * .1f);
+        return builder.build();
+    }
+
+    @Test
+    public void matchBothDirections() throws Throwable {
+        memory.onDataReceived(Collections.singletonList(tu(0, 0L, 1L, EN__IT, "hello world", "ciao mondo", null)));
+
+        ScoreEntry match = memory.exactMatch(EN__IT, sentence("hello world"), context(1L));
+        assertNotNull(match);
+        assertEquals(1.f, match.score, .0001f);
+        assertArrayEquals(new String[]{"ciao", "mondo"}, match.translation);
+
+        match = memory.exactMatch(IT__EN, sentence("ciao mondo"), context(1L));
+        assertNotNull(match);
+        assertArrayEquals(new String[]{"hello", "world"}, match.translation);
+    }
+
+    @Test
+    public void noMatchOutsideContext() throws Throwable {
+        memory.onDataReceived(Collections.singletonList(tu(0, 0L, 1L, EN__IT, "hello world", "ciao mondo", null)));
+
+        assertNull(memory.exactMatch(EN__IT, sentence("hello world"), null));
+        assertNull(memory.exactMatch(EN__IT, sentence("hello world"), context(2L)));
+        assertNull(memory.exactMatch(EN__IT, sentence("hello"), context(1L)));
+        assertNull(memory.exactMatch(EN__FR, sentence("hello world"), context(1L)));
+    }
+
+    @Test
+    public void bestContextMemoryWins() throws Throwable {
+        memory.onDataReceived(Arrays.asList(
+                tu(0, 0L, 1L, EN__IT, "hello world", "ciao mondo", null),
+                tu(0, 1L, 2L, EN__IT, "hello world", "salve mondo", null)
+        ));
+
+        ScoreEntry match = memory.exactMatch(EN__IT, sentence("hello world"), context(2L, 1L));
+        assertNotNull(match);
+        assertEquals(2L, match.memory);
+        assertArrayEquals(new String[]{"salve", "mondo"}, match.translation);
+    }
+
+    @Test
+    public void overwrite() throws Throwable {
+        memory.onDataReceived(Collections.singletonList(tu(0, 0L, 1L, EN__IT, "hello world", "ciao mondo", null)));
+        memory.onDataReceived(Collections.singletonList(tu(0, 1L, 1L, EN__IT, "hello world", "salve mondo",
+                "hello world", "ciao mondo", null)));
+
+        ScoreEntry match = memory.exactMatch(EN__IT, sentence("hello world"), context(1L));
+        assertNotNull(match);
+        assertArrayEquals(new String[]{"salve", "mondo"}, match.translation);
+
+        memory.onDataReceived(Collections.singletonList(tu(0, 2L, 1L, EN__IT, "hello there", "salve a tutti",
+                "hello world", "salve mondo", null)));
+
+        assertNull(memory.exactMatch(EN__IT, sentence("hello world"), context(1L)));
+        assertNotNull(memory.exactMatch(EN__IT, sentence("hello there"), context(1L)));
+    }
+
+    @Test
+    public void deleteMemory() throws Throwable {
+        memory.onDataReceived(Collections.singletonList(tu(0, 0L, 1L, EN__IT, "hello world", "ciao mondo", null)));
+        memory.onDelete(deletion(1L, 1L));
+
+        assertNull(memory.exactMatch(EN__IT, sentence("hello world"), context(1L)));
+    }
+
+    @Test
+    public void loadExistingIndex() throws Throwable {
+        TLuceneTranslationMemory memory = new TLuceneTranslationMemory();
+
+        try {
+            memory.onDataReceived(Collections.singletonList(tu(0, 0L, 1L, EN__IT, "hello world", "ciao mondo", null)));
+            assertNull(memory.exactMatch(EN__IT, sentence("hello world"), context(1L)));
+
+            memory.enableExactMatchIndex();
+            assertNotNull(memory.exactMatch(EN__IT, sentence("hello world"), context(1L)));
+        } finally {
+            memory.close();
+        }
+    }
+
+}
@@ -42,10 +42,10 @@ public class TLuceneTranslationMemory extends LuceneTranslationMemory {
             ScoreEntry entry;
             if (source.compareTo(target) < 0)
                 entry = new ScoreEntry(unit.memory, unit.direction,
-                        unit.rawSentence.split("\\s+"), unit.rawTranslation.split("\\s+"));
+                        unit.getRawSentence().split("\\s+"), unit.getRawTranslation().split("\\s+"));
             else
                 entry = new ScoreEntry(unit.memory, unit.direction.reversed(),
-                        unit.rawTranslation.split("\\s+"), unit.rawSentence.split("\\s+"));
+                        unit.getRawTranslation().split("\\s+"), unit.getRawSentence().split("\\s+"));
 
             result.add(entry);
         }
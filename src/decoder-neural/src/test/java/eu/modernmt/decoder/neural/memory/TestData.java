@@ -167,7 +167,7 @@ public class TestData {
                         if (index < units.size()) {
                             TranslationUnit unit = units.get(index++);
 
-                            return new StringPair(unit.direction, unit.rawSentence, unit.rawTranslation);
+                            return new StringPair(unit.direction, unit.getRawSentence(), unit.getRawTranslation());
                         } else {
                             return null;
                         }
@@ -0,0 +1,118 @@
+package eu.modernmt.decoder.neural.memory.lucene.query.rescoring;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class F1BleuCalculatorTest {
+
+    private static final String[] VOCABULARY = {"a", "b", "c", "d", "e", "f", "the", "of", ",", "."};
+
+    private static String[] sentence(Random random, int maxLength) {
+        String[] sentence = new String[random.nextInt(maxLength) + 1];
+        for (int i = 0; i < sentence.length; i++)
+            sentence[i] = VOCABULARY[random.nextInt(VOCABULARY.length)];
+        return sentence;
+    }
+
+    private static void assertSameScore(String[] reference, String[] hypothesis, float score) {
+        float expected = ReferenceImplementation.calc(reference, hypothesis);
+        assertEquals(Arrays.toString(reference) + " vs " + Arrays.toString(hypothesis),
+                Float.floatToIntBits(expected), Float.floatToIntBits(score));
+    }
+
+    @Test
+    public void identicalSentence() {
+        String[] sentence = "the cat is on the table".split(" ");
+        assertSameScore(sentence, sentence, new F1BleuCalculator(sentence).calc(sentence));
+    }
+
+    @Test
+    public void nullTokens() {
+        String[] reference = {"a", null, "b", null};
+        String[] hypothesis = {null, "a", null, "b"};
+        assertSameScore(reference, hypothesis, new F1BleuCalculator(reference).calc(hypothesis));
+    }
+
+    @Test
+    public void randomSentencesWithReuse() {
+        Random random = new Random(1234);
+        F1BleuCalculator calculator = new F1BleuCalculator();
+
+        for (int i = 0; i < 200; i++) {
+            String[] reference = sentence(random, i % 2 == 0 ? 8 : 60);
+            calculator.reset(reference);
+
+            for (int j = 0; j < 20; j++) {
+                String[] hypothesis = sentence(random, 60);
+                assertSameScore(reference, hypothesis, calculator.calc(hypothesis));
+            }
+        }
+    }
+
+    /**
+     * Straightforward implementation based on n-gram hash maps, used as reference for the scores.
+     */
+    private static class ReferenceImplementation {
+
+        private static final int N = 4;
+        private static final double EPSILON = 0.1;
+
+        static float calc(String[] reference, String[] hypothesis) {
+            Map<String, Integer> referenceNGrams = split(reference);
+            Map<String, Integer> hypothesisNGrams = split(hypothesis);
+
+            int[] numerators = new int[N];
+            for (Map.Entry<String, Integer> entry : referenceNGrams.entrySet()) {
+                int order = entry.getKey().split("\u0001").length;
+                numerators[order - 1] += Math.min(entry.getValue(), hypothesisNGrams.getOrDefault(entry.getKey(), 0));
+            }
+
+            double precision = 0;
+            double recall = 0;
+
+            for (int order = 1; order <= N; ++order) {
+                precision += Math.log(smooth(numerators[order - 1], Math.max(hypothesis.length - order + 1, 0)));
+                recall += Math.log(smooth(numerators[order - 1], Math.max(reference.length - order + 1, 0)));
+            }
+
+            precision = Math.exp(precision / N);
+            recall = Math.exp(recall / N);
+
+            return (float) (2 * (precision * recall) / (precision + recall));
+        }
+
+        private static Map<String, Integer> split(String[] sentence) {
+            HashMap<String, Integer> counts = new HashMap<>();
+
+            for (int offset = 0; offset < sentence.length; offset++) {
+                StringBuilder ngram = new StringBuilder();
+
+                for (int o = 1; o <= Math.min(N, sentence.length - offset); o++) {
+                    String token = sentence[offset + o - 1];
+                    if (token == null)
+                        break; // null tokens never match
+
+                    if (o > 1)
+                        ngram.append('\u0001');
+                    ngram.append(token);
+
+                    counts.merge(ngram.toString(), 1, Integer::sum);
+                }
+            }
+
+            return counts;
+        }
+
+        private static double smooth(int num, int den) {
+            return (num + EPSILON) / (den + EPSILON);
+        }
+
+    }
+
+}